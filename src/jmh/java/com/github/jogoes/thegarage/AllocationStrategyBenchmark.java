@@ -0,0 +1,72 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate path with each of the built-in allocation strategies, on a half full garage.
+ * The gates are spread over all levels, which only matters for NEAREST_TO_GATE.
+ *
+ *   java -jar target/benchmarks.jar AllocationStrategyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationStrategyBenchmark {
+
+    @Param({"FIRST_FIT", "LEAST_LOADED", "ROUND_ROBIN", "NEAREST_TO_GATE"})
+    public String strategy;
+
+    @Param({"10", "1000"})
+    public int levels;
+
+    @Param({"1000"})
+    public int lotsPerLevel;
+
+    private Garage garage;
+    private Vehicle[] vehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                allocationStrategy(createStrategy(strategy)).
+                build();
+
+        int parked = levels * lotsPerLevel / 2;
+        for(int i = 0; i < parked; i++) {
+            garage.enter(GarageState.createVehicle("P", i), i % levels);
+        }
+
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("O", i);
+        }
+    }
+
+    private static AllocationStrategy createStrategy(String name) {
+        switch(name) {
+            case "FIRST_FIT": return AllocationStrategy.firstFit();
+            case "LEAST_LOADED": return AllocationStrategy.leastLoaded();
+            case "ROUND_ROBIN": return AllocationStrategy.roundRobin();
+            case "NEAREST_TO_GATE": return AllocationStrategy.nearestToGate();
+            default: throw new IllegalArgumentException("Unknown strategy " + name);
+        }
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.Cursor cursor) {
+        int next = cursor.next(vehicles.length);
+        Vehicle vehicle = vehicles[next];
+        garage.enter(vehicle, next % levels);
+        return garage.exit(vehicle);
+    }
+}
@@ -0,0 +1,99 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the asynchronous garage compared with the synchronized one. Run it once per number of
+ * caller threads, e.g.
+ *
+ *   for t in 1 4 16 64; do java -jar target/benchmarks.jar AsyncGarageBenchmark -t $t; done
+ *
+ * enterExit waits for every single operation, like a gate does. enterExitPipelined sends a number of
+ * operations before waiting for them, which lets the event loops of the asynchronous garage work in batches.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AsyncGarageBenchmark {
+
+    private static final int PIPELINE_DEPTH = 16;
+
+    @Param({"SYNCHRONIZED", "ASYNC"})
+    public String mode;
+
+    @Param({"8"})
+    public int levels;
+
+    @Param({"10000"})
+    public int lotsPerLevel;
+
+    private Garage garage;
+    private AsyncGarage asyncGarage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GarageBuilder builder = new GarageBuilder().
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                allocationStrategy(AllocationStrategy.roundRobin());
+        if(mode.equals("ASYNC")) {
+            asyncGarage = builder.buildAsync();
+        } else {
+            garage = builder.build();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if(asyncGarage != null) {
+            asyncGarage.close();
+        }
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.ThreadVehicles vehicles) {
+        Vehicle vehicle = vehicles.next();
+        if(asyncGarage != null) {
+            asyncGarage.enter(vehicle).join();
+            return asyncGarage.exit(vehicle).join();
+        }
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public Object enterExitPipelined(GarageState.ThreadVehicles vehicles) {
+        int start = vehicles.position;
+        if(asyncGarage == null) {
+            Optional<LocationInfo> location = null;
+            for(int i = 0; i < PIPELINE_DEPTH; i++) {
+                garage.enter(vehicles.next());
+            }
+            vehicles.position = start;
+            for(int i = 0; i < PIPELINE_DEPTH; i++) {
+                location = garage.exit(vehicles.next());
+            }
+            return location;
+        }
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[PIPELINE_DEPTH];
+        for(int i = 0; i < PIPELINE_DEPTH; i++) {
+            futures[i] = asyncGarage.enter(vehicles.next());
+        }
+        CompletableFuture.allOf(futures).join();
+        vehicles.position = start;
+        for(int i = 0; i < PIPELINE_DEPTH; i++) {
+            futures[i] = asyncGarage.exit(vehicles.next());
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the batch operations of the garage with calling the single vehicle operations in a loop.
+ * Every benchmark thread uses its own vehicles, run with several threads (-t) to see the effect of locking
+ * each level once per batch instead of once per vehicle.
+ *
+ *   java -jar target/benchmarks.jar BatchBenchmark -prof gc
+ *   java -jar target/benchmarks.jar BatchBenchmark -t 8
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    @Param({"10", "100"})
+    public int levels;
+
+    @Param({"1000"})
+    public int lotsPerLevel;
+
+    @Param({"0.5", "0.9"})
+    public double occupancy;
+
+    @Param({"16", "256"})
+    public int batchSize;
+
+    private Garage garage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new Garage(levels, lotsPerLevel);
+        int numberOfParkedVehicles = (int) (levels * lotsPerLevel * occupancy);
+        for (int i = 0; i < numberOfParkedVehicles; i++) {
+            garage.enter(GarageState.createVehicle("P", i));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        private static final AtomicInteger threadIds = new AtomicInteger();
+
+        private List<Vehicle> vehicles;
+
+        @Setup(Level.Trial)
+        public void setUp(BatchBenchmark benchmark) {
+            String prefix = "B" + threadIds.getAndIncrement();
+            Vehicle[] batch = new Vehicle[benchmark.batchSize];
+            for (int i = 0; i < batch.length; i++) {
+                batch[i] = GarageState.createVehicle(prefix, i);
+            }
+            vehicles = Arrays.asList(batch);
+        }
+    }
+
+    @Benchmark
+    public void enterExitAll(Batch batch, Blackhole blackhole) {
+        blackhole.consume(garage.enterAll(batch.vehicles));
+        blackhole.consume(garage.exitAll(batch.vehicles));
+    }
+
+    @Benchmark
+    public void enterExitLoop(Batch batch, Blackhole blackhole) {
+        for (Vehicle vehicle : batch.vehicles) {
+            blackhole.consume(garage.enter(vehicle));
+        }
+        for (Vehicle vehicle : batch.vehicles) {
+            blackhole.consume(garage.exit(vehicle));
+        }
+    }
+}
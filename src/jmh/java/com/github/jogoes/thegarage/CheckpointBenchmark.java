@@ -0,0 +1,112 @@
+package com.github.jogoes.thegarage;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the warm start of a garage with 10 million lots from a checkpoint, compared with replaying
+ * an enter call for every parked vehicle.
+ *
+ *   java -jar target/benchmarks.jar CheckpointBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class CheckpointBenchmark {
+
+    private static final int levels = 100;
+    private static final int lotsPerLevel = 100000;
+
+    /**
+     * Fraction of occupied lots.
+     */
+    @Param({"0.5", "1.0"})
+    public double occupancy;
+
+    private Path path;
+    /**
+     * The location of every vehicle in the checkpoint, the vehicles themselves are created again by replay(),
+     * just like load() decodes them. So only a single garage has to fit into the heap.
+     */
+    private long[] locations;
+
+    @Setup(Level.Trial)
+    public void writeCheckpoint() throws IOException {
+        path = Files.createTempFile("garage", ".checkpoint");
+
+        Garage source = createGarage(new GarageBuilder());
+        locations = new long[(int) ((long) levels * lotsPerLevel * occupancy)];
+        for(int i = 0; i < locations.length; i++) {
+            LocationInfo location = source.enter(GarageState.createVehicle("C", i)).get();
+            locations[i] = LocationInfo.pack(location.getParkingLevel(), location.getLotNumber());
+        }
+        GarageCheckpoint.write(source, path);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteCheckpoint() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Collects the garage of the previous iteration.
+     */
+    @Setup(Level.Iteration)
+    public void collectGarbage() {
+        System.gc();
+    }
+
+    private static Garage createGarage(GarageBuilder builder) {
+        return builder.
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                build();
+    }
+
+    @Benchmark
+    public Garage load() throws IOException {
+        return GarageCheckpoint.load(path, new GarageBuilder().storageMode(StorageMode.ARRAY));
+    }
+
+    /**
+     * Baseline: a new garage and one restoring enter call per parked vehicle, like replaying a journal.
+     */
+    @Benchmark
+    public Garage replay() {
+        Garage garage = createGarage(new GarageBuilder());
+        for(int i = 0; i < locations.length; i++) {
+            garage.restoreEntered(GarageState.createVehicle("C", i), LocationInfo.unpackParkingLevel(locations[i]), LocationInfo.unpackLotNumber(locations[i]));
+        }
+        return garage;
+    }
+
+    @State(Scope.Benchmark)
+    public static class LoadedGarage {
+        private Garage garage;
+        private Path path;
+
+        @Setup(Level.Trial)
+        public void setUp(CheckpointBenchmark checkpoint) throws IOException {
+            garage = GarageCheckpoint.load(checkpoint.path, new GarageBuilder().storageMode(StorageMode.ARRAY));
+            path = Files.createTempFile("garage", ".checkpoint");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Benchmark
+    public void write(LoadedGarage state) throws IOException {
+        GarageCheckpoint.write(state.garage, state.path);
+    }
+}
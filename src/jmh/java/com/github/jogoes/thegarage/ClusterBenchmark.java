@@ -0,0 +1,66 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of enter/exit/lookup on a cluster of the same total size split into a varying number of shards,
+ * a single shard being a plain Garage behind the routing. Run with the thread count matching the cores, e.g.
+ *
+ *   java -jar target/benchmarks.jar ClusterBenchmark -t 1
+ *   java -jar target/benchmarks.jar ClusterBenchmark -t 8
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClusterBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int shards;
+
+    @Param({"64"})
+    public int totalLevels;
+
+    @Param({"1000"})
+    public int lotsPerLevel;
+
+    private GarageCluster cluster;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int levelsPerShard = Math.max(totalLevels / shards, 1);
+        cluster = new GarageCluster(shards, () -> new GarageBuilder().
+                numberOfLevels(levelsPerShard).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                build());
+
+        int parked = cluster.getTotalNumberOfLots() / 2;
+        for(int i = 0; i < parked; i++) {
+            cluster.enter(GarageState.createVehicle("P", i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cluster.close();
+    }
+
+    @Benchmark
+    public Optional<ClusterLocationInfo> enterExit(GarageState.ThreadVehicles vehicles) {
+        Vehicle vehicle = vehicles.next();
+        cluster.enter(vehicle);
+        return cluster.exit(vehicle);
+    }
+
+    @Benchmark
+    public Optional<ClusterLocationInfo> findLocation(GarageState.ThreadVehicles vehicles) {
+        return cluster.findLocation(vehicles.next());
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate path with an occupancy event stream attached, and the cost of draining it.
+ * Run with "-prof gc" to check that publishing does not allocate.
+ *
+ *   java -jar target/benchmarks.jar EventStreamBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EventStreamBenchmark {
+
+    private Garage garage;
+    private OccupancyEventStream stream;
+    private OccupancyEventStream.Subscription subscription;
+    private Vehicle[] vehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(10).
+                numberOfParkingLotsPerLevel(1000).
+                storageMode(StorageMode.ARRAY).
+                build();
+        stream = new OccupancyEventStream(64 * 1024);
+        garage.addListener(stream);
+        subscription = stream.subscribe();
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("S", i);
+        }
+    }
+
+    /**
+     * Compare with GarageBenchmark.enterExit.
+     */
+    @Benchmark
+    public Object enterExitPublished(GarageState.Cursor cursor) {
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+
+    /**
+     * Gate path plus draining both events, as a consumer keeping up with the gates would.
+     */
+    @Benchmark
+    public int enterExitPolled(GarageState.Cursor cursor, Blackhole blackhole) {
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        garage.exit(vehicle);
+        return subscription.poll((type, v, parkingLevel, lotNumber, timestamp, endOfBatch) -> blackhole.consume(lotNumber), 16);
+    }
+}
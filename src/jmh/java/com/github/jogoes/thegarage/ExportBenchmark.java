@@ -0,0 +1,63 @@
+package com.github.jogoes.thegarage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ways of walking over all vehicles of a large garage: the collection, the lazy stream (sequential and
+ * parallel) and the pages. Run with "-prof gc" to compare the allocated memory.
+ *
+ *   java -jar target/benchmarks.jar ExportBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExportBenchmark {
+
+    private Garage garage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(100).
+                numberOfParkingLotsPerLevel(10000).
+                storageMode(StorageMode.ARRAY).
+                build();
+        for(int i = 0; i < 500000; i++) {
+            garage.enter(GarageState.createVehicle("P", i));
+        }
+    }
+
+    @Benchmark
+    public void collection(Blackhole blackhole) {
+        for(VehicleLocationInfo info : garage.getVehicleLocationInfos()) {
+            blackhole.consume(info);
+        }
+    }
+
+    @Benchmark
+    public void stream(Blackhole blackhole) {
+        garage.vehicleLocationInfos().forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return garage.vehicleLocationInfos().parallel().filter(info -> info.getLotNumber() % 2 == 0).count();
+    }
+
+    @Benchmark
+    public void pages(Blackhole blackhole) {
+        for(long cursor = VehicleLocationPage.FIRST; cursor != VehicleLocationPage.END; ) {
+            VehicleLocationPage page = garage.getVehicleLocationInfos(cursor, 1000);
+            for(VehicleLocationInfo info : page.getVehicleLocationInfos()) {
+                blackhole.consume(info);
+            }
+            cursor = page.getNextCursor();
+        }
+    }
+}
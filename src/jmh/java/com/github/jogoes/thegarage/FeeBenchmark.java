@@ -0,0 +1,51 @@
+package com.github.jogoes.thegarage;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accrued fees of all vehicles in a full garage, with one million lots by default.
+ *
+ *   java -jar target/benchmarks.jar FeeBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FeeBenchmark {
+
+    @Param({"10"})
+    public int levels;
+
+    @Param({"100000"})
+    public int lotsPerLevel;
+
+    private Garage garage;
+    private final Tariff tariff = new Tariff(TimeUnit.MINUTES.toMillis(15), 250, 2000);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long[] time = { System.currentTimeMillis() - TimeUnit.DAYS.toMillis(3) };
+        garage = new GarageBuilder().
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                sessionClock(() -> time[0]).
+                build();
+
+        // spread the entry times over three days
+        int vehicles = levels * lotsPerLevel;
+        for(int i = 0; i < vehicles; i++) {
+            time[0] += 259;
+            garage.enter(GarageState.createVehicle("P", i));
+        }
+    }
+
+    @Benchmark
+    public FeeReport computeAccruedFees() {
+        return garage.computeAccruedFees(tariff);
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the gate operations of the garage.
+ *
+ * Run with allocation profiling to compare changes of the allocator or the indexes:
+ *   mvn -Pbenchmark package
+ *   java -jar target/benchmarks.jar GarageBenchmark -prof gc
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GarageBenchmark {
+
+    /**
+     * Enters a vehicle and lets it exit again, so the occupancy of the garage stays the same.
+     */
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState state, GarageState.Cursor cursor) {
+        Vehicle vehicle = state.otherVehicles[cursor.next(state.otherVehicles.length)];
+        state.garage.enter(vehicle);
+        return state.garage.exit(vehicle);
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> findLocationHit(GarageState state, GarageState.Cursor cursor) {
+        return state.garage.findLocation(state.parkedVehicles[cursor.next(state.parkedVehicles.length)].getIdentifier());
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> findLocationMiss(GarageState state, GarageState.Cursor cursor) {
+        return state.garage.findLocation(state.otherVehicles[cursor.next(state.otherVehicles.length)].getIdentifier());
+    }
+
+    /**
+     * Allocation-free lookup, compare the allocation rate with findLocationHit using -prof gc.
+     */
+    @Benchmark
+    public long locateHit(GarageState state, GarageState.Cursor cursor) {
+        return state.garage.locate(state.parkedVehicles[cursor.next(state.parkedVehicles.length)].getIdentifier());
+    }
+
+    @Benchmark
+    public long locateMiss(GarageState state, GarageState.Cursor cursor) {
+        return state.garage.locate(state.otherVehicles[cursor.next(state.otherVehicles.length)].getIdentifier());
+    }
+
+    @Benchmark
+    public int counters(GarageState state) {
+        return state.garage.getNumberOfFreeLots() + state.garage.getNumberOfOccupiedLots();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Collection<VehicleLocationInfo> getVehicleLocationInfos(GarageState state) {
+        return state.garage.getVehicleLocationInfos();
+    }
+}
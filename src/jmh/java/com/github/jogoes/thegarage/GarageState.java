@@ -0,0 +1,117 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared benchmark state: a garage of configurable shape, filled up to the configured occupancy.
+ *
+ * At least one lot is always kept free so enter/exit benchmarks can run on a "nearly full" garage.
+ */
+@State(Scope.Benchmark)
+public class GarageState {
+
+    @Param({"1", "10", "100"})
+    public int levels;
+
+    @Param({"100", "10000"})
+    public int lotsPerLevel;
+
+    /**
+     * Fraction of occupied lots: empty, half and nearly full.
+     */
+    @Param({"0.0", "0.5", "0.99"})
+    public double occupancy;
+
+    @Param({"TREE", "ARRAY"})
+    public StorageMode storageMode;
+
+    public Garage garage;
+    /**
+     * Vehicles currently parked in the garage, used for lookup hits.
+     */
+    public Vehicle[] parkedVehicles;
+    /**
+     * Vehicles which are not in the garage, used for lookup misses and enter/exit.
+     */
+    public Vehicle[] otherVehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(storageMode).
+                build();
+
+        int totalNumberOfLots = levels * lotsPerLevel;
+        int numberOfParkedVehicles = Math.min((int) (totalNumberOfLots * occupancy), totalNumberOfLots - 1);
+
+        parkedVehicles = new Vehicle[Math.max(numberOfParkedVehicles, 1)];
+        for (int i = 0; i < numberOfParkedVehicles; i++) {
+            parkedVehicles[i] = createVehicle("P", i);
+            garage.enter(parkedVehicles[i]);
+        }
+        if (numberOfParkedVehicles == 0) {
+            // lookups in an empty garage can only miss
+            parkedVehicles[0] = createVehicle("E", 0);
+        }
+
+        otherVehicles = new Vehicle[1024];
+        for (int i = 0; i < otherVehicles.length; i++) {
+            otherVehicles[i] = createVehicle("O", i);
+        }
+    }
+
+    /**
+     * Creates a vehicle with a license plate like identifier, e.g. "P-AB 1234".
+     */
+    static Vehicle createVehicle(String prefix, int number) {
+        String identifier = prefix + "-" + (char) ('A' + number % 26) + (char) ('A' + (number / 26) % 26) + " " + number;
+        return number % 4 == 0 ? VehicleFactory.createMotorbike(identifier) : VehicleFactory.createCar(identifier);
+    }
+
+    /**
+     * Vehicles of their own for every benchmark thread, so concurrent threads never enter the same vehicle.
+     */
+    @State(Scope.Thread)
+    public static class ThreadVehicles {
+
+        private static final AtomicInteger threadIds = new AtomicInteger();
+
+        Vehicle[] vehicles;
+        int position;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            String prefix = "T" + threadIds.getAndIncrement();
+            vehicles = new Vehicle[1024];
+            for(int i = 0; i < vehicles.length; i++) {
+                vehicles[i] = createVehicle(prefix, i);
+            }
+        }
+
+        Vehicle next() {
+            Vehicle vehicle = vehicles[position];
+            position = (position + 1) & (vehicles.length - 1);
+            return vehicle;
+        }
+    }
+
+    /**
+     * Per-thread cursor used to walk through the vehicle arrays.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        int next(int length) {
+            int current = position;
+            position = current + 1 == length ? 0 : current + 1;
+            return current;
+        }
+    }
+}
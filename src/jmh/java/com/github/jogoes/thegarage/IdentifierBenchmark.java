@@ -0,0 +1,126 @@
+package com.github.jogoes.thegarage;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups of license plates in the identifier dictionary compared to a ConcurrentHashMap holding the same
+ * packed locations. The plates look like German ones, e.g. "HH-AB 1234" or "M-X 77", as fresh strings
+ * which don't share the instances stored in the index and don't have their hash code cached yet.
+ *
+ *   java -jar target/benchmarks.jar IdentifierBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdentifierBenchmark {
+
+    private static final String[] DISTRICTS = { "B", "M", "HH", "K", "F", "S", "D", "DO", "HB", "BN", "LEV", "GI" };
+
+    @Param({"100000"})
+    public int identifiers;
+
+    private IdentifierDictionary dictionary;
+    private ConcurrentHashMap<String, Long> map;
+
+    private char[][] hits;
+    private char[][] misses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dictionary = new IdentifierDictionary();
+        map = new ConcurrentHashMap<>();
+        Random random = new Random(1);
+
+        hits = new char[identifiers][];
+        for(int i = 0; i < identifiers; i++) {
+            String plate;
+            do {
+                plate = createPlate(random);
+            } while(dictionary.putIfAbsent(plate, LocationInfo.pack(i % 10, i)) == IdentifierDictionary.NO_HANDLE);
+            map.put(plate, LocationInfo.pack(i % 10, i));
+            hits[i] = plate.toCharArray();
+        }
+
+        misses = new char[4096][];
+        for(int i = 0; i < misses.length; i++) {
+            String plate;
+            do {
+                plate = createPlate(random);
+            } while(map.containsKey(plate));
+            misses[i] = plate.toCharArray();
+        }
+    }
+
+    private static String createPlate(Random random) {
+        StringBuilder plate = new StringBuilder(DISTRICTS[random.nextInt(DISTRICTS.length)]).append('-');
+        for(int i = 1 + random.nextInt(2); i > 0; i--) {
+            plate.append((char) ('A' + random.nextInt(26)));
+        }
+        return plate.append(' ').append(1 + random.nextInt(9999)).toString();
+    }
+
+    private String nextHit() {
+        next = (next + 1) % hits.length;
+        return new String(hits[next]);
+    }
+
+    private String nextMiss() {
+        next = (next + 1) & (misses.length - 1);
+        return new String(misses[next]);
+    }
+
+    @Benchmark
+    public long dictionaryHit() {
+        return dictionary.get(nextHit(), LocationInfo.NOT_FOUND);
+    }
+
+    @Benchmark
+    public long mapHit() {
+        return map.getOrDefault(nextHit(), LocationInfo.NOT_FOUND);
+    }
+
+    @Benchmark
+    public long dictionaryMiss() {
+        return dictionary.get(nextMiss(), LocationInfo.NOT_FOUND);
+    }
+
+    @Benchmark
+    public long mapMiss() {
+        return map.getOrDefault(nextMiss(), LocationInfo.NOT_FOUND);
+    }
+
+    /**
+     * Adding and removing an identifier, like a vehicle entering and exiting the garage.
+     */
+    @Benchmark
+    public boolean dictionaryEnterExit() {
+        String plate = nextMiss();
+        int handle = dictionary.putIfAbsent(plate, LocationInfo.NOT_FOUND);
+        dictionary.set(handle, 42);
+        return dictionary.remove(plate, dictionary.get(plate, LocationInfo.NOT_FOUND));
+    }
+
+    @Benchmark
+    public boolean mapEnterExit() {
+        String plate = nextMiss();
+        map.putIfAbsent(plate, LocationInfo.NOT_FOUND);
+        map.put(plate, 42L);
+        return map.remove(plate, map.get(plate));
+    }
+
+    /**
+     * The string copy every lookup pays for, to be subtracted from the numbers above.
+     */
+    @Benchmark
+    public String copyOnly() {
+        return nextHit();
+    }
+}
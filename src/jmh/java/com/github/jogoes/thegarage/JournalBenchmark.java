@@ -0,0 +1,125 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long it takes to rebuild a garage from its journal, and the cost of journaling on the gate path.
+ *
+ *   java -jar target/benchmarks.jar JournalBenchmark
+ */
+@State(Scope.Benchmark)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int levels = 100;
+    private static final int lotsPerLevel = 10000;
+
+    @Param({"1000000"})
+    public int events;
+
+    private Path path;
+    private Garage garage;
+
+    /**
+     * Writes a journal with the configured number of events: the garage gets filled to half of its capacity,
+     * after that vehicles enter and exit alternately.
+     */
+    @Setup(Level.Trial)
+    public void writeJournal() throws IOException {
+        path = Files.createTempFile("garage", ".journal");
+        Files.delete(path);
+
+        Garage source = createGarage();
+        try(GarageJournal journal = GarageJournal.recoverAndOpen(path, source)) {
+            int parked = Math.min(events, levels * lotsPerLevel / 2);
+            Vehicle[] vehicles = new Vehicle[events];
+            for(int i = 0; i < parked; i++) {
+                vehicles[i] = GarageState.createVehicle("J", i);
+                source.enter(vehicles[i]);
+            }
+            int next = parked;
+            for(int i = 0; next < events; i++, next += 2) {
+                vehicles[next] = GarageState.createVehicle("J", next);
+                source.enter(vehicles[next]);
+                if(next + 1 < events) {
+                    source.exit(vehicles[i]);
+                    vehicles[i] = null;
+                }
+            }
+            source.removeListener(journal);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteJournal() throws IOException {
+        Files.deleteIfExists(path);
+    }
+
+    @Setup(Level.Invocation)
+    public void createEmptyGarage() {
+        garage = createGarage();
+    }
+
+    private static Garage createGarage() {
+        return new GarageBuilder().
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3)
+    @Measurement(iterations = 5)
+    public long recover() throws IOException {
+        return GarageJournal.recover(path, garage);
+    }
+
+    /**
+     * Gate path with a journal attached, compare with GarageBenchmark.enterExit.
+     */
+    @State(Scope.Benchmark)
+    public static class JournaledGarage {
+        private Path path;
+        private GarageJournal journal;
+        private Garage garage;
+        private Vehicle[] vehicles;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            path = Files.createTempFile("garage", ".journal");
+            garage = new Garage(10, 1000);
+            journal = GarageJournal.recoverAndOpen(path, garage);
+            vehicles = new Vehicle[1024];
+            for(int i = 0; i < vehicles.length; i++) {
+                vehicles[i] = GarageState.createVehicle("G", i);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            garage.removeListener(journal);
+            journal.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public Object enterExitJournaled(JournaledGarage state, GarageState.Cursor cursor) {
+        Vehicle vehicle = state.vehicles[cursor.next(state.vehicles.length)];
+        state.garage.enter(vehicle);
+        return state.garage.exit(vehicle);
+    }
+}
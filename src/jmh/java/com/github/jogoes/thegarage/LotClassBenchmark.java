@@ -0,0 +1,68 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the gate path of a garage with car bays only against a garage with the same number of lots
+ * split into car, motorbike and shared bays. Every fourth vehicle is a motorbike.
+ *
+ *   java -jar target/benchmarks.jar LotClassBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LotClassBenchmark {
+
+    private static final int levels = 10;
+    private static final int lotsPerLevel = 1000;
+
+    @Param({"CAR_BAYS_ONLY", "MIXED"})
+    public String layout;
+
+    @Param({"0.5", "0.9"})
+    public double occupancy;
+
+    private Garage garage;
+    private Vehicle[] vehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        GarageBuilder builder = new GarageBuilder().
+                numberOfLevels(levels).
+                storageMode(StorageMode.ARRAY);
+        if(layout.equals("MIXED")) {
+            // 700 car bays, 100 motorbike bays and 100 shared bays for two motorbikes each
+            builder.numberOfParkingLotsPerLevel(700).
+                    numberOfMotorbikeBaysPerLevel(100).
+                    numberOfSharedBaysPerLevel(100).
+                    motorbikesPerSharedBay(2);
+        } else {
+            builder.numberOfParkingLotsPerLevel(lotsPerLevel);
+        }
+        garage = builder.build();
+
+        int parked = (int) (levels * lotsPerLevel * occupancy);
+        for(int i = 0; i < parked; i++) {
+            garage.enter(GarageState.createVehicle("P", i));
+        }
+
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("O", i);
+        }
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.Cursor cursor) {
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the metrics on the gate path: the same operations with metrics disabled, enabled and enabled with
+ * sampled latencies. The sample interval doesn't matter when metrics are disabled.
+ * Run with "-prof gc" to check that recording doesn't allocate, and with "-t 4" for the cost under contention.
+ *
+ *   java -jar target/benchmarks.jar MetricsBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"false", "true"})
+    public boolean metricsEnabled;
+
+    @Param({"1", "16"})
+    public int latencySampleInterval;
+
+    private Garage garage;
+    private Vehicle[] parkedVehicles;
+    private Vehicle[] vehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(10).
+                numberOfParkingLotsPerLevel(1000).
+                storageMode(StorageMode.ARRAY).
+                metricsEnabled(metricsEnabled).
+                latencySampleInterval(latencySampleInterval).
+                build();
+
+        parkedVehicles = new Vehicle[5000];
+        for(int i = 0; i < parkedVehicles.length; i++) {
+            parkedVehicles[i] = GarageState.createVehicle("P", i);
+            garage.enter(parkedVehicles[i]);
+        }
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("O", i);
+        }
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.Cursor cursor) {
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> findLocation(GarageState.Cursor cursor) {
+        return garage.findLocation(parkedVehicles[cursor.next(parkedVehicles.length)].getIdentifier());
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.OccupancyHistory.Resolution;
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the occupancy history on the gate path and of its range queries: the last hour in seconds and the
+ * last day in minutes. Run with "-prof gc" to check that recording doesn't allocate.
+ *
+ *   java -jar target/benchmarks.jar OccupancyHistoryBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OccupancyHistoryBenchmark {
+
+    @Param({"false", "true"})
+    public boolean occupancyHistoryEnabled;
+
+    private Garage garage;
+    private Vehicle[] vehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(10).
+                numberOfParkingLotsPerLevel(1000).
+                storageMode(StorageMode.ARRAY).
+                occupancyHistoryEnabled(occupancyHistoryEnabled).
+                build();
+
+        for(int i = 0; i < 5000; i++) {
+            garage.enter(GarageState.createVehicle("P", i));
+        }
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("O", i);
+        }
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.Cursor cursor) {
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+
+    @Benchmark
+    public double lastHour() {
+        long now = System.currentTimeMillis();
+        return garage.getOccupancyHistory().map(history ->
+                history.getSeries(0, Resolution.SECONDS, now - TimeUnit.HOURS.toMillis(1), now).getAverageOccupiedLots()).orElse(0.0);
+    }
+
+    @Benchmark
+    public double lastDay() {
+        long now = System.currentTimeMillis();
+        return garage.getOccupancyHistory().map(history ->
+                history.getSeries(0, Resolution.MINUTES, now - TimeUnit.DAYS.toMillis(1), now).getAverageOccupiedLots()).orElse(0.0);
+    }
+}
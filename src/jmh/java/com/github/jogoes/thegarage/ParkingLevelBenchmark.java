@@ -0,0 +1,64 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of a single parking level, without the indexes of the garage.
+ *
+ *   java -jar target/benchmarks.jar ParkingLevelBenchmark -prof gc
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParkingLevelBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int lots;
+
+    @Param({"0.0", "0.5", "0.99"})
+    public double occupancy;
+
+    @Param({"TREE", "ARRAY"})
+    public StorageMode storageMode;
+
+    private ParkingLevel parkingLevel;
+    private Vehicle[] parkedVehicles;
+    private Vehicle vehicle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        parkingLevel = new ParkingLevel(0, lots, storageMode);
+
+        int numberOfParkedVehicles = Math.min((int) (lots * occupancy), lots - 1);
+        parkedVehicles = new Vehicle[Math.max(numberOfParkedVehicles, 1)];
+        for (int i = 0; i < numberOfParkedVehicles; i++) {
+            parkedVehicles[i] = GarageState.createVehicle("P", i);
+            parkingLevel.enter(parkedVehicles[i]);
+        }
+        if (numberOfParkedVehicles == 0) {
+            parkedVehicles[0] = GarageState.createVehicle("E", 0);
+        }
+        vehicle = GarageState.createVehicle("O", 0);
+    }
+
+    /**
+     * Enters a vehicle on the lowest free lot and removes it from that lot again.
+     */
+    @Benchmark
+    public Optional<LocationInfo> enterExitLot() {
+        LocationInfo location = parkingLevel.enter(vehicle).get();
+        return parkingLevel.exit(location.getLotNumber(), vehicle);
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> findLocation(GarageState.Cursor cursor) {
+        return parkingLevel.findLocation(parkedVehicles[cursor.next(parkedVehicles.length)].getIdentifier());
+    }
+}
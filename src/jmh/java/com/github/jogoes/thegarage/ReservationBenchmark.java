@@ -0,0 +1,67 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gate path with a number of pending reservations, which the search for a free lot has to skip, and the
+ * cost of a reservation itself.
+ *
+ *   java -jar target/benchmarks.jar ReservationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReservationBenchmark {
+
+    @Param({"0", "50000"})
+    public int reservations;
+
+    @Param({"10"})
+    public int levels;
+
+    @Param({"10000"})
+    public int lotsPerLevel;
+
+    private Garage garage;
+    private Vehicle[] vehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                build();
+
+        // the reservations take the lowest lots, right where first fit starts searching
+        for(int i = 0; i < reservations; i++) {
+            garage.reserve(GarageState.createVehicle("R", i), i % levels, 1, TimeUnit.HOURS);
+        }
+
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("O", i);
+        }
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.Cursor cursor) {
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+
+    @Benchmark
+    public boolean reserveCancel(GarageState.Cursor cursor) {
+        int next = cursor.next(vehicles.length);
+        Reservation reservation = garage.reserve(vehicles[next], next % levels, 1, TimeUnit.MINUTES).get();
+        return garage.cancel(reservation);
+    }
+}
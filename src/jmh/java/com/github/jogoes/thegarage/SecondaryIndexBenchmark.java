@@ -0,0 +1,81 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prefix and lot range queries against filtering all vehicles, on a garage with 500000 vehicles spread over
+ * 100 levels. The prefix "P-KC 4" matches 164 vehicles, the lot range 150 lots of one level. enterExit shows
+ * what keeping the prefix index costs the gates, every level holds 5000 vehicles.
+ *
+ *   java -jar target/benchmarks.jar SecondaryIndexBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SecondaryIndexBenchmark {
+
+    private static final String PREFIX = "P-KC 4";
+
+    @Param({"false", "true"})
+    public boolean prefixIndexEnabled;
+
+    private Garage garage;
+    private Vehicle[] vehicles;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(100).
+                numberOfParkingLotsPerLevel(10000).
+                storageMode(StorageMode.ARRAY).
+                allocationStrategy(AllocationStrategy.roundRobin()).
+                prefixIndexEnabled(prefixIndexEnabled).
+                build();
+        for(int i = 0; i < 500000; i++) {
+            garage.enter(GarageState.createVehicle("P", i));
+        }
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("O", i);
+        }
+    }
+
+    /**
+     * Uses the prefix index in case it is enabled, else the same scan as prefixScan().
+     */
+    @Benchmark
+    public long prefix() {
+        return garage.vehicleLocationInfosWithPrefix(PREFIX).count();
+    }
+
+    @Benchmark
+    public long prefixScan() {
+        return garage.vehicleLocationInfos().filter(info -> info.getVehicle().getIdentifier().startsWith(PREFIX)).count();
+    }
+
+    @Benchmark
+    public long range() {
+        return garage.vehicleLocationInfos(42, 100, 250).count();
+    }
+
+    @Benchmark
+    public long rangeScan() {
+        return garage.getVehicleLocationInfos().stream().
+                filter(info -> info.getParkingLevel() == 42 && info.getLotNumber() >= 100 && info.getLotNumber() < 250).
+                count();
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.Cursor cursor) {
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+}
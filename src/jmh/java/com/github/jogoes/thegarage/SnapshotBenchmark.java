@@ -0,0 +1,76 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of snapshots for the gates and for the readers, in a half full garage.
+ *
+ * enterExit takes a snapshot every snapshotInterval operations, 0 never takes one. The snapshot forces the
+ * next writes to copy the chunks they touch, which is the overhead the gates pay for snapshots.
+ *
+ *   java -jar target/benchmarks.jar SnapshotBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    @Param({"0", "1000", "10"})
+    public int snapshotInterval;
+
+    @Param({"10"})
+    public int levels;
+
+    @Param({"10000"})
+    public int lotsPerLevel;
+
+    private Garage garage;
+    private Vehicle[] vehicles;
+    private int operations;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        garage = new GarageBuilder().
+                numberOfLevels(levels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                build();
+
+        for(int i = 0; i < levels * lotsPerLevel / 2; i++) {
+            garage.enter(GarageState.createVehicle("P", i));
+        }
+
+        vehicles = new Vehicle[1024];
+        for(int i = 0; i < vehicles.length; i++) {
+            vehicles[i] = GarageState.createVehicle("O", i);
+        }
+    }
+
+    @Benchmark
+    public Optional<LocationInfo> enterExit(GarageState.Cursor cursor) {
+        if(snapshotInterval > 0 && ++operations == snapshotInterval) {
+            operations = 0;
+            garage.snapshot();
+        }
+        Vehicle vehicle = vehicles[cursor.next(vehicles.length)];
+        garage.enter(vehicle);
+        return garage.exit(vehicle);
+    }
+
+    @Benchmark
+    public int snapshotCounters() {
+        return garage.snapshot().getNumberOfFreeLots();
+    }
+
+    @Benchmark
+    public long snapshotVehicles() {
+        return garage.snapshot().vehicleLocationInfos().count();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * Decides on which parking level an entering vehicle is parked, see GarageBuilder.allocationStrategy().
+ * Within the chosen level the vehicle gets the lowest free lot of a fitting lot class, the one closest
+ * to the ramp.
+ *
+ * A strategy instance belongs to exactly one garage. It is called by many gate threads at the same time
+ * and has to be thread-safe. The garage double-checks the selected level while holding its lock: in case
+ * the level filled up in the meantime, the garage asks again and finally falls back to first fit, so
+ * a strategy working on a slightly outdated view never turns a vehicle away.
+ */
+public interface AllocationStrategy {
+
+    /**
+     * Called once by the garage before any other method, followed by levelChanged() for every level.
+     *
+     * @exception java.lang.IllegalStateException in case the strategy is already used by another garage
+     */
+    void initialize(int numberOfLevels);
+
+    /**
+     * Called whenever the number of free lots of a parking level changed, while holding the lock of that level.
+     *
+     * @param numberOfFreeLots the number of free lots, all of them fit a motorbike
+     * @param numberOfFreeCarBays the number of free car bays and empty shared bays, the room left for cars
+     */
+    default void levelChanged(int level, int numberOfFreeLots, int numberOfFreeCarBays) {}
+
+    /**
+     * Called when levels were added to the garage while it is in use, see Garage.addLevel(). It is followed by
+     * levelChanged() for every level, changes of other levels may be reported concurrently.
+     *
+     * @param numberOfLevels the new number of levels
+     */
+    default void levelsAdded(int numberOfLevels) {}
+
+    /**
+     * @param vehicle the entering vehicle
+     * @param gateLevel the level of the gate the vehicle enters through
+     * @param freeLevels the levels with room for the vehicle
+     * @return The level to park the vehicle on, -1 in case no level has room.
+     */
+    int selectLevel(Vehicle vehicle, int gateLevel, FreeLevels freeLevels);
+
+    /**
+     * @return A strategy taking the lowest level with room, this is the default.
+     */
+    static AllocationStrategy firstFit() { return new FirstFitStrategy(); }
+
+    /**
+     * @return A strategy taking the level with the most free lots.
+     */
+    static AllocationStrategy leastLoaded() { return new LeastLoadedStrategy(); }
+
+    /**
+     * @return A strategy spreading the vehicles over the levels one after the other.
+     */
+    static AllocationStrategy roundRobin() { return new RoundRobinStrategy(); }
+
+    /**
+     * @return A strategy taking the level with room closest to the level of the entry gate.
+     */
+    static AllocationStrategy nearestToGate() { return new NearestGateStrategy(); }
+}
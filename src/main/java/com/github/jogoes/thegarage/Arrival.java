@@ -0,0 +1,46 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * A vehicle arriving at a gate of the garage in a traffic simulation, see TrafficModel.
+ *
+ * Times are in nanoseconds of simulated time, counted from the start of the simulation.
+ */
+public final class Arrival {
+
+    private final long time;
+    private final Vehicle vehicle;
+    private final long dwellTime;
+
+    /**
+     * @param time the time the vehicle arrives
+     * @param vehicle the arriving vehicle
+     * @param dwellTime how long the vehicle stays in case it gets a lot
+     */
+    public Arrival(long time, Vehicle vehicle, long dwellTime) {
+        if(vehicle == null) {
+            throw new NullPointerException("The vehicle must not be null.");
+        }
+        if(time < 0 || dwellTime < 0) {
+            throw new IllegalArgumentException("The arrival time and the dwell time must be greater or equal than 0.");
+        }
+        this.time = time;
+        this.vehicle = vehicle;
+        this.dwellTime = dwellTime;
+    }
+
+    public long getTime() { return time; }
+    public Vehicle getVehicle() { return vehicle; }
+    public long getDwellTime() { return dwellTime; }
+    public long getDepartureTime() { return time + dwellTime; }
+
+    @Override
+    public String toString() {
+        return "Arrival{" +
+                "time=" + time +
+                ", vehicle=" + vehicle +
+                ", dwellTime=" + dwellTime +
+                '}';
+    }
+}
@@ -0,0 +1,416 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Motorbike;
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.io.Closeable;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Garage whose parking levels are each owned by a single thread, an event loop.
+ *
+ * Usage:
+ *   try(AsyncGarage garage = new GarageBuilder().numberOfLevels(10).numberOfParkingLotsPerLevel(1000).buildAsync()) {
+ *       garage.enter(vehicle).thenAccept(location -> ...);
+ *   }
+ *
+ * The gate threads don't touch the parking levels, they send a message to the event loop of a level and
+ * get a future back. Only the event loop changes its level, so the gates never wait for each other.
+ * An event loop takes all messages which piled up (up to MAX_BATCH_SIZE) at once and publishes the new
+ * state of its level (occupied lots, free level index) only once per batch.
+ *
+ * Entering works like in the Garage: the identifier is registered in the index first, the allocation
+ * strategy picks a level from the free level index, which may be slightly outdated. In case the level
+ * turns out to be full, its event loop forwards the message to the next level with room.
+ *
+ * The futures are completed by the event loops, dependent actions which take longer should therefore be
+ * attached with the async variants, e.g. thenAcceptAsync().
+ */
+public class AsyncGarage implements Closeable {
+
+    /**
+     * The maximum number of messages an event loop handles before it publishes the state of its level.
+     */
+    static final int MAX_BATCH_SIZE = 256;
+
+    /**
+     * The number of times an idle event loop polls its queue again before it parks.
+     */
+    private static final int IDLE_SPINS = 64;
+
+    /**
+     * Placeholder registered in the index while a vehicle is entering but not yet placed on a level.
+     * Like LocationInfo.NOT_FOUND it is negative, so lookups can check for both with a single comparison.
+     */
+    private static final long PENDING = -2L;
+
+    private final ParkingLevel[] parkingLevels;
+    private final EventLoop[] eventLoops;
+
+    /**
+     * Index from vehicle identifier to the location of the vehicle, packed like in the Garage, see
+     * LocationInfo.pack(). An entry pointing to a parking level is only changed by the event loop of that level.
+     */
+    private final IdentifierDictionary vehicleLocations = new IdentifierDictionary();
+    private final FreeLevelIndex freeLevels;
+    private final FreeLevelIndex freeCarLevels;
+    private final AllocationStrategy allocationStrategy;
+
+    private final int totalNumberOfLots;
+    private final AtomicInteger numberOfOccupiedLots = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    AsyncGarage(GarageBuilder builder) {
+
+        LotLayout layout = builder.createLayout();
+        int numberOfLevels = builder.getNumberOfLevels();
+
+        allocationStrategy = builder.getAllocationStrategy();
+        allocationStrategy.initialize(numberOfLevels);
+        freeLevels = new FreeLevelIndex(numberOfLevels);
+        freeCarLevels = new FreeLevelIndex(numberOfLevels);
+        parkingLevels = new ParkingLevel[numberOfLevels];
+        eventLoops = new EventLoop[numberOfLevels];
+        for(int level = 0; level < numberOfLevels; level++) {
+            parkingLevels[level] = new ParkingLevel(level, layout, builder.getStorageMode());
+            parkingLevels[level].setClock(builder.getSessionClock());
+            publish(parkingLevels[level]);
+        }
+        totalNumberOfLots = layout.getTotalNumberOfLots() * numberOfLevels;
+        for(int level = 0; level < numberOfLevels; level++) {
+            eventLoops[level] = new EventLoop(parkingLevels[level]);
+            eventLoops[level].thread.start();
+        }
+    }
+
+    public int getNumberOfLevels() { return parkingLevels.length; }
+    public int getTotalNumberOfLots() { return totalNumberOfLots; }
+    public int getNumberOfFreeLots() { return totalNumberOfLots - numberOfOccupiedLots.get(); }
+    public int getNumberOfOccupiedLots() { return numberOfOccupiedLots.get(); }
+
+    /**
+     * Adds a vehicle to the garage.
+     *
+     * @param vehicle The vehicle to enter.
+     * @return Completes with the location of the entered vehicle, with Optional.empty() in case the vehicle couldn't
+     * be added to the garage, or with an IllegalArgumentException in case the vehicle is already in the garage.
+     */
+    public CompletableFuture<Optional<LocationInfo>> enter(Vehicle vehicle) {
+        return enter(vehicle, 0);
+    }
+
+    /**
+     * Adds a vehicle entering through a gate on the specified level to the garage, see Garage.enter(Vehicle, int).
+     */
+    public CompletableFuture<Optional<LocationInfo>> enter(Vehicle vehicle, int gateLevel) {
+
+        validateVehicleArgument(vehicle);
+        if(gateLevel < 0 || gateLevel >= parkingLevels.length) {
+            throw new IllegalArgumentException("Parking level " + gateLevel + " doesn't exist.");
+        }
+
+        CompletableFuture<Optional<LocationInfo>> future = new CompletableFuture<>();
+        int handle = vehicleLocations.putIfAbsent(vehicle.getIdentifier(), PENDING);
+        if(handle == IdentifierDictionary.NO_HANDLE) {
+            future.completeExceptionally(new IllegalArgumentException("Specified vehicle is already in the garage."));
+            return future;
+        }
+
+        int level = allocationStrategy.selectLevel(vehicle, gateLevel, freeLevelsFor(vehicle));
+        if(level == -1) {
+            vehicleLocations.remove(vehicle.getIdentifier(), PENDING);
+            future.complete(Optional.empty());
+            return future;
+        }
+        eventLoops[level].submit(new EnterMessage(vehicle, handle, future));
+        return future;
+    }
+
+    /**
+     * Removes a vehicle from the garage.
+     *
+     * @param vehicle The vehicle to remove from the garage.
+     * @return Completes with the location the vehicle was parked on, with Optional.empty() in case it wasn't found.
+     */
+    public CompletableFuture<Optional<LocationInfo>> exit(Vehicle vehicle) {
+
+        validateVehicleArgument(vehicle);
+
+        CompletableFuture<Optional<LocationInfo>> future = new CompletableFuture<>();
+        long location = vehicleLocations.get(vehicle.getIdentifier(), LocationInfo.NOT_FOUND);
+        if(location < 0) {
+            future.complete(Optional.empty());
+        } else {
+            eventLoops[LocationInfo.unpackParkingLevel(location)].submit(new ExitMessage(vehicle, location, future));
+        }
+        return future;
+    }
+
+    /**
+     * Looks the vehicle up in the index, without involving an event loop.
+     *
+     * @param vehicleId The id of the vehicle to search for.
+     * @return A completed future with the location of the vehicle, Optional.empty() in case nothing was found.
+     */
+    public CompletableFuture<Optional<LocationInfo>> findLocation(String vehicleId) {
+        if(vehicleId == null) {
+            throw new NullPointerException("The specified vehicle id must not be null.");
+        }
+        long location = vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND);
+        if(location < 0) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return CompletableFuture.completedFuture(parkingLevels[LocationInfo.unpackParkingLevel(location)].location(LocationInfo.unpackLotNumber(location)));
+    }
+
+    public CompletableFuture<Optional<LocationInfo>> findLocation(Vehicle vehicle) {
+        return findLocation(vehicle.getIdentifier());
+    }
+
+    /**
+     * Stops the event loops once they handled the messages already sent. Messages sent afterwards complete
+     * with an IllegalStateException.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for(EventLoop eventLoop : eventLoops) {
+            LockSupport.unpark(eventLoop.thread);
+        }
+        for(EventLoop eventLoop : eventLoops) {
+            try {
+                eventLoop.thread.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private FreeLevelIndex freeLevelsFor(Vehicle vehicle) {
+        return vehicle instanceof Motorbike ? freeLevels : freeCarLevels;
+    }
+
+    /**
+     * Helper function used to update the free level indexes, only called by the event loop of the parking level.
+     */
+    private void publish(ParkingLevel parkingLevel) {
+        freeLevels.update(parkingLevel.getLevel(), parkingLevel.hasFreeLots());
+        freeCarLevels.update(parkingLevel.getLevel(), parkingLevel.hasRoomForCar());
+        allocationStrategy.levelChanged(parkingLevel.getLevel(), parkingLevel.getNumberOfFreeLots(), parkingLevel.getNumberOfFreeCarBays());
+    }
+
+    private void validateVehicleArgument(Vehicle vehicle) {
+        if(vehicle == null) {
+            throw new NullPointerException("The specified vehicle must not be null.");
+        }
+        if(vehicle.getIdentifier() == null || vehicle.getIdentifier().isEmpty()) {
+            throw new NullPointerException("The identifier of the vehicle must not be null or empty.");
+        }
+    }
+
+    /**
+     * A message handled by the event loop of a parking level.
+     */
+    private abstract class Message {
+
+        final Vehicle vehicle;
+        final CompletableFuture<Optional<LocationInfo>> future;
+        Optional<LocationInfo> result;
+
+        Message(Vehicle vehicle, CompletableFuture<Optional<LocationInfo>> future) {
+            this.vehicle = vehicle;
+            this.future = future;
+        }
+
+        /**
+         * @return true in case the message is done and the future can be completed with the result, false
+         * in case it was forwarded to another event loop.
+         */
+        abstract boolean handle(EventLoop eventLoop);
+
+        /**
+         * Called in case the message can't be delivered because the garage is closed.
+         */
+        void reject() {
+            fail(new IllegalStateException("The garage is closed."));
+        }
+
+        /**
+         * Called in case handling the message failed, completes the future with the exception.
+         */
+        void fail(RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    private final class EnterMessage extends Message {
+
+        /**
+         * The handle of the vehicle in the index, reserved with PENDING until the vehicle is placed.
+         */
+        private final int handle;
+        /**
+         * The number of levels which turned out to be full.
+         */
+        private int levelsTried;
+
+        EnterMessage(Vehicle vehicle, int handle, CompletableFuture<Optional<LocationInfo>> future) {
+            super(vehicle, future);
+            this.handle = handle;
+        }
+
+        @Override
+        boolean handle(EventLoop eventLoop) {
+            ParkingLevel parkingLevel = eventLoop.parkingLevel;
+            Optional<LocationInfo> location = parkingLevel.enter(vehicle);
+            if(location.isPresent()) {
+                vehicleLocations.set(handle, LocationInfo.pack(location.get().getParkingLevel(), location.get().getLotNumber()));
+                result = location;
+                return true;
+            }
+
+            // the free level index was outdated, go on with the next level with room
+            int numberOfLevels = parkingLevels.length;
+            FreeLevelIndex levels = freeLevelsFor(vehicle);
+            int next = levels.nextLevelWithFreeLots(parkingLevel.getLevel() + 1);
+            if(next == -1) {
+                next = levels.nextLevelWithFreeLots(0);
+            }
+            if(++levelsTried >= numberOfLevels || next == -1 || next == parkingLevel.getLevel()) {
+                vehicleLocations.remove(vehicle.getIdentifier(), PENDING);
+                result = Optional.empty();
+                return true;
+            }
+            eventLoops[next].submit(this);
+            return false;
+        }
+
+        @Override
+        void fail(RuntimeException e) {
+            // the vehicle isn't parked anywhere, it has to be able to enter again
+            vehicleLocations.remove(vehicle.getIdentifier(), PENDING);
+            super.fail(e);
+        }
+    }
+
+    private final class ExitMessage extends Message {
+
+        private long location;
+
+        ExitMessage(Vehicle vehicle, long location, CompletableFuture<Optional<LocationInfo>> future) {
+            super(vehicle, future);
+            this.location = location;
+        }
+
+        @Override
+        boolean handle(EventLoop eventLoop) {
+            String vehicleId = vehicle.getIdentifier();
+            long current = vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND);
+            if(current == location) {
+                ParkingLevel parkingLevel = eventLoop.parkingLevel;
+                result = parkingLevel.exit(LocationInfo.unpackLotNumber(location), vehicle);
+                vehicleLocations.remove(vehicleId, location);
+                return true;
+            }
+            // the vehicle left (and maybe entered again) after the message was sent
+            if(current < 0) {
+                result = Optional.empty();
+                return true;
+            }
+            location = current;
+            eventLoops[LocationInfo.unpackParkingLevel(current)].submit(this);
+            return false;
+        }
+    }
+
+    /**
+     * The single thread changing a parking level.
+     */
+    private final class EventLoop implements Runnable {
+
+        private final ParkingLevel parkingLevel;
+        private final Thread thread;
+        private final Queue<Message> queue = new ConcurrentLinkedQueue<>();
+        /**
+         * Set while the thread is about to park, senders have to unpark it then.
+         */
+        private volatile boolean idle;
+        /**
+         * The messages of the current batch, completed after the state of the level was published.
+         */
+        private final Message[] batch = new Message[MAX_BATCH_SIZE];
+
+        EventLoop(ParkingLevel parkingLevel) {
+            this.parkingLevel = parkingLevel;
+            this.thread = new Thread(this, "garage-level-" + parkingLevel.getLevel());
+            this.thread.setDaemon(true);
+        }
+
+        void submit(Message message) {
+            queue.offer(message);
+            if(closed && queue.remove(message)) {
+                // the event loop might be gone already, nobody would ever complete the future
+                message.reject();
+                return;
+            }
+            if(idle) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int spins = 0;
+            while(true) {
+                Message message = queue.poll();
+                if(message == null) {
+                    if(closed) {
+                        return;
+                    }
+                    if(++spins < IDLE_SPINS) {
+                        Thread.yield();
+                        continue;
+                    }
+                    idle = true;
+                    if(queue.isEmpty() && !closed) {
+                        LockSupport.park(this);
+                    }
+                    idle = false;
+                    spins = 0;
+                    continue;
+                }
+                handleBatch(message);
+            }
+        }
+
+        private void handleBatch(Message first) {
+            int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+            int numberOfDone = 0;
+            int handled = 0;
+            Message message = first;
+            do {
+                try {
+                    if(message.handle(this)) {
+                        batch[numberOfDone++] = message;
+                    }
+                } catch(RuntimeException e) {
+                    message.fail(e);
+                }
+            } while(++handled < MAX_BATCH_SIZE && (message = queue.poll()) != null);
+
+            numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+            publish(parkingLevel);
+            for(int i = 0; i < numberOfDone; i++) {
+                batch[i].future.complete(batch[i].result);
+                batch[i] = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.Optional;
+
+/**
+ * Outcome for a single vehicle of a batch operation, see Garage.enterAll() and Garage.exitAll().
+ */
+public class BatchResult {
+
+    public enum Status {
+        /** The vehicle entered the garage. */
+        ENTERED,
+        /** The vehicle left the garage. */
+        EXITED,
+        /** The vehicle was already in the garage or appeared more than once in the batch. */
+        DUPLICATE,
+        /** There was no free lot left for the vehicle. */
+        GARAGE_FULL,
+        /** The vehicle to exit wasn't in the garage. */
+        NOT_FOUND
+    }
+
+    private final Vehicle vehicle;
+    private final Status status;
+    private final LocationInfo location;
+
+    BatchResult(Vehicle vehicle, Status status, LocationInfo location) {
+        this.vehicle = vehicle;
+        this.status = status;
+        this.location = location;
+    }
+
+    public Vehicle getVehicle() { return vehicle; }
+    public Status getStatus() { return status; }
+
+    /**
+     * @return The lot the vehicle entered or left, Optional.empty() in case the vehicle was rejected.
+     */
+    public Optional<LocationInfo> getLocation() { return Optional.ofNullable(location); }
+
+    @Override
+    public String toString() {
+        return "BatchResult{" +
+                "vehicle=" + vehicle +
+                ", status=" + status +
+                ", location=" + location +
+                '}';
+    }
+}
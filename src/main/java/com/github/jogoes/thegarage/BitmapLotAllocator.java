@@ -0,0 +1,148 @@
+package com.github.jogoes.thegarage;
+
+import java.util.Arrays;
+
+/**
+ * Lot allocator based on a two-level bitmap.
+ *
+ * Every lot is represented by one bit in the lot words (a set bit means the lot is free). A second,
+ * much smaller, summary bitmap has one bit per lot word which is set as long as the word still contains
+ * a free lot. Searching for the lowest free lot only has to look at the summary words until it finds
+ * a set bit, which is n/4096 words in the worst case, releasing a lot is O(1).
+ */
+class BitmapLotAllocator implements LotAllocator {
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = 63;
+
+    private int capacity;
+    private long[] freeLots;
+    private long[] summary;
+    private int numberOfFreeLots;
+
+    BitmapLotAllocator(int capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("The capacity must be greater or equal than 0.");
+        }
+        this.capacity = capacity;
+        this.freeLots = new long[wordCount(capacity)];
+        this.summary = new long[wordCount(freeLots.length)];
+
+        for(int lot = 0; lot < capacity; lot += 64) {
+            int bits = Math.min(64, capacity - lot);
+            freeLots[lot >>> WORD_SHIFT] = bits == 64 ? -1L : (1L << bits) - 1;
+        }
+        for(int word = 0; word < freeLots.length; word++) {
+            summary[word >>> WORD_SHIFT] |= 1L << (word & WORD_MASK);
+        }
+        this.numberOfFreeLots = capacity;
+    }
+
+    private static int wordCount(int bits) { return (bits + WORD_MASK) >>> WORD_SHIFT; }
+
+    @Override
+    public int getCapacity() { return capacity; }
+
+    @Override
+    public int getNumberOfFreeLots() { return numberOfFreeLots; }
+
+    @Override
+    public int allocate() {
+        for(int i = 0; i < summary.length; i++) {
+            long summaryWord = summary[i];
+            if(summaryWord != 0) {
+                int word = (i << WORD_SHIFT) + Long.numberOfTrailingZeros(summaryWord);
+                int lot = (word << WORD_SHIFT) + Long.numberOfTrailingZeros(freeLots[word]);
+                occupy(lot);
+                return lot;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean claim(int lotNumber) {
+        if(!isFree(lotNumber)) {
+            return false;
+        }
+        occupy(lotNumber);
+        return true;
+    }
+
+    @Override
+    public void release(int lotNumber) {
+        checkLotNumber(lotNumber);
+        int word = lotNumber >>> WORD_SHIFT;
+        long bit = 1L << (lotNumber & WORD_MASK);
+        if((freeLots[word] & bit) != 0) {
+            throw new IllegalStateException("Lot " + lotNumber + " is not occupied.");
+        }
+        freeLots[word] |= bit;
+        summary[word >>> WORD_SHIFT] |= 1L << (word & WORD_MASK);
+        numberOfFreeLots++;
+    }
+
+    @Override
+    public boolean isFree(int lotNumber) {
+        checkLotNumber(lotNumber);
+        return (freeLots[lotNumber >>> WORD_SHIFT] & (1L << (lotNumber & WORD_MASK))) != 0;
+    }
+
+    @Override
+    public void resize(int capacity) {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("The capacity must be greater or equal than 0.");
+        }
+        if(capacity < this.capacity && countFreeLots(capacity) != this.capacity - capacity) {
+            throw new IllegalStateException("The lots from " + capacity + " on are not free.");
+        }
+        long[] resized = Arrays.copyOf(freeLots, wordCount(capacity));
+        if(capacity < this.capacity) {
+            if((capacity & WORD_MASK) != 0) {
+                resized[resized.length - 1] &= (1L << (capacity & WORD_MASK)) - 1;
+            }
+        } else {
+            for(int lot = this.capacity; lot < capacity; lot = (lot | WORD_MASK) + 1) {
+                int bits = Math.min(64 - (lot & WORD_MASK), capacity - lot);
+                long mask = bits == 64 ? -1L : ((1L << bits) - 1) << (lot & WORD_MASK);
+                resized[lot >>> WORD_SHIFT] |= mask;
+            }
+        }
+        numberOfFreeLots += capacity - this.capacity;
+        freeLots = resized;
+        summary = new long[wordCount(resized.length)];
+        for(int word = 0; word < resized.length; word++) {
+            if(resized[word] != 0) {
+                summary[word >>> WORD_SHIFT] |= 1L << (word & WORD_MASK);
+            }
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return The number of free lots from the specified lot on.
+     */
+    private int countFreeLots(int fromLotNumber) {
+        int word = fromLotNumber >>> WORD_SHIFT;
+        int count = Long.bitCount(freeLots[word] & (-1L << (fromLotNumber & WORD_MASK)));
+        for(word++; word < freeLots.length; word++) {
+            count += Long.bitCount(freeLots[word]);
+        }
+        return count;
+    }
+
+    private void occupy(int lotNumber) {
+        int word = lotNumber >>> WORD_SHIFT;
+        freeLots[word] &= ~(1L << (lotNumber & WORD_MASK));
+        if(freeLots[word] == 0) {
+            summary[word >>> WORD_SHIFT] &= ~(1L << (word & WORD_MASK));
+        }
+        numberOfFreeLots--;
+    }
+
+    private void checkLotNumber(int lotNumber) {
+        if(lotNumber < 0 || lotNumber >= capacity) {
+            throw new IndexOutOfBoundsException("Lot number " + lotNumber + " is out of range [0, " + capacity + ").");
+        }
+    }
+}
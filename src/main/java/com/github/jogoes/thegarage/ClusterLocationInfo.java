@@ -0,0 +1,24 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Location of a vehicle in a GarageCluster: the shard plus the location within the garage of that shard.
+ */
+public class ClusterLocationInfo extends LocationInfo {
+
+    private final int shard;
+
+    public int getShard() { return shard; }
+
+    ClusterLocationInfo(int shard, LocationInfo location) {
+        super(location.getParkingLevel(), location.getLotNumber());
+        this.shard = shard;
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterLocationInfo{" +
+                "shard=" + shard +
+                ", " + super.toString() +
+                '}';
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.jogoes.thegarage;
+
+import java.util.Arrays;
+
+/**
+ * The fees accrued by all vehicles parked in the garage at one point in time, see Garage.computeAccruedFees().
+ *
+ * The fees are kept in one primitive array per parking level, indexed by lot number. A car in a shared bay
+ * is accounted on the first lot of the bay, the other lots of the bay and free lots have a fee of 0.
+ */
+public class FeeReport {
+
+    private final long time;
+    private final long[][] fees;
+    private final int numberOfSessions;
+    private final long totalFees;
+
+    FeeReport(long time, long[][] fees, int numberOfSessions) {
+        this.time = time;
+        this.fees = fees;
+        this.numberOfSessions = numberOfSessions;
+        long total = 0;
+        for(long[] levelFees : fees) {
+            total += Arrays.stream(levelFees).sum();
+        }
+        this.totalFees = total;
+    }
+
+    /**
+     * @return The time the fees were computed for, in milliseconds of the session clock of the garage.
+     */
+    public long getTime() { return time; }
+
+    /**
+     * @return The number of vehicles which were parked.
+     */
+    public int getNumberOfSessions() { return numberOfSessions; }
+
+    public long getTotalFees() { return totalFees; }
+
+    /**
+     * @return The fee accrued by the vehicle parked on the specified lot, 0 in case the lot was free.
+     */
+    public long getFee(int parkingLevel, int lotNumber) { return fees[parkingLevel][lotNumber]; }
+
+    @Override
+    public String toString() {
+        return "FeeReport{" +
+                "time=" + time +
+                ", numberOfSessions=" + numberOfSessions +
+                ", totalFees=" + totalFees +
+                '}';
+    }
+}
@@ -0,0 +1,17 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * Takes the lowest level with room for the vehicle.
+ */
+class FirstFitStrategy implements AllocationStrategy {
+
+    @Override
+    public void initialize(int numberOfLevels) {}
+
+    @Override
+    public int selectLevel(Vehicle vehicle, int gateLevel, FreeLevels freeLevels) {
+        return freeLevels.nextLevelWithFreeLots(0);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.jogoes.thegarage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent bit set of the parking levels which still have free lots.
+ *
+ * The bit of a level is only changed while holding the lock of that level, so it always reflects the state
+ * of the level at the time the lock was released. Readers don't lock anything and may see a slightly outdated
+ * state, the garage therefore always re-checks the chosen level while holding its lock.
+ *
+ * The index grows with the garage, see grow(). Updates racing with growing it might still go to the old words,
+ * so the garage updates every level again after growing the index.
+ */
+class FreeLevelIndex implements FreeLevels {
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = 63;
+
+    private volatile int numberOfLevels;
+    private volatile AtomicLongArray words;
+
+    FreeLevelIndex(int numberOfLevels) {
+        this.numberOfLevels = numberOfLevels;
+        this.words = new AtomicLongArray((numberOfLevels + WORD_MASK) >>> WORD_SHIFT);
+    }
+
+    @Override
+    public int getNumberOfLevels() { return numberOfLevels; }
+
+    /**
+     * Makes room for the specified number of levels, the added levels have no free lots until they are updated.
+     * Must not be called concurrently with itself.
+     */
+    void grow(int numberOfLevels) {
+        AtomicLongArray current = words;
+        int length = (numberOfLevels + WORD_MASK) >>> WORD_SHIFT;
+        if(length > current.length()) {
+            // double the size, so adding levels one by one copies every word only a few times
+            AtomicLongArray grown = new AtomicLongArray(Math.max(length, 2 * current.length()));
+            for(int word = 0; word < current.length(); word++) {
+                grown.set(word, current.get(word));
+            }
+            words = grown;
+        }
+        this.numberOfLevels = Math.max(numberOfLevels, this.numberOfLevels);
+    }
+
+    /**
+     * Sets or clears the bit of the specified level.
+     */
+    void update(int level, boolean hasFreeLots) {
+        AtomicLongArray words = this.words;
+        int word = level >>> WORD_SHIFT;
+        long bit = 1L << (level & WORD_MASK);
+        while(true) {
+            long current = words.get(word);
+            long updated = hasFreeLots ? current | bit : current & ~bit;
+            if(current == updated || words.compareAndSet(word, current, updated)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public boolean hasFreeLots(int level) {
+        return (words.get(level >>> WORD_SHIFT) & (1L << (level & WORD_MASK))) != 0;
+    }
+
+    @Override
+    public int nextLevelWithFreeLots(int fromLevel) {
+        // the number of levels is written after the words, so the words read afterwards cover all levels
+        int numberOfLevels = this.numberOfLevels;
+        AtomicLongArray words = this.words;
+        if(fromLevel >= numberOfLevels) {
+            return -1;
+        }
+        int word = fromLevel >>> WORD_SHIFT;
+        long bits = words.get(word) & (-1L << (fromLevel & WORD_MASK));
+        while(true) {
+            if(bits != 0) {
+                return (word << WORD_SHIFT) + Long.numberOfTrailingZeros(bits);
+            }
+            if(++word >= words.length()) {
+                return -1;
+            }
+            bits = words.get(word);
+        }
+    }
+
+    @Override
+    public int previousLevelWithFreeLots(int fromLevel) {
+        if(fromLevel < 0) {
+            return -1;
+        }
+        int numberOfLevels = this.numberOfLevels;
+        AtomicLongArray words = this.words;
+        fromLevel = Math.min(fromLevel, numberOfLevels - 1);
+        int word = fromLevel >>> WORD_SHIFT;
+        long bits = words.get(word) & (-1L >>> (WORD_MASK - (fromLevel & WORD_MASK)));
+        while(true) {
+            if(bits != 0) {
+                return (word << WORD_SHIFT) + WORD_MASK - Long.numberOfLeadingZeros(bits);
+            }
+            if(--word < 0) {
+                return -1;
+            }
+            bits = words.get(word);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Read-only view of the parking levels which have room for a specific kind of vehicle, handed to an
+ * AllocationStrategy. For a car a level has free lots if it has a free car bay or an empty shared bay,
+ * a motorbike fits into any free lot.
+ *
+ * The view is updated concurrently by other gates and may be slightly outdated.
+ */
+public interface FreeLevels {
+
+    int getNumberOfLevels();
+
+    boolean hasFreeLots(int level);
+
+    /**
+     * @return The first level greater or equal than the specified level with free lots, -1 in case there is none.
+     */
+    int nextLevelWithFreeLots(int fromLevel);
+
+    /**
+     * @return The last level less or equal than the specified level with free lots, -1 in case there is none.
+     */
+    int previousLevelWithFreeLots(int fromLevel);
+}
@@ -1,10 +1,15 @@
 package com.github.jogoes.thegarage;
 
+import com.github.jogoes.thegarage.vehicles.Motorbike;
 import com.github.jogoes.thegarage.vehicles.Vehicle;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Abstraction of com github. It manages a configurable number of parking levels and provides
@@ -21,10 +26,111 @@ import java.util.stream.Stream;
  *    GarageInternal extends Garage : contains additional methods needed for internal usage (e.g. unit testing)
  * 3. make GarageImpl implement GarageInternal interface
  * 4. introduce a GarageFactory with methods that create Garage or GarageInternal instances
+ *
+ * Thread-safety:
+ * A garage can be used by many gate threads at the same time. Every parking level is guarded by its own
+ * lock, so enter() and exit() calls touching different levels don't block each other. The identifier
+ * index is a concurrent dictionary in which a vehicle is registered atomically before it is placed on a level,
+ * so two gates can never admit the same vehicle twice.
+ *
+ * Levels can be added, resized and have lots taken out of service while the garage is in use, see addLevel(),
+ * resizeLevel() and setOutOfService(). These operations are serialized among each other but don't stop the gates.
  */
 public class Garage {
 
-    private List<ParkingLevel> parkingLevels;
+    /**
+     * The parking levels, copied on write since levels are added while the gates are reading it.
+     */
+    private final List<ParkingLevel> parkingLevels = new CopyOnWriteArrayList<>();
+
+    /**
+     * Index from vehicle identifier to the location of the vehicle in the garage.
+     * It is kept in sync with the parking levels by enter() and exit() and allows us to
+     * answer lookups and detect duplicates without scanning all levels.
+     *
+     * The identifiers are mapped to int handles, the locations are stored packed into longs, see LocationInfo.pack().
+     * An entry pointing to a parking level is only ever changed while holding the lock of that level.
+     */
+    private final IdentifierDictionary vehicleLocations = new IdentifierDictionary();
+
+    /**
+     * Placeholder registered in the index while a vehicle is entering but not yet placed on a level.
+     * Like LocationInfo.NOT_FOUND it is negative, so lookups can check for both with a single comparison.
+     */
+    private static final long PENDING = -2L;
+
+    /**
+     * The parking levels which still have free lots, a motorbike fits into any of them.
+     */
+    private FreeLevelIndex freeLevels;
+    /**
+     * The parking levels which still have room for a car, i.e. a free car bay or an empty shared bay.
+     */
+    private FreeLevelIndex freeCarLevels;
+    /**
+     * Decides on which level an entering vehicle is parked.
+     */
+    private AllocationStrategy allocationStrategy;
+    /**
+     * The number of times the allocation strategy is asked before falling back to first fit.
+     */
+    private static final int MAX_STRATEGY_ATTEMPTS = 2;
+
+    /**
+     * Latency histograms and counters, null in case metrics are disabled.
+     */
+    private GarageMetrics metrics;
+    /**
+     * Occupancy of the parking levels over time, null in case it is disabled.
+     */
+    private OccupancyHistory occupancyHistory;
+    /**
+     * Whether the parking levels keep the identifiers of their vehicles sorted.
+     */
+    private boolean prefixIndexEnabled;
+    /**
+     * Settings of the parking levels, also applied to the levels added later.
+     */
+    private StorageMode storageMode;
+    private int motorbikesPerSharedBay;
+
+    /**
+     * Only written by the methods changing the levels, which synchronize on the garage.
+     */
+    private volatile int totalNumberOfLots;
+    /**
+     * Number of occupied lots in the garage, updated by enter() and exit() so we don't have to sum up all levels.
+     */
+    private AtomicInteger numberOfOccupiedLots = new AtomicInteger();
+    /**
+     * Number of reserved lots in the garage, updated like the occupied lots.
+     */
+    private AtomicInteger numberOfReservedLots = new AtomicInteger();
+    /**
+     * Number of lots out of service in the garage, updated like the occupied lots.
+     */
+    private AtomicInteger numberOfLotsOutOfService = new AtomicInteger();
+    /**
+     * Expires the reservations which weren't claimed in time.
+     */
+    private ReservationTimer reservationTimer;
+    /**
+     * Provides the entry and exit times of the parking sessions, in milliseconds.
+     */
+    private LongSupplier sessionClock;
+    /**
+     * The number of lots a task of computeAccruedFees() handles.
+     */
+    private static final int FEE_CHUNK_SIZE = 16 * 1024;
+
+    /**
+     * Registered listeners, replaced as a whole when a listener is added or removed.
+     */
+    private volatile GarageListener[] listeners = new GarageListener[0];
+    /**
+     * Epochs of the snapshots, shared by all parking levels.
+     */
+    private final SnapshotEpoch snapshotEpoch = new SnapshotEpoch();
 
     /**
      * Constructor used to create a github with a number of parking levels and
@@ -34,21 +140,183 @@ public class Garage {
      * @param numberOfParkingLotsPerLevel com number of parking lots on each level in com github
      */
     public Garage(int numberOfLevels, int numberOfParkingLotsPerLevel) {
+        this(new GarageBuilder().
+                numberOfLevels(numberOfLevels).
+                numberOfParkingLotsPerLevel(numberOfParkingLotsPerLevel));
+    }
+
+    /**
+     * Constructor used by the GarageBuilder.
+     */
+    Garage(GarageBuilder builder) {
+
+        LotLayout layout = builder.createLayout();
 
-        if(numberOfLevels <= 0) {
-            throw new IllegalArgumentException("The number of levels must be greater than 0.");
+        allocationStrategy = builder.getAllocationStrategy();
+        allocationStrategy.initialize(builder.getNumberOfLevels());
+        sessionClock = builder.getSessionClock();
+        prefixIndexEnabled = builder.isPrefixIndexEnabled();
+        storageMode = builder.getStorageMode();
+        motorbikesPerSharedBay = builder.getMotorbikesPerSharedBay();
+        initializeParkingLevels(builder.getNumberOfLevels(), layout);
+        if(builder.isMetricsEnabled()) {
+            metrics = new GarageMetrics(this, builder.getLatencySampleInterval());
         }
-        if(numberOfParkingLotsPerLevel < 0) {
-            throw new IllegalArgumentException("The number of parking lots must be greater or equal than 0.");
+        if(builder.isOccupancyHistoryEnabled()) {
+            occupancyHistory = new OccupancyHistory(this, sessionClock);
         }
-
-        initializeParkingLevels(numberOfLevels, numberOfParkingLotsPerLevel);
+        reservationTimer = new ReservationTimer(builder.getReservationTickNanos(), builder.getReservationClock(), this::expire);
     }
 
-    private void initializeParkingLevels(int numberOfLevels, int numberOfParkingLotsPerLevel) {
-        parkingLevels = new ArrayList<>();
+    private void initializeParkingLevels(int numberOfLevels, LotLayout layout) {
+        freeLevels = new FreeLevelIndex(numberOfLevels);
+        freeCarLevels = new FreeLevelIndex(numberOfLevels);
+        List<ParkingLevel> levels = new ArrayList<>();
         for(int i = 0; i < numberOfLevels; i++) {
-            parkingLevels.add(new ParkingLevel(i, numberOfParkingLotsPerLevel));
+            levels.add(createParkingLevel(i, layout));
+        }
+        parkingLevels.addAll(levels);
+        for(ParkingLevel parkingLevel : levels) {
+            updateFreeLevels(parkingLevel);
+            totalNumberOfLots += parkingLevel.getTotalNumberOfLots();
+        }
+    }
+
+    private ParkingLevel createParkingLevel(int level, LotLayout layout) {
+        ParkingLevel parkingLevel = new ParkingLevel(level, layout, storageMode);
+        parkingLevel.setClock(sessionClock);
+        parkingLevel.setSnapshotEpoch(snapshotEpoch);
+        if(prefixIndexEnabled) {
+            parkingLevel.enablePrefixIndex();
+        }
+        return parkingLevel;
+    }
+
+    /**
+     * Opens a new parking level with car bays only, see addLevel(int, int, int).
+     *
+     * @param numberOfParkingLots the number of lots of the new level
+     * @return The number of the new level.
+     */
+    public int addLevel(int numberOfParkingLots) {
+        return addLevel(numberOfParkingLots, 0, 0);
+    }
+
+    /**
+     * Opens a new parking level on top of the existing ones while the garage is in use. The new level can have
+     * another size than the others, its shared bays hold as many motorbikes as the ones of the other levels.
+     *
+     * The gates go on while the level is added. Only the list of levels and the indexes of the levels with free lots
+     * are copied, and the allocation strategy learns about the new level while passing through the lock of every
+     * level once, so adding a level costs time proportional to the number of levels and not to the number of lots.
+     *
+     * @return The number of the new level.
+     * @exception java.lang.IllegalArgumentException in case a number of bays is negative or the garage would have more than Integer.MAX_VALUE lots
+     */
+    public synchronized int addLevel(int numberOfCarBays, int numberOfMotorbikeBays, int numberOfSharedBays) {
+
+        LotLayout layout = new LotLayout(numberOfCarBays, numberOfMotorbikeBays, numberOfSharedBays, motorbikesPerSharedBay);
+        checkAddedLots(layout.getTotalNumberOfLots());
+
+        int level = parkingLevels.size();
+        ParkingLevel parkingLevel = createParkingLevel(level, layout);
+        // everything indexed by level has to know the level before anybody can use it
+        freeLevels.grow(level + 1);
+        freeCarLevels.grow(level + 1);
+        allocationStrategy.levelsAdded(level + 1);
+        if(occupancyHistory != null) {
+            occupancyHistory.levelAdded(level);
+        }
+        totalNumberOfLots += layout.getTotalNumberOfLots();
+        parkingLevels.add(parkingLevel);
+
+        // changes racing with growing the indexes might have gone to the replaced ones
+        for(ParkingLevel each : parkingLevels) {
+            synchronized (each) {
+                updateFreeLevels(each);
+            }
+        }
+        return level;
+    }
+
+    /**
+     * Changes the number of car bays of a parking level while the garage is in use, the motorbike and shared bays
+     * are kept, see resizeLevel(int, int, int, int).
+     */
+    public synchronized void resizeLevel(int level, int numberOfCarBays) {
+        if(level < 0 || level >= parkingLevels.size()) {
+            throw new IllegalArgumentException("Parking level " + level + " doesn't exist.");
+        }
+        LotLayout layout = parkingLevels.get(level).getLayout();
+        resizeLevel(level, numberOfCarBays, layout.getNumberOfMotorbikeBays(), layout.getNumberOfSharedBays());
+    }
+
+    /**
+     * Changes the number of lots of each class of a parking level while the garage is in use.
+     *
+     * The vehicles keep their lots. Growing or shrinking the last lot class of a level only touches the lots added or
+     * removed, but changing the number of car bays gives the motorbike and shared bays behind them new numbers. The
+     * lots which are removed or renumbered have to be free or out of service, so to close lots take them out of service
+     * with setOutOfService() first, which lets the occupied ones drain, and resize the level once all of them are out of
+     * service. Their out of service marks are dropped.
+     *
+     * Only the lock of the level is taken, for a time proportional to its number of lots. A level resized to no lots
+     * is closed, it keeps its number since the locations of the vehicles on the levels above refer to theirs.
+     *
+     * @exception java.lang.IllegalArgumentException in case the level doesn't exist, a number of bays is negative or the garage would have more than Integer.MAX_VALUE lots
+     * @exception java.lang.IllegalStateException in case a lot to remove or renumber is occupied or reserved, the level is unchanged then
+     */
+    public synchronized void resizeLevel(int level, int numberOfCarBays, int numberOfMotorbikeBays, int numberOfSharedBays) {
+
+        if(level < 0 || level >= parkingLevels.size()) {
+            throw new IllegalArgumentException("Parking level " + level + " doesn't exist.");
+        }
+        LotLayout layout = new LotLayout(numberOfCarBays, numberOfMotorbikeBays, numberOfSharedBays, motorbikesPerSharedBay);
+        ParkingLevel parkingLevel = parkingLevels.get(level);
+        synchronized (parkingLevel) {
+            int numberOfLots = parkingLevel.getTotalNumberOfLots();
+            checkAddedLots(layout.getTotalNumberOfLots() - numberOfLots);
+            parkingLevel.resize(layout);
+            totalNumberOfLots += parkingLevel.getTotalNumberOfLots() - numberOfLots;
+            updateFreeLevels(parkingLevel);
+        }
+    }
+
+    /**
+     * Helper function used to make sure the garage doesn't exceed the maximum number of lots.
+     */
+    private void checkAddedLots(int addedLots) {
+        if((long) totalNumberOfLots + addedLots > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A garage can't have more than " + Integer.MAX_VALUE + " lots.");
+        }
+    }
+
+    /**
+     * Takes a lot out of service, e.g. for repairs, or puts it back into service. A lot out of service is skipped
+     * by entering vehicles and reservations and isn't counted as free. A shared bay is taken out of service as a whole
+     * and is addressed by its first lot. An occupied or reserved lot drains: it goes out of service once its vehicles
+     * left or its reservation ended, instead of becoming free. The lots of a draining shared bay which no motorbike
+     * uses are out of service right away.
+     *
+     * @param level The parking level of the lot.
+     * @param lotNumber The lot to change.
+     * @param outOfService true to take the lot out of service, false to put it back.
+     * @return true in case the lot changed or started draining, false in case it is already in the requested state or draining.
+     * @exception java.lang.IllegalArgumentException in case the level doesn't exist or the lot lies in a shared bay but isn't its first lot
+     * @exception java.lang.IndexOutOfBoundsException in case the lot doesn't exist
+     */
+    public boolean setOutOfService(int level, int lotNumber, boolean outOfService) {
+
+        if(level < 0 || level >= parkingLevels.size()) {
+            throw new IllegalArgumentException("Parking level " + level + " doesn't exist.");
+        }
+        ParkingLevel parkingLevel = parkingLevels.get(level);
+        synchronized (parkingLevel) {
+            if(!parkingLevel.setOutOfService(lotNumber, outOfService)) {
+                return false;
+            }
+            updateFreeLevels(parkingLevel);
+            return true;
         }
     }
 
@@ -60,15 +328,74 @@ public class Garage {
     /**
      * @return The total number of lots on all parking levels.
      */
-    public int getTotalNumberOfLots() { return parkingLevels.stream().mapToInt(ParkingLevel::getTotalNumberOfLots).sum(); }
+    public int getTotalNumberOfLots() { return totalNumberOfLots; }
     /**
      * @return The current number of free lots on all parking levels
      */
-    public int getNumberOfFreeLots() { return parkingLevels.stream().mapToInt(ParkingLevel::getNumberOfFreeLots).sum(); }
+    public int getNumberOfFreeLots() { return totalNumberOfLots - numberOfOccupiedLots.get() - numberOfReservedLots.get() - numberOfLotsOutOfService.get(); }
     /**
      * @return The current number of occupied lots on all parking levels
      */
-    public int getNumberOfOccupiedLots() { return parkingLevels.stream().mapToInt(ParkingLevel::getNumberOfOccupiedLots).sum(); }
+    public int getNumberOfOccupiedLots() { return numberOfOccupiedLots.get(); }
+    /**
+     * @return The current number of lots held by reservations on all parking levels
+     */
+    public int getNumberOfReservedLots() { return numberOfReservedLots.get(); }
+    /**
+     * @return The current number of lots out of service on all parking levels, see setOutOfService()
+     */
+    public int getNumberOfLotsOutOfService() { return numberOfLotsOutOfService.get(); }
+
+    /**
+     * @return The number of lots of the specified class on all parking levels.
+     */
+    public int getTotalNumberOfLots(LotClass lotClass) {
+        int lots = 0;
+        for(ParkingLevel parkingLevel : parkingLevels) {
+            lots += parkingLevel.getNumberOfLots(lotClass);
+        }
+        return lots;
+    }
+    /**
+     * @return The current number of free lots of the specified class on all parking levels.
+     */
+    public int getNumberOfFreeLots(LotClass lotClass) {
+        return getTotalNumberOfLots(lotClass) - getNumberOfOccupiedLots(lotClass) - getNumberOfReservedLots(lotClass) - getNumberOfLotsOutOfService(lotClass);
+    }
+    /**
+     * A car parked in a shared bay occupies all lots of the bay.
+     *
+     * @return The current number of occupied lots of the specified class on all parking levels.
+     */
+    public int getNumberOfOccupiedLots(LotClass lotClass) {
+        int lots = 0;
+        for(ParkingLevel parkingLevel : parkingLevels) {
+            lots += parkingLevel.getNumberOfOccupiedLots(lotClass);
+        }
+        return lots;
+    }
+    /**
+     * @return The current number of reserved lots of the specified class on all parking levels.
+     */
+    public int getNumberOfReservedLots(LotClass lotClass) {
+        int lots = 0;
+        for(ParkingLevel parkingLevel : parkingLevels) {
+            lots += parkingLevel.getNumberOfReservedLots(lotClass);
+        }
+        return lots;
+    }
+    /**
+     * A shared bay out of service counts with all of its lots.
+     *
+     * @return The current number of lots of the specified class out of service on all parking levels.
+     */
+    public int getNumberOfLotsOutOfService(LotClass lotClass) {
+        int lots = 0;
+        for(ParkingLevel parkingLevel : parkingLevels) {
+            lots += parkingLevel.getNumberOfLotsOutOfService(lotClass);
+        }
+        return lots;
+    }
 
     /**
      * Adds a vehicle to com github.
@@ -77,17 +404,97 @@ public class Garage {
      * @return Location information about com entered vehicle, Optional.empty() in case com vehicle couldn't be added to com github.
      */
     public Optional<LocationInfo> enter(Vehicle vehicle) {
+        return enter(vehicle, 0);
+    }
+
+    /**
+     * Adds a vehicle entering through a gate on the specified level to the garage.
+     * The allocation strategy of the garage decides whether the level of the gate matters.
+     *
+     * @param vehicle The vehicle to enter.
+     * @param gateLevel The level of the entry gate.
+     * @return Location information about the entered vehicle, Optional.empty() in case the vehicle couldn't be added to the garage.
+     */
+    public Optional<LocationInfo> enter(Vehicle vehicle, int gateLevel) {
+        if(metrics == null || !metrics.sample()) {
+            return enterVehicle(vehicle, gateLevel);
+        }
+        long start = System.nanoTime();
+        try {
+            return enterVehicle(vehicle, gateLevel);
+        } finally {
+            metrics.recordEnter(System.nanoTime() - start);
+        }
+    }
+
+    private Optional<LocationInfo> enterVehicle(Vehicle vehicle, int gateLevel) {
+
+        if(gateLevel < 0 || gateLevel >= parkingLevels.size()) {
+            throw new IllegalArgumentException("Parking level " + gateLevel + " doesn't exist.");
+        }
+        String vehicleId = vehicle.getIdentifier();
 
-        if(findLocation(vehicle).isPresent()) {
+        // reserve the identifier first, this makes the duplicate check and the placement one atomic step
+        int handle = vehicleLocations.putIfAbsent(vehicleId, PENDING);
+        if(handle == IdentifierDictionary.NO_HANDLE) {
+            if(metrics != null) {
+                metrics.recordDuplicate();
+            }
             throw new IllegalArgumentException("Specified vehicle is already in com github.");
         }
 
-        return parkingLevels.stream().
-                filter(ParkingLevel::hasFreeLots).
-                // take com first parking level with free lots
-                findFirst().
-                // warning: side-effect when calling enter()
-                flatMap(parkingLevel -> parkingLevel.enter(vehicle));
+        boolean placed = false;
+        try {
+            Optional<LocationInfo> location = place(vehicle, handle, gateLevel);
+            placed = location.isPresent();
+            if(!placed && metrics != null) {
+                metrics.recordGarageFull();
+            }
+            return location;
+        } finally {
+            if(!placed) {
+                vehicleLocations.remove(vehicleId, PENDING);
+            }
+        }
+    }
+
+    /**
+     * Puts a vehicle, whose identifier is already reserved in the index, on the level selected by the
+     * allocation strategy. In case that level filled up in the meantime, the first level it fits on is taken.
+     */
+    private Optional<LocationInfo> place(Vehicle vehicle, int handle, int gateLevel) {
+        FreeLevelIndex levels = vehicle instanceof Motorbike ? freeLevels : freeCarLevels;
+        for(int attempt = 0; attempt < MAX_STRATEGY_ATTEMPTS; attempt++) {
+            int level = allocationStrategy.selectLevel(vehicle, gateLevel, levels);
+            if(level == -1) {
+                break;
+            }
+            Optional<LocationInfo> location = place(vehicle, handle, parkingLevels.get(level));
+            if(location.isPresent()) {
+                return location;
+            }
+        }
+        for(int level = levels.nextLevelWithFreeLots(0); level != -1; level = levels.nextLevelWithFreeLots(level + 1)) {
+            Optional<LocationInfo> location = place(vehicle, handle, parkingLevels.get(level));
+            if(location.isPresent()) {
+                return location;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private Optional<LocationInfo> place(Vehicle vehicle, int handle, ParkingLevel parkingLevel) {
+        synchronized (parkingLevel) {
+            int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+            Optional<LocationInfo> location = parkingLevel.enter(vehicle);
+            if(location.isPresent()) {
+                vehicleLocations.set(handle, LocationInfo.pack(location.get().getParkingLevel(), location.get().getLotNumber()));
+                numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+                updateFreeLevels(parkingLevel);
+                notifyEntered(vehicle, location.get());
+            }
+            return location;
+        }
     }
 
     /**
@@ -97,13 +504,460 @@ public class Garage {
      * @return Location information about com vehicle being removed, Optional.empty() in case com vehicle couldn't be found in com github.
      */
     public Optional<LocationInfo> exit(Vehicle vehicle) {
-        // take com first found parking level (there must only be one)
-        // Optional.empty() is returned in case com vehicle wasn't found
-        return parkingLevels.stream().
-                filter(parkingLevel -> parkingLevel.hasVehicle(vehicle)).
-                findFirst().
-                // warning: side-effect when calling exit()
-                flatMap(parkingLevel -> parkingLevel.exit(vehicle));
+        if(metrics == null || !metrics.sample()) {
+            return exit(vehicle, true);
+        }
+        long start = System.nanoTime();
+        try {
+            return exit(vehicle, true);
+        } finally {
+            metrics.recordExit(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Removes a vehicle from the garage, like exit(), and returns its parking session.
+     *
+     * @param vehicle The vehicle to remove from the garage.
+     * @return The finished parking session, Optional.empty() in case the vehicle couldn't be found in the garage.
+     */
+    public Optional<ParkingSession> exitSession(Vehicle vehicle) {
+        ParkingSession session = exit(vehicle, true, (location, entryTime) ->
+                new ParkingSession(vehicle, location.get().getParkingLevel(), location.get().getLotNumber(), entryTime, sessionClock.getAsLong()));
+        return Optional.ofNullable(session);
+    }
+
+    /**
+     * Builds the result of an exit while holding the lock of the parking level.
+     */
+    private interface ExitResult<R> {
+        R exited(Optional<LocationInfo> location, long entryTime);
+    }
+
+    private Optional<LocationInfo> exit(Vehicle vehicle, boolean notifyListeners) {
+        // the interned location of the lot is passed through, so exiting doesn't allocate
+        Optional<LocationInfo> location = exit(vehicle, notifyListeners, (exited, entryTime) -> exited);
+        return location == null ? Optional.empty() : location;
+    }
+
+    /**
+     * @return The result built for the exited vehicle, null in case the vehicle wasn't found.
+     */
+    private <R> R exit(Vehicle vehicle, boolean notifyListeners, ExitResult<R> exitResult) {
+        // the index tells us directly on which level and lot the vehicle is parked
+        // null is returned in case com vehicle wasn't found
+        String vehicleId = vehicle.getIdentifier();
+        while(true) {
+            long packedLocation = vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND);
+            if(packedLocation < 0) {
+                return null;
+            }
+
+            ParkingLevel parkingLevel = parkingLevels.get(LocationInfo.unpackParkingLevel(packedLocation));
+            synchronized (parkingLevel) {
+                // the vehicle might have left (and entered again) in the meantime, look again while holding the lock
+                if(vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND) == packedLocation) {
+                    int lotNumber = LocationInfo.unpackLotNumber(packedLocation);
+                    Optional<LocationInfo> location = parkingLevel.location(lotNumber);
+                    int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+                    R result = exitResult.exited(location, parkingLevel.getEntryTime(lotNumber));
+                    parkingLevel.exit(lotNumber, vehicle);
+                    numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+                    updateFreeLevels(parkingLevel);
+                    try {
+                        if(notifyListeners) {
+                            notifyExited(vehicle, location.get());
+                        }
+                    } finally {
+                        // the identifier is released last, else the vehicle could enter again on another level
+                        // and the listeners would see it enter before it exited
+                        vehicleLocations.remove(vehicleId, packedLocation);
+                    }
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds several vehicles to the garage in one pass.
+     *
+     * Compared to calling enter() for every vehicle, each parking level is locked only once and filled
+     * with as many vehicles as possible before moving on to the next level. The levels are filled starting
+     * with the level the allocation strategy selects for the first vehicle. Vehicles left over because
+     * they didn't fit into the remaining lot classes are entered one by one.
+     *
+     * @param vehicles The vehicles to enter.
+     * @return One result per vehicle, in the order of the specified collection. Vehicles already in the garage
+     * or appearing more than once in the collection are rejected as duplicates.
+     * @exception java.lang.NullPointerException in case a vehicle is null or has an empty id, no vehicle enters in that case
+     */
+    public List<BatchResult> enterAll(Collection<? extends Vehicle> vehicles) {
+
+        Vehicle[] batch = vehicles.toArray(new Vehicle[vehicles.size()]);
+        for(Vehicle vehicle : batch) {
+            validateVehicleArgument(vehicle);
+        }
+
+        BatchResult[] results = new BatchResult[batch.length];
+
+        // reserve all identifiers, this also detects duplicates within the batch
+        int[] pending = new int[batch.length];
+        int[] handles = new int[batch.length];
+        Vehicle[] pendingVehicles = new Vehicle[batch.length];
+        int numberOfPending = 0;
+        for(int i = 0; i < batch.length; i++) {
+            int handle = vehicleLocations.putIfAbsent(batch[i].getIdentifier(), PENDING);
+            if(handle == IdentifierDictionary.NO_HANDLE) {
+                if(metrics != null) {
+                    metrics.recordDuplicate();
+                }
+                results[i] = new BatchResult(batch[i], BatchResult.Status.DUPLICATE, null);
+            } else {
+                pending[numberOfPending] = i;
+                handles[numberOfPending] = handle;
+                pendingVehicles[numberOfPending++] = batch[i];
+            }
+        }
+
+        LocationInfo[] locations = new LocationInfo[numberOfPending];
+        int next = 0;
+        int numberOfLevels = parkingLevels.size();
+        int start = numberOfPending > 0 ? Math.max(allocationStrategy.selectLevel(pendingVehicles[0], 0, freeLevels), 0) : 0;
+        for(int step = 0; step < numberOfLevels && next < numberOfPending; step++) {
+            int level = (start + step) % numberOfLevels;
+            if(!freeLevels.hasFreeLots(level)) {
+                continue;
+            }
+            ParkingLevel parkingLevel = parkingLevels.get(level);
+            synchronized (parkingLevel) {
+                int first = next;
+                int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+                int entered = parkingLevel.enter(pendingVehicles, next, numberOfPending, locations);
+                for(int end = next + entered; next < end; next++) {
+                    vehicleLocations.set(handles[next], LocationInfo.pack(locations[next].getParkingLevel(), locations[next].getLotNumber()));
+                    results[pending[next]] = new BatchResult(pendingVehicles[next], BatchResult.Status.ENTERED, locations[next]);
+                }
+                if(entered > 0) {
+                    numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+                    updateFreeLevels(parkingLevel);
+                    for(int i = first; i < next; i++) {
+                        notifyEntered(pendingVehicles[i], locations[i]);
+                    }
+                }
+            }
+        }
+
+        // whatever is left got stuck behind a vehicle which didn't fit
+        for(; next < numberOfPending; next++) {
+            Vehicle vehicle = pendingVehicles[next];
+            Optional<LocationInfo> location = Optional.empty();
+            try {
+                location = place(vehicle, handles[next], 0);
+            } finally {
+                if(!location.isPresent()) {
+                    vehicleLocations.remove(vehicle.getIdentifier(), PENDING);
+                }
+            }
+            if(!location.isPresent() && metrics != null) {
+                metrics.recordGarageFull();
+            }
+            results[pending[next]] = location.isPresent() ?
+                    new BatchResult(vehicle, BatchResult.Status.ENTERED, location.get()) :
+                    new BatchResult(vehicle, BatchResult.Status.GARAGE_FULL, null);
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * Removes several vehicles from the garage in one pass.
+     *
+     * The vehicles are grouped by parking level, so each level is locked only once.
+     *
+     * @param vehicles The vehicles to remove.
+     * @return One result per vehicle, in the order of the specified collection.
+     */
+    public List<BatchResult> exitAll(Collection<? extends Vehicle> vehicles) {
+
+        Vehicle[] batch = vehicles.toArray(new Vehicle[vehicles.size()]);
+        BatchResult[] results = new BatchResult[batch.length];
+        long[] locations = new long[batch.length];
+
+        // sort the vehicles by level: the level goes into the upper, the index into the lower half of the key
+        long[] keys = new long[batch.length];
+        int numberOfKeys = 0;
+        for(int i = 0; i < batch.length; i++) {
+            long location = vehicleLocations.get(batch[i].getIdentifier(), LocationInfo.NOT_FOUND);
+            if(location < 0) {
+                results[i] = new BatchResult(batch[i], BatchResult.Status.NOT_FOUND, null);
+            } else {
+                locations[i] = location;
+                keys[numberOfKeys++] = ((long) LocationInfo.unpackParkingLevel(location) << 32) | i;
+            }
+        }
+        Arrays.sort(keys, 0, numberOfKeys);
+
+        int next = 0;
+        while(next < numberOfKeys) {
+            int level = (int) (keys[next] >>> 32);
+            ParkingLevel parkingLevel = parkingLevels.get(level);
+            synchronized (parkingLevel) {
+                int first = next;
+                int exited = 0;
+                int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+                for(; next < numberOfKeys && (int) (keys[next] >>> 32) == level; next++) {
+                    int i = (int) keys[next];
+                    // the vehicle might have left (and entered again) in the meantime, it is handled below then,
+                    // the lot is checked as well since the identifiers of this level are only released further down
+                    int lotNumber = LocationInfo.unpackLotNumber(locations[i]);
+                    if(vehicleLocations.get(batch[i].getIdentifier(), LocationInfo.NOT_FOUND) == locations[i] &&
+                            parkingLevel.exit(lotNumber, batch[i]).isPresent()) {
+                        results[i] = new BatchResult(batch[i], BatchResult.Status.EXITED, parkingLevel.location(lotNumber).get());
+                        exited++;
+                    }
+                }
+                if(exited > 0) {
+                    numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+                    updateFreeLevels(parkingLevel);
+                    try {
+                        for(int k = first; k < next; k++) {
+                            int i = (int) keys[k];
+                            if(results[i] != null) {
+                                notifyExited(batch[i], results[i].getLocation().get());
+                            }
+                        }
+                    } finally {
+                        // like in exit(), the identifiers are released after the listeners saw the exits
+                        for(int k = first; k < next; k++) {
+                            int i = (int) keys[k];
+                            if(results[i] != null) {
+                                vehicleLocations.remove(batch[i].getIdentifier(), locations[i]);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        for(int i = 0; i < batch.length; i++) {
+            if(results[i] == null) {
+                Optional<LocationInfo> location = exit(batch[i]);
+                results[i] = new BatchResult(batch[i], location.isPresent() ? BatchResult.Status.EXITED : BatchResult.Status.NOT_FOUND, location.orElse(null));
+            }
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(results));
+    }
+
+    /**
+     * @param vehicleId The id of the vehicle to look at.
+     * @return The time the vehicle entered in milliseconds of the session clock, OptionalLong.empty() in case it isn't in the garage.
+     */
+    public OptionalLong getEntryTime(String vehicleId) {
+        if(vehicleId == null) {
+            throw new NullPointerException("The specified vehicle id must not be null.");
+        }
+        while(true) {
+            long location = vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND);
+            if(location < 0) {
+                return OptionalLong.empty();
+            }
+            ParkingLevel parkingLevel = parkingLevels.get(LocationInfo.unpackParkingLevel(location));
+            synchronized (parkingLevel) {
+                // the vehicle might have left in the meantime, the lot might belong to another vehicle then
+                if(vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND) == location) {
+                    return OptionalLong.of(parkingLevel.getEntryTime(LocationInfo.unpackLotNumber(location)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the fees accrued by all vehicles in the garage until now.
+     *
+     * The entry times of each parking level are copied while holding its lock, the fees are computed
+     * afterwards in parallel chunks without blocking any gate. Vehicles entering or exiting in the meantime
+     * are in the report depending on whether their level was copied before or after.
+     *
+     * @param tariff The tariff to apply.
+     * @return The fee of every parked vehicle.
+     */
+    public FeeReport computeAccruedFees(Tariff tariff) {
+
+        long now = sessionClock.getAsLong();
+        long[][] fees = new long[parkingLevels.size()][];
+        List<long[]> chunks = new ArrayList<>();
+        for(int level = 0; level < fees.length; level++) {
+            fees[level] = parkingLevels.get(level).copyEntryTimes();
+            for(int from = 0; from < fees[level].length; from += FEE_CHUNK_SIZE) {
+                chunks.add(new long[] { level, from, Math.min(from + FEE_CHUNK_SIZE, fees[level].length) });
+            }
+        }
+
+        int numberOfSessions = chunks.parallelStream().
+                mapToInt(chunk -> tariff.computeFees(fees[(int) chunk[0]], (int) chunk[1], (int) chunk[2], now)).
+                sum();
+        return new FeeReport(now, fees, numberOfSessions);
+    }
+
+    /**
+     * Holds a lot on the specified parking level for a vehicle which is about to arrive.
+     *
+     * The lot is picked like for an entering vehicle and is skipped by every other vehicle until the
+     * reservation is claimed, cancelled or expires.
+     *
+     * @param vehicle The vehicle to hold the lot for.
+     * @param level The parking level to hold a lot on.
+     * @param timeToLive The time after which the lot is released again in case it wasn't claimed.
+     * @return The reservation, Optional.empty() in case the vehicle doesn't fit on that level.
+     */
+    public Optional<Reservation> reserve(Vehicle vehicle, int level, long timeToLive, TimeUnit unit) {
+        return reserve(vehicle, level, -1, timeToLive, unit);
+    }
+
+    /**
+     * Holds a specific lot for a vehicle which is about to arrive, see reserve(Vehicle, int, long, TimeUnit).
+     *
+     * @param lotNumber The lot to hold.
+     * @return The reservation, Optional.empty() in case the lot isn't free or the vehicle doesn't fit into it.
+     */
+    public Optional<Reservation> reserve(Vehicle vehicle, int level, int lotNumber, long timeToLive, TimeUnit unit) {
+
+        validateVehicleArgument(vehicle);
+        if(level < 0 || level >= parkingLevels.size()) {
+            throw new IllegalArgumentException("Parking level " + level + " doesn't exist.");
+        }
+        if(timeToLive <= 0) {
+            throw new IllegalArgumentException("The time to live must be greater than 0.");
+        }
+        long deadline = reservationTimer.now() + unit.toNanos(timeToLive);
+
+        ParkingLevel parkingLevel = parkingLevels.get(level);
+        synchronized (parkingLevel) {
+            int reservedLots = parkingLevel.getNumberOfReservedLots();
+            int reservedLot = lotNumber == -1 ? parkingLevel.reserve(vehicle) : parkingLevel.reserve(lotNumber, vehicle);
+            if(reservedLot == -1) {
+                return Optional.empty();
+            }
+            numberOfReservedLots.addAndGet(parkingLevel.getNumberOfReservedLots() - reservedLots);
+            updateFreeLevels(parkingLevel);
+            Reservation reservation = new Reservation(this, vehicle, level, reservedLot, deadline);
+            reservationTimer.schedule(reservation);
+            return Optional.of(reservation);
+        }
+    }
+
+    /**
+     * Parks the vehicle of a reservation on the reserved lot.
+     *
+     * @param reservation A reservation returned by reserve().
+     * @return Location information about the entered vehicle, Optional.empty() in case the reservation isn't active anymore.
+     * @exception java.lang.IllegalArgumentException in case the vehicle is already in the garage, the reservation stays active then
+     */
+    public Optional<LocationInfo> claim(Reservation reservation) {
+
+        checkReservationArgument(reservation);
+        Vehicle vehicle = reservation.getVehicle();
+        String vehicleId = vehicle.getIdentifier();
+        int handle = vehicleLocations.putIfAbsent(vehicleId, PENDING);
+        if(handle == IdentifierDictionary.NO_HANDLE) {
+            throw new IllegalArgumentException("Specified vehicle is already in com github.");
+        }
+
+        boolean placed = false;
+        try {
+            ParkingLevel parkingLevel = parkingLevels.get(reservation.getParkingLevel());
+            synchronized (parkingLevel) {
+                if(!reservation.isActive()) {
+                    return Optional.empty();
+                }
+                if(reservationTimer.isDue(reservation)) {
+                    // the timer didn't get to it yet
+                    endReservation(reservation, parkingLevel, Reservation.State.EXPIRED);
+                    return Optional.empty();
+                }
+                int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+                int reservedLots = parkingLevel.getNumberOfReservedLots();
+                Optional<LocationInfo> location = parkingLevel.claimReservation(reservation.getLotNumber(), vehicle);
+                reservation.setState(Reservation.State.CLAIMED);
+                reservationTimer.cancel(reservation);
+                vehicleLocations.set(handle, LocationInfo.pack(location.get().getParkingLevel(), location.get().getLotNumber()));
+                placed = true;
+                numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+                numberOfReservedLots.addAndGet(parkingLevel.getNumberOfReservedLots() - reservedLots);
+                updateFreeLevels(parkingLevel);
+                notifyEntered(vehicle, location.get());
+                return location;
+            }
+        } finally {
+            if(!placed) {
+                vehicleLocations.remove(vehicleId, PENDING);
+            }
+        }
+    }
+
+    /**
+     * Releases the lot of a reservation.
+     *
+     * @param reservation A reservation returned by reserve().
+     * @return true in case the reservation was cancelled, false in case it wasn't active anymore.
+     */
+    public boolean cancel(Reservation reservation) {
+
+        checkReservationArgument(reservation);
+        ParkingLevel parkingLevel = parkingLevels.get(reservation.getParkingLevel());
+        synchronized (parkingLevel) {
+            if(!reservation.isActive()) {
+                return false;
+            }
+            endReservation(reservation, parkingLevel, Reservation.State.CANCELLED);
+            return true;
+        }
+    }
+
+    /**
+     * Releases the lots of all reservations whose time to live ran out.
+     *
+     * This happens in the background anyway, with the resolution set by GarageBuilder.reservationTickMillis().
+     *
+     * @return The number of expired reservations.
+     */
+    public int expireReservations() {
+        return reservationTimer.expire();
+    }
+
+    /**
+     * Called by the reservation timer once the time to live of a reservation ran out.
+     */
+    private void expire(Reservation reservation) {
+        ParkingLevel parkingLevel = parkingLevels.get(reservation.getParkingLevel());
+        synchronized (parkingLevel) {
+            if(reservation.isActive()) {
+                endReservation(reservation, parkingLevel, Reservation.State.EXPIRED);
+            }
+        }
+    }
+
+    /**
+     * Helper function used to release the lot of an active reservation, must be called while holding the lock of the parking level.
+     */
+    private void endReservation(Reservation reservation, ParkingLevel parkingLevel, Reservation.State state) {
+        int reservedLots = parkingLevel.getNumberOfReservedLots();
+        parkingLevel.cancelReservation(reservation.getLotNumber(), reservation.getVehicle());
+        reservation.setState(state);
+        reservationTimer.cancel(reservation);
+        numberOfReservedLots.addAndGet(parkingLevel.getNumberOfReservedLots() - reservedLots);
+        updateFreeLevels(parkingLevel);
+    }
+
+    private void checkReservationArgument(Reservation reservation) {
+        if(reservation == null) {
+            throw new NullPointerException("The specified reservation must not be null.");
+        }
+        if(reservation.getGarage() != this) {
+            throw new IllegalArgumentException("The specified reservation belongs to another garage.");
+        }
     }
 
     /**
@@ -123,14 +977,241 @@ public class Garage {
      * @return Location information about com specified vehicle, Optional.empty() in case nothing was found.
      */
     public Optional<LocationInfo> findLocation(String vehicleId) {
-        return parkingLevels.stream().
-                map(parkingLevel -> parkingLevel.findLocation(vehicleId)).
-                // location is of type Optional<LocationInfo>
-                // if location contains a value, map returns an Optional<Stream<LocationInfo>>, otherwise  we return an optional of an empty stream
-                flatMap(location -> location.map(Stream::of).orElseGet(Stream::empty)).
-                //alternative:
-                //flatMap(location -> location.isPresent() ? Stream.of(location.get()) : Stream.empty()).
-                findFirst();
+        if(metrics == null || !metrics.sample()) {
+            return lookUp(vehicleId);
+        }
+        long start = System.nanoTime();
+        try {
+            return lookUp(vehicleId);
+        } finally {
+            metrics.recordFindLocation(System.nanoTime() - start);
+        }
+    }
+
+    private Optional<LocationInfo> lookUp(String vehicleId) {
+        if(vehicleId == null) {
+            throw new NullPointerException("The specified vehicle id must not be null.");
+        }
+        long location = vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND);
+        if(location < 0) {
+            return Optional.empty();
+        }
+        return parkingLevels.get(LocationInfo.unpackParkingLevel(location)).location(LocationInfo.unpackLotNumber(location));
+    }
+
+    /**
+     * Allocation-free variant of findLocation().
+     *
+     * @param vehicleId The id of the vehicle to search for.
+     * @return The location of the vehicle packed into a long, see LocationInfo.pack(), LocationInfo.NOT_FOUND in case nothing was found.
+     */
+    public long locate(String vehicleId) {
+        if(vehicleId == null) {
+            throw new NullPointerException("The specified vehicle id must not be null.");
+        }
+        long location = vehicleLocations.get(vehicleId, LocationInfo.NOT_FOUND);
+        return location < 0 ? LocationInfo.NOT_FOUND : location;
+    }
+
+    /**
+     * @return The metrics of the garage, Optional.empty() in case they weren't enabled with GarageBuilder.metricsEnabled().
+     */
+    public Optional<GarageMetrics> getMetrics() {
+        return Optional.ofNullable(metrics);
+    }
+
+    /**
+     * @return The occupancy of the parking levels over time, Optional.empty() in case it wasn't enabled with GarageBuilder.occupancyHistoryEnabled().
+     */
+    public Optional<OccupancyHistory> getOccupancyHistory() {
+        return Optional.ofNullable(occupancyHistory);
+    }
+
+    ParkingLevel getParkingLevel(int level) {
+        return parkingLevels.get(level);
+    }
+
+    /**
+     * Registers a listener which gets notified about every vehicle entering or exiting the garage.
+     * A listener throwing an exception doesn't fail the enter or exit it was notified about, see GarageListener.
+     */
+    public synchronized void addListener(GarageListener listener) {
+        if(listener == null) {
+            throw new NullPointerException("The listener must not be null.");
+        }
+        GarageListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[listeners.length] = listener;
+        listeners = updated;
+    }
+
+    /**
+     * Removes a listener registered with addListener().
+     */
+    public synchronized void removeListener(GarageListener listener) {
+        List<GarageListener> updated = new ArrayList<>(Arrays.asList(listeners));
+        updated.remove(listener);
+        listeners = updated.toArray(new GarageListener[updated.size()]);
+    }
+
+    private void notifyEntered(Vehicle vehicle, LocationInfo location) {
+        for(GarageListener listener : listeners) {
+            try {
+                listener.vehicleEntered(vehicle, location.getParkingLevel(), location.getLotNumber());
+            } catch(RuntimeException e) {
+                reportListenerFailure(e);
+            }
+        }
+    }
+
+    private void notifyExited(Vehicle vehicle, LocationInfo location) {
+        for(GarageListener listener : listeners) {
+            try {
+                listener.vehicleExited(vehicle, location.getParkingLevel(), location.getLotNumber());
+            } catch(RuntimeException e) {
+                reportListenerFailure(e);
+            }
+        }
+    }
+
+    /**
+     * Listeners are notified once the change took effect, passing their failure on to the caller would make it
+     * look like the vehicle didn't enter or exit. It is handed to the uncaught exception handler of the gate
+     * thread instead, which prints it by default.
+     */
+    private static void reportListenerFailure(RuntimeException e) {
+        Thread thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+    }
+
+    /**
+     * Puts a vehicle on a specific lot, used to restore a previously recorded state.
+     * Listeners are not notified.
+     *
+     * @exception java.lang.IllegalStateException in case the vehicle is already in the garage or the lot is occupied
+     */
+    void restoreEntered(Vehicle vehicle, int level, int lotNumber) {
+
+        validateVehicleArgument(vehicle);
+        if(level < 0 || level >= parkingLevels.size()) {
+            throw new IllegalStateException("Parking level " + level + " doesn't exist.");
+        }
+
+        String vehicleId = vehicle.getIdentifier();
+        int handle = vehicleLocations.putIfAbsent(vehicleId, PENDING);
+        if(handle == IdentifierDictionary.NO_HANDLE) {
+            throw new IllegalStateException("Vehicle " + vehicleId + " is already in the garage.");
+        }
+
+        ParkingLevel parkingLevel = parkingLevels.get(level);
+        synchronized (parkingLevel) {
+            int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+            Optional<LocationInfo> location = parkingLevel.enter(lotNumber, vehicle);
+            if(!location.isPresent()) {
+                vehicleLocations.remove(vehicleId, PENDING);
+                throw new IllegalStateException("Lot " + lotNumber + " on parking level " + level + " is already occupied or doesn't fit the vehicle.");
+            }
+            vehicleLocations.set(handle, LocationInfo.pack(level, lotNumber));
+            numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+            updateFreeLevels(parkingLevel);
+        }
+    }
+
+    /**
+     * Prepares the identifier index for restoring the specified number of vehicles, see restoreLevel().
+     */
+    void prepareRestore(int numberOfVehicles) {
+        vehicleLocations.ensureCapacity(Math.min(numberOfVehicles, totalNumberOfLots));
+    }
+
+    /**
+     * Parks the vehicles of a parking level in one go, used to restore a previously recorded state.
+     * Listeners are not notified. Different levels can be restored in parallel.
+     *
+     * @param vehicles The vehicles to park.
+     * @param lotNumbers The lot of each vehicle at the same index.
+     * @param count The number of vehicles to park.
+     * @exception java.lang.IllegalStateException in case a vehicle is already in the garage or a lot is occupied,
+     * the garage doesn't change then
+     */
+    void restoreLevel(int level, Vehicle[] vehicles, int[] lotNumbers, int count) {
+
+        if(level < 0 || level >= parkingLevels.size()) {
+            throw new IllegalStateException("Parking level " + level + " doesn't exist.");
+        }
+        for(int index = 0; index < count; index++) {
+            validateVehicleArgument(vehicles[index]);
+        }
+
+        ParkingLevel parkingLevel = parkingLevels.get(level);
+        synchronized (parkingLevel) {
+            // the vehicles are registered before they are parked, so a duplicate doesn't leave any of them on the level,
+            // holding the lock makes anybody exiting them wait until they are parked
+            String[] vehicleIds = new String[count];
+            long[] locations = new long[count];
+            for(int index = 0; index < count; index++) {
+                vehicleIds[index] = vehicles[index].getIdentifier();
+                locations[index] = LocationInfo.pack(level, lotNumbers[index]);
+            }
+            int duplicate = vehicleLocations.putAllIfAbsent(vehicleIds, locations, count);
+            if(duplicate != -1) {
+                throw new IllegalStateException("Vehicle " + vehicleIds[duplicate] + " is already in the garage.");
+            }
+            int occupiedLots = parkingLevel.getNumberOfOccupiedLots();
+            try {
+                parkingLevel.restore(vehicles, lotNumbers, count);
+            } catch(RuntimeException e) {
+                for(int index = 0; index < count; index++) {
+                    vehicleLocations.remove(vehicleIds[index], locations[index]);
+                }
+                throw e;
+            }
+            numberOfOccupiedLots.addAndGet(parkingLevel.getNumberOfOccupiedLots() - occupiedLots);
+            updateFreeLevels(parkingLevel);
+        }
+    }
+
+    /**
+     * Removes a vehicle from a specific lot, used to restore a previously recorded state.
+     * Listeners are not notified.
+     *
+     * @exception java.lang.IllegalStateException in case the vehicle isn't parked on that lot
+     */
+    void restoreExited(Vehicle vehicle, int level, int lotNumber) {
+
+        long location = locate(vehicle.getIdentifier());
+        if(location != LocationInfo.pack(level, lotNumber)) {
+            throw new IllegalStateException("Vehicle " + vehicle.getIdentifier() + " isn't parked on lot " + lotNumber + " of parking level " + level + ".");
+        }
+        exit(vehicle, false);
+    }
+
+    /**
+     * Helper function used to update the free level indexes, the occupancy history and the lots out of service
+     * which drained, must be called while holding the lock of the parking level after every change of it.
+     */
+    private void updateFreeLevels(ParkingLevel parkingLevel) {
+        int lotsOutOfService = parkingLevel.takeLotsOutOfServiceChange();
+        if(lotsOutOfService != 0) {
+            numberOfLotsOutOfService.addAndGet(lotsOutOfService);
+        }
+        freeLevels.update(parkingLevel.getLevel(), parkingLevel.hasFreeLots());
+        freeCarLevels.update(parkingLevel.getLevel(), parkingLevel.hasRoomForCar());
+        allocationStrategy.levelChanged(parkingLevel.getLevel(), parkingLevel.getNumberOfFreeLots(), parkingLevel.getNumberOfFreeCarBays());
+        if(occupancyHistory != null) {
+            occupancyHistory.record(parkingLevel.getLevel(), parkingLevel.getNumberOfOccupiedLots());
+        }
+    }
+
+    /**
+     * Helper function used to validate a vehicle being passed as an argument.
+     */
+    private void validateVehicleArgument(Vehicle vehicle) {
+        if(vehicle == null) {
+            throw new NullPointerException("The specified vehicle must not be null.");
+        }
+        if(vehicle.getIdentifier() == null || vehicle.getIdentifier().isEmpty()) {
+            throw new NullPointerException("The identifier of the vehicle must not be null or empty.");
+        }
     }
 
     /**
@@ -139,27 +1220,114 @@ public class Garage {
      * @return A collection of location infos for all vehicles currently parking in com github.
      */
     public Collection<VehicleLocationInfo> getVehicleLocationInfos() {
-        return Collections.unmodifiableCollection(
-                parkingLevels.stream().
-                        map(ParkingLevel::getVehicleLocationInfos).
-                        flatMap(Collection::stream).
-                        collect(Collectors.toList())
-        );
+        return snapshot().getVehicleLocationInfos();
     }
 
-    @Override
-    public String toString() {
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Takes a consistent, immutable view of the garage, see GarageSnapshot.
+     *
+     * Taking the snapshot passes through the lock of every parking level once, without doing any work while holding
+     * it, reading the snapshot doesn't take any locks. The snapshot shares the lots with the garage, so the work is
+     * proportional to the number of levels and not to the number of lots.
+     *
+     * @return The state of the garage as of now.
+     */
+    public GarageSnapshot snapshot() {
+        return snapshotEpoch.snapshot(epoch -> {
+            LotVersions.Version[] versions = new LotVersions.Version[parkingLevels.size()];
+            for(int level = 0; level < versions.length; level++) {
+                versions[level] = parkingLevels.get(level).getVersion(epoch);
+            }
+            return new GarageSnapshot(epoch, versions);
+        });
+    }
+
+    /**
+     * Lazy alternative to getVehicleLocationInfos(), for exporting large garages.
+     *
+     * The vehicles are fetched level by level in small batches, so the stream needs the same small amount of
+     * memory for any size of garage. A parallel stream splits the garage by levels and large levels by lot
+     * ranges. The stream is weakly consistent: it may or may not reflect changes made while it is consumed,
+     * see VehicleLocationSpliterator.
+     *
+     * @return A stream of all vehicles in the garage, ordered by level and lot number.
+     */
+    public Stream<VehicleLocationInfo> vehicleLocationInfos() {
+        return StreamSupport.stream(new VehicleLocationSpliterator(this, 0, 0, parkingLevels.size() - 1, Integer.MAX_VALUE), false);
+    }
 
-        sb.append("Garage { parkingLevels=");
+    /**
+     * Lazy range query on a single parking level, only the lots of the range are looked at.
+     *
+     * @param level the parking level
+     * @param fromLotNumber the first lot of the range
+     * @param toLotNumber the end of the range, exclusive
+     * @return A stream of the vehicles parked in the range, ordered by lot number. The stream is weakly consistent,
+     * like vehicleLocationInfos().
+     * @exception java.lang.IllegalArgumentException in case the parking level doesn't exist
+     * @exception java.lang.IndexOutOfBoundsException in case the range doesn't lie within the lots of the level
+     */
+    public Stream<VehicleLocationInfo> vehicleLocationInfos(int level, int fromLotNumber, int toLotNumber) {
+        if(level < 0 || level >= parkingLevels.size()) {
+            throw new IllegalArgumentException("Parking level " + level + " doesn't exist.");
+        }
+        int numberOfLots = parkingLevels.get(level).getTotalNumberOfLots();
+        if(fromLotNumber < 0 || toLotNumber > numberOfLots || fromLotNumber > toLotNumber) {
+            throw new IndexOutOfBoundsException("Lot range [" + fromLotNumber + ", " + toLotNumber + ") is out of range [0, " + numberOfLots + ").");
+        }
+        return StreamSupport.stream(new VehicleLocationSpliterator(this, level, fromLotNumber, level, toLotNumber), false);
+    }
 
-        // create comma-separated list of parking levels
-        sb.append(parkingLevels.stream().
-                map(level -> level.toString()).
-                collect(Collectors.joining(",")));
+    /**
+     * Lazy lookup of the vehicles whose identifier starts with a prefix, e.g. for partial plates.
+     *
+     * With GarageBuilder.prefixIndexEnabled() every level finds its matches with a binary search in its sorted
+     * identifiers, else all vehicles of the garage are scanned. The stream is weakly consistent, like
+     * vehicleLocationInfos().
+     *
+     * @param identifierPrefix the start of the identifiers, the empty prefix matches all vehicles
+     * @return A stream of the matching vehicles, ordered by level, and by identifier with the prefix index.
+     */
+    public Stream<VehicleLocationInfo> vehicleLocationInfosWithPrefix(String identifierPrefix) {
+        if(identifierPrefix == null) {
+            throw new NullPointerException("The identifier prefix must not be null.");
+        }
+        if(!prefixIndexEnabled) {
+            return vehicleLocationInfos().filter(info -> info.getVehicle().getIdentifier().startsWith(identifierPrefix));
+        }
+        return StreamSupport.stream(new IdentifierPrefixSpliterator(this, identifierPrefix, 0, parkingLevels.size() - 1), false);
+    }
 
-        sb.append("}");
+    /**
+     * Paginated alternative to getVehicleLocationInfos(), see VehicleLocationPage.
+     *
+     * @param cursor VehicleLocationPage.FIRST for the first page, else the next cursor of the previous page
+     * @param pageSize the maximum number of vehicles on the page
+     * @return The vehicles parked at or after the cursor position.
+     */
+    public VehicleLocationPage getVehicleLocationInfos(long cursor, int pageSize) {
+        if(cursor < 0) {
+            throw new IllegalArgumentException("Invalid cursor " + cursor + ".");
+        }
+        if(pageSize <= 0) {
+            throw new IllegalArgumentException("The page size must be greater than 0.");
+        }
+        List<VehicleLocationInfo> vehicleLocationInfos = new ArrayList<>(Math.min(pageSize, 1024));
+        int level = LocationInfo.unpackParkingLevel(cursor);
+        int lot = LocationInfo.unpackLotNumber(cursor);
+        for(; level < parkingLevels.size(); level++, lot = 0) {
+            ParkingLevel parkingLevel = parkingLevels.get(level);
+            int end = parkingLevel.getTotalNumberOfLots();
+            int next = parkingLevel.addVehicleLocationInfos(vehicleLocationInfos, lot, end, pageSize - vehicleLocationInfos.size());
+            if(next < end) {
+                return new VehicleLocationPage(Collections.unmodifiableList(vehicleLocationInfos), LocationInfo.pack(level, next));
+            }
+        }
+        return new VehicleLocationPage(Collections.unmodifiableList(vehicleLocationInfos), VehicleLocationPage.END);
+    }
 
-        return sb.toString();
+    @Override
+    public String toString() {
+        return snapshot().toString();
     }
 }
@@ -0,0 +1,234 @@
+package com.github.jogoes.thegarage;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Builder used to create a garage with non-default settings.
+ *
+ * Example:
+ *   Garage garage = new GarageBuilder().
+ *           numberOfLevels(10).
+ *           numberOfParkingLotsPerLevel(5000).
+ *           storageMode(StorageMode.ARRAY).
+ *           build();
+ *
+ * The lots per level set with numberOfParkingLotsPerLevel() are car bays. Motorbike bays and shared bays,
+ * which hold one car or several motorbikes, can be added on top, see LotClass.
+ */
+public class GarageBuilder {
+
+    private int numberOfLevels = 1;
+    private int numberOfParkingLotsPerLevel;
+    private int numberOfMotorbikeBaysPerLevel;
+    private int numberOfSharedBaysPerLevel;
+    private int motorbikesPerSharedBay = 2;
+    private StorageMode storageMode = StorageMode.TREE;
+    private AllocationStrategy allocationStrategy;
+    private boolean metricsEnabled;
+    private int latencySampleInterval = 1;
+    private boolean occupancyHistoryEnabled;
+    private boolean prefixIndexEnabled;
+    private long reservationTickMillis = 100;
+    private LongSupplier reservationClock = System::nanoTime;
+    private LongSupplier sessionClock = System::currentTimeMillis;
+
+    int getNumberOfLevels() { return numberOfLevels; }
+    int getNumberOfParkingLotsPerLevel() { return numberOfParkingLotsPerLevel; }
+    int getNumberOfMotorbikeBaysPerLevel() { return numberOfMotorbikeBaysPerLevel; }
+    int getNumberOfSharedBaysPerLevel() { return numberOfSharedBaysPerLevel; }
+    int getMotorbikesPerSharedBay() { return motorbikesPerSharedBay; }
+    StorageMode getStorageMode() { return storageMode; }
+    boolean isMetricsEnabled() { return metricsEnabled; }
+    int getLatencySampleInterval() { return latencySampleInterval; }
+    boolean isOccupancyHistoryEnabled() { return occupancyHistoryEnabled; }
+    boolean isPrefixIndexEnabled() { return prefixIndexEnabled; }
+    long getReservationTickNanos() { return TimeUnit.MILLISECONDS.toNanos(reservationTickMillis); }
+    LongSupplier getReservationClock() { return reservationClock; }
+    LongSupplier getSessionClock() { return sessionClock; }
+    AllocationStrategy getAllocationStrategy() { return allocationStrategy != null ? allocationStrategy : AllocationStrategy.firstFit(); }
+
+    /**
+     * @return A new builder with the same settings, changing it doesn't change this one.
+     */
+    GarageBuilder copy() {
+        GarageBuilder copy = new GarageBuilder();
+        copy.numberOfLevels = numberOfLevels;
+        copy.numberOfParkingLotsPerLevel = numberOfParkingLotsPerLevel;
+        copy.numberOfMotorbikeBaysPerLevel = numberOfMotorbikeBaysPerLevel;
+        copy.numberOfSharedBaysPerLevel = numberOfSharedBaysPerLevel;
+        copy.motorbikesPerSharedBay = motorbikesPerSharedBay;
+        copy.storageMode = storageMode;
+        copy.allocationStrategy = allocationStrategy;
+        copy.metricsEnabled = metricsEnabled;
+        copy.latencySampleInterval = latencySampleInterval;
+        copy.occupancyHistoryEnabled = occupancyHistoryEnabled;
+        copy.prefixIndexEnabled = prefixIndexEnabled;
+        copy.reservationTickMillis = reservationTickMillis;
+        copy.reservationClock = reservationClock;
+        copy.sessionClock = sessionClock;
+        return copy;
+    }
+
+    /**
+     * @return The layout of every parking level, after validating the settings.
+     */
+    LotLayout createLayout() {
+        if(numberOfLevels <= 0) {
+            throw new IllegalArgumentException("The number of levels must be greater than 0.");
+        }
+        if(numberOfParkingLotsPerLevel < 0) {
+            throw new IllegalArgumentException("The number of parking lots must be greater or equal than 0.");
+        }
+        LotLayout layout = new LotLayout(numberOfParkingLotsPerLevel, numberOfMotorbikeBaysPerLevel, numberOfSharedBaysPerLevel, motorbikesPerSharedBay);
+        if((long) layout.getTotalNumberOfLots() * numberOfLevels > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A garage can't have more than " + Integer.MAX_VALUE + " lots.");
+        }
+        return layout;
+    }
+
+    /**
+     * @param numberOfLevels the number of parking levels in the garage, must be greater than 0
+     */
+    public GarageBuilder numberOfLevels(int numberOfLevels) {
+        this.numberOfLevels = numberOfLevels;
+        return this;
+    }
+
+    /**
+     * @param numberOfParkingLotsPerLevel the number of parking lots on each level, must be greater or equal than 0
+     */
+    public GarageBuilder numberOfParkingLotsPerLevel(int numberOfParkingLotsPerLevel) {
+        this.numberOfParkingLotsPerLevel = numberOfParkingLotsPerLevel;
+        return this;
+    }
+
+    /**
+     * @param numberOfMotorbikeBaysPerLevel the number of bays on each level only motorbikes fit into, 0 by default
+     */
+    public GarageBuilder numberOfMotorbikeBaysPerLevel(int numberOfMotorbikeBaysPerLevel) {
+        this.numberOfMotorbikeBaysPerLevel = numberOfMotorbikeBaysPerLevel;
+        return this;
+    }
+
+    /**
+     * @param numberOfSharedBaysPerLevel the number of bays on each level holding either one car or several motorbikes, 0 by default
+     */
+    public GarageBuilder numberOfSharedBaysPerLevel(int numberOfSharedBaysPerLevel) {
+        this.numberOfSharedBaysPerLevel = numberOfSharedBaysPerLevel;
+        return this;
+    }
+
+    /**
+     * @param motorbikesPerSharedBay the number of motorbikes fitting into a shared bay, 2 by default
+     */
+    public GarageBuilder motorbikesPerSharedBay(int motorbikesPerSharedBay) {
+        this.motorbikesPerSharedBay = motorbikesPerSharedBay;
+        return this;
+    }
+
+    /**
+     * @param storageMode defines how the parking levels store their vehicles, StorageMode.TREE by default
+     */
+    public GarageBuilder storageMode(StorageMode storageMode) {
+        if(storageMode == null) {
+            throw new NullPointerException("The storage mode must not be null.");
+        }
+        this.storageMode = storageMode;
+        return this;
+    }
+
+    /**
+     * @param allocationStrategy decides on which level an entering vehicle is parked, first fit by default.
+     *                           A strategy instance can only be used by one garage.
+     */
+    public GarageBuilder allocationStrategy(AllocationStrategy allocationStrategy) {
+        if(allocationStrategy == null) {
+            throw new NullPointerException("The allocation strategy must not be null.");
+        }
+        this.allocationStrategy = allocationStrategy;
+        return this;
+    }
+
+    /**
+     * @param metricsEnabled whether the garage records latency histograms and rejection counters, see GarageMetrics; false by default
+     */
+    public GarageBuilder metricsEnabled(boolean metricsEnabled) {
+        this.metricsEnabled = metricsEnabled;
+        return this;
+    }
+
+    /**
+     * @param latencySampleInterval time a random one out of this many operations when metrics are enabled, 1 (every operation) by default
+     */
+    public GarageBuilder latencySampleInterval(int latencySampleInterval) {
+        if(latencySampleInterval <= 0) {
+            throw new IllegalArgumentException("The sample interval must be greater than 0.");
+        }
+        this.latencySampleInterval = latencySampleInterval;
+        return this;
+    }
+
+    /**
+     * @param occupancyHistoryEnabled whether the garage keeps the occupancy of every level over time, see OccupancyHistory; false by default
+     */
+    public GarageBuilder occupancyHistoryEnabled(boolean occupancyHistoryEnabled) {
+        this.occupancyHistoryEnabled = occupancyHistoryEnabled;
+        return this;
+    }
+
+    /**
+     * @param prefixIndexEnabled whether every level keeps the identifiers of its vehicles sorted, which speeds up
+     *                           Garage.vehicleLocationInfosWithPrefix() at some cost for entering and exiting; false by default
+     */
+    public GarageBuilder prefixIndexEnabled(boolean prefixIndexEnabled) {
+        this.prefixIndexEnabled = prefixIndexEnabled;
+        return this;
+    }
+
+    /**
+     * @param reservationTickMillis the resolution with which unclaimed reservations expire, 100 ms by default
+     */
+    public GarageBuilder reservationTickMillis(long reservationTickMillis) {
+        if(reservationTickMillis <= 0) {
+            throw new IllegalArgumentException("The reservation tick must be greater than 0.");
+        }
+        this.reservationTickMillis = reservationTickMillis;
+        return this;
+    }
+
+    /**
+     * @param reservationClock the time source used to expire reservations, in System.nanoTime() terms; used by unit tests
+     */
+    GarageBuilder reservationClock(LongSupplier reservationClock) {
+        this.reservationClock = reservationClock;
+        return this;
+    }
+
+    /**
+     * @param sessionClock provides the entry and exit times of the parking sessions in milliseconds, System.currentTimeMillis() by default
+     */
+    public GarageBuilder sessionClock(LongSupplier sessionClock) {
+        if(sessionClock == null) {
+            throw new NullPointerException("The session clock must not be null.");
+        }
+        this.sessionClock = sessionClock;
+        return this;
+    }
+
+    /**
+     * @return A new garage with the configured settings.
+     */
+    public Garage build() {
+        return new Garage(this);
+    }
+
+    /**
+     * Metrics, the occupancy history, the prefix index, reservations and the reservation settings don't apply to the asynchronous garage.
+     *
+     * @return A new asynchronous garage with the configured settings, see AsyncGarage.
+     */
+    public AsyncGarage buildAsync() {
+        return new AsyncGarage(this);
+    }
+}
@@ -0,0 +1,370 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Motorbike;
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+
+/**
+ * Binary checkpoint of the complete state of a garage, used to start a large garage without replaying
+ * all of its history.
+ *
+ * Usage:
+ *   GarageCheckpoint.write(garage, path);
+ *   ...
+ *   Garage garage = GarageCheckpoint.load(path);
+ *
+ * A checkpoint is written from a snapshot, so the gates go on while it is written, see Garage.snapshot().
+ * It is written to a temporary file first which replaces the previous checkpoint once it is complete, so a
+ * crash while writing leaves the previous checkpoint intact.
+ *
+ * Loading maps every level into memory and rebuilds the levels in parallel, each one in bulk: the vehicles of
+ * a level are decoded column by column and parked with a single call, see Garage.restoreLevel().
+ *
+ * Every level is loaded with its own layout, so levels added or resized at runtime are restored as they were.
+ * Reservations and lots out of service are not part of a checkpoint, and the parking sessions of the loaded vehicles
+ * start at the time they are loaded.
+ *
+ * File layout (big endian):
+ *   int    magic number "GCKP"
+ *   int    format version
+ *   long   version of the snapshot the checkpoint was written from
+ *   int    number of levels
+ *   per level:
+ *     int  number of car bays, motorbike bays, shared bays and motorbikes per shared bay
+ *     int  number of vehicles
+ *     long offset and length of the vehicles of the level
+ *     int  CRC32 of the vehicles of the level
+ *   int    CRC32 of everything above
+ *
+ * followed by the vehicles of every level, in columns ordered by lot number:
+ *   int[]   lot numbers
+ *   byte[]  vehicle types (0 = car, 1 = motorbike)
+ *   short[] lengths of the vehicle ids
+ *   byte[]  vehicle ids (UTF-8)
+ */
+public final class GarageCheckpoint {
+
+    /**
+     * "GCKP" in ASCII.
+     */
+    private static final int MAGIC = 0x47434B50;
+    static final int FORMAT_VERSION = 1;
+
+    private static final byte CAR = 0;
+    private static final byte MOTORBIKE = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4;
+    private static final int LEVEL_ENTRY_SIZE = 4 * 4 + 4 + 8 + 8 + 4;
+    /**
+     * Lot number, vehicle type and id length.
+     */
+    private static final int VEHICLE_HEADER_SIZE = 4 + 1 + 2;
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    private GarageCheckpoint() {}
+
+    /**
+     * Writes a checkpoint of the current state of the garage, replacing the file at the specified path.
+     */
+    public static void write(Garage garage, Path path) throws IOException {
+        write(garage.snapshot(), path);
+    }
+
+    /**
+     * Writes a checkpoint of a snapshot, replacing the file at the specified path.
+     */
+    public static void write(GarageSnapshot snapshot, Path path) throws IOException {
+
+        int numberOfLevels = snapshot.getNumberOfLevels();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + numberOfLevels * LEVEL_ENTRY_SIZE + 4);
+        header.putInt(MAGIC).
+                putInt(FORMAT_VERSION).
+                putLong(snapshot.getVersion()).
+                putInt(numberOfLevels);
+
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            LevelWriter writer = new LevelWriter(channel, header.capacity());
+            for(int level = 0; level < numberOfLevels; level++) {
+                LotVersions.Version version = snapshot.getLevel(level);
+                long offset = writer.position;
+                int numberOfVehicles = writer.write(version);
+                long length = writer.position - offset;
+                if(length > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("The vehicles of parking level " + level + " don't fit into a checkpoint.");
+                }
+                LotLayout layout = version.layout;
+                header.putInt(layout.getNumberOfCarBays()).
+                        putInt(layout.getNumberOfMotorbikeBays()).
+                        putInt(layout.getNumberOfSharedBays()).
+                        putInt(layout.getMotorbikesPerSharedBay()).
+                        putInt(numberOfVehicles).
+                        putLong(offset).
+                        putLong(length).
+                        putInt((int) writer.crc.getValue());
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, header.position());
+            header.putInt((int) crc.getValue());
+            header.flip();
+            // the header is written last, a checkpoint without a valid header is never loaded
+            while(header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the vehicles of the levels column by column through a buffer, computing the checksum on the way.
+     */
+    private static final class LevelWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        private final CRC32 crc = new CRC32();
+        private long position;
+
+        LevelWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        /**
+         * @return The number of vehicles written.
+         */
+        int write(LotVersions.Version version) throws IOException {
+
+            // a car in a shared bay occupies several lots, so the occupied lots are an upper bound
+            int capacity = version.getNumberOfOccupiedLots();
+            int[] lotNumbers = new int[capacity];
+            Vehicle[] vehicles = new Vehicle[capacity];
+            int count = 0;
+            for(int lotNumber = version.nextOccupied(0); lotNumber != -1; lotNumber = version.nextOccupied(lotNumber + 1)) {
+                lotNumbers[count] = lotNumber;
+                vehicles[count++] = version.get(lotNumber);
+            }
+
+            crc.reset();
+            for(int index = 0; index < count; index++) {
+                ensureRemaining(4);
+                buffer.putInt(lotNumbers[index]);
+            }
+            for(int index = 0; index < count; index++) {
+                ensureRemaining(1);
+                buffer.put(vehicles[index] instanceof Motorbike ? MOTORBIKE : CAR);
+            }
+            byte[][] vehicleIds = new byte[count][];
+            for(int index = 0; index < count; index++) {
+                vehicleIds[index] = vehicles[index].getIdentifier().getBytes(StandardCharsets.UTF_8);
+                if(vehicleIds[index].length > 0xFFFF) {
+                    throw new IllegalArgumentException("The vehicle id " + vehicles[index].getIdentifier() + " is too long for a checkpoint.");
+                }
+                ensureRemaining(2);
+                buffer.putShort((short) vehicleIds[index].length);
+            }
+            for(int index = 0; index < count; index++) {
+                ensureRemaining(vehicleIds[index].length);
+                buffer.put(vehicleIds[index]);
+            }
+            flush();
+            return count;
+        }
+
+        private void ensureRemaining(int size) throws IOException {
+            if(buffer.remaining() < size) {
+                flush();
+            }
+        }
+
+        private void flush() throws IOException {
+            crc.update(buffer.array(), 0, buffer.position());
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Loads the checkpoint at the specified path into a new garage with the default settings.
+     *
+     * @exception java.lang.IllegalStateException in case the file isn't a valid checkpoint
+     */
+    public static Garage load(Path path) throws IOException {
+        return load(path, new GarageBuilder());
+    }
+
+    /**
+     * Loads the checkpoint at the specified path into a new garage.
+     *
+     * @param builder provides the settings of the garage, except for the number of levels and lots which are taken
+     *                from the checkpoint; the builder itself isn't changed
+     * @exception java.lang.IllegalStateException in case the file isn't a valid checkpoint
+     */
+    public static Garage load(Path path, GarageBuilder builder) throws IOException {
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            ByteBuffer header = readHeader(channel);
+            int numberOfLevels = header.getInt(HEADER_SIZE - 4);
+            LotLayout[] layouts = new LotLayout[numberOfLevels];
+            int motorbikesPerSharedBay = 0;
+            for(int level = 0; level < numberOfLevels; level++) {
+                int entry = HEADER_SIZE + level * LEVEL_ENTRY_SIZE;
+                layouts[level] = new LotLayout(header.getInt(entry), header.getInt(entry + 4), header.getInt(entry + 8), header.getInt(entry + 12));
+                // a level without shared bays doesn't care about their size
+                if(layouts[level].getNumberOfSharedBays() > 0) {
+                    if(motorbikesPerSharedBay != 0 && motorbikesPerSharedBay != layouts[level].getMotorbikesPerSharedBay()) {
+                        throw new IllegalStateException("The shared bays of the checkpoint hold different numbers of motorbikes.");
+                    }
+                    motorbikesPerSharedBay = layouts[level].getMotorbikesPerSharedBay();
+                }
+            }
+
+            // the levels start empty and get their own layout, which doesn't cost more than building them with it
+            Garage garage = builder.copy().
+                    numberOfLevels(numberOfLevels).
+                    numberOfParkingLotsPerLevel(0).
+                    numberOfMotorbikeBaysPerLevel(0).
+                    numberOfSharedBaysPerLevel(0).
+                    motorbikesPerSharedBay(motorbikesPerSharedBay != 0 ? motorbikesPerSharedBay : layouts[0].getMotorbikesPerSharedBay()).
+                    build();
+            for(int level = 0; level < numberOfLevels; level++) {
+                garage.resizeLevel(level, layouts[level].getNumberOfCarBays(), layouts[level].getNumberOfMotorbikeBays(), layouts[level].getNumberOfSharedBays());
+            }
+            long numberOfVehicles = 0;
+            for(int level = 0; level < numberOfLevels; level++) {
+                numberOfVehicles += header.getInt(HEADER_SIZE + level * LEVEL_ENTRY_SIZE + 16);
+            }
+            garage.prepareRestore((int) Math.min(numberOfVehicles, Integer.MAX_VALUE));
+
+            try {
+                IntStream.range(0, numberOfLevels).parallel().forEach(level -> {
+                    int entry = HEADER_SIZE + level * LEVEL_ENTRY_SIZE;
+                    try {
+                        loadLevel(channel, garage, level, header.getInt(entry + 16), header.getLong(entry + 20), header.getLong(entry + 28), header.getInt(entry + 36));
+                    } catch(IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch(UncheckedIOException e) {
+                throw e.getCause();
+            }
+            return garage;
+        }
+    }
+
+    /**
+     * @return The validated header, including the table of levels.
+     */
+    private static ByteBuffer readHeader(FileChannel channel) throws IOException {
+
+        long fileSize = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        readFully(channel, header, 0);
+        if(header.getInt(0) != MAGIC) {
+            throw new IllegalStateException("The file is not a garage checkpoint.");
+        }
+        if(header.getInt(4) != FORMAT_VERSION) {
+            throw new IllegalStateException("Unsupported checkpoint format version " + header.getInt(4) + ".");
+        }
+        int numberOfLevels = header.getInt(HEADER_SIZE - 4);
+        if(numberOfLevels <= 0 || HEADER_SIZE + (long) numberOfLevels * LEVEL_ENTRY_SIZE + 4 > fileSize) {
+            throw new IllegalStateException("The checkpoint is corrupt, it can't have " + numberOfLevels + " levels.");
+        }
+
+        ByteBuffer table = ByteBuffer.allocate(HEADER_SIZE + numberOfLevels * LEVEL_ENTRY_SIZE + 4);
+        readFully(channel, table, 0);
+        CRC32 crc = new CRC32();
+        crc.update(table.array(), 0, table.capacity() - 4);
+        if((int) crc.getValue() != table.getInt(table.capacity() - 4)) {
+            throw new IllegalStateException("The checkpoint is corrupt, the checksum of the header doesn't match.");
+        }
+        for(int level = 0; level < numberOfLevels; level++) {
+            int entry = HEADER_SIZE + level * LEVEL_ENTRY_SIZE;
+            long offset = table.getLong(entry + 20);
+            long length = table.getLong(entry + 28);
+            if(offset < table.capacity() || length < 0 || length > Integer.MAX_VALUE || offset + length > fileSize) {
+                throw new IllegalStateException("The checkpoint is corrupt, the vehicles of parking level " + level + " are out of range.");
+            }
+        }
+        return table;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while(buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if(read == -1) {
+                throw new IllegalStateException("The checkpoint is truncated.");
+            }
+        }
+    }
+
+    /**
+     * Decodes the vehicles of a parking level column by column and parks them in one go.
+     */
+    private static void loadLevel(FileChannel channel, Garage garage, int level, int numberOfVehicles, long offset, long length, int checksum) throws IOException {
+
+        MappedByteBuffer section = channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        CRC32 crc = new CRC32();
+        crc.update(section.duplicate());
+        if((int) crc.getValue() != checksum) {
+            throw new IllegalStateException("The checkpoint is corrupt, the checksum of parking level " + level + " doesn't match.");
+        }
+        if(numberOfVehicles < 0 || (long) numberOfVehicles * VEHICLE_HEADER_SIZE > length) {
+            throw new IllegalStateException("The checkpoint is corrupt, parking level " + level + " can't have " + numberOfVehicles + " vehicles.");
+        }
+
+        int[] lotNumbers = new int[numberOfVehicles];
+        section.asIntBuffer().get(lotNumbers);
+        section.position(numberOfVehicles * 4);
+        byte[] vehicleTypes = new byte[numberOfVehicles];
+        section.get(vehicleTypes);
+        short[] vehicleIdLengths = new short[numberOfVehicles];
+        section.asShortBuffer().get(vehicleIdLengths);
+        section.position(section.position() + numberOfVehicles * 2);
+        byte[] vehicleIds = new byte[section.remaining()];
+        section.get(vehicleIds);
+
+        Vehicle[] vehicles = new Vehicle[numberOfVehicles];
+        int vehicleIdOffset = 0;
+        for(int index = 0; index < numberOfVehicles; index++) {
+            int vehicleIdLength = vehicleIdLengths[index] & 0xFFFF;
+            if(vehicleIdOffset + vehicleIdLength > vehicleIds.length) {
+                throw new IllegalStateException("The checkpoint is corrupt, the vehicle ids of parking level " + level + " are truncated.");
+            }
+            String vehicleId = new String(vehicleIds, vehicleIdOffset, vehicleIdLength, StandardCharsets.UTF_8);
+            vehicleIdOffset += vehicleIdLength;
+            if(vehicleTypes[index] == MOTORBIKE) {
+                vehicles[index] = VehicleFactory.createMotorbike(vehicleId);
+            } else if(vehicleTypes[index] == CAR) {
+                vehicles[index] = VehicleFactory.createCar(vehicleId);
+            } else {
+                throw new IllegalStateException("Unknown vehicle type " + vehicleTypes[index] + " in checkpoint.");
+            }
+        }
+        if(vehicleIdOffset != vehicleIds.length) {
+            throw new IllegalStateException("The checkpoint is corrupt, the vehicle ids of parking level " + level + " don't match their lengths.");
+        }
+
+        garage.restoreLevel(level, vehicles, lotNumbers, numberOfVehicles);
+    }
+}
@@ -0,0 +1,273 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.io.Closeable;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Spreads the vehicles over several independent garages (shards), e.g. one per site.
+ *
+ * Usage:
+ *   try(GarageCluster cluster = new GarageCluster(8, () -> new Garage(10, 1000))) {
+ *       cluster.enter(vehicle);
+ *       ...
+ *   }
+ *
+ * Every vehicle has a home shard derived from the hash of its identifier, so lookups go straight to one
+ * shard and the shards never share any lock or map. A vehicle whose home shard is full spills over to the
+ * next shard with room, such vehicles are remembered in a small directory which is consulted when the
+ * vehicle isn't found at home.
+ *
+ * A vehicle spilling over reserves its identifier in the directory and then makes sure it isn't parked at
+ * home. A vehicle entering at home is first checked against the directory, parks and then makes sure its
+ * identifier wasn't reserved in the meantime (and leaves again if it was, which only happens for concurrent
+ * attempts). Since both sides write first and check afterwards, at most one of two concurrent attempts to
+ * enter the same vehicle succeeds.
+ *
+ * The synchronous methods run on the calling thread, the shards are thread-safe themselves. The async
+ * variants run on the executor of the home shard, a single thread per shard.
+ */
+public class GarageCluster implements Closeable {
+
+    /**
+     * Directory entry of a vehicle which is about to spill over.
+     */
+    private static final long SPILLING = -2L;
+    /**
+     * Returned by the directory for a vehicle which isn't spilled over. Like SPILLING it is negative, so lookups
+     * can check for both with a single comparison.
+     */
+    private static final long NOT_SPILLED = -1L;
+
+    private final Garage[] shards;
+    private final ExecutorService[] executors;
+    /**
+     * The shard of every vehicle not parked in its home shard.
+     */
+    private final IdentifierDictionary spilledVehicles = new IdentifierDictionary();
+
+    /**
+     * @param numberOfShards the number of garages in the cluster
+     * @param shardFactory creates the garage of each shard
+     */
+    public GarageCluster(int numberOfShards, Supplier<Garage> shardFactory) {
+        if(numberOfShards <= 0) {
+            throw new IllegalArgumentException("The number of shards must be greater than 0.");
+        }
+        shards = new Garage[numberOfShards];
+        executors = new ExecutorService[numberOfShards];
+        for(int i = 0; i < numberOfShards; i++) {
+            shards[i] = shardFactory.get();
+            final int shard = i;
+            executors[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "garage-shard-" + shard);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int getNumberOfShards() { return shards.length; }
+
+    public Garage getShard(int shard) { return shards[shard]; }
+
+    /**
+     * @return The shard the vehicle with the specified identifier is parked in when it has room.
+     */
+    public int getHomeShard(String vehicleId) {
+        int hash = vehicleId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * The counts are summed up from the counters of the shards, without locking anything.
+     *
+     * @return The total number of lots of all shards.
+     */
+    public int getTotalNumberOfLots() {
+        int lots = 0;
+        for(Garage shard : shards) {
+            lots += shard.getTotalNumberOfLots();
+        }
+        return lots;
+    }
+
+    /**
+     * @return The current number of occupied lots of all shards.
+     */
+    public int getNumberOfOccupiedLots() {
+        int lots = 0;
+        for(Garage shard : shards) {
+            lots += shard.getNumberOfOccupiedLots();
+        }
+        return lots;
+    }
+
+    /**
+     * @return The current number of free lots of all shards.
+     */
+    public int getNumberOfFreeLots() {
+        int lots = 0;
+        for(Garage shard : shards) {
+            lots += shard.getNumberOfFreeLots();
+        }
+        return lots;
+    }
+
+    /**
+     * @return The current number of vehicles parked outside of their home shard.
+     */
+    public int getNumberOfSpilledVehicles() { return spilledVehicles.size(); }
+
+    /**
+     * Adds a vehicle to its home shard or, if that is full, to the next shard with room.
+     *
+     * @param vehicle The vehicle to enter.
+     * @return The location of the entered vehicle, Optional.empty() in case no shard has room.
+     * @exception java.lang.IllegalArgumentException in case the vehicle is already in the cluster
+     */
+    public Optional<ClusterLocationInfo> enter(Vehicle vehicle) {
+
+        String vehicleId = vehicle.getIdentifier();
+        int home = getHomeShard(vehicleId);
+
+        if(spilledVehicles.get(vehicleId, NOT_SPILLED) != NOT_SPILLED) {
+            throw new IllegalArgumentException("Specified vehicle is already in the cluster.");
+        }
+        Optional<LocationInfo> location = shards[home].enter(vehicle);
+        if(location.isPresent()) {
+            if(spilledVehicles.get(vehicleId, NOT_SPILLED) != NOT_SPILLED) {
+                // the same vehicle started to spill over concurrently
+                shards[home].exit(vehicle);
+                throw new IllegalArgumentException("Specified vehicle is already in the cluster.");
+            }
+            return Optional.of(new ClusterLocationInfo(home, location.get()));
+        }
+        return spillOver(vehicle, home);
+    }
+
+    private Optional<ClusterLocationInfo> spillOver(Vehicle vehicle, int home) {
+
+        String vehicleId = vehicle.getIdentifier();
+        int handle = spilledVehicles.putIfAbsent(vehicleId, SPILLING);
+        if(handle == IdentifierDictionary.NO_HANDLE) {
+            // the entry belongs to another attempt to enter the same vehicle, it is left alone
+            throw new IllegalArgumentException("Specified vehicle is already in the cluster.");
+        }
+        if(shards[home].locate(vehicleId) != LocationInfo.NOT_FOUND) {
+            spilledVehicles.remove(vehicleId, SPILLING);
+            throw new IllegalArgumentException("Specified vehicle is already in the cluster.");
+        }
+
+        boolean placed = false;
+        try {
+            for(int i = 1; i < shards.length; i++) {
+                int shard = (home + i) % shards.length;
+                if(shards[shard].getNumberOfFreeLots() == 0) {
+                    continue;
+                }
+                Optional<LocationInfo> location = shards[shard].enter(vehicle);
+                if(location.isPresent()) {
+                    // only this attempt removes the SPILLING entry, so the handle is still valid
+                    spilledVehicles.set(handle, shard);
+                    placed = true;
+                    return Optional.of(new ClusterLocationInfo(shard, location.get()));
+                }
+            }
+            return Optional.empty();
+        } finally {
+            if(!placed) {
+                spilledVehicles.remove(vehicleId, SPILLING);
+            }
+        }
+    }
+
+    /**
+     * Removes a vehicle from the cluster.
+     *
+     * @param vehicle The vehicle to remove.
+     * @return The location the vehicle was parked on, Optional.empty() in case it wasn't found.
+     */
+    public Optional<ClusterLocationInfo> exit(Vehicle vehicle) {
+
+        String vehicleId = vehicle.getIdentifier();
+        int home = getHomeShard(vehicleId);
+
+        Optional<LocationInfo> location = shards[home].exit(vehicle);
+        if(location.isPresent()) {
+            return Optional.of(new ClusterLocationInfo(home, location.get()));
+        }
+
+        long spilledTo = spilledVehicles.get(vehicleId, NOT_SPILLED);
+        if(spilledTo < 0) {
+            return Optional.empty();
+        }
+        int shard = (int) spilledTo;
+        location = shards[shard].exit(vehicle);
+        // remove the directory entry only after the vehicle left, so it can't enter at home in between
+        spilledVehicles.remove(vehicleId, spilledTo);
+        return location.map(exited -> new ClusterLocationInfo(shard, exited));
+    }
+
+    /**
+     * Try to get the location of the vehicle with the specified vehicle id.
+     *
+     * @param vehicleId The id of the vehicle to search for.
+     * @return The location of the vehicle, Optional.empty() in case it wasn't found.
+     */
+    public Optional<ClusterLocationInfo> findLocation(String vehicleId) {
+
+        int home = getHomeShard(vehicleId);
+        Optional<LocationInfo> location = shards[home].findLocation(vehicleId);
+        if(location.isPresent()) {
+            return Optional.of(new ClusterLocationInfo(home, location.get()));
+        }
+
+        long spilledTo = spilledVehicles.get(vehicleId, NOT_SPILLED);
+        if(spilledTo < 0) {
+            return Optional.empty();
+        }
+        int shard = (int) spilledTo;
+        return shards[shard].findLocation(vehicleId).map(found -> new ClusterLocationInfo(shard, found));
+    }
+
+    public Optional<ClusterLocationInfo> findLocation(Vehicle vehicle) {
+        return findLocation(vehicle.getIdentifier());
+    }
+
+    /**
+     * Runs enter() on the executor of the home shard of the vehicle.
+     */
+    public CompletableFuture<Optional<ClusterLocationInfo>> enterAsync(Vehicle vehicle) {
+        return CompletableFuture.supplyAsync(() -> enter(vehicle), executors[getHomeShard(vehicle.getIdentifier())]);
+    }
+
+    /**
+     * Runs exit() on the executor of the home shard of the vehicle.
+     */
+    public CompletableFuture<Optional<ClusterLocationInfo>> exitAsync(Vehicle vehicle) {
+        return CompletableFuture.supplyAsync(() -> exit(vehicle), executors[getHomeShard(vehicle.getIdentifier())]);
+    }
+
+    /**
+     * Runs findLocation() on the executor of the home shard of the vehicle.
+     */
+    public CompletableFuture<Optional<ClusterLocationInfo>> findLocationAsync(String vehicleId) {
+        return CompletableFuture.supplyAsync(() -> findLocation(vehicleId), executors[getHomeShard(vehicleId)]);
+    }
+
+    /**
+     * Shuts the executors of the shards down, operations already submitted are still executed.
+     */
+    @Override
+    public void close() {
+        for(ExecutorService executor : executors) {
+            executor.shutdown();
+        }
+    }
+}
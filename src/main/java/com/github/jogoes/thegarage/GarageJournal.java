@@ -0,0 +1,356 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Motorbike;
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the enter and exit events of a garage, used to rebuild the garage after a restart.
+ *
+ * Usage:
+ *   Garage garage = new Garage(numberOfLevels, numberOfLotsPerLevel);
+ *   GarageJournal journal = GarageJournal.recoverAndOpen(path, garage);
+ *   ...
+ *   journal.close();
+ *
+ * Events are written into an in-memory buffer by the gate threads and written to the file by a background
+ * thread every few milliseconds, which also forces them to disk (group commit). A gate therefore never waits
+ * for the disk, the price is that the events of the last commit interval can be lost on a crash. Call sync()
+ * in case an event must be durable before going on.
+ *
+ * Record layout (big endian):
+ *   int    length of the payload
+ *   byte   event type (1 = enter, 2 = exit)
+ *   byte   vehicle type (0 = car, 1 = motorbike)
+ *   int    parking level
+ *   int    lot number
+ *   short  length of the vehicle id
+ *   byte[] vehicle id (UTF-8)
+ *   int    CRC32 of the payload
+ *
+ * A record which is incomplete or doesn't match its checksum at the end of the journal is the record which was
+ * being written when the process died, recovery drops it and everything after it. In case a complete valid
+ * record follows, the journal has been damaged otherwise and recovery fails instead of dropping events.
+ *
+ * In case writing or forcing the journal fails, the events which couldn't be written are kept in the buffer and
+ * the journal is failed: every further event, sync() and close() report the failure.
+ */
+public class GarageJournal implements GarageListener, Closeable {
+
+    static final byte ENTER = 1;
+    static final byte EXIT = 2;
+
+    private static final byte CAR = 0;
+    private static final byte MOTORBIKE = 1;
+
+    /**
+     * Type, vehicle type, level, lot and id length.
+     */
+    private static final int PAYLOAD_HEADER_SIZE = 1 + 1 + 4 + 4 + 2;
+    private static final int MAX_PAYLOAD_SIZE = PAYLOAD_HEADER_SIZE + 0xFFFF;
+    private static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    private static final long DEFAULT_COMMIT_INTERVAL_MILLIS = 5;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    private final Thread committer;
+    private final CountDownLatch closing = new CountDownLatch(1);
+    private volatile boolean closed;
+    private volatile IOException failure;
+
+    private GarageJournal(FileChannel channel, int bufferSize, long commitIntervalMillis) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocate(Math.max(bufferSize, 4 + MAX_PAYLOAD_SIZE + 4));
+        this.committer = new Thread(() -> commitPeriodically(commitIntervalMillis), "garage-journal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Opens the journal at the specified path for appending, it is created in case it doesn't exist.
+     * The journal is not yet registered with a garage.
+     */
+    public static GarageJournal open(Path path) throws IOException {
+        return open(path, DEFAULT_BUFFER_SIZE, DEFAULT_COMMIT_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param bufferSize the size of the in-memory buffer, a full buffer is written immediately
+     * @param commitIntervalMillis the time between two group commits
+     */
+    public static GarageJournal open(Path path, int bufferSize, long commitIntervalMillis) throws IOException {
+        if(commitIntervalMillis <= 0) {
+            throw new IllegalArgumentException("The commit interval must be greater than 0.");
+        }
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return new GarageJournal(channel, bufferSize, commitIntervalMillis);
+    }
+
+    /**
+     * Replays the journal at the specified path into the garage, then opens it and registers it with the garage
+     * so every further event gets recorded.
+     */
+    public static GarageJournal recoverAndOpen(Path path, Garage garage) throws IOException {
+        if(Files.exists(path)) {
+            recover(path, garage);
+        }
+        GarageJournal journal = open(path);
+        garage.addListener(journal);
+        return journal;
+    }
+
+    /**
+     * Replays all events of the journal at the specified path into the garage. The garage must have the same
+     * layout as the one the journal was written for and must not have been used yet.
+     *
+     * A torn record at the end of the journal is cut off, so new events can be appended behind the last
+     * complete one.
+     *
+     * @return The number of replayed events.
+     * @exception java.lang.IllegalStateException in case the journal doesn't match the garage or an invalid record
+     * is followed by valid ones
+     */
+    public static long recover(Path path, Garage garage) throws IOException {
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            ByteBuffer buffer = ByteBuffer.allocate(4 * 1024 * 1024);
+            CRC32 crc = new CRC32();
+            long validLength = 0;
+            long events = 0;
+            // offset of the first invalid record, everything from there on is searched for a valid record
+            long invalidOffset = -1;
+
+            boolean endOfFile = false;
+            while(!endOfFile) {
+                endOfFile = channel.read(buffer) == -1;
+                buffer.flip();
+                while(buffer.hasRemaining()) {
+                    int recordSize = completeRecordSize(buffer, crc);
+                    if(recordSize == 0 && !endOfFile) {
+                        // read the rest of the record
+                        break;
+                    }
+                    if(recordSize > 0) {
+                        if(invalidOffset >= 0) {
+                            throw new IllegalStateException("The garage journal is corrupt at offset " + invalidOffset + ", it is followed by valid records.");
+                        }
+                        replay(buffer, garage);
+                        validLength += recordSize;
+                        events++;
+                    } else {
+                        if(invalidOffset < 0) {
+                            invalidOffset = validLength;
+                        }
+                        buffer.position(buffer.position() + 1);
+                    }
+                }
+                buffer.compact();
+            }
+
+            if(channel.size() > validLength) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+            return events;
+        }
+    }
+
+    /**
+     * @return The size of the record at the position of the buffer, 0 in case the buffer doesn't contain the complete
+     * record yet and -1 in case the record is invalid.
+     */
+    private static int completeRecordSize(ByteBuffer buffer, CRC32 crc) {
+        if(buffer.remaining() < 4) {
+            return 0;
+        }
+        int payloadSize = buffer.getInt(buffer.position());
+        if(payloadSize < PAYLOAD_HEADER_SIZE || payloadSize > MAX_PAYLOAD_SIZE) {
+            return -1;
+        }
+        if(buffer.remaining() < 4 + payloadSize + 4) {
+            return 0;
+        }
+        int payloadStart = buffer.position() + 4;
+        crc.reset();
+        crc.update(buffer.array(), buffer.arrayOffset() + payloadStart, payloadSize);
+        if((int) crc.getValue() != buffer.getInt(payloadStart + payloadSize)) {
+            return -1;
+        }
+        return 4 + payloadSize + 4;
+    }
+
+    /**
+     * Applies the record at the position of the buffer and moves the position behind it.
+     */
+    private static void replay(ByteBuffer buffer, Garage garage) {
+        buffer.getInt();
+        byte eventType = buffer.get();
+        byte vehicleType = buffer.get();
+        int level = buffer.getInt();
+        int lotNumber = buffer.getInt();
+        int idLength = buffer.getShort() & 0xFFFF;
+        String vehicleId = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), idLength, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + idLength);
+        buffer.getInt();
+
+        Vehicle vehicle = vehicleType == MOTORBIKE ? VehicleFactory.createMotorbike(vehicleId) : VehicleFactory.createCar(vehicleId);
+        if(eventType == ENTER) {
+            garage.restoreEntered(vehicle, level, lotNumber);
+        } else if(eventType == EXIT) {
+            garage.restoreExited(vehicle, level, lotNumber);
+        } else {
+            throw new IllegalStateException("Unknown event type " + eventType + " in journal.");
+        }
+    }
+
+    @Override
+    public void vehicleEntered(Vehicle vehicle, int parkingLevel, int lotNumber) {
+        append(ENTER, vehicle, parkingLevel, lotNumber);
+    }
+
+    @Override
+    public void vehicleExited(Vehicle vehicle, int parkingLevel, int lotNumber) {
+        append(EXIT, vehicle, parkingLevel, lotNumber);
+    }
+
+    private void append(byte eventType, Vehicle vehicle, int parkingLevel, int lotNumber) {
+        byte[] vehicleId = vehicle.getIdentifier().getBytes(StandardCharsets.UTF_8);
+        if(vehicleId.length > 0xFFFF) {
+            throw new IllegalArgumentException("The vehicle id is too long for the journal.");
+        }
+        int payloadSize = PAYLOAD_HEADER_SIZE + vehicleId.length;
+
+        synchronized (this) {
+            if(closed) {
+                throw new IllegalStateException("The journal is closed.");
+            }
+            if(failure != null) {
+                throw new UncheckedIOException("The garage journal has failed, the event can't be recorded.", failure);
+            }
+            if(buffer.remaining() < 4 + payloadSize + 4) {
+                try {
+                    writeBuffer();
+                } catch(IOException e) {
+                    throw new UncheckedIOException("Failed to write the garage journal.", e);
+                }
+            }
+            buffer.putInt(payloadSize);
+            int payloadStart = buffer.position();
+            buffer.put(eventType).
+                    put(vehicle instanceof Motorbike ? MOTORBIKE : CAR).
+                    putInt(parkingLevel).
+                    putInt(lotNumber).
+                    putShort((short) vehicleId.length).
+                    put(vehicleId);
+            crc.reset();
+            crc.update(buffer.array(), buffer.arrayOffset() + payloadStart, payloadSize);
+            buffer.putInt((int) crc.getValue());
+        }
+    }
+
+    /**
+     * Writes the buffered events to the file, must be called while holding the lock of the journal.
+     * The events which couldn't be written stay in the buffer.
+     */
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        try {
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch(IOException e) {
+            failure = e;
+            throw e;
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private void checkNotFailed() throws IOException {
+        IOException failure = this.failure;
+        if(failure != null) {
+            throw new IOException("The garage journal has failed, buffered events are not written.", failure);
+        }
+    }
+
+    /**
+     * Writes all buffered events and forces them to disk.
+     *
+     * @exception java.io.IOException in case writing the events fails now or has failed before
+     */
+    public void sync() throws IOException {
+        synchronized (this) {
+            checkNotFailed();
+            if(buffer.position() > 0) {
+                writeBuffer();
+            }
+        }
+        // forcing outside of the lock lets the gates go on buffering events
+        try {
+            channel.force(false);
+        } catch(IOException e) {
+            // it is unknown which of the written events made it to disk, so none of them can be relied on
+            failure = e;
+            throw e;
+        }
+    }
+
+    private void commitPeriodically(long commitIntervalMillis) {
+        try {
+            // the thread is never interrupted, an interrupt during a write would close the channel
+            while(!closing.await(commitIntervalMillis, TimeUnit.MILLISECONDS)) {
+                sync();
+            }
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch(IOException e) {
+            // the journal is failed, the gates and sync() report it from now on
+        }
+    }
+
+    /**
+     * Writes all buffered events and closes the journal. It must be removed from the garage before.
+     */
+    @Override
+    public void close() throws IOException {
+        if(closed) {
+            return;
+        }
+        synchronized (this) {
+            closed = true;
+        }
+        closing.countDown();
+        try {
+            committer.join();
+        } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            synchronized (this) {
+                checkNotFailed();
+                if(buffer.position() > 0) {
+                    writeBuffer();
+                }
+            }
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * Gets notified whenever a vehicle enters or exits the garage, see Garage.addListener().
+ *
+ * Listeners are called by the gate thread while it holds the lock of the affected parking level, so the
+ * notifications for one level arrive in the order in which the changes happened. A vehicle can only enter again
+ * once its exit was reported, so the notifications for one vehicle are in order too. Implementations must be
+ * thread-safe, must return quickly and must not call back into the garage.
+ *
+ * A listener is notified after the vehicle entered or exited. An exception thrown by a listener doesn't undo
+ * that and doesn't reach the gate, the other listeners are notified nevertheless and the exception is passed to
+ * the uncaught exception handler of the gate thread. A listener which has to report failures to the application,
+ * like the GarageJournal, keeps them itself.
+ */
+public interface GarageListener {
+
+    void vehicleEntered(Vehicle vehicle, int parkingLevel, int lotNumber);
+
+    void vehicleExited(Vehicle vehicle, int parkingLevel, int lotNumber);
+}
@@ -0,0 +1,42 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * JMX view of the metrics of a garage, see GarageMetrics.registerMBean().
+ */
+public interface GarageMetricsMXBean {
+
+    LatencySnapshot getEnterLatency();
+
+    LatencySnapshot getExitLatency();
+
+    LatencySnapshot getFindLocationLatency();
+
+    /**
+     * @return The number of vehicles turned away because there was no room for them.
+     */
+    long getGarageFullRejections();
+
+    /**
+     * @return The number of vehicles turned away because they were already in the garage.
+     */
+    long getDuplicateRejections();
+
+    int getTotalNumberOfLots();
+
+    int getNumberOfOccupiedLots();
+
+    /**
+     * @return The number of occupied lots of every parking level, indexed by level.
+     */
+    int[] getOccupiedLotsPerLevel();
+
+    /**
+     * @return The number of free lots of every parking level, indexed by level.
+     */
+    int[] getFreeLotsPerLevel();
+
+    /**
+     * Clears the latency histograms and the rejection counters.
+     */
+    void reset();
+}
@@ -0,0 +1,204 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable view of a garage as of the moment it was taken, see Garage.snapshot().
+ *
+ * The snapshot is consistent across all parking levels: it contains every enter() and exit() which finished
+ * before it was taken and none which started afterwards. Vehicles entering and exiting while the snapshot is
+ * read don't change it, and reading it doesn't take any locks, so it never blocks the gates.
+ *
+ * Taking a snapshot doesn't copy any lots. It shares them with the garage, which copies the lots it changes
+ * in chunks afterwards, so a snapshot keeps at most one copy of every lot alive.
+ */
+public final class GarageSnapshot {
+
+    private final long version;
+    private final LotVersions.Version[] levels;
+
+    private final int totalNumberOfLots;
+    private final int numberOfOccupiedLots;
+    private final int numberOfReservedLots;
+    private final int numberOfLotsOutOfService;
+
+    GarageSnapshot(long version, LotVersions.Version[] levels) {
+        this.version = version;
+        this.levels = levels;
+        int total = 0;
+        int occupied = 0;
+        int reserved = 0;
+        int outOfService = 0;
+        for(LotVersions.Version level : levels) {
+            total += level.getTotalNumberOfLots();
+            occupied += level.getNumberOfOccupiedLots();
+            reserved += level.getNumberOfReservedLots();
+            outOfService += level.getNumberOfLotsOutOfService();
+        }
+        this.totalNumberOfLots = total;
+        this.numberOfOccupiedLots = occupied;
+        this.numberOfReservedLots = reserved;
+        this.numberOfLotsOutOfService = outOfService;
+    }
+
+    /**
+     * @return The version of the snapshot, a snapshot taken later has a greater version.
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * @return The number of parking levels in the garage.
+     */
+    public int getNumberOfLevels() { return levels.length; }
+
+    public int getTotalNumberOfLots() { return totalNumberOfLots; }
+    public int getNumberOfFreeLots() { return totalNumberOfLots - numberOfOccupiedLots - numberOfReservedLots - numberOfLotsOutOfService; }
+    public int getNumberOfOccupiedLots() { return numberOfOccupiedLots; }
+    public int getNumberOfReservedLots() { return numberOfReservedLots; }
+    public int getNumberOfLotsOutOfService() { return numberOfLotsOutOfService; }
+
+    public int getTotalNumberOfLots(LotClass lotClass) {
+        int total = 0;
+        for(LotVersions.Version level : levels) {
+            total += level.layout.getNumberOfLots(lotClass);
+        }
+        return total;
+    }
+    public int getNumberOfFreeLots(LotClass lotClass) {
+        return getTotalNumberOfLots(lotClass) - getNumberOfOccupiedLots(lotClass) - getNumberOfReservedLots(lotClass) - getNumberOfLotsOutOfService(lotClass);
+    }
+    public int getNumberOfOccupiedLots(LotClass lotClass) {
+        int occupied = 0;
+        for(LotVersions.Version level : levels) {
+            occupied += level.getNumberOfOccupiedLots(lotClass);
+        }
+        return occupied;
+    }
+    public int getNumberOfReservedLots(LotClass lotClass) {
+        int reserved = 0;
+        for(LotVersions.Version level : levels) {
+            reserved += level.getNumberOfReservedLots(lotClass);
+        }
+        return reserved;
+    }
+    public int getNumberOfLotsOutOfService(LotClass lotClass) {
+        int outOfService = 0;
+        for(LotVersions.Version level : levels) {
+            outOfService += level.getNumberOfLotsOutOfService(lotClass);
+        }
+        return outOfService;
+    }
+
+    /**
+     * Counters of a single parking level.
+     *
+     * @param level The number of the parking level.
+     */
+    public int getTotalNumberOfLots(int level) { return getLevel(level).getTotalNumberOfLots(); }
+    public int getNumberOfFreeLots(int level) { return getTotalNumberOfLots(level) - getNumberOfOccupiedLots(level) - getNumberOfReservedLots(level) - getNumberOfLotsOutOfService(level); }
+    public int getNumberOfOccupiedLots(int level) { return getLevel(level).getNumberOfOccupiedLots(); }
+    public int getNumberOfReservedLots(int level) { return getLevel(level).getNumberOfReservedLots(); }
+    public int getNumberOfLotsOutOfService(int level) { return getLevel(level).getNumberOfLotsOutOfService(); }
+
+    /**
+     * @return The state of the specified parking level.
+     */
+    LotVersions.Version getLevel(int level) {
+        if(level < 0 || level >= levels.length) {
+            throw new IllegalArgumentException("Parking level " + level + " doesn't exist.");
+        }
+        return levels[level];
+    }
+
+    /**
+     * Searches the snapshot for a vehicle. There is no index in a snapshot, so this looks at every occupied lot.
+     *
+     * @param vehicleId The id of the vehicle to search for.
+     * @return Location information about the vehicle, Optional.empty() in case it wasn't in the garage.
+     */
+    public Optional<LocationInfo> findLocation(String vehicleId) {
+        if(vehicleId == null) {
+            throw new NullPointerException("The specified vehicle id must not be null.");
+        }
+        return vehicleLocationInfos().
+                filter(info -> info.getVehicle().getIdentifier().equals(vehicleId)).
+                map(info -> (LocationInfo) info).
+                findFirst();
+    }
+
+    /**
+     * @return A collection of location infos for all vehicles in the snapshot, ordered by level and lot number.
+     */
+    public Collection<VehicleLocationInfo> getVehicleLocationInfos() {
+        List<VehicleLocationInfo> vehicleLocationInfos = new ArrayList<>();
+        vehicleLocationInfos().forEach(vehicleLocationInfos::add);
+        return Collections.unmodifiableCollection(vehicleLocationInfos);
+    }
+
+    /**
+     * @return A lazy stream of all vehicles in the snapshot, ordered by level and lot number.
+     */
+    public Stream<VehicleLocationInfo> vehicleLocationInfos() {
+        Iterator<VehicleLocationInfo> iterator = new Iterator<VehicleLocationInfo>() {
+            private int level = 0;
+            private int lotNumber = advance(0, 0);
+
+            private int advance(int fromLevel, int fromLotNumber) {
+                for(level = fromLevel; level < levels.length; level++, fromLotNumber = 0) {
+                    int next = levels[level].nextOccupied(fromLotNumber);
+                    if(next != -1) {
+                        return next;
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext() { return lotNumber != -1; }
+
+            @Override
+            public VehicleLocationInfo next() {
+                if(lotNumber == -1) {
+                    throw new NoSuchElementException();
+                }
+                VehicleLocationInfo info = new VehicleLocationInfo(levels[level].get(lotNumber), level, lotNumber);
+                lotNumber = advance(level, lotNumber + 1);
+                return info;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Formats the snapshot like Garage.toString().
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Garage { parkingLevels=");
+        for(int level = 0; level < levels.length; level++) {
+            if(level > 0) {
+                sb.append(',');
+            }
+            LotVersions.Version version = levels[level];
+            sb.append("ParkingLevel{").
+                    append("level=").append(level).
+                    append(", totalNumberOfLots=").
+                    append(version.getTotalNumberOfLots()).
+                    append(", lotInfos={");
+            StringJoiner lotInfos = new StringJoiner(",");
+            for(int lotNumber = version.nextOccupied(0); lotNumber != -1; lotNumber = version.nextOccupied(lotNumber + 1)) {
+                Vehicle vehicle = version.get(lotNumber);
+                lotInfos.add("{\"" + vehicle.getIdentifier() + "\"/" + lotNumber + "}");
+            }
+            sb.append(lotInfos).append('}');
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+}
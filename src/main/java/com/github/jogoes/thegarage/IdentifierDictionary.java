@@ -0,0 +1,443 @@
+package com.github.jogoes.thegarage;
+
+import java.util.Arrays;
+
+/**
+ * Concurrent dictionary mapping vehicle identifiers to dense int handles, with a long value per handle.
+ *
+ * The garage uses it as its identifier index, the value being the packed location of the vehicle. Compared
+ * to a ConcurrentHashMap there is no node object per vehicle: a handle is an index into an array of entries,
+ * each holding an identifier and its value, and the handles and entries of vehicles which left are reused.
+ * Entering and exiting therefore doesn't allocate anything once the dictionary has grown to the size of the
+ * garage.
+ *
+ * A lookup hashes the identifier once and probes an int table in which every slot holds a handle tagged
+ * with 8 bits of the hash, so probing compares ints only. The identifier itself is only compared to confirm
+ * a matching tag, the value is read from the same entry.
+ *
+ * The dictionary is split into stripes by hash, every stripe has its own lock which is taken for adding and
+ * removing identifiers. Lookups and value updates don't lock anything. A lookup running concurrently with
+ * an update of the same identifier may see the old or the new state, it never sees the value of another
+ * identifier: the identifier of a handle is checked again after reading its value.
+ */
+final class IdentifierDictionary {
+
+    static final int NO_HANDLE = -1;
+
+    private static final int STRIPE_BITS = 4;
+    private static final int STRIPES = 1 << STRIPE_BITS;
+    private static final int STRIPE_MASK = STRIPES - 1;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    IdentifierDictionary() {
+        for(int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * @return A well mixed hash of the identifier, the lowest bits select the stripe.
+     */
+    private static int hash(String identifier) {
+        int hash = identifier.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private Stripe stripe(int hash) { return stripes[hash & STRIPE_MASK]; }
+
+    /**
+     * @return The number of identifiers in the dictionary.
+     */
+    int size() {
+        int size = 0;
+        for(Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    /**
+     * Grows the dictionary so the specified number of identifiers fit in without growing it step by step,
+     * used before adding a lot of identifiers at once.
+     */
+    void ensureCapacity(int expectedSize) {
+        // the hash spreads the identifiers evenly over the stripes, the margin covers the deviation
+        int perStripe = expectedSize / STRIPES + expectedSize / (STRIPES * 16) + 1;
+        for(Stripe stripe : stripes) {
+            stripe.ensureCapacity(perStripe);
+        }
+    }
+
+    /**
+     * @return The handle of the identifier, NO_HANDLE in case it isn't in the dictionary.
+     */
+    int find(String identifier) {
+        int hash = hash(identifier);
+        int local = stripe(hash).find(identifier, hash);
+        return local == NO_HANDLE ? NO_HANDLE : (local << STRIPE_BITS) | (hash & STRIPE_MASK);
+    }
+
+    /**
+     * @return The identifier of the handle, null in case the handle is unused.
+     */
+    String getIdentifier(int handle) {
+        return stripes[handle & STRIPE_MASK].identifier(handle >>> STRIPE_BITS);
+    }
+
+    /**
+     * @return The value of the identifier, the specified default value in case it isn't in the dictionary.
+     */
+    long get(String identifier, long defaultValue) {
+        int hash = hash(identifier);
+        return stripe(hash).get(identifier, hash, defaultValue);
+    }
+
+    /**
+     * Adds the identifier with the specified value.
+     *
+     * @return The handle of the added identifier, NO_HANDLE in case the identifier is already in the dictionary.
+     */
+    int putIfAbsent(String identifier, long value) {
+        int hash = hash(identifier);
+        int local = stripe(hash).putIfAbsent(identifier, hash, value);
+        return local == NO_HANDLE ? NO_HANDLE : (local << STRIPE_BITS) | (hash & STRIPE_MASK);
+    }
+
+    /**
+     * Adds several identifiers, the lock of every stripe is taken only once.
+     *
+     * @param identifiers The identifiers to add.
+     * @param values The value of each identifier at the same index.
+     * @param count The number of identifiers to add.
+     * @return The index of an identifier which was already in the dictionary, -1 in case all of them were added.
+     * In case of a duplicate none of the identifiers is kept, the ones added before it are removed again.
+     */
+    int putAllIfAbsent(String[] identifiers, long[] values, int count) {
+        // the identifiers are grouped by stripe with a counting sort
+        int[] hashes = new int[count];
+        int[] ends = new int[STRIPES + 1];
+        for(int index = 0; index < count; index++) {
+            hashes[index] = hash(identifiers[index]);
+            ends[(hashes[index] & STRIPE_MASK) + 1]++;
+        }
+        for(int stripe = 0; stripe < STRIPES; stripe++) {
+            ends[stripe + 1] += ends[stripe];
+        }
+        int[] indexes = new int[count];
+        int[] next = Arrays.copyOf(ends, STRIPES);
+        for(int index = 0; index < count; index++) {
+            indexes[next[hashes[index] & STRIPE_MASK]++] = index;
+        }
+        for(int stripe = 0; stripe < STRIPES; stripe++) {
+            int duplicate = stripes[stripe].putAllIfAbsent(identifiers, hashes, values, indexes, ends[stripe], ends[stripe + 1]);
+            if(duplicate != -1) {
+                for(int position = 0; indexes[position] != duplicate; position++) {
+                    int index = indexes[position];
+                    stripe(hashes[index]).remove(identifiers[index], hashes[index], values[index]);
+                }
+                return duplicate;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Changes the value of a handle. The caller must make sure the handle doesn't get removed concurrently.
+     */
+    void set(int handle, long value) {
+        stripes[handle & STRIPE_MASK].set(handle >>> STRIPE_BITS, value);
+    }
+
+    /**
+     * Changes the value of an identifier. The caller must make sure the identifier doesn't get removed concurrently.
+     *
+     * @return false in case the identifier isn't in the dictionary.
+     */
+    boolean set(String identifier, long value) {
+        int handle = find(identifier);
+        if(handle == NO_HANDLE) {
+            return false;
+        }
+        set(handle, value);
+        return true;
+    }
+
+    /**
+     * Removes the identifier in case it has the expected value.
+     *
+     * @return true in case the identifier was removed.
+     */
+    boolean remove(String identifier, long expectedValue) {
+        int hash = hash(identifier);
+        return stripe(hash).remove(identifier, hash, expectedValue);
+    }
+
+    /**
+     * The identifiers of one stripe. The entries are objects, growing the stripe only copies the references to
+     * them, so values can be changed without holding the lock while the stripe grows.
+     */
+    private static final class Stripe {
+
+        /**
+         * A used slot holds the topmost 8 bits of the hash as a tag and the local handle + 1 below it.
+         */
+        private static final int HANDLE_BITS = 24;
+        private static final int HANDLE_MASK = (1 << HANDLE_BITS) - 1;
+        private static final int MAX_HANDLES = HANDLE_MASK - 1;
+        private static final int EMPTY = 0;
+        private static final int DELETED = -1;
+
+        /**
+         * Value of an unused handle, written when a handle is freed so lookups notice.
+         */
+        private static final long FREE = Long.MIN_VALUE;
+
+        /**
+         * The identifier of a handle with its value next to it, so a hit finds both in one object.
+         * The identifier is only written while holding the lock, it is null while the handle is unused.
+         */
+        private static final class Entry {
+            String identifier;
+            volatile long value = FREE;
+        }
+
+        /**
+         * Open addressing table with linear probing, replaced as a whole when it is rebuilt.
+         */
+        private volatile int[] slots = new int[64];
+        /**
+         * The entries indexed by local handle, replaced by a longer copy when the stripe runs out of handles.
+         * Every element of a published array is set.
+         */
+        private volatile Entry[] entries = new Entry[0];
+
+        // only accessed while holding the lock of the stripe, except size which is read for statistics
+        private volatile int size;
+        private int deleted;
+        private int nextHandle;
+        private int[] freeHandles = new int[16];
+        private int numberOfFreeHandles;
+
+        private static int tag(int hash) { return hash & ~HANDLE_MASK; }
+
+        private static int firstSlot(int hash, int[] table) { return (hash >>> STRIPE_BITS) & (table.length - 1); }
+
+        private int find(String identifier, int hash) {
+            int[] table = slots;
+            Entry[] entries = this.entries;
+            int mask = table.length - 1;
+            int tag = tag(hash);
+            for(int index = firstSlot(hash, table), probes = 0; probes <= mask; index = (index + 1) & mask, probes++) {
+                int slot = table[index];
+                if(slot == EMPTY) {
+                    return NO_HANDLE;
+                }
+                int local = (slot & HANDLE_MASK) - 1;
+                // a slot written after the entries were read may refer to a handle beyond them
+                if(slot != DELETED && tag(slot) == tag && local < entries.length) {
+                    String candidate = entries[local].identifier;
+                    if(candidate == identifier || (candidate != null && candidate.equals(identifier))) {
+                        return local;
+                    }
+                }
+            }
+            return NO_HANDLE;
+        }
+
+        /**
+         * Probes like find(), but reads the value as soon as the identifier matched.
+         */
+        private long get(String identifier, int hash, long defaultValue) {
+            int[] table = slots;
+            Entry[] entries = this.entries;
+            int mask = table.length - 1;
+            int tag = tag(hash);
+            for(int index = firstSlot(hash, table), probes = 0; probes <= mask; index = (index + 1) & mask, probes++) {
+                int slot = table[index];
+                if(slot == EMPTY) {
+                    return defaultValue;
+                }
+                int local = (slot & HANDLE_MASK) - 1;
+                if(slot != DELETED && tag(slot) == tag && local < entries.length) {
+                    Entry entry = entries[local];
+                    String candidate = entry.identifier;
+                    if(candidate == identifier || (candidate != null && candidate.equals(identifier))) {
+                        long value = entry.value;
+                        // the handle might have been freed or reused in the meantime
+                        return value == FREE || entry.identifier != candidate ? defaultValue : value;
+                    }
+                }
+            }
+            return defaultValue;
+        }
+
+        private String identifier(int local) {
+            Entry[] entries = this.entries;
+            return local < entries.length ? entries[local].identifier : null;
+        }
+
+        private void set(int local, long value) {
+            entries[local].value = value;
+        }
+
+        private synchronized int putIfAbsent(String identifier, int hash, long value) {
+            int local = add(identifier, hash, value, size);
+            if(local != NO_HANDLE) {
+                // writing the volatile reference again publishes the new slot and handle to lock-free lookups
+                slots = slots;
+                size++;
+            }
+            return local;
+        }
+
+        /**
+         * Adds several identifiers while holding the lock once, they are published together.
+         *
+         * @param indexes The indexes of the identifiers to add, from 'from' to 'to'.
+         * @return The index of the first identifier which is already in the stripe, -1 in case all were added.
+         */
+        private synchronized int putAllIfAbsent(String[] identifiers, int[] hashes, long[] values, int[] indexes, int from, int to) {
+            int newSize = size;
+            try {
+                for(int position = from; position < to; position++) {
+                    int index = indexes[position];
+                    if(add(identifiers[index], hashes[index], values[index], newSize) == NO_HANDLE) {
+                        return index;
+                    }
+                    newSize++;
+                }
+                return -1;
+            } finally {
+                slots = slots;
+                size = newSize;
+            }
+        }
+
+        /**
+         * Adds an identifier without publishing it, must be called while holding the lock of the stripe.
+         *
+         * @param size The number of identifiers in the stripe, including the ones not published yet.
+         * @return The local handle of the identifier, NO_HANDLE in case it is already in the stripe.
+         */
+        private int add(String identifier, int hash, long value, int size) {
+            if(find(identifier, hash) != NO_HANDLE) {
+                return NO_HANDLE;
+            }
+            // at most two thirds of the slots are used or deleted
+            if((size + deleted + 1) * 3 > slots.length * 2) {
+                rebuild((size + 1) * 2 > slots.length ? slots.length * 2 : slots.length);
+            }
+
+            int local = numberOfFreeHandles > 0 ? freeHandles[--numberOfFreeHandles] : newHandle();
+            Entry entry = entries[local];
+            entry.identifier = identifier;
+            entry.value = value;
+
+            int[] table = slots;
+            int index = freeSlot(hash, table);
+            if(table[index] == DELETED) {
+                deleted--;
+            }
+            table[index] = tag(hash) | (local + 1);
+            return local;
+        }
+
+        private synchronized boolean remove(String identifier, int hash, long expectedValue) {
+            int[] table = slots;
+            int mask = table.length - 1;
+            int tag = tag(hash);
+            for(int index = firstSlot(hash, table), probes = 0; probes <= mask; index = (index + 1) & mask, probes++) {
+                int slot = table[index];
+                if(slot == EMPTY) {
+                    return false;
+                }
+                if(slot == DELETED || tag(slot) != tag) {
+                    continue;
+                }
+                int local = (slot & HANDLE_MASK) - 1;
+                Entry entry = entries[local];
+                if(entry.identifier.equals(identifier)) {
+                    if(entry.value != expectedValue) {
+                        return false;
+                    }
+                    // a tombstone keeps the probe sequences of the other identifiers intact for concurrent lookups
+                    table[index] = DELETED;
+                    deleted++;
+                    size--;
+                    entry.identifier = null;
+                    entry.value = FREE;
+                    if(numberOfFreeHandles == freeHandles.length) {
+                        freeHandles = Arrays.copyOf(freeHandles, freeHandles.length * 2);
+                    }
+                    freeHandles[numberOfFreeHandles++] = local;
+                    slots = table;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int freeSlot(int hash, int[] table) {
+            int mask = table.length - 1;
+            int index = firstSlot(hash, table);
+            while(table[index] != EMPTY && table[index] != DELETED) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private int newHandle() {
+            if(nextHandle == MAX_HANDLES) {
+                throw new IllegalStateException("Too many identifiers, a stripe holds at most " + MAX_HANDLES + ".");
+            }
+            int local = nextHandle++;
+            if(local == entries.length) {
+                growEntries(Math.max(16, local * 2));
+            }
+            return local;
+        }
+
+        /**
+         * Publishes a longer copy of the entries, the new elements get entries of their own.
+         */
+        private void growEntries(int length) {
+            Entry[] grown = Arrays.copyOf(entries, Math.min(length, MAX_HANDLES));
+            for(int local = entries.length; local < grown.length; local++) {
+                grown[local] = new Entry();
+            }
+            entries = grown;
+        }
+
+        private synchronized void ensureCapacity(int expectedSize) {
+            int length = slots.length;
+            while((long) expectedSize * 3 > (long) length * 2) {
+                length *= 2;
+            }
+            if(length > slots.length) {
+                rebuild(length);
+            }
+            if(expectedSize > entries.length) {
+                growEntries(expectedSize);
+            }
+        }
+
+        /**
+         * Builds a new table without tombstones, putIfAbsent() doubles the size in case it is more than half full.
+         */
+        private void rebuild(int length) {
+            int[] table = slots;
+            int[] rebuilt = new int[length];
+            for(int slot : table) {
+                if(slot != EMPTY && slot != DELETED) {
+                    int local = (slot & HANDLE_MASK) - 1;
+                    // only the tag of the hash is stored, the identifier caches its hash code though
+                    int hash = hash(entries[local].identifier);
+                    rebuilt[freeSlot(hash, rebuilt)] = slot;
+                }
+            }
+            deleted = 0;
+            slots = rebuilt;
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.jogoes.thegarage;
+
+import java.util.Arrays;
+
+/**
+ * Sorted index of the identifiers of the vehicles parked on a parking level, for looking up vehicles by the start
+ * of their identifier, see Garage.vehicleLocationInfosWithPrefix().
+ *
+ * The identifiers are kept in a sorted array next to their lot numbers, so a prefix is found with a binary search
+ * and its matches lie next to each other. Instead of shifting the large array on every change:
+ * - added identifiers go to a small sorted array of pending identifiers, which is merged into the large one
+ *   when it is full; its size grows with the square root of the number of identifiers, which keeps both the
+ *   shifting and the merging cheap on average
+ * - removed identifiers stay in the large array with the lot number -1 until the next merge
+ *
+ * Like the lot storage the index is not thread-safe, the parking level guards it with its own lock.
+ */
+class IdentifierPrefixIndex {
+
+    private static final int MIN_PENDING = 64;
+    private static final int REMOVED = -1;
+
+    private String[] ids = new String[0];
+    private int[] lots = new int[0];
+    private int size;
+    /**
+     * The number of removed identifiers still in the large array.
+     */
+    private int removed;
+
+    private String[] pendingIds = new String[MIN_PENDING];
+    private int[] pendingLots = new int[MIN_PENDING];
+    private int pendingSize;
+
+    /**
+     * @return The number of identifiers in the index.
+     */
+    int size() {
+        return size - removed + pendingSize;
+    }
+
+    void add(String id, int lotNumber) {
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if(index >= 0) {
+            // the vehicle was parked on the level before, it is still there as a removed identifier
+            if(lots[index] == REMOVED) {
+                removed--;
+            }
+            lots[index] = lotNumber;
+            return;
+        }
+        if(pendingSize == pendingIds.length) {
+            merge();
+        }
+        int position = -Arrays.binarySearch(pendingIds, 0, pendingSize, id) - 1;
+        System.arraycopy(pendingIds, position, pendingIds, position + 1, pendingSize - position);
+        System.arraycopy(pendingLots, position, pendingLots, position + 1, pendingSize - position);
+        pendingIds[position] = id;
+        pendingLots[position] = lotNumber;
+        pendingSize++;
+    }
+
+    /**
+     * Adds many identifiers in one go, with a single merge.
+     */
+    void addAll(String[] ids, int[] lotNumbers, int count) {
+        Integer[] order = new Integer[count];
+        for(int index = 0; index < count; index++) {
+            order[index] = index;
+        }
+        Arrays.sort(order, (first, second) -> ids[first].compareTo(ids[second]));
+        merge();
+        String[] sortedIds = new String[count];
+        int[] sortedLots = new int[count];
+        for(int index = 0; index < count; index++) {
+            sortedIds[index] = ids[order[index]];
+            sortedLots[index] = lotNumbers[order[index]];
+        }
+        merge(sortedIds, sortedLots, count);
+    }
+
+    void remove(String id) {
+        int position = Arrays.binarySearch(pendingIds, 0, pendingSize, id);
+        if(position >= 0) {
+            System.arraycopy(pendingIds, position + 1, pendingIds, position, pendingSize - position - 1);
+            System.arraycopy(pendingLots, position + 1, pendingLots, position, pendingSize - position - 1);
+            pendingIds[--pendingSize] = null;
+            return;
+        }
+        int index = Arrays.binarySearch(ids, 0, size, id);
+        if(index >= 0 && lots[index] != REMOVED) {
+            lots[index] = REMOVED;
+            removed++;
+            if(removed > MIN_PENDING && removed > size / 2) {
+                merge();
+            }
+        }
+    }
+
+    /**
+     * Copies the identifiers starting with the prefix and their lot numbers, in the order of the identifiers.
+     *
+     * @param prefix the start of the identifiers
+     * @param after only identifiers greater than this one are copied, null to start with the first match
+     * @param matchingIds receives the identifiers, the number of copied identifiers is limited by its length
+     * @param lotNumbers receives the lot numbers
+     * @return The number of copied identifiers, less than the length of the arrays in case there are no more.
+     */
+    int find(String prefix, String after, String[] matchingIds, int[] lotNumbers) {
+        String from = after == null ? prefix : after;
+        int index = lowerBound(ids, size, from, after != null);
+        int pending = lowerBound(pendingIds, pendingSize, from, after != null);
+        int copied = 0;
+        while(copied < matchingIds.length) {
+            String id;
+            int lotNumber;
+            if(pending < pendingSize && (index == size || pendingIds[pending].compareTo(ids[index]) < 0)) {
+                id = pendingIds[pending];
+                lotNumber = pendingLots[pending++];
+            } else if(index < size) {
+                id = ids[index];
+                lotNumber = lots[index++];
+            } else {
+                break;
+            }
+            if(!id.startsWith(prefix)) {
+                break;
+            }
+            if(lotNumber != REMOVED) {
+                matchingIds[copied] = id;
+                lotNumbers[copied++] = lotNumber;
+            }
+        }
+        return copied;
+    }
+
+    /**
+     * @return The index of the first identifier greater or equal (or greater, in case of exclusive) than the key.
+     */
+    private static int lowerBound(String[] ids, int size, String key, boolean exclusive) {
+        int index = Arrays.binarySearch(ids, 0, size, key);
+        if(index < 0) {
+            return -index - 1;
+        }
+        return exclusive ? index + 1 : index;
+    }
+
+    /**
+     * Merges the pending identifiers into the large array and drops the removed ones.
+     */
+    private void merge() {
+        String[] mergedIds = Arrays.copyOf(pendingIds, pendingSize);
+        int[] mergedLots = Arrays.copyOf(pendingLots, pendingSize);
+        Arrays.fill(pendingIds, 0, pendingSize, null);
+        pendingSize = 0;
+        merge(mergedIds, mergedLots, mergedIds.length);
+    }
+
+    private void merge(String[] addedIds, int[] addedLots, int count) {
+        int length = size - removed + count;
+        String[] mergedIds = new String[length];
+        int[] mergedLots = new int[length];
+        int index = 0;
+        int added = 0;
+        int merged = 0;
+        while(index < size || added < count) {
+            if(index < size && lots[index] == REMOVED) {
+                index++;
+            } else if(added < count && (index == size || addedIds[added].compareTo(ids[index]) < 0)) {
+                mergedIds[merged] = addedIds[added];
+                mergedLots[merged++] = addedLots[added++];
+            } else {
+                mergedIds[merged] = ids[index];
+                mergedLots[merged++] = lots[index++];
+            }
+        }
+        ids = mergedIds;
+        lots = mergedLots;
+        size = length;
+        removed = 0;
+        int pendingCapacity = Math.max(MIN_PENDING, 2 * (int) Math.sqrt(length));
+        if(pendingCapacity != pendingIds.length) {
+            pendingIds = new String[pendingCapacity];
+            pendingLots = new int[pendingCapacity];
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy spliterator over the vehicles of a range of parking levels whose identifier starts with a prefix,
+ * see Garage.vehicleLocationInfosWithPrefix(). The levels are looked up in their prefix index.
+ *
+ * Like VehicleLocationSpliterator the matches are fetched in small batches while holding the lock of the level,
+ * the next batch continues after the last identifier of the previous one. The iteration is weakly consistent.
+ */
+class IdentifierPrefixSpliterator implements Spliterator<VehicleLocationInfo> {
+
+    private static final int BATCH_SIZE = 128;
+
+    private final Garage garage;
+    private final String prefix;
+
+    /**
+     * The level to look at next and the last identifier returned on it, null in case there was none yet.
+     */
+    private int level;
+    private String after;
+    private final int lastLevel;
+
+    private String[] vehicleIds;
+    private Vehicle[] vehicles;
+    private int[] lotNumbers;
+    private int batchLevel;
+    private int batchPosition;
+    private int batchSize;
+
+    IdentifierPrefixSpliterator(Garage garage, String prefix, int level, int lastLevel) {
+        this.garage = garage;
+        this.prefix = prefix;
+        this.level = level;
+        this.lastLevel = lastLevel;
+    }
+
+    /**
+     * Fetches the next batch of matches.
+     *
+     * @return false in case there are no matches left.
+     */
+    private boolean fetch() {
+        if(vehicles == null) {
+            vehicleIds = new String[BATCH_SIZE];
+            vehicles = new Vehicle[BATCH_SIZE];
+            lotNumbers = new int[BATCH_SIZE];
+        }
+        while(level <= lastLevel) {
+            int fetched = garage.getParkingLevel(level).findByPrefix(prefix, after, vehicleIds, vehicles, lotNumbers);
+            if(fetched > 0) {
+                batchLevel = level;
+                batchPosition = 0;
+                batchSize = fetched;
+                if(fetched == BATCH_SIZE) {
+                    after = vehicleIds[fetched - 1];
+                } else {
+                    level++;
+                    after = null;
+                }
+                return true;
+            }
+            level++;
+            after = null;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super VehicleLocationInfo> action) {
+        if(batchPosition == batchSize && !fetch()) {
+            return false;
+        }
+        int position = batchPosition++;
+        Vehicle vehicle = vehicles[position];
+        vehicles[position] = null;
+        action.accept(new VehicleLocationInfo(vehicle, batchLevel, lotNumbers[position]));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super VehicleLocationInfo> action) {
+        while(batchPosition < batchSize || fetch()) {
+            for(; batchPosition < batchSize; batchPosition++) {
+                Vehicle vehicle = vehicles[batchPosition];
+                vehicles[batchPosition] = null;
+                action.accept(new VehicleLocationInfo(vehicle, batchLevel, lotNumbers[batchPosition]));
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<VehicleLocationInfo> trySplit() {
+        if(batchPosition < batchSize || level >= lastLevel) {
+            return null;
+        }
+        // the prefix takes the lower half of the levels
+        int middle = (level + lastLevel + 1) >>> 1;
+        IdentifierPrefixSpliterator prefixSpliterator = new IdentifierPrefixSpliterator(garage, prefix, level, middle - 1);
+        prefixSpliterator.after = after;
+        level = middle;
+        after = null;
+        return prefixSpliterator;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | CONCURRENT;
+    }
+}
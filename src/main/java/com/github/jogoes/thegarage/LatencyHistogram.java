@@ -0,0 +1,105 @@
+package com.github.jogoes.thegarage;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size histogram of latencies in nanoseconds with logarithmic buckets.
+ *
+ * Every power of two is split into 16 linear sub-buckets, so a recorded value is reported with an error of
+ * at most 1/16 (6.25%). The whole range of long values fits into 976 buckets, about 8 KB, and recording a
+ * value is a few atomic increments without any allocation. The histogram can be recorded into and read by
+ * any number of threads at the same time, readers see each bucket up to date but not necessarily all buckets
+ * at the same instant. The count, sum and maximum are striped adders, so the gate threads recording at the
+ * same time don't contend on them.
+ */
+class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUMBER_OF_BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(NUMBER_OF_BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency, negative values are recorded as 0.
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    static int bucketIndex(long value) {
+        if(value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * @return The largest value falling into the specified bucket.
+     */
+    static long highestValueOf(int bucketIndex) {
+        if(bucketIndex < SUB_BUCKETS) {
+            return bucketIndex;
+        }
+        int exponent = bucketIndex / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucketIndex % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS);
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    long getCount() { return count.sum(); }
+
+    long getMax() { return max.get(); }
+
+    double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * @param percentile the percentile between 0 and 100
+     * @return The value below which the specified percentage of the recorded values falls, rounded up to the
+     * end of its bucket, 0 in case nothing was recorded.
+     */
+    long getPercentile(double percentile) {
+        if(percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100.");
+        }
+        long total = 0;
+        long[] counts = new long[NUMBER_OF_BUCKETS];
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            seen += counts[i];
+            if(seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Clears the histogram, values recorded concurrently may or may not survive.
+     */
+    void reset() {
+        for(int i = 0; i < NUMBER_OF_BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Summary of the latencies of one kind of garage operation, all values in nanoseconds.
+ */
+public class LatencySnapshot {
+
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p90;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    LatencySnapshot(LatencyHistogram histogram) {
+        this.count = histogram.getCount();
+        this.mean = histogram.getMean();
+        this.p50 = histogram.getPercentile(50);
+        this.p90 = histogram.getPercentile(90);
+        this.p99 = histogram.getPercentile(99);
+        this.p999 = histogram.getPercentile(99.9);
+        this.max = histogram.getMax();
+    }
+
+    public long getCount() { return count; }
+    public double getMean() { return mean; }
+    public long getP50() { return p50; }
+    public long getP90() { return p90; }
+    public long getP99() { return p99; }
+    public long getP999() { return p999; }
+    public long getMax() { return max; }
+
+    @Override
+    public String toString() {
+        return "LatencySnapshot{" +
+                "count=" + count +
+                ", mean=" + mean +
+                ", p50=" + p50 +
+                ", p90=" + p90 +
+                ", p99=" + p99 +
+                ", p999=" + p999 +
+                ", max=" + max +
+                '}';
+    }
+}
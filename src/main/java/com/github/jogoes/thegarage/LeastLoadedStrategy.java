@@ -0,0 +1,121 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Motorbike;
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Takes the level with the most room for the entering vehicle, the lowest one if several levels have the same
+ * amount: the most free lots for a motorbike, the most free car bays for a car.
+ *
+ * The levels are kept in a tournament tree per kind of vehicle: every leaf holds the room of a level, every
+ * inner node the winner of its two children, so the root is the level with the most room. Selecting a level
+ * reads the root, a change on a level replays the O(log levels) matches on the path to the root.
+ *
+ * Changes on different levels happen concurrently. A node is refreshed by reading both children and
+ * swapping in the winner with a compare-and-set. Every node on the path is refreshed twice: in case both
+ * compare-and-sets fail, another thread refreshed the node after our child had been written, so the node
+ * doesn't miss our change either way.
+ *
+ * Adding levels replaces the trees by ones with twice as many leaves in case they don't fit anymore. A change
+ * racing with that may still go to the old trees, the garage reports every level again afterwards.
+ */
+class LeastLoadedStrategy implements AllocationStrategy {
+
+    /**
+     * Leaf value of the unused leaves, loses every match.
+     */
+    private static final long NO_LEVEL = Long.MIN_VALUE;
+
+    /**
+     * Indexes of the trees ranking the levels by free lots and by free car bays.
+     */
+    private static final int MOTORBIKE_TREE = 0;
+    private static final int CAR_TREE = 1;
+
+    /**
+     * The nodes of the trees, the root is at index 1 and the children of node i are at 2i and 2i+1.
+     * A node holds the room of the winning level in the upper half and the complement of the level in
+     * the lower half, so comparing two nodes prefers the lower level on a tie.
+     * The leaves are the second half of the array.
+     */
+    private volatile AtomicLongArray[] trees;
+
+    @Override
+    public void initialize(int numberOfLevels) {
+        if(trees != null) {
+            throw new IllegalStateException("The strategy is already used by another garage.");
+        }
+        trees = new AtomicLongArray[] { newTree(numberOfLevels), newTree(numberOfLevels) };
+    }
+
+    private static AtomicLongArray newTree(int numberOfLevels) {
+        int numberOfLeaves = Integer.highestOneBit(Math.max(numberOfLevels, 1));
+        if(numberOfLeaves < numberOfLevels) {
+            numberOfLeaves <<= 1;
+        }
+        AtomicLongArray tree = new AtomicLongArray(2 * numberOfLeaves);
+        for(int node = 1; node < tree.length(); node++) {
+            tree.set(node, NO_LEVEL);
+        }
+        return tree;
+    }
+
+    @Override
+    public void levelsAdded(int numberOfLevels) {
+        AtomicLongArray[] current = trees;
+        if(numberOfLevels <= current[MOTORBIKE_TREE].length() / 2) {
+            return;
+        }
+        trees = new AtomicLongArray[] { grow(current[MOTORBIKE_TREE], numberOfLevels), grow(current[CAR_TREE], numberOfLevels) };
+    }
+
+    private static AtomicLongArray grow(AtomicLongArray current, int numberOfLevels) {
+        int numberOfLeaves = current.length() / 2;
+        AtomicLongArray grown = newTree(Math.max(numberOfLevels, 2 * numberOfLeaves));
+        int grownLeaves = grown.length() / 2;
+        for(int level = 0; level < numberOfLeaves; level++) {
+            grown.set(grownLeaves + level, current.get(numberOfLeaves + level));
+        }
+        for(int node = grownLeaves - 1; node > 0; node--) {
+            grown.set(node, Math.max(grown.get(2 * node), grown.get(2 * node + 1)));
+        }
+        return grown;
+    }
+
+    @Override
+    public void levelChanged(int level, int numberOfFreeLots, int numberOfFreeCarBays) {
+        AtomicLongArray[] trees = this.trees;
+        update(trees[MOTORBIKE_TREE], level, numberOfFreeLots);
+        update(trees[CAR_TREE], level, numberOfFreeCarBays);
+    }
+
+    private static void update(AtomicLongArray tree, int level, int room) {
+        int node = tree.length() / 2 + level;
+        tree.set(node, ((long) room << 32) | (~level & 0xFFFFFFFFL));
+        for(node >>>= 1; node > 0; node >>>= 1) {
+            refresh(tree, node);
+            refresh(tree, node);
+        }
+    }
+
+    private static void refresh(AtomicLongArray tree, int node) {
+        long current = tree.get(node);
+        long winner = Math.max(tree.get(2 * node), tree.get(2 * node + 1));
+        if(current != winner) {
+            tree.compareAndSet(node, current, winner);
+        }
+    }
+
+    @Override
+    public int selectLevel(Vehicle vehicle, int gateLevel, FreeLevels freeLevels) {
+        long winner = trees[vehicle instanceof Motorbike ? MOTORBIKE_TREE : CAR_TREE].get(1);
+        int level = ~(int) winner;
+        if(winner != NO_LEVEL && (winner >>> 32) > 0 && freeLevels.hasFreeLots(level)) {
+            return level;
+        }
+        // the view of the tree is outdated, the level filled up in the meantime
+        return freeLevels.nextLevelWithFreeLots(0);
+    }
+}
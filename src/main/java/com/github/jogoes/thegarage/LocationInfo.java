@@ -2,11 +2,19 @@ package com.github.jogoes.thegarage;
 
 /**
  * Container used to identify a specific location in com github.
+ *
+ * Location infos are immutable and interned by the parking levels. For lookups which must not allocate
+ * anything a location can also be packed into a single long, see Garage.locate().
  */
 public class LocationInfo {
 
-    private int parkingLevel;
-    private int lotNumber;
+    /**
+     * Packed location returned in case a vehicle couldn't be found.
+     */
+    public static final long NOT_FOUND = -1L;
+
+    private final int parkingLevel;
+    private final int lotNumber;
 
     public int getParkingLevel() { return parkingLevel; }
     public int getLotNumber() { return lotNumber; }
@@ -19,6 +27,23 @@ public class LocationInfo {
         this.lotNumber = lotNumber;
     }
 
+    /**
+     * @return A location packed into a long, the parking level in the upper and the lot number in the lower 32 bits.
+     */
+    public static long pack(int parkingLevel, int lotNumber) {
+        return ((long) parkingLevel << 32) | (lotNumber & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @return The parking level of a packed location.
+     */
+    public static int unpackParkingLevel(long location) { return (int) (location >>> 32); }
+
+    /**
+     * @return The lot number of a packed location.
+     */
+    public static int unpackLotNumber(long location) { return (int) location; }
+
     @Override
     public String toString() {
         return "LocationInfo{" +
@@ -0,0 +1,55 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Keeps track of the free lots on a parking level and hands them out.
+ *
+ * Implementations must always return the lowest free lot number first, the parking level
+ * and its tests rely on that order.
+ */
+interface LotAllocator {
+
+    /**
+     * @return The total number of lots managed by this allocator.
+     */
+    int getCapacity();
+
+    /**
+     * @return The current number of free lots.
+     */
+    int getNumberOfFreeLots();
+
+    /**
+     * Takes the lowest free lot and marks it as occupied.
+     *
+     * @return The lot number, -1 in case there is no free lot left.
+     */
+    int allocate();
+
+    /**
+     * Marks the specified lot as occupied.
+     *
+     * @param lotNumber The lot to occupy.
+     * @return true in case the lot was free before, else false.
+     */
+    boolean claim(int lotNumber);
+
+    /**
+     * Marks the specified lot as free again.
+     *
+     * @param lotNumber The lot to free.
+     */
+    void release(int lotNumber);
+
+    /**
+     * @return true in case the specified lot is free, else false.
+     */
+    boolean isFree(int lotNumber);
+
+    /**
+     * Changes the number of managed lots, added lots are free.
+     *
+     * @param capacity The new number of lots.
+     * @exception java.lang.IllegalStateException in case one of the removed lots isn't free
+     */
+    void resize(int capacity);
+}
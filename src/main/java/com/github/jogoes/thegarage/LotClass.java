@@ -0,0 +1,23 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * The kinds of lots a parking level can provide.
+ */
+public enum LotClass {
+
+    /**
+     * Regular bays holding one car or, if nothing else is free, one motorbike.
+     */
+    CAR,
+
+    /**
+     * Small bays only motorbikes fit into.
+     */
+    MOTORBIKE,
+
+    /**
+     * Car bays which hold either one car or several motorbikes. Every motorbike position of a shared bay
+     * is a lot of its own, a car parked in a shared bay occupies all of them.
+     */
+    SHARED
+}
@@ -0,0 +1,96 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Describes how many lots of each lot class a parking level has.
+ *
+ * The lot numbers of a parking level are assigned class by class: the car bays come first, followed by the
+ * motorbike bays and the lots of the shared bays. A level with car bays only therefore numbers its lots
+ * just like before lot classes existed.
+ */
+final class LotLayout {
+
+    private final int carBays;
+    private final int motorbikeBays;
+    private final int sharedBays;
+    private final int motorbikesPerSharedBay;
+
+    /**
+     * @param carBays the number of car bays
+     * @param motorbikeBays the number of motorbike bays
+     * @param sharedBays the number of shared bays
+     * @param motorbikesPerSharedBay the number of motorbikes fitting into a shared bay
+     */
+    LotLayout(int carBays, int motorbikeBays, int sharedBays, int motorbikesPerSharedBay) {
+        if(carBays < 0 || motorbikeBays < 0 || sharedBays < 0) {
+            throw new IllegalArgumentException("The number of bays must be greater or equal than 0.");
+        }
+        if(motorbikesPerSharedBay <= 0) {
+            throw new IllegalArgumentException("The number of motorbikes per shared bay must be greater than 0.");
+        }
+        if((long) carBays + motorbikeBays + (long) sharedBays * motorbikesPerSharedBay > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("A parking level can't have more than " + Integer.MAX_VALUE + " lots.");
+        }
+        this.carBays = carBays;
+        this.motorbikeBays = motorbikeBays;
+        this.sharedBays = sharedBays;
+        this.motorbikesPerSharedBay = motorbikesPerSharedBay;
+    }
+
+    /**
+     * @return A layout with the specified number of car bays and nothing else.
+     */
+    static LotLayout carBaysOnly(int carBays) {
+        return new LotLayout(carBays, 0, 0, 1);
+    }
+
+    int getNumberOfCarBays() { return carBays; }
+    int getNumberOfMotorbikeBays() { return motorbikeBays; }
+    int getNumberOfSharedBays() { return sharedBays; }
+    int getMotorbikesPerSharedBay() { return motorbikesPerSharedBay; }
+
+    /**
+     * @return The number of lots of the specified class, a shared bay counts as one lot per motorbike.
+     */
+    int getNumberOfLots(LotClass lotClass) {
+        switch(lotClass) {
+            case CAR: return carBays;
+            case MOTORBIKE: return motorbikeBays;
+            default: return sharedBays * motorbikesPerSharedBay;
+        }
+    }
+
+    /**
+     * @return The lot number of the first lot of the specified class.
+     */
+    int getFirstLot(LotClass lotClass) {
+        switch(lotClass) {
+            case CAR: return 0;
+            case MOTORBIKE: return carBays;
+            default: return carBays + motorbikeBays;
+        }
+    }
+
+    int getTotalNumberOfLots() {
+        return carBays + motorbikeBays + sharedBays * motorbikesPerSharedBay;
+    }
+
+    /**
+     * @return The class of the specified lot.
+     */
+    LotClass getLotClass(int lotNumber) {
+        if(lotNumber < carBays) {
+            return LotClass.CAR;
+        }
+        return lotNumber < carBays + motorbikeBays ? LotClass.MOTORBIKE : LotClass.SHARED;
+    }
+
+    @Override
+    public String toString() {
+        return "LotLayout{" +
+                "carBays=" + carBays +
+                ", motorbikeBays=" + motorbikeBays +
+                ", sharedBays=" + sharedBays +
+                ", motorbikesPerSharedBay=" + motorbikesPerSharedBay +
+                '}';
+    }
+}
@@ -0,0 +1,250 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.Arrays;
+
+/**
+ * The vehicles parked on a parking level, addressed by lot number, with a copy-on-write history of them and of the
+ * counters of the level. The current version is the lot storage of the level, garage snapshots keep older ones.
+ *
+ * The vehicles are kept in chunks of CHUNK_SIZE lots. Every version belongs to the snapshot epoch it was
+ * written in. The first write of a newer epoch copies the table of chunks, and every chunk is copied the first
+ * time it is written within the epoch. So writes pay for copying a chunk at most once per snapshot, and a
+ * version doesn't change anymore once a newer epoch started and the writers of its own epoch are done.
+ *
+ * Writes are done while holding the lock of the parking level, every operation on the level starts with beginWrite().
+ * A snapshot passes through the same lock once after starting a new epoch, see ParkingLevel.getVersion(). So
+ * the writes of its own epoch are done by then, and the writes don't need any memory fences of their own.
+ */
+final class LotVersions {
+
+    private static final int CHUNK_SHIFT = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    /**
+     * The state of a parking level as of an epoch.
+     */
+    static final class Version {
+
+        final long epoch;
+        final LotLayout layout;
+        /**
+         * The vehicles in chunks of CHUNK_SIZE lots, a chunk no vehicle was ever parked in is null.
+         */
+        private final Vehicle[][] chunks;
+        /**
+         * One bit per chunk, set for the chunks copied for this version which may be changed in place.
+         */
+        private final long[] ownedChunks;
+
+        private int numberOfOccupiedLots;
+        private int numberOfReservedLots;
+        private int numberOfLotsOutOfService;
+        private final int[] occupiedLotsPerClass;
+        private final int[] reservedLotsPerClass;
+        private final int[] lotsOutOfServicePerClass;
+
+        /**
+         * The version this one was copied from, only kept as long as a snapshot might still need it.
+         */
+        private Version previous;
+
+        private Version(long epoch, LotLayout layout, Vehicle[][] chunks, int[] occupiedLotsPerClass, int[] reservedLotsPerClass, int[] lotsOutOfServicePerClass) {
+            this.epoch = epoch;
+            this.layout = layout;
+            this.chunks = chunks;
+            this.ownedChunks = new long[(chunks.length + 63) >>> 6];
+            this.occupiedLotsPerClass = occupiedLotsPerClass;
+            this.reservedLotsPerClass = reservedLotsPerClass;
+            this.lotsOutOfServicePerClass = lotsOutOfServicePerClass;
+        }
+
+        /**
+         * @return A copy of this version with another layout and table of chunks, the counters are copied.
+         */
+        private Version copy(long epoch, LotLayout layout, Vehicle[][] chunks) {
+            Version copy = new Version(epoch, layout, chunks, occupiedLotsPerClass.clone(), reservedLotsPerClass.clone(), lotsOutOfServicePerClass.clone());
+            copy.numberOfOccupiedLots = numberOfOccupiedLots;
+            copy.numberOfReservedLots = numberOfReservedLots;
+            copy.numberOfLotsOutOfService = numberOfLotsOutOfService;
+            return copy;
+        }
+
+        int getTotalNumberOfLots() { return layout.getTotalNumberOfLots(); }
+        int getNumberOfOccupiedLots() { return numberOfOccupiedLots; }
+        int getNumberOfReservedLots() { return numberOfReservedLots; }
+        int getNumberOfLotsOutOfService() { return numberOfLotsOutOfService; }
+        int getNumberOfOccupiedLots(LotClass lotClass) { return occupiedLotsPerClass[lotClass.ordinal()]; }
+        int getNumberOfReservedLots(LotClass lotClass) { return reservedLotsPerClass[lotClass.ordinal()]; }
+        int getNumberOfLotsOutOfService(LotClass lotClass) { return lotsOutOfServicePerClass[lotClass.ordinal()]; }
+
+        /**
+         * @return The vehicle parked on the specified lot, null in case the lot is free.
+         */
+        Vehicle get(int lotNumber) {
+            Vehicle[] chunk = chunks[lotNumber >>> CHUNK_SHIFT];
+            return chunk != null ? chunk[lotNumber & CHUNK_MASK] : null;
+        }
+
+        /**
+         * @return The first occupied lot greater or equal than the specified lot, -1 in case there is none.
+         */
+        int nextOccupied(int fromLotNumber) {
+            int totalNumberOfLots = getTotalNumberOfLots();
+            for(int lotNumber = fromLotNumber; lotNumber < totalNumberOfLots; ) {
+                Vehicle[] chunk = chunks[lotNumber >>> CHUNK_SHIFT];
+                if(chunk == null) {
+                    lotNumber = (lotNumber | CHUNK_MASK) + 1;
+                    continue;
+                }
+                if(chunk[lotNumber & CHUNK_MASK] != null) {
+                    return lotNumber;
+                }
+                lotNumber++;
+            }
+            return -1;
+        }
+
+        /**
+         * @return The lot of the vehicle with the specified id, -1 in case it isn't parked on the level.
+         */
+        int find(String vehicleId) {
+            for(int index = 0; index < chunks.length; index++) {
+                Vehicle[] chunk = chunks[index];
+                if(chunk == null) {
+                    continue;
+                }
+                for(int offset = 0; offset < CHUNK_SIZE; offset++) {
+                    if(chunk[offset] != null && chunk[offset].getIdentifier().equals(vehicleId)) {
+                        return (index << CHUNK_SHIFT) + offset;
+                    }
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final SnapshotEpoch snapshotEpoch;
+    /**
+     * Whether the chunks of all lots are allocated up front, see StorageMode.ARRAY. Otherwise a chunk is allocated
+     * when the first vehicle parks in it.
+     */
+    private final boolean allocateAllChunks;
+    private volatile Version current;
+
+    LotVersions(LotLayout layout, SnapshotEpoch snapshotEpoch, StorageMode storageMode) {
+        int numberOfClasses = LotClass.values().length;
+        this.snapshotEpoch = snapshotEpoch;
+        this.allocateAllChunks = storageMode == StorageMode.ARRAY;
+        Version version = new Version(snapshotEpoch.get(), layout, new Vehicle[numberOfChunks(layout)][], new int[numberOfClasses], new int[numberOfClasses], new int[numberOfClasses]);
+        allocateChunks(version, 0);
+        this.current = version;
+    }
+
+    private static int numberOfChunks(LotLayout layout) {
+        return (int) (((long) layout.getTotalNumberOfLots() + CHUNK_MASK) >>> CHUNK_SHIFT);
+    }
+
+    /**
+     * Helper function used to allocate the chunks from the specified index on, owned by the version, in case all
+     * chunks are allocated up front.
+     */
+    private void allocateChunks(Version version, int fromIndex) {
+        if(allocateAllChunks) {
+            for(int index = fromIndex; index < version.chunks.length; index++) {
+                version.chunks[index] = new Vehicle[CHUNK_SIZE];
+                version.ownedChunks[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+
+    /**
+     * @return The current version, to be read while holding the lock of the parking level.
+     */
+    Version current() { return current; }
+
+    /**
+     * Starts a write, creates a new version in case a snapshot was taken since the last write.
+     */
+    void beginWrite() {
+        long epoch = snapshotEpoch.get();
+        Version version = current;
+        if(version.epoch < epoch) {
+            Version copy = version.copy(epoch, version.layout, version.chunks.clone());
+            copy.previous = version;
+            if(!snapshotEpoch.isOlderVersionNeeded(version.epoch)) {
+                version.previous = null;
+            }
+            current = copy;
+        }
+    }
+
+    /**
+     * Changes the layout of the level, called after beginWrite(). The lots which are added or removed must be free.
+     *
+     * The current version belongs to the epoch of the write, no snapshot has seen it yet. It is replaced by a version
+     * with the new layout, which shares the chunks: the ones it owned stay owned, since the replaced version is dropped.
+     */
+    void resize(LotLayout layout) {
+        Version version = current;
+        int numberOfChunks = numberOfChunks(layout);
+        Version resized = version.copy(version.epoch, layout, Arrays.copyOf(version.chunks, numberOfChunks));
+        for(int index = 0; index < Math.min(numberOfChunks, version.chunks.length); index++) {
+            resized.ownedChunks[index >>> 6] |= version.ownedChunks[index >>> 6] & (1L << index);
+        }
+        allocateChunks(resized, version.chunks.length);
+        resized.previous = version.previous;
+        current = resized;
+    }
+
+    /**
+     * Stores the vehicle parked on a lot, null in case the lot was freed.
+     */
+    void put(int lotNumber, Vehicle vehicle) {
+        Version version = current;
+        int index = lotNumber >>> CHUNK_SHIFT;
+        if((version.ownedChunks[index >>> 6] & (1L << index)) == 0) {
+            Vehicle[] chunk = version.chunks[index];
+            version.chunks[index] = chunk != null ? chunk.clone() : new Vehicle[CHUNK_SIZE];
+            version.ownedChunks[index >>> 6] |= 1L << index;
+        }
+        version.chunks[index][lotNumber & CHUNK_MASK] = vehicle;
+    }
+
+    /**
+     * Helper functions used to follow the counters of the parking level.
+     */
+    void addOccupiedLots(LotClass lotClass, int numberOfLots) {
+        Version version = current;
+        version.numberOfOccupiedLots += numberOfLots;
+        version.occupiedLotsPerClass[lotClass.ordinal()] += numberOfLots;
+    }
+
+    void addReservedLots(LotClass lotClass, int numberOfLots) {
+        Version version = current;
+        version.numberOfReservedLots += numberOfLots;
+        version.reservedLotsPerClass[lotClass.ordinal()] += numberOfLots;
+    }
+
+    void addLotsOutOfService(LotClass lotClass, int numberOfLots) {
+        Version version = current;
+        version.numberOfLotsOutOfService += numberOfLots;
+        version.lotsOutOfServicePerClass[lotClass.ordinal()] += numberOfLots;
+    }
+
+    /**
+     * Called while holding the lock of the parking level, after the next epoch was started.
+     *
+     * @return The version of the specified epoch.
+     */
+    Version get(long epoch) {
+        // writers which passed the lock after the epoch was started might have created newer versions
+        Version version = current;
+        while(version.epoch > epoch) {
+            version = version.previous;
+        }
+        return version;
+    }
+}
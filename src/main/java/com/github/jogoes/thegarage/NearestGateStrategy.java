@@ -0,0 +1,22 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * Takes the level with room closest to the level of the entry gate, the upper one if two are equally close.
+ */
+class NearestGateStrategy implements AllocationStrategy {
+
+    @Override
+    public void initialize(int numberOfLevels) {}
+
+    @Override
+    public int selectLevel(Vehicle vehicle, int gateLevel, FreeLevels freeLevels) {
+        int up = freeLevels.nextLevelWithFreeLots(gateLevel);
+        int down = freeLevels.previousLevelWithFreeLots(gateLevel);
+        if(up == -1 || down == -1) {
+            return up == -1 ? down : up;
+        }
+        return up - gateLevel <= gateLevel - down ? up : down;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * Receives occupancy events polled from an OccupancyEventStream subscription.
+ */
+public interface OccupancyEventHandler {
+
+    /**
+     * @param type whether the vehicle entered or exited
+     * @param vehicle the vehicle
+     * @param parkingLevel the parking level of the lot
+     * @param lotNumber the lot the vehicle entered or exited
+     * @param timestamp the time of the event in milliseconds since the epoch
+     * @param endOfBatch true for the last event handed out by the current poll() call
+     */
+    void onEvent(OccupancyEventStream.EventType type, Vehicle vehicle, int parkingLevel, int lotNumber, long timestamp, boolean endOfBatch);
+}
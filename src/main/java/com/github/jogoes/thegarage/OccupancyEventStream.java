@@ -0,0 +1,193 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Publishes the enter and exit events of a garage to any number of subscribers through a preallocated ring buffer.
+ *
+ * Usage:
+ *   OccupancyEventStream stream = new OccupancyEventStream(64 * 1024);
+ *   garage.addListener(stream);
+ *   OccupancyEventStream.Subscription subscription = stream.subscribe();
+ *   ...
+ *   subscription.poll(handler, 256);
+ *
+ * Publishing doesn't allocate anything and never waits for subscribers: the ring buffer simply overwrites the
+ * oldest events. A subscriber which falls behind by more than the capacity of the ring loses the overwritten
+ * events, it notices that and counts them as dropped.
+ *
+ * Every slot carries the sequence number of the event stored in it. A publisher invalidates the slot, writes the
+ * event and then stores its sequence number. A subscriber reads the sequence number, the event and the sequence
+ * number again, if both match the expected sequence the event wasn't overwritten while reading it.
+ */
+public class OccupancyEventStream implements GarageListener {
+
+    public enum EventType { ENTER, EXIT }
+
+    private static final EventType[] EVENT_TYPES = EventType.values();
+    private static final long IN_PROGRESS = -1L;
+
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicIntegerArray types;
+    private final AtomicReferenceArray<Vehicle> vehicles;
+    private final AtomicLongArray locations;
+    private final AtomicLongArray timestamps;
+    private final LongSupplier clock;
+
+    /**
+     * The sequence number of the next event to publish.
+     */
+    private final AtomicLong cursor = new AtomicLong();
+
+    /**
+     * @param capacity the number of events kept in the ring, rounded up to the next power of two
+     */
+    public OccupancyEventStream(int capacity) {
+        this(capacity, System::currentTimeMillis);
+    }
+
+    OccupancyEventStream(int capacity, LongSupplier clock) {
+        if(capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30.");
+        }
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        this.types = new AtomicIntegerArray(size);
+        this.vehicles = new AtomicReferenceArray<>(size);
+        this.locations = new AtomicLongArray(size);
+        this.timestamps = new AtomicLongArray(size);
+        this.clock = clock;
+
+        for(int i = 0; i < size; i++) {
+            sequences.set(i, IN_PROGRESS);
+        }
+    }
+
+    /**
+     * @return The number of events the ring can hold.
+     */
+    public int getCapacity() { return mask + 1; }
+
+    /**
+     * @return The number of events published so far.
+     */
+    public long getNumberOfPublishedEvents() { return cursor.get(); }
+
+    @Override
+    public void vehicleEntered(Vehicle vehicle, int parkingLevel, int lotNumber) {
+        publish(EventType.ENTER, vehicle, parkingLevel, lotNumber);
+    }
+
+    @Override
+    public void vehicleExited(Vehicle vehicle, int parkingLevel, int lotNumber) {
+        publish(EventType.EXIT, vehicle, parkingLevel, lotNumber);
+    }
+
+    private void publish(EventType type, Vehicle vehicle, int parkingLevel, int lotNumber) {
+        long sequence = cursor.getAndIncrement();
+        int slot = (int) sequence & mask;
+
+        sequences.set(slot, IN_PROGRESS);
+        types.lazySet(slot, type.ordinal());
+        vehicles.lazySet(slot, vehicle);
+        locations.lazySet(slot, LocationInfo.pack(parkingLevel, lotNumber));
+        timestamps.lazySet(slot, clock.getAsLong());
+        sequences.lazySet(slot, sequence);
+    }
+
+    /**
+     * @return A new subscription which receives all events published from now on.
+     */
+    public Subscription subscribe() {
+        return new Subscription(cursor.get());
+    }
+
+    /**
+     * A subscriber's position in the stream. A subscription must only be polled by one thread at a time.
+     */
+    public class Subscription {
+
+        private long nextSequence;
+        private long numberOfDroppedEvents;
+
+        private Subscription(long nextSequence) {
+            this.nextSequence = nextSequence;
+        }
+
+        /**
+         * @return The number of events this subscription lost because it fell behind.
+         */
+        public long getNumberOfDroppedEvents() { return numberOfDroppedEvents; }
+
+        /**
+         * @return The number of published events not yet polled by this subscription.
+         */
+        public long getLag() { return Math.max(0, cursor.get() - nextSequence); }
+
+        /**
+         * Hands the available events to the handler, in the order in which they were published.
+         *
+         * @param handler receives the events
+         * @param maxEvents the maximum number of events to hand out in this call
+         * @return The number of events handed out.
+         */
+        public int poll(OccupancyEventHandler handler, int maxEvents) {
+
+            int polled = 0;
+            while(polled < maxEvents) {
+                long sequence = nextSequence;
+                int slot = (int) sequence & mask;
+
+                long published = sequences.get(slot);
+                if(published < sequence) {
+                    // not yet published, or still being written
+                    break;
+                }
+                if(published > sequence) {
+                    skipOverwrittenEvents();
+                    continue;
+                }
+
+                int type = types.get(slot);
+                Vehicle vehicle = vehicles.get(slot);
+                long location = locations.get(slot);
+                long timestamp = timestamps.get(slot);
+
+                if(sequences.get(slot) != sequence) {
+                    // overwritten while we were reading it
+                    skipOverwrittenEvents();
+                    continue;
+                }
+
+                nextSequence = sequence + 1;
+                polled++;
+                boolean endOfBatch = polled == maxEvents || !isPublished(nextSequence);
+                handler.onEvent(EVENT_TYPES[type], vehicle,
+                        LocationInfo.unpackParkingLevel(location), LocationInfo.unpackLotNumber(location),
+                        timestamp, endOfBatch);
+            }
+            return polled;
+        }
+
+        private boolean isPublished(long sequence) {
+            return sequences.get((int) sequence & mask) == sequence;
+        }
+
+        /**
+         * Moves the subscription to the oldest event which is still in the ring.
+         */
+        private void skipOverwrittenEvents() {
+            long oldest = Math.max(nextSequence + 1, cursor.get() - getCapacity());
+            numberOfDroppedEvents += oldest - nextSequence;
+            nextSequence = oldest;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.github.jogoes.thegarage;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Occupancy of every parking level over time, enabled with GarageBuilder.occupancyHistoryEnabled().
+ *
+ * Usage:
+ *   Garage garage = new GarageBuilder().numberOfLevels(5).numberOfParkingLotsPerLevel(1000).occupancyHistoryEnabled(true).build();
+ *   long now = System.currentTimeMillis();
+ *   OccupancySeries lastDay = garage.getOccupancyHistory().get().getSeries(3, Resolution.MINUTES, now - 24 * 3600 * 1000, now);
+ *
+ * The history is kept at three resolutions, see Resolution. A bucket holds the time-weighted average, the minimum
+ * and the maximum number of occupied lots of its period; buckets in which nothing happened carry the occupancy over.
+ * The buckets of a resolution form a ring which is allocated when the garage is built, so the history needs the same
+ * memory however many vehicles come and go, about 90 KB per parking level, allocated when the garage is built or the
+ * level is added. Times are taken from the session clock of the garage, in milliseconds.
+ *
+ * The history is updated by the enter and exit paths while they hold the lock of the parking level. An update
+ * doesn't allocate and only touches the newest second: the averages are derived from a running integral of the
+ * occupancy, and the minimum and maximum of a bucket are folded into the next coarser resolution when the bucket
+ * is complete. Queries take the lock of the parking level as well and cost a copy of the requested buckets.
+ */
+public class OccupancyHistory {
+
+    /**
+     * The resolutions the history is kept at and how far back each of them reaches, from fine to coarse.
+     * A bucket always lies within one bucket of every coarser resolution.
+     */
+    public enum Resolution {
+
+        /**
+         * One bucket per second for the last hour.
+         */
+        SECONDS(1000, 3600),
+        /**
+         * One bucket per minute for the last 24 hours.
+         */
+        MINUTES(60 * 1000, 24 * 60),
+        /**
+         * One bucket per hour for the last 30 days.
+         */
+        HOURS(60 * 60 * 1000, 30 * 24);
+
+        private final long millis;
+        private final int capacity;
+
+        Resolution(long millis, int capacity) {
+            this.millis = millis;
+            this.capacity = capacity;
+        }
+
+        /**
+         * @return The length of a bucket in milliseconds.
+         */
+        public long getMillis() { return millis; }
+
+        /**
+         * @return The number of buckets kept.
+         */
+        public int getCapacity() { return capacity; }
+    }
+
+    /**
+     * The buckets of one resolution of one parking level.
+     */
+    private static final class Ring {
+
+        final long millis;
+        final int capacity;
+        /**
+         * The integral of the occupied lots of the parking level at the start of each bucket, the integral of
+         * a bucket is the difference to the start of the next one.
+         */
+        final long[] startLotMillis;
+        final int[] minOccupiedLots;
+        final int[] maxOccupiedLots;
+        /**
+         * Number of the newest bucket, i.e. time / millis, its slot and its end; kept so an update within the
+         * newest bucket doesn't need a division.
+         */
+        long bucket;
+        int slot;
+        long bucketEnd;
+
+        Ring(Resolution resolution, long time) {
+            millis = resolution.getMillis();
+            capacity = resolution.getCapacity();
+            startLotMillis = new long[capacity];
+            minOccupiedLots = new int[capacity];
+            maxOccupiedLots = new int[capacity];
+            moveTo(time / millis);
+        }
+
+        int slot(long bucket) {
+            return (int) (bucket % capacity);
+        }
+
+        private void moveTo(long bucket) {
+            this.bucket = bucket;
+            slot = slot(bucket);
+            bucketEnd = (bucket + 1) * millis;
+        }
+
+        /**
+         * Starts the bucket of the specified time. The occupancy didn't change since the last time, the buckets
+         * in between are filled with it as far as they still fit into the ring.
+         */
+        void moveTo(long time, long lastTime, long lastLotMillis, int occupiedLots) {
+            long target = time / millis;
+            long gap = Math.min(target - bucket, capacity);
+            for(long next = target - gap + 1; next <= target; next++) {
+                int slot = slot(next);
+                startLotMillis[slot] = lastLotMillis + occupiedLots * (next * millis - lastTime);
+                minOccupiedLots[slot] = occupiedLots;
+                maxOccupiedLots[slot] = occupiedLots;
+            }
+            moveTo(target);
+        }
+
+        /**
+         * Folds the minimum and maximum of the newest bucket of a finer ring into the newest bucket of this one.
+         */
+        void fold(Ring finer) {
+            minOccupiedLots[slot] = Math.min(minOccupiedLots[slot], finer.minOccupiedLots[finer.slot]);
+            maxOccupiedLots[slot] = Math.max(maxOccupiedLots[slot], finer.maxOccupiedLots[finer.slot]);
+        }
+    }
+
+    /**
+     * The history of one parking level, guarded by the lock of the parking level.
+     */
+    private static final class LevelHistory {
+
+        /**
+         * From fine to coarse, the order of Resolution.
+         */
+        final Ring[] rings;
+        final long startTime;
+        long lastTime;
+        int occupiedLots;
+        /**
+         * The integral of the occupied lots from the start time up to the last time.
+         */
+        long lotMillis;
+
+        LevelHistory(long startTime) {
+            this.startTime = startTime;
+            this.lastTime = startTime;
+            Resolution[] resolutions = Resolution.values();
+            rings = new Ring[resolutions.length];
+            for(int index = 0; index < resolutions.length; index++) {
+                rings[index] = new Ring(resolutions[index], startTime);
+            }
+        }
+
+        void advance(long time) {
+            // the clock may go backwards a little, the history doesn't
+            if(time <= lastTime) {
+                return;
+            }
+            // a ring only moves on in case the next finer one does
+            for(int index = 0; index < rings.length && time >= rings[index].bucketEnd; index++) {
+                if(index + 1 < rings.length) {
+                    rings[index + 1].fold(rings[index]);
+                }
+                rings[index].moveTo(time, lastTime, lotMillis, occupiedLots);
+            }
+            lotMillis += occupiedLots * (time - lastTime);
+            lastTime = time;
+        }
+
+        void update(int occupiedLots) {
+            this.occupiedLots = occupiedLots;
+            Ring seconds = rings[0];
+            seconds.minOccupiedLots[seconds.slot] = Math.min(seconds.minOccupiedLots[seconds.slot], occupiedLots);
+            seconds.maxOccupiedLots[seconds.slot] = Math.max(seconds.maxOccupiedLots[seconds.slot], occupiedLots);
+        }
+    }
+
+    private final Garage garage;
+    private final LongSupplier clock;
+    /**
+     * Replaced as a whole when a level is added, the histories themselves are shared.
+     */
+    private volatile LevelHistory[] levels;
+
+    OccupancyHistory(Garage garage, LongSupplier clock) {
+        this.garage = garage;
+        this.clock = clock;
+        long now = clock.getAsLong();
+        levels = new LevelHistory[garage.getNumberOfLevels()];
+        for(int level = 0; level < levels.length; level++) {
+            levels[level] = new LevelHistory(now);
+        }
+    }
+
+    /**
+     * Starts the history of a level added to the garage, called before the level can be used.
+     */
+    void levelAdded(int level) {
+        LevelHistory[] grown = Arrays.copyOf(levels, level + 1);
+        grown[level] = new LevelHistory(clock.getAsLong());
+        levels = grown;
+    }
+
+    /**
+     * Records the current occupancy of a parking level, must be called while holding the lock of the parking level.
+     */
+    void record(int level, int occupiedLots) {
+        LevelHistory history = levels[level];
+        if(occupiedLots != history.occupiedLots) {
+            history.advance(clock.getAsLong());
+            history.update(occupiedLots);
+        }
+    }
+
+    /**
+     * Returns the occupancy of a parking level for the buckets overlapping the specified period. The result is
+     * cut to the buckets still kept, the newest bucket covers the time up to now.
+     *
+     * @param level the parking level
+     * @param resolution the length of the buckets
+     * @param fromMillis the start of the period, inclusive
+     * @param toMillis the end of the period, exclusive
+     * @exception java.lang.IllegalArgumentException in case the parking level doesn't exist or the period is negative
+     */
+    public OccupancySeries getSeries(int level, Resolution resolution, long fromMillis, long toMillis) {
+
+        LevelHistory[] levels = this.levels;
+        if(level < 0 || level >= levels.length) {
+            throw new IllegalArgumentException("Parking level " + level + " doesn't exist.");
+        }
+        if(resolution == null) {
+            throw new NullPointerException("The resolution must not be null.");
+        }
+        if(toMillis < fromMillis) {
+            throw new IllegalArgumentException("The end of the period must not be before its start.");
+        }
+
+        ParkingLevel parkingLevel = garage.getParkingLevel(level);
+        synchronized (parkingLevel) {
+            LevelHistory history = levels[level];
+            history.advance(clock.getAsLong());
+            long now = history.lastTime;
+            Ring ring = history.rings[resolution.ordinal()];
+
+            long millis = ring.millis;
+            long first = Math.max(Math.max(fromMillis / millis, ring.bucket - ring.capacity + 1), history.startTime / millis);
+            long last = Math.min((toMillis - 1) / millis, ring.bucket);
+            int size = toMillis == fromMillis || last < first ? 0 : (int) (last - first + 1);
+
+            long[] occupiedLotMillis = new long[size];
+            long[] coveredMillis = new long[size];
+            int[] minOccupiedLots = new int[size];
+            int[] maxOccupiedLots = new int[size];
+            for(int index = 0; index < size; index++) {
+                long bucket = first + index;
+                int slot = ring.slot(bucket);
+                long endLotMillis = bucket == ring.bucket ? history.lotMillis : ring.startLotMillis[ring.slot(bucket + 1)];
+                occupiedLotMillis[index] = endLotMillis - ring.startLotMillis[slot];
+                coveredMillis[index] = Math.min((bucket + 1) * millis, now) - Math.max(bucket * millis, history.startTime);
+                minOccupiedLots[index] = ring.minOccupiedLots[slot];
+                maxOccupiedLots[index] = ring.maxOccupiedLots[slot];
+            }
+            if(last == ring.bucket && size > 0) {
+                // the newest bucket doesn't contain the newest buckets of the finer resolutions yet
+                for(int finer = resolution.ordinal() - 1; finer >= 0; finer--) {
+                    Ring finerRing = history.rings[finer];
+                    minOccupiedLots[size - 1] = Math.min(minOccupiedLots[size - 1], finerRing.minOccupiedLots[finerRing.slot]);
+                    maxOccupiedLots[size - 1] = Math.max(maxOccupiedLots[size - 1], finerRing.maxOccupiedLots[finerRing.slot]);
+                }
+            }
+            return new OccupancySeries(level, parkingLevel.getTotalNumberOfLots(), millis, first * millis, size,
+                    occupiedLotMillis, coveredMillis, minOccupiedLots, maxOccupiedLots);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Occupancy of a parking level in consecutive buckets of the same length, see OccupancyHistory.getSeries().
+ * Times are in milliseconds of the session clock of the garage.
+ */
+public class OccupancySeries {
+
+    private final int level;
+    private final int totalNumberOfLots;
+    private final long resolutionMillis;
+    private final long startMillis;
+    private final int size;
+    private final long[] occupiedLotMillis;
+    private final long[] coveredMillis;
+    private final int[] minOccupiedLots;
+    private final int[] maxOccupiedLots;
+
+    OccupancySeries(int level, int totalNumberOfLots, long resolutionMillis, long startMillis, int size,
+                    long[] occupiedLotMillis, long[] coveredMillis, int[] minOccupiedLots, int[] maxOccupiedLots) {
+        this.level = level;
+        this.totalNumberOfLots = totalNumberOfLots;
+        this.resolutionMillis = resolutionMillis;
+        this.startMillis = startMillis;
+        this.size = size;
+        this.occupiedLotMillis = occupiedLotMillis;
+        this.coveredMillis = coveredMillis;
+        this.minOccupiedLots = minOccupiedLots;
+        this.maxOccupiedLots = maxOccupiedLots;
+    }
+
+    public int getLevel() { return level; }
+    public int getTotalNumberOfLots() { return totalNumberOfLots; }
+    public long getResolutionMillis() { return resolutionMillis; }
+    /**
+     * @return The start of the first bucket.
+     */
+    public long getStartMillis() { return startMillis; }
+    /**
+     * @return The number of buckets.
+     */
+    public int size() { return size; }
+
+    /**
+     * @return The start of the bucket at the specified index.
+     */
+    public long getTime(int index) {
+        checkIndex(index);
+        return startMillis + index * resolutionMillis;
+    }
+
+    /**
+     * The first bucket may start before the history was started and the last one ends in the future,
+     * their averages only cover the time the history knows about.
+     *
+     * @return The time-weighted average number of occupied lots during the bucket at the specified index.
+     */
+    public double getAverageOccupiedLots(int index) {
+        checkIndex(index);
+        return coveredMillis[index] <= 0 ? minOccupiedLots[index] : occupiedLotMillis[index] / (double) coveredMillis[index];
+    }
+
+    public int getMinOccupiedLots(int index) {
+        checkIndex(index);
+        return minOccupiedLots[index];
+    }
+
+    public int getMaxOccupiedLots(int index) {
+        checkIndex(index);
+        return maxOccupiedLots[index];
+    }
+
+    /**
+     * @return The average fraction of occupied lots during the bucket at the specified index, from 0 to 1.
+     */
+    public double getFillRate(int index) {
+        return totalNumberOfLots == 0 ? 0 : getAverageOccupiedLots(index) / totalNumberOfLots;
+    }
+
+    /**
+     * @return The time-weighted average number of occupied lots over all buckets, 0 in case the series is empty.
+     */
+    public double getAverageOccupiedLots() {
+        long lotMillis = 0;
+        long millis = 0;
+        for(int index = 0; index < size; index++) {
+            lotMillis += occupiedLotMillis[index];
+            millis += Math.max(coveredMillis[index], 0);
+        }
+        return millis == 0 ? (size == 0 ? 0 : minOccupiedLots[size - 1]) : lotMillis / (double) millis;
+    }
+
+    /**
+     * @return The highest number of occupied lots over all buckets, 0 in case the series is empty.
+     */
+    public int getMaxOccupiedLots() {
+        int max = 0;
+        for(int index = 0; index < size; index++) {
+            max = Math.max(max, maxOccupiedLots[index]);
+        }
+        return max;
+    }
+
+    private void checkIndex(int index) {
+        if(index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Bucket " + index + " doesn't exist, the series has " + size + " buckets.");
+        }
+    }
+}
@@ -1,67 +1,274 @@
 package com.github.jogoes.thegarage;
 
+import com.github.jogoes.thegarage.vehicles.Motorbike;
 import com.github.jogoes.thegarage.vehicles.Vehicle;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.LongSupplier;
 
 /**
  * Abstraction of a single parking level in com github.
+ *
+ * All methods accessing the lots are synchronized on the parking level itself. The garage relies on that
+ * and holds the same lock when it has to combine several operations on a level.
+ *
+ * A parking level can provide several classes of lots, see LotClass and LotLayout. Every class has its own
+ * allocator, so finding a lot of the right size never has to skip over lots of other classes.
+ *
+ * A reserved lot is taken from its allocator just like an occupied one, so the search for a free lot skips
+ * reservations without looking at them. It is only counted separately and has no vehicle stored on it.
+ * The same goes for a lot out of service, see setOutOfService().
+ *
+ * The layout can be changed while vehicles are parked, see resize(). The lots keep their numbers, so the
+ * lots which would get a new number have to be free.
+ *
+ * Snapshots read the state of a level from its LotVersions, they take the lock only for fetching it.
  */
 class ParkingLevel {
 
     /**
-     * Internal class used to hold information about a parked vehicle.
+     * Entry time of a lot without a parking session. It lies in the future, so no fee accrues on a free lot.
      */
-    private class LotInfo {
-        final int position;
-        final Vehicle vehicle;
-
-        String getVehicleId() { return vehicle.getIdentifier(); }
-
-        LotInfo(int position, Vehicle vehicle) {
-            assert(position >= 0);
-            assert(vehicle != null);
-
-            this.position = position;
-            this.vehicle = vehicle;
-        }
-    }
+    static final long NO_SESSION = Long.MAX_VALUE;
 
     /**
      * The level number of this parking level.
      */
     private int level;
     /**
-     * The total capacity of this parking level.
+     * The total capacity of this parking level, volatile like the layout.
      */
-    private int totalNumberOfLots;
+    private volatile int totalNumberOfLots;
+    /**
+     * The number of lots of each lot class, volatile since it is replaced by resize().
+     */
+    private volatile LotLayout layout;
+    private int firstMotorbikeLot;
+    private int firstSharedLot;
+    private int motorbikesPerSharedBay;
 
     /**
-     * We are using a TreeSet in order to take advantage of com elements being ordered in that data structure.
-     * This simplifies searching for a free lots on this parking level.
-     *
-     * Note: IntelliJ 13 incorrectly reports an unresolved symbol here, which obviously is not true...
+     * Defines how the vehicles are stored, see LotVersions.
+     */
+    private final StorageMode storageMode;
+    /**
+     * Keeps track of the free car bays on this parking level.
+     */
+    private LotAllocator lotAllocator;
+    /**
+     * Keeps track of the free motorbike bays, indexed relative to the first motorbike bay.
+     */
+    private LotAllocator motorbikeBayAllocator;
+    /**
+     * Keeps track of the empty shared bays, indexed by bay.
+     */
+    private LotAllocator sharedBayAllocator;
+    /**
+     * Keeps track of the free lots in shared bays already used by motorbikes, indexed relative to the first
+     * shared lot. The lots of empty bays and of bays taken by a car are marked as occupied.
+     */
+    private LotAllocator sharedLotAllocator;
+    /**
+     * Number of occupied lots, volatile so it can be read without taking the lock of the parking level.
+     */
+    private volatile int numberOfOccupiedLots;
+    /**
+     * Number of occupied lots per lot class, only written while holding the lock of the parking level.
      */
-    private TreeSet<LotInfo> lotInfos = new TreeSet<>((info1, info2) -> ((Integer) info1.position).compareTo(info2.position));
+    private AtomicIntegerArray occupiedLotsPerClass = new AtomicIntegerArray(LotClass.values().length);
+    /**
+     * Number of reserved lots, in total and per lot class, written like the occupied lots.
+     */
+    private volatile int numberOfReservedLots;
+    private AtomicIntegerArray reservedLotsPerClass = new AtomicIntegerArray(LotClass.values().length);
+    /**
+     * The lots out of service, a shared bay is marked at its first lot. Counted like the reserved lots.
+     */
+    private BitSet lotsOutOfService = new BitSet();
+    private volatile int numberOfLotsOutOfService;
+    private AtomicIntegerArray lotsOutOfServicePerClass = new AtomicIntegerArray(LotClass.values().length);
+    /**
+     * The taken lots which go out of service once they are freed, marked like the lots out of service.
+     */
+    private BitSet lotsToDrain = new BitSet();
+    /**
+     * The lots of draining shared bays which aren't used by a motorbike, indexed relative to the first shared lot.
+     * They are taken from the shared lot allocator and counted as out of service.
+     */
+    private BitSet blockedSharedLots = new BitSet();
+    /**
+     * The number of lots out of service as of the last call of takeLotsOutOfServiceChange().
+     */
+    private int reportedLotsOutOfService;
+    /**
+     * Interned location infos of this parking level, indexed by lot number and created on first use.
+     * Location infos are immutable, so they can be shared and we don't have to allocate them on every call.
+     * Volatile since the array is replaced by resize(), the location of a lot is looked up without the lock.
+     */
+    private volatile Optional<LocationInfo>[] locations;
+    /**
+     * The time the vehicle parked on a lot entered, NO_SESSION for free lots. A primitive array instead of
+     * a field per vehicle, so fees can be computed for all lots in one tight loop, see Tariff.
+     */
+    private long[] entryTimes;
+    /**
+     * Provides the entry times, in milliseconds.
+     */
+    private LongSupplier clock = System::currentTimeMillis;
+    /**
+     * The vehicles parked on this level, addressed by lot number. Its current version is read for the lots of the
+     * level, the older ones are kept for snapshots. Every method changing the lots or counters writes it.
+     */
+    private LotVersions versions;
+    /**
+     * Sorted identifiers of the parked vehicles, null unless enabled with enablePrefixIndex().
+     */
+    private IdentifierPrefixIndex prefixIndex;
 
     public int getLevel() { return level; }
     public int getTotalNumberOfLots() { return totalNumberOfLots; }
-    public int getNumberOfFreeLots() { return getTotalNumberOfLots() - lotInfos.size(); }
-    public int getNumberOfOccupiedLots() { return getTotalNumberOfLots() - getNumberOfFreeLots(); }
+    public int getNumberOfFreeLots() { return getTotalNumberOfLots() - numberOfOccupiedLots - numberOfReservedLots - numberOfLotsOutOfService; }
+    public int getNumberOfOccupiedLots() { return numberOfOccupiedLots; }
+    public int getNumberOfReservedLots() { return numberOfReservedLots; }
+    public int getNumberOfLotsOutOfService() { return numberOfLotsOutOfService; }
+
+    public int getNumberOfLots(LotClass lotClass) { return layout.getNumberOfLots(lotClass); }
+    public int getNumberOfFreeLots(LotClass lotClass) {
+        return getNumberOfLots(lotClass) - getNumberOfOccupiedLots(lotClass) - getNumberOfReservedLots(lotClass) - getNumberOfLotsOutOfService(lotClass);
+    }
+    public int getNumberOfOccupiedLots(LotClass lotClass) { return occupiedLotsPerClass.get(lotClass.ordinal()); }
+    public int getNumberOfReservedLots(LotClass lotClass) { return reservedLotsPerClass.get(lotClass.ordinal()); }
+    public int getNumberOfLotsOutOfService(LotClass lotClass) { return lotsOutOfServicePerClass.get(lotClass.ordinal()); }
+    LotLayout getLayout() { return layout; }
 
     public ParkingLevel(int level, int totalNumberOfLots) {
+        this(level, totalNumberOfLots, StorageMode.TREE);
+    }
+
+    public ParkingLevel(int level, int totalNumberOfLots, StorageMode storageMode) {
+        this(level, totalNumberOfLots, new BitmapLotAllocator(Math.max(totalNumberOfLots, 0)), storageMode);
+    }
+
+    /**
+     * Constructor used to create a parking level with several lot classes.
+     *
+     * @param level the level number of this parking level
+     * @param layout the number of lots of each lot class
+     * @param storageMode defines how the parked vehicles are stored
+     */
+    ParkingLevel(int level, LotLayout layout, StorageMode storageMode) {
+        this(level, layout, new BitmapLotAllocator(layout.getNumberOfCarBays()), storageMode);
+    }
+
+    /**
+     * Constructor used to create a parking level with a custom lot allocator.
+     *
+     * @param level the level number of this parking level
+     * @param totalNumberOfLots the total capacity of this parking level
+     * @param lotAllocator the allocator used to find free lots, its capacity must match the number of lots
+     * @param storageMode defines how the parked vehicles are stored
+     */
+    ParkingLevel(int level, int totalNumberOfLots, LotAllocator lotAllocator, StorageMode storageMode) {
+        this(level, carBaysOnly(totalNumberOfLots), lotAllocator, storageMode);
+    }
+
+    private ParkingLevel(int level, LotLayout layout, LotAllocator lotAllocator, StorageMode storageMode) {
+        if(lotAllocator == null) {
+            throw new NullPointerException("The lot allocator must not be null.");
+        }
+        int carBays = layout.getNumberOfCarBays();
+        if(lotAllocator.getCapacity() != carBays || lotAllocator.getNumberOfFreeLots() != carBays) {
+            throw new IllegalArgumentException("The lot allocator must manage exactly " + carBays + " free lots.");
+        }
+        this.level = level;
+        this.layout = layout;
+        this.totalNumberOfLots = layout.getTotalNumberOfLots();
+        this.firstMotorbikeLot = layout.getFirstLot(LotClass.MOTORBIKE);
+        this.firstSharedLot = layout.getFirstLot(LotClass.SHARED);
+        this.motorbikesPerSharedBay = layout.getMotorbikesPerSharedBay();
+        this.lotAllocator = lotAllocator;
+        this.motorbikeBayAllocator = new BitmapLotAllocator(layout.getNumberOfMotorbikeBays());
+        this.sharedBayAllocator = new BitmapLotAllocator(layout.getNumberOfSharedBays());
+        this.sharedLotAllocator = new BitmapLotAllocator(layout.getNumberOfLots(LotClass.SHARED));
+        // the lots of a shared bay only become available once a motorbike parks in it
+        for(int index = 0; index < sharedLotAllocator.getCapacity(); index++) {
+            sharedLotAllocator.claim(index);
+        }
+        this.storageMode = storageMode;
+        this.locations = newLocationArray(totalNumberOfLots);
+        this.entryTimes = new long[totalNumberOfLots];
+        Arrays.fill(entryTimes, NO_SESSION);
+        this.versions = new LotVersions(layout, new SnapshotEpoch(), storageMode);
+    }
+
+    void setClock(LongSupplier clock) { this.clock = clock; }
+
+    /**
+     * Makes the level part of the snapshots of a garage, must be called before any vehicle enters.
+     */
+    void setSnapshotEpoch(SnapshotEpoch snapshotEpoch) { this.versions = new LotVersions(layout, snapshotEpoch, storageMode); }
+
+    /**
+     * Keeps the identifiers of the parked vehicles sorted, see findByPrefix(). Must be called before any vehicle enters.
+     */
+    void enablePrefixIndex() { this.prefixIndex = new IdentifierPrefixIndex(); }
+
+    /**
+     * Called by a snapshot after it started the next epoch. Holding the lock makes sure the writes which
+     * still belong to the epoch of the snapshot are done, every later write belongs to a newer epoch.
+     * No work is done while holding the lock, the version is shared and not copied.
+     *
+     * @return The state of the level as of a snapshot epoch, see SnapshotEpoch.snapshot().
+     */
+    synchronized LotVersions.Version getVersion(long epoch) { return versions.get(epoch); }
+
+    private static LotLayout carBaysOnly(int totalNumberOfLots) {
         if(totalNumberOfLots < 0) {
             throw new IllegalArgumentException("Number of lots must be greater than 0.");
         }
-        this.level = level;
-        this.totalNumberOfLots = totalNumberOfLots;
+        return LotLayout.carBaysOnly(totalNumberOfLots);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<LocationInfo>[] newLocationArray(int length) {
+        return new Optional[length];
+    }
+
+    /**
+     * @return The interned location of the specified lot on this parking level.
+     */
+    Optional<LocationInfo> location(int lotNumber) {
+        // racing threads might create the same location twice, which is harmless
+        Optional<LocationInfo> location = locations[lotNumber];
+        if(location == null) {
+            location = Optional.of(new LocationInfo(this.getLevel(), lotNumber));
+            locations[lotNumber] = location;
+        }
+        return location;
     }
 
     /**
      * @return true in case com level has free lots available, else false.
      */
     public Boolean hasFreeLots() { return getNumberOfFreeLots() > 0; }
+    /**
+     * A motorbike fits into any free lot, a car needs a free car bay or an empty shared bay.
+     * Must be called while holding the lock of the parking level.
+     *
+     * @return true in case a car fits on this parking level, else false.
+     */
+    boolean hasRoomForCar() {
+        return getNumberOfFreeCarBays() > 0;
+    }
+    /**
+     * Must be called while holding the lock of the parking level.
+     *
+     * @return The number of cars which fit on this parking level: the free car bays and the empty shared bays.
+     */
+    int getNumberOfFreeCarBays() {
+        return lotAllocator.getNumberOfFreeLots() + sharedBayAllocator.getNumberOfFreeLots();
+    }
     /**
      * @return true in case com specified vehicle is on that parking level, else false.
      */
@@ -78,18 +285,103 @@ class ParkingLevel {
      * @return Location information about com entered vehicle, Optional.empty() in case com vehicle couldn't be added to com github.
      * @exception java.lang.NullPointerException in case vehicle is null or has an empty id
      */
-    public Optional<LocationInfo> enter(Vehicle vehicle) {
+    public synchronized Optional<LocationInfo> enter(Vehicle vehicle) {
 
         validateVehicleArgument(vehicle);
 
-        int freeLotNumber = findFreeLotNumber();
+        // read before a lot is allocated, so a failing clock doesn't leave the lot taken
+        long entryTime = clock.getAsLong();
+        versions.beginWrite();
+        int freeLotNumber = allocate(vehicle);
         if(freeLotNumber == -1) {
             return Optional.empty();
         }
 
-        LotInfo lotInfo = new LotInfo(freeLotNumber, vehicle);
-        lotInfos.add(lotInfo);
-        return Optional.of(new LocationInfo(this.getLevel(), freeLotNumber));
+        park(freeLotNumber, vehicle, entryTime);
+        return location(freeLotNumber);
+    }
+
+    /**
+     * Adds the vehicle to a specific lot of the parking level.
+     *
+     * @param lotNumber The lot to park the vehicle on.
+     * @param vehicle The vehicle to add to the parking level.
+     * @return Location information about the entered vehicle, Optional.empty() in case the lot is already occupied
+     * or the vehicle doesn't fit into the lot.
+     */
+    synchronized Optional<LocationInfo> enter(int lotNumber, Vehicle vehicle) {
+
+        validateVehicleArgument(vehicle);
+
+        versions.beginWrite();
+        if(claim(lotNumber, vehicle) == -1) {
+            return Optional.empty();
+        }
+        park(lotNumber, vehicle, clock.getAsLong());
+        return location(lotNumber);
+    }
+
+    /**
+     * Adds several vehicles to the parking level, until the first vehicle which doesn't fit.
+     *
+     * @param vehicles The vehicles to add, already validated by the caller.
+     * @param from Index of the first vehicle to add.
+     * @param to Index after the last vehicle to add.
+     * @param locations Receives the location of each added vehicle at the index of the vehicle.
+     * @return The number of added vehicles, these are the vehicles from index 'from' on.
+     */
+    synchronized int enter(Vehicle[] vehicles, int from, int to, LocationInfo[] locations) {
+
+        long entryTime = clock.getAsLong();
+        int index = from;
+        versions.beginWrite();
+        for(; index < to; index++) {
+            int freeLotNumber = allocate(vehicles[index]);
+            if(freeLotNumber == -1) {
+                break;
+            }
+            park(freeLotNumber, vehicles[index], entryTime);
+            locations[index] = location(freeLotNumber).get();
+        }
+        return index - from;
+    }
+
+    /**
+     * Parks vehicles on specific lots in one go, used to restore a previously recorded state.
+     * All vehicles get the same entry time.
+     *
+     * @param vehicles The vehicles to park, already validated by the caller.
+     * @param lotNumbers The lot of each vehicle at the same index.
+     * @param count The number of vehicles to park.
+     * @exception java.lang.IllegalStateException in case a lot is already occupied or doesn't fit its vehicle,
+     * none of the vehicles is parked then
+     */
+    synchronized void restore(Vehicle[] vehicles, int[] lotNumbers, int count) {
+
+        long entryTime = clock.getAsLong();
+        versions.beginWrite();
+        int stored = 0;
+        try {
+            for(; stored < count; stored++) {
+                if(claim(lotNumbers[stored], vehicles[stored]) == -1) {
+                    throw new IllegalStateException("Lot " + lotNumbers[stored] + " on parking level " + level + " is already occupied or doesn't fit the vehicle.");
+                }
+                store(lotNumbers[stored], vehicles[stored], entryTime);
+            }
+        } catch(RuntimeException e) {
+            // the vehicles parked so far leave again, so a failed restore doesn't change the level
+            while(--stored >= 0) {
+                unstore(lotNumbers[stored]);
+            }
+            throw e;
+        }
+        if(prefixIndex != null) {
+            String[] vehicleIds = new String[count];
+            for(int index = 0; index < count; index++) {
+                vehicleIds[index] = vehicles[index].getIdentifier();
+            }
+            prefixIndex.addAll(vehicleIds, lotNumbers, count);
+        }
     }
 
     /**
@@ -98,23 +390,250 @@ class ParkingLevel {
      * @param vehicle The vehicle to remove from com parking level.
      * @return Location information about com vehicle being removed, Optional.empty() in case com vehicle couldn't be found in com github.
      */
-    public Optional<LocationInfo> exit(Vehicle vehicle) {
+    public synchronized Optional<LocationInfo> exit(Vehicle vehicle) {
+
+        validateVehicleArgument(vehicle);
+
+        int lotNumber = findLotNumber(vehicle);
+        if(lotNumber == -1) {
+            return Optional.empty();
+        }
+        versions.beginWrite();
+        return removeVehicle(lotNumber);
+    }
+
+    /**
+     * Removes the vehicle parked on the specified lot from the parking level.
+     * Used by the garage which already knows the lot of the vehicle, so we don't have to search for it.
+     *
+     * @param lotNumber The lot the vehicle is parked on.
+     * @param vehicle The vehicle to remove from the parking level.
+     * @return Location information about the vehicle being removed, Optional.empty() in case the vehicle isn't parked on that lot.
+     */
+    synchronized Optional<LocationInfo> exit(int lotNumber, Vehicle vehicle) {
+
+        validateVehicleArgument(vehicle);
+
+        Vehicle parkedVehicle = versions.current().get(lotNumber);
+        if(parkedVehicle == null || !parkedVehicle.getIdentifier().equals(vehicle.getIdentifier())) {
+            return Optional.empty();
+        }
+        versions.beginWrite();
+        return removeVehicle(lotNumber);
+    }
+
+    /**
+     * Holds any lot the vehicle fits into for it.
+     *
+     * @param vehicle The vehicle to hold the lot for.
+     * @return The reserved lot, -1 in case the vehicle doesn't fit on this parking level.
+     */
+    synchronized int reserve(Vehicle vehicle) {
 
         validateVehicleArgument(vehicle);
 
-        return findLotInfo(vehicle).map(info -> {
-            // warning: side-effect modifying lotInfos
-            lotInfos.remove(info);
-            return new LocationInfo(this.getLevel(), info.position);
-        });
+        versions.beginWrite();
+        int lotNumber = allocate(vehicle);
+        if(lotNumber != -1) {
+            moveToReserved(lotNumber, vehicle);
+        }
+        return lotNumber;
+    }
+
+    /**
+     * Holds a specific lot for the vehicle.
+     *
+     * @param lotNumber The lot to hold.
+     * @param vehicle The vehicle to hold the lot for.
+     * @return The reserved lot, -1 in case the lot isn't free or the vehicle doesn't fit into it.
+     */
+    synchronized int reserve(int lotNumber, Vehicle vehicle) {
+
+        validateVehicleArgument(vehicle);
+
+        versions.beginWrite();
+        if(claim(lotNumber, vehicle) == -1) {
+            return -1;
+        }
+        moveToReserved(lotNumber, vehicle);
+        return lotNumber;
+    }
+
+    /**
+     * Parks the vehicle a lot was reserved for on that lot.
+     *
+     * @param lotNumber The lot returned by reserve().
+     * @param vehicle The vehicle passed to reserve().
+     */
+    synchronized Optional<LocationInfo> claimReservation(int lotNumber, Vehicle vehicle) {
+        versions.beginWrite();
+        moveToOccupied(lotNumber, vehicle);
+        park(lotNumber, vehicle, clock.getAsLong());
+        return location(lotNumber);
+    }
+
+    /**
+     * Frees a reserved lot again.
+     *
+     * @param lotNumber The lot returned by reserve().
+     * @param vehicle The vehicle passed to reserve().
+     */
+    synchronized void cancelReservation(int lotNumber, Vehicle vehicle) {
+        versions.beginWrite();
+        moveToOccupied(lotNumber, vehicle);
+        release(lotNumber, vehicle);
+    }
+
+    /**
+     * Takes a lot out of service, e.g. for repairs, or puts it back into service. No vehicle is parked on a
+     * lot out of service and it isn't counted as free. A shared bay is taken out of service as a whole and is
+     * addressed by its first lot, like a car parked in it.
+     *
+     * A lot which is occupied or reserved drains: it stays taken until its vehicles left or the reservation ended,
+     * and goes out of service instead of becoming free then. The lots of a draining shared bay which no motorbike
+     * uses are out of service right away. Putting the lot back into service before cancels the drain.
+     *
+     * @param lotNumber The lot to change.
+     * @param outOfService true to take the lot out of service, false to put it back.
+     * @return true in case the lot changed, false in case it is already in the requested state or draining.
+     * @exception java.lang.IndexOutOfBoundsException in case the lot doesn't exist
+     * @exception java.lang.IllegalArgumentException in case the lot is in a shared bay but not its first lot
+     */
+    synchronized boolean setOutOfService(int lotNumber, boolean outOfService) {
+
+        if(lotNumber < 0 || lotNumber >= totalNumberOfLots) {
+            throw new IndexOutOfBoundsException("Lot number " + lotNumber + " is out of range [0, " + totalNumberOfLots + ").");
+        }
+        if(lotNumber >= firstSharedLot && (lotNumber - firstSharedLot) % motorbikesPerSharedBay != 0) {
+            throw new IllegalArgumentException("Lot " + lotNumber + " is not the first lot of a shared bay.");
+        }
+        if(lotsToDrain.get(lotNumber)) {
+            if(outOfService) {
+                return false;
+            }
+            versions.beginWrite();
+            stopDraining(lotNumber);
+            return true;
+        }
+        if(lotsOutOfService.get(lotNumber) == outOfService) {
+            return false;
+        }
+
+        versions.beginWrite();
+        if(!outOfService) {
+            putIntoService(lotNumber);
+        } else if(!takeOutOfService(lotNumber)) {
+            startDraining(lotNumber);
+        }
+        return true;
     }
 
-    public Optional<LocationInfo> findLocation(Vehicle vehicle) {
-        return findLotInfo(vehicle).map(lotInfo -> new LocationInfo(this.getLevel(), lotInfo.position));
+    /**
+     * @return true in case the specified lot, or the shared bay starting at it, is out of service.
+     */
+    synchronized boolean isOutOfService(int lotNumber) { return lotsOutOfService.get(lotNumber); }
+
+    /**
+     * @return true in case the specified lot, or the shared bay starting at it, goes out of service once it is freed.
+     */
+    synchronized boolean isDraining(int lotNumber) { return lotsToDrain.get(lotNumber); }
+
+    /**
+     * Used by the garage to follow the lots out of service, which also change when a draining lot is freed.
+     * Called while holding the lock after every change of the level.
+     *
+     * @return The change of the number of lots out of service since the last call.
+     */
+    int takeLotsOutOfServiceChange() {
+        int change = numberOfLotsOutOfService - reportedLotsOutOfService;
+        reportedLotsOutOfService += change;
+        return change;
     }
 
-    public Optional<LocationInfo> findLocation(String vehicleId) {
-        return findLotInfo(vehicleId).map(lotInfo -> new LocationInfo(this.getLevel(), lotInfo.position));
+    /**
+     * Changes the number of lots of each class. The lots keep their numbers: growing or shrinking the last lot class
+     * of the level doesn't affect the other lots, while changing the number of car bays shifts the motorbike and shared
+     * bays behind them. So the lots which are removed or would get another number have to be free or out of service,
+     * the ones out of service are dropped. The work is proportional to the number of lots of the level.
+     *
+     * @param layout The new number of lots of each class.
+     * @exception java.lang.IllegalStateException in case one of the lots to remove or renumber is occupied or reserved
+     * @exception java.lang.IllegalArgumentException in case the number of motorbikes per shared bay changes while the level has shared bays
+     */
+    synchronized void resize(LotLayout layout) {
+
+        if(this.layout.getNumberOfSharedBays() > 0 && layout.getMotorbikesPerSharedBay() != motorbikesPerSharedBay) {
+            throw new IllegalArgumentException("The number of motorbikes per shared bay of parking level " + level + " can't be changed.");
+        }
+        int keptCarBays = Math.min(layout.getNumberOfCarBays(), this.layout.getNumberOfCarBays());
+        int keptMotorbikeBays = layout.getFirstLot(LotClass.MOTORBIKE) != firstMotorbikeLot ? 0 :
+                Math.min(layout.getNumberOfMotorbikeBays(), this.layout.getNumberOfMotorbikeBays());
+        int keptSharedBays = layout.getFirstLot(LotClass.SHARED) != firstSharedLot ? 0 :
+                Math.min(layout.getNumberOfSharedBays(), this.layout.getNumberOfSharedBays());
+        checkRemovable(lotAllocator, keptCarBays, 0, 1);
+        checkRemovable(motorbikeBayAllocator, keptMotorbikeBays, firstMotorbikeLot, 1);
+        checkRemovable(sharedBayAllocator, keptSharedBays, firstSharedLot, motorbikesPerSharedBay);
+
+        versions.beginWrite();
+        for(int lotNumber = lotsOutOfService.nextSetBit(0); lotNumber != -1; lotNumber = lotsOutOfService.nextSetBit(lotNumber + 1)) {
+            boolean kept = lotNumber < firstMotorbikeLot ? lotNumber < keptCarBays :
+                    lotNumber < firstSharedLot ? lotNumber - firstMotorbikeLot < keptMotorbikeBays :
+                    (lotNumber - firstSharedLot) / motorbikesPerSharedBay < keptSharedBays;
+            if(!kept) {
+                putIntoService(lotNumber);
+            }
+        }
+
+        lotAllocator.resize(layout.getNumberOfCarBays());
+        motorbikeBayAllocator.resize(layout.getNumberOfMotorbikeBays());
+        sharedBayAllocator.resize(layout.getNumberOfSharedBays());
+        // the lots of the removed bays are marked as occupied, like the ones of every empty bay
+        int keptSharedLots = keptSharedBays * motorbikesPerSharedBay;
+        for(int index = keptSharedLots; index < sharedLotAllocator.getCapacity(); index++) {
+            sharedLotAllocator.release(index);
+        }
+        sharedLotAllocator.resize(keptSharedLots);
+        sharedLotAllocator.resize(layout.getNumberOfLots(LotClass.SHARED));
+        for(int index = keptSharedLots; index < sharedLotAllocator.getCapacity(); index++) {
+            sharedLotAllocator.claim(index);
+        }
+
+        int previousNumberOfLots = totalNumberOfLots;
+        int numberOfLots = layout.getTotalNumberOfLots();
+        entryTimes = Arrays.copyOf(entryTimes, numberOfLots);
+        if(numberOfLots > previousNumberOfLots) {
+            Arrays.fill(entryTimes, previousNumberOfLots, numberOfLots, NO_SESSION);
+        }
+        locations = Arrays.copyOf(locations, numberOfLots);
+        versions.resize(layout);
+
+        this.layout = layout;
+        this.firstMotorbikeLot = layout.getFirstLot(LotClass.MOTORBIKE);
+        this.firstSharedLot = layout.getFirstLot(LotClass.SHARED);
+        this.motorbikesPerSharedBay = layout.getMotorbikesPerSharedBay();
+        this.totalNumberOfLots = numberOfLots;
+    }
+
+    /**
+     * Helper function used to make sure the bays of an allocator from the specified index on are free or out of service.
+     */
+    private void checkRemovable(LotAllocator allocator, int fromIndex, int firstLot, int lotsPerBay) {
+        for(int index = fromIndex; index < allocator.getCapacity(); index++) {
+            int lotNumber = firstLot + index * lotsPerBay;
+            if(!allocator.isFree(index) && !lotsOutOfService.get(lotNumber)) {
+                throw new IllegalStateException("Lot " + lotNumber + " on parking level " + level + " is taken, it can't be removed or renumbered.");
+            }
+        }
+    }
+
+    public synchronized Optional<LocationInfo> findLocation(Vehicle vehicle) {
+        int lotNumber = findLotNumber(vehicle);
+        return lotNumber == -1 ? Optional.empty() : location(lotNumber);
+    }
+
+    public synchronized Optional<LocationInfo> findLocation(String vehicleId) {
+        int lotNumber = findLotNumber(vehicleId);
+        return lotNumber == -1 ? Optional.empty() : location(lotNumber);
     }
 
     // Helper functions
@@ -132,71 +651,380 @@ class ParkingLevel {
     }
 
     /**
-     * Internal helper used to find com next free position in com provided set.
+     * Helper function used to find a free lot for a vehicle and mark it as occupied.
+     *
+     * Motorbikes take a motorbike bay, then a lot in a shared bay, preferably one already used by other
+     * motorbikes, and a car bay only as the last resort. Cars take a car bay or an empty shared bay.
      *
-     * @param lotInfos com ordered set of lot infos
-     * @param currentPosition com position candidate
-     * @return com next free position
+     * @return The allocated lot, -1 in case the vehicle doesn't fit on this parking level.
      */
-    private int findFreePosition(NavigableSet<LotInfo> lotInfos, int currentPosition) {
+    private int allocate(Vehicle vehicle) {
+        if(vehicle instanceof Motorbike) {
+            if(motorbikeBayAllocator.getNumberOfFreeLots() > 0) {
+                return occupy(LotClass.MOTORBIKE, firstMotorbikeLot + motorbikeBayAllocator.allocate(), 1);
+            }
+            if(sharedLotAllocator.getNumberOfFreeLots() > 0) {
+                return occupy(LotClass.SHARED, firstSharedLot + sharedLotAllocator.allocate(), 1);
+            }
+            if(sharedBayAllocator.getNumberOfFreeLots() > 0) {
+                int index = sharedBayAllocator.allocate() * motorbikesPerSharedBay;
+                openSharedBay(index);
+                return occupy(LotClass.SHARED, firstSharedLot + index, 1);
+            }
+        } else if(lotAllocator.getNumberOfFreeLots() == 0 && sharedBayAllocator.getNumberOfFreeLots() > 0) {
+            int index = sharedBayAllocator.allocate() * motorbikesPerSharedBay;
+            return occupy(LotClass.SHARED, firstSharedLot + index, motorbikesPerSharedBay);
+        }
+        int lotNumber = lotAllocator.allocate();
+        return lotNumber == -1 ? -1 : occupy(LotClass.CAR, lotNumber, 1);
+    }
 
-        if(currentPosition >= totalNumberOfLots) {
-            // no free position found
-            return -1;
+    /**
+     * Helper function used to mark a specific lot as occupied.
+     *
+     * @return The claimed lot, -1 in case the lot is occupied or the vehicle doesn't fit into it.
+     */
+    private int claim(int lotNumber, Vehicle vehicle) {
+        if(lotNumber < 0 || lotNumber >= totalNumberOfLots) {
+            throw new IndexOutOfBoundsException("Lot number " + lotNumber + " is out of range [0, " + totalNumberOfLots + ").");
+        }
+        if(lotNumber < firstMotorbikeLot) {
+            return lotAllocator.claim(lotNumber) ? occupy(LotClass.CAR, lotNumber, 1) : -1;
+        }
+        boolean motorbike = vehicle instanceof Motorbike;
+        if(lotNumber < firstSharedLot) {
+            return motorbike && motorbikeBayAllocator.claim(lotNumber - firstMotorbikeLot) ? occupy(LotClass.MOTORBIKE, lotNumber, 1) : -1;
+        }
+        int index = lotNumber - firstSharedLot;
+        int bay = index / motorbikesPerSharedBay;
+        if(!motorbike) {
+            // a car is always parked on the first lot of a shared bay
+            return index % motorbikesPerSharedBay == 0 && sharedBayAllocator.claim(bay) ? occupy(LotClass.SHARED, lotNumber, motorbikesPerSharedBay) : -1;
+        }
+        if(sharedBayAllocator.claim(bay)) {
+            openSharedBay(index);
+            return occupy(LotClass.SHARED, lotNumber, 1);
+        }
+        return sharedLotAllocator.claim(index) ? occupy(LotClass.SHARED, lotNumber, 1) : -1;
+    }
+
+    /**
+     * Helper function used to free the lot of a vehicle.
+     */
+    private void release(int lotNumber, Vehicle vehicle) {
+        if(lotNumber < firstMotorbikeLot) {
+            lotAllocator.release(lotNumber);
+            vacate(LotClass.CAR, 1);
+        } else if(lotNumber < firstSharedLot) {
+            motorbikeBayAllocator.release(lotNumber - firstMotorbikeLot);
+            vacate(LotClass.MOTORBIKE, 1);
+        } else if(vehicle instanceof Motorbike) {
+            closeSharedBayIfEmpty(lotNumber - firstSharedLot);
+            vacate(LotClass.SHARED, 1);
+        } else {
+            sharedBayAllocator.release((lotNumber - firstSharedLot) / motorbikesPerSharedBay);
+            vacate(LotClass.SHARED, motorbikesPerSharedBay);
         }
-        if(lotInfos.isEmpty()) {
-            // we reached com end of com lot infos
-            // just return com position candidate
-            return currentPosition;
+        if(lotsToDrain.get(lotNumber) && takeOutOfService(lotNumber)) {
+            // the lot drained, a shared bay taken by a car is addressed by its first lot like the car
+            lotsToDrain.clear(lotNumber);
         }
+    }
 
-        LotInfo first = lotInfos.first();
-        if(first.position > currentPosition) {
-            // com first position is already greater than com position candidate
-            // return com candidate
-            return currentPosition;
+    /**
+     * Helper function used to let a taken lot drain, see setOutOfService().
+     */
+    private void startDraining(int lotNumber) {
+        lotsToDrain.set(lotNumber);
+        if(lotNumber >= firstSharedLot) {
+            // the free lots of a bay used by motorbikes aren't handed out anymore
+            int first = lotNumber - firstSharedLot;
+            for(int index = first; index < first + motorbikesPerSharedBay; index++) {
+                if(sharedLotAllocator.claim(index)) {
+                    blockedSharedLots.set(index);
+                    addLotsOutOfService(LotClass.SHARED, 1);
+                }
+            }
         }
-        // recursively check if we can find a free position in com tail of com list
-        // positions in com tail must be greater than our current position + 1
-        return findFreePosition(lotInfos.tailSet(first, false), first.position + 1);
     }
 
     /**
-     * @return The next free position on com parking level.
+     * Helper function used to cancel the drain of a lot which is still taken.
      */
-    private int findFreeLotNumber() {
-        return findFreePosition(lotInfos, 0);
+    private void stopDraining(int lotNumber) {
+        lotsToDrain.clear(lotNumber);
+        if(lotNumber >= firstSharedLot) {
+            int first = lotNumber - firstSharedLot;
+            for(int index = blockedSharedLots.nextSetBit(first); index != -1 && index < first + motorbikesPerSharedBay; index = blockedSharedLots.nextSetBit(index + 1)) {
+                blockedSharedLots.clear(index);
+                sharedLotAllocator.release(index);
+                addLotsOutOfService(LotClass.SHARED, -1);
+            }
+        }
     }
 
-    private Optional<LotInfo> findLotInfo(String vehicleId) {
+    /**
+     * Helper function used to make the other lots of a shared bay available once the first motorbike took one of them.
+     */
+    private void openSharedBay(int takenIndex) {
+        int first = takenIndex - takenIndex % motorbikesPerSharedBay;
+        for(int index = first; index < first + motorbikesPerSharedBay; index++) {
+            if(index != takenIndex) {
+                sharedLotAllocator.release(index);
+            }
+        }
+    }
+
+    /**
+     * Helper function used to free a lot in a shared bay, the bay becomes available for cars again once the last motorbike left.
+     */
+    private void closeSharedBayIfEmpty(int releasedIndex) {
+        int first = releasedIndex - releasedIndex % motorbikesPerSharedBay;
+        if(lotsToDrain.get(firstSharedLot + first)) {
+            // the bay drains, the lot stays taken and is out of service from now on
+            blockedSharedLots.set(releasedIndex);
+            addLotsOutOfService(LotClass.SHARED, 1);
+            if(blockedSharedLots.nextClearBit(first) >= first + motorbikesPerSharedBay) {
+                // the last motorbike left, the whole bay is out of service now, its lots are already counted
+                blockedSharedLots.clear(first, first + motorbikesPerSharedBay);
+                lotsToDrain.clear(firstSharedLot + first);
+                lotsOutOfService.set(firstSharedLot + first);
+            }
+            return;
+        }
+        sharedLotAllocator.release(releasedIndex);
+        for(int index = first; index < first + motorbikesPerSharedBay; index++) {
+            if(!sharedLotAllocator.isFree(index)) {
+                return;
+            }
+        }
+        for(int index = first; index < first + motorbikesPerSharedBay; index++) {
+            sharedLotAllocator.claim(index);
+        }
+        sharedBayAllocator.release(first / motorbikesPerSharedBay);
+    }
+
+    private int occupy(LotClass lotClass, int lotNumber, int numberOfLots) {
+        occupiedLotsPerClass.lazySet(lotClass.ordinal(), occupiedLotsPerClass.get(lotClass.ordinal()) + numberOfLots);
+        numberOfOccupiedLots += numberOfLots;
+        versions.addOccupiedLots(lotClass, numberOfLots);
+        return lotNumber;
+    }
+
+    private void vacate(LotClass lotClass, int numberOfLots) {
+        occupiedLotsPerClass.lazySet(lotClass.ordinal(), occupiedLotsPerClass.get(lotClass.ordinal()) - numberOfLots);
+        numberOfOccupiedLots -= numberOfLots;
+        versions.addOccupiedLots(lotClass, -numberOfLots);
+    }
+
+    /**
+     * Helper functions used to move the lots taken for a vehicle between the occupied and the reserved lots.
+     */
+    private void moveToReserved(int lotNumber, Vehicle vehicle) {
+        LotClass lotClass = lotClassOf(lotNumber);
+        int numberOfLots = lotsTakenBy(lotClass, vehicle);
+        vacate(lotClass, numberOfLots);
+        reservedLotsPerClass.lazySet(lotClass.ordinal(), reservedLotsPerClass.get(lotClass.ordinal()) + numberOfLots);
+        numberOfReservedLots += numberOfLots;
+        versions.addReservedLots(lotClass, numberOfLots);
+    }
+
+    /**
+     * Helper function used to take a lot out of service, a shared bay is addressed by its first lot.
+     *
+     * @return false in case the lot isn't free.
+     */
+    private boolean takeOutOfService(int lotNumber) {
+        boolean free = lotNumber < firstMotorbikeLot ? lotAllocator.claim(lotNumber) :
+                lotNumber < firstSharedLot ? motorbikeBayAllocator.claim(lotNumber - firstMotorbikeLot) :
+                sharedBayAllocator.claim((lotNumber - firstSharedLot) / motorbikesPerSharedBay);
+        if(free) {
+            lotsOutOfService.set(lotNumber);
+            addLotsOutOfService(lotClassOf(lotNumber), lotsTakenBy(lotNumber));
+        }
+        return free;
+    }
+
+    /**
+     * Helper function used to put a lot out of service back into service.
+     */
+    private void putIntoService(int lotNumber) {
+        if(lotNumber < firstMotorbikeLot) {
+            lotAllocator.release(lotNumber);
+        } else if(lotNumber < firstSharedLot) {
+            motorbikeBayAllocator.release(lotNumber - firstMotorbikeLot);
+        } else {
+            sharedBayAllocator.release((lotNumber - firstSharedLot) / motorbikesPerSharedBay);
+        }
+        lotsOutOfService.clear(lotNumber);
+        addLotsOutOfService(lotClassOf(lotNumber), -lotsTakenBy(lotNumber));
+    }
+
+    private void addLotsOutOfService(LotClass lotClass, int numberOfLots) {
+        lotsOutOfServicePerClass.lazySet(lotClass.ordinal(), lotsOutOfServicePerClass.get(lotClass.ordinal()) + numberOfLots);
+        numberOfLotsOutOfService += numberOfLots;
+        versions.addLotsOutOfService(lotClass, numberOfLots);
+    }
+
+    private void moveToOccupied(int lotNumber, Vehicle vehicle) {
+        LotClass lotClass = lotClassOf(lotNumber);
+        int numberOfLots = lotsTakenBy(lotClass, vehicle);
+        reservedLotsPerClass.lazySet(lotClass.ordinal(), reservedLotsPerClass.get(lotClass.ordinal()) - numberOfLots);
+        numberOfReservedLots -= numberOfLots;
+        versions.addReservedLots(lotClass, -numberOfLots);
+        occupy(lotClass, lotNumber, numberOfLots);
+    }
+
+    private LotClass lotClassOf(int lotNumber) {
+        return lotNumber < firstMotorbikeLot ? LotClass.CAR : lotNumber < firstSharedLot ? LotClass.MOTORBIKE : LotClass.SHARED;
+    }
+
+    private int lotsTakenBy(LotClass lotClass, Vehicle vehicle) {
+        // a car takes a shared bay as a whole
+        return lotClass == LotClass.SHARED && !(vehicle instanceof Motorbike) ? motorbikesPerSharedBay : 1;
+    }
+
+    /**
+     * @return The number of lots a lot out of service takes, a shared bay is taken as a whole.
+     */
+    private int lotsTakenBy(int lotNumber) {
+        return lotNumber >= firstSharedLot ? motorbikesPerSharedBay : 1;
+    }
+
+    /**
+     * Helper function used to store a vehicle on the lot allocated for it.
+     */
+    private void park(int lotNumber, Vehicle vehicle, long entryTime) {
+        store(lotNumber, vehicle, entryTime);
+        if(prefixIndex != null) {
+            prefixIndex.add(vehicle.getIdentifier(), lotNumber);
+        }
+    }
+
+    private void store(int lotNumber, Vehicle vehicle, long entryTime) {
+        versions.put(lotNumber, vehicle);
+        entryTimes[lotNumber] = entryTime;
+    }
+
+    /**
+     * Helper function used to free an occupied lot.
+     */
+    private Optional<LocationInfo> removeVehicle(int lotNumber) {
+        Vehicle vehicle = unstore(lotNumber);
+        if(prefixIndex != null) {
+            prefixIndex.remove(vehicle.getIdentifier());
+        }
+        return location(lotNumber);
+    }
+
+    /**
+     * Helper function used to free a lot stored with store().
+     *
+     * @return The vehicle which was parked on the lot.
+     */
+    private Vehicle unstore(int lotNumber) {
+        Vehicle vehicle = versions.current().get(lotNumber);
+        versions.put(lotNumber, null);
+        release(lotNumber, vehicle);
+        entryTimes[lotNumber] = NO_SESSION;
+        return vehicle;
+    }
+
+
+    /**
+     * @return The time the vehicle parked on the specified lot entered, NO_SESSION in case the lot is free.
+     */
+    synchronized long getEntryTime(int lotNumber) { return entryTimes[lotNumber]; }
+
+    /**
+     * @return A copy of the entry times of all lots, see getEntryTime().
+     */
+    synchronized long[] copyEntryTimes() { return entryTimes.clone(); }
+
+    private int findLotNumber(String vehicleId) {
         if(vehicleId == null) {
             throw new NullPointerException("The specified vehicle id must not be null.");
         }
-        return lotInfos.stream().
-                filter(lotInfo -> lotInfo.getVehicleId().equals(vehicleId)).
-                findFirst();
+        return versions.current().find(vehicleId);
     }
 
-    private Optional<LotInfo> findLotInfo(Vehicle vehicle) {
+    private int findLotNumber(Vehicle vehicle) {
         if(vehicle == null) {
             throw new NullPointerException("The specified vehicle must not be null.");
         }
-        return findLotInfo(vehicle.getIdentifier());
+        return findLotNumber(vehicle.getIdentifier());
     }
 
     /**
      * Helper function used to retrieve all location infos on this parking level.
      */
-    public Collection<VehicleLocationInfo> getVehicleLocationInfos() {
-        return Collections.unmodifiableCollection(
-            lotInfos.stream().
-                    map(lotInfo -> new VehicleLocationInfo(lotInfo.vehicle, this.getLevel(), lotInfo.position)).
-                    collect(Collectors.toList())
-        );
+    public synchronized Collection<VehicleLocationInfo> getVehicleLocationInfos() {
+        List<VehicleLocationInfo> vehicleLocationInfos = new ArrayList<>(numberOfOccupiedLots);
+        addVehicleLocationInfos(vehicleLocationInfos, 0, totalNumberOfLots, Integer.MAX_VALUE);
+        return Collections.unmodifiableCollection(vehicleLocationInfos);
+    }
+
+    /**
+     * Adds the location infos of the vehicles parked in a range of lots to the specified collection.
+     *
+     * @param fromLotNumber The first lot to look at.
+     * @param toLotNumber The lot after the last lot to look at.
+     * @param maxVehicles The maximum number of location infos to add.
+     * @return The lot after the last lot looked at, this is toLotNumber in case maxVehicles wasn't reached.
+     */
+    synchronized int addVehicleLocationInfos(Collection<? super VehicleLocationInfo> target, int fromLotNumber, int toLotNumber, int maxVehicles) {
+        LotVersions.Version lots = versions.current();
+        int added = 0;
+        for(int lotNumber = lots.nextOccupied(fromLotNumber); lotNumber != -1 && lotNumber < toLotNumber; lotNumber = lots.nextOccupied(lotNumber + 1)) {
+            if(added == maxVehicles) {
+                return lotNumber;
+            }
+            target.add(new VehicleLocationInfo(lots.get(lotNumber), this.getLevel(), lotNumber));
+            added++;
+        }
+        return toLotNumber;
     }
 
+    /**
+     * Copies the vehicles parked in a range of lots, without allocating anything.
+     *
+     * @param fromLotNumber The first lot to look at.
+     * @param toLotNumber The lot after the last lot to look at.
+     * @param vehicles Receives the vehicles, its length limits the number of vehicles copied.
+     * @param lotNumbers Receives the lot of each vehicle at the same index.
+     * @return The number of vehicles copied.
+     */
+    synchronized int getOccupiedLots(int fromLotNumber, int toLotNumber, Vehicle[] vehicles, int[] lotNumbers) {
+        LotVersions.Version lots = versions.current();
+        int copied = 0;
+        for(int lotNumber = lots.nextOccupied(fromLotNumber); lotNumber != -1 && lotNumber < toLotNumber && copied < vehicles.length; lotNumber = lots.nextOccupied(lotNumber + 1)) {
+            vehicles[copied] = lots.get(lotNumber);
+            lotNumbers[copied++] = lotNumber;
+        }
+        return copied;
+    }
+
+    /**
+     * Copies the vehicles whose identifier starts with the prefix, in the order of their identifiers.
+     * Requires the prefix index, see enablePrefixIndex().
+     *
+     * @param after only identifiers greater than this one are copied, null to start with the first match
+     * @param vehicleIds receives the identifiers, the number of copied vehicles is limited by its length
+     * @return The number of copied vehicles, less than the length of the arrays in case there are no more.
+     */
+    synchronized int findByPrefix(String prefix, String after, String[] vehicleIds, Vehicle[] vehicles, int[] lotNumbers) {
+        int copied = prefixIndex.find(prefix, after, vehicleIds, lotNumbers);
+        LotVersions.Version lots = versions.current();
+        for(int index = 0; index < copied; index++) {
+            vehicles[index] = lots.get(lotNumbers[index]);
+        }
+        return copied;
+    }
+
+    boolean hasPrefixIndex() { return prefixIndex != null; }
+
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append("ParkingLevel{").
                 append("level=").append(level).
@@ -205,9 +1033,12 @@ class ParkingLevel {
                 append(", lotInfos={");
 
         // create comma-separated list of parking lot infos
-        sb.append(lotInfos.stream().
-                map(lotInfo -> "{\"" + lotInfo.getVehicleId() + "\"/" + lotInfo.position + "}").
-                collect(Collectors.joining(",")));
+        StringJoiner lotInfos = new StringJoiner(",");
+        LotVersions.Version lots = versions.current();
+        for(int lotNumber = lots.nextOccupied(0); lotNumber != -1; lotNumber = lots.nextOccupied(lotNumber + 1)) {
+            lotInfos.add("{\"" + lots.get(lotNumber).getIdentifier() + "\"/" + lotNumber + "}");
+        }
+        sb.append(lotInfos);
 
         sb.append('}');
         return sb.toString();
@@ -0,0 +1,41 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * A finished parking session, returned by Garage.exitSession() so the fee can be charged at the gate.
+ */
+public class ParkingSession extends VehicleLocationInfo {
+
+    private final long entryTime;
+    private final long exitTime;
+
+    ParkingSession(Vehicle vehicle, int parkingLevel, int lotNumber, long entryTime, long exitTime) {
+        super(vehicle, parkingLevel, lotNumber);
+        this.entryTime = entryTime;
+        this.exitTime = exitTime;
+    }
+
+    /**
+     * @return The time the vehicle entered, in milliseconds of the session clock of the garage.
+     */
+    public long getEntryTime() { return entryTime; }
+
+    /**
+     * @return The time the vehicle exited, in milliseconds of the session clock of the garage.
+     */
+    public long getExitTime() { return exitTime; }
+
+    public long getDurationMillis() { return exitTime - entryTime; }
+
+    public long getFee(Tariff tariff) { return tariff.getFee(getDurationMillis()); }
+
+    @Override
+    public String toString() {
+        return "ParkingSession{" +
+                super.toString() +
+                ", entryTime=" + entryTime +
+                ", exitTime=" + exitTime +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Random traffic with Poisson arrivals and exponentially distributed dwell times, see TrafficModel.poisson().
+ *
+ * Every gate gets a Poisson process of its own with the rate divided by the number of gates, together they
+ * make up a Poisson process with the full rate again. The random numbers of a gate are split off a generator
+ * seeded with the seed of the model, so the arrivals of a gate don't depend on the pace of the other gates.
+ */
+class PoissonTraffic implements TrafficModel {
+
+    private final double arrivalsPerNano;
+    private final double meanDwellNanos;
+    private final double motorbikeShare;
+    private final long numberOfArrivals;
+    private final long seed;
+
+    PoissonTraffic(double arrivalsPerSecond, double meanDwellSeconds, double motorbikeShare, long numberOfArrivals, long seed) {
+        if(!(arrivalsPerSecond > 0) || !(meanDwellSeconds >= 0)) {
+            throw new IllegalArgumentException("The arrival rate must be greater than 0 and the dwell time greater or equal than 0.");
+        }
+        if(!(motorbikeShare >= 0 && motorbikeShare <= 1)) {
+            throw new IllegalArgumentException("The share of motorbikes must be between 0 and 1.");
+        }
+        if(numberOfArrivals < 0) {
+            throw new IllegalArgumentException("The number of arrivals must be greater or equal than 0.");
+        }
+        this.arrivalsPerNano = arrivalsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.meanDwellNanos = meanDwellSeconds * TimeUnit.SECONDS.toNanos(1);
+        this.motorbikeShare = motorbikeShare;
+        this.numberOfArrivals = numberOfArrivals;
+        this.seed = seed;
+    }
+
+    @Override
+    public Iterator<Arrival> arrivals(int gate, int numberOfGates) {
+        if(gate < 0 || gate >= numberOfGates) {
+            throw new IllegalArgumentException("Gate " + gate + " doesn't exist.");
+        }
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for(int i = 0; i < gate; i++) {
+            seeds.split();
+        }
+        SplittableRandom random = seeds.split();
+        double rate = arrivalsPerNano / numberOfGates;
+        // the arrivals are dealt to the gates one after the other
+        long arrivalsOfGate = numberOfArrivals / numberOfGates + (gate < numberOfArrivals % numberOfGates ? 1 : 0);
+
+        return new Iterator<Arrival>() {
+            private long arrivals;
+            private double time;
+
+            @Override
+            public boolean hasNext() { return arrivals < arrivalsOfGate; }
+
+            @Override
+            public Arrival next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                time += exponential(random, 1 / rate);
+                String id = "G" + gate + "-" + arrivals++;
+                Vehicle vehicle = random.nextDouble() < motorbikeShare ? VehicleFactory.createMotorbike(id) : VehicleFactory.createCar(id);
+                return new Arrival((long) time, vehicle, (long) exponential(random, meanDwellNanos));
+            }
+        };
+    }
+
+    private static double exponential(SplittableRandom random, double mean) {
+        // 1 - nextDouble() is never 0
+        return -Math.log(1 - random.nextDouble()) * mean;
+    }
+}
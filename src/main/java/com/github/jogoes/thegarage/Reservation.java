@@ -0,0 +1,65 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+/**
+ * A lot held for a vehicle until it arrives, see Garage.reserve().
+ *
+ * The reserved lot counts as neither free nor occupied. The reservation ends when the vehicle claims it
+ * with Garage.claim(), when it is cancelled with Garage.cancel() or when its time to live runs out.
+ */
+public class Reservation extends LocationInfo {
+
+    public enum State {
+        /**
+         * The lot is held for the vehicle.
+         */
+        ACTIVE,
+        /**
+         * The vehicle is parked on the lot.
+         */
+        CLAIMED,
+        CANCELLED,
+        EXPIRED
+    }
+
+    private final Garage garage;
+    private final Vehicle vehicle;
+    private final long deadline;
+    /**
+     * Only changed while holding the lock of the parking level.
+     */
+    private volatile State state = State.ACTIVE;
+    /**
+     * Only accessed while holding the lock of the ReservationTimer.
+     */
+    TimerWheel.Timer<Reservation> timer;
+
+    Reservation(Garage garage, Vehicle vehicle, int parkingLevel, int lotNumber, long deadline) {
+        super(parkingLevel, lotNumber);
+        this.garage = garage;
+        this.vehicle = vehicle;
+        this.deadline = deadline;
+    }
+
+    public Vehicle getVehicle() { return vehicle; }
+    public State getState() { return state; }
+    public boolean isActive() { return state == State.ACTIVE; }
+
+    /**
+     * @return The time the reservation expires at, in System.nanoTime() terms.
+     */
+    public long getDeadline() { return deadline; }
+
+    Garage getGarage() { return garage; }
+    void setState(State state) { this.state = state; }
+
+    @Override
+    public String toString() {
+        return "Reservation{" +
+                super.toString() +
+                ", vehicle=" + vehicle +
+                ", state=" + state +
+                '}';
+    }
+}
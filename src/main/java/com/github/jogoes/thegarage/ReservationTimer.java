@@ -0,0 +1,99 @@
+package com.github.jogoes.thegarage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Expires the reservations of a garage.
+ *
+ * All pending reservations of a garage share one timer wheel, which is advanced by a single periodic task
+ * instead of scheduling a task per reservation. The tasks of all garages run on one shared daemon thread,
+ * the task of a garage only runs while it has pending reservations.
+ *
+ * Lock order: a reservation is scheduled and cancelled while holding the lock of its parking level, so
+ * the expired reservations are collected under the lock of the timer and only expired after releasing it.
+ */
+final class ReservationTimer {
+
+    private static final int NUMBER_OF_WHEELS = 4;
+
+    private static final ScheduledExecutorService TICKER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "garage-reservation-timer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long tickNanos;
+    private final LongSupplier clock;
+    private final long origin;
+    private final Consumer<Reservation> expireAction;
+    private final TimerWheel<Reservation> wheel;
+    /**
+     * The periodic task advancing the wheel, null while there are no pending reservations.
+     */
+    private ScheduledFuture<?> ticker;
+
+    /**
+     * @param tickNanos the resolution of the expiry times
+     * @param clock the time source in System.nanoTime() terms
+     * @param expireAction called with every reservation whose deadline passed, without holding any lock
+     */
+    ReservationTimer(long tickNanos, LongSupplier clock, Consumer<Reservation> expireAction) {
+        this.tickNanos = tickNanos;
+        this.clock = clock;
+        this.origin = clock.getAsLong();
+        this.expireAction = expireAction;
+        this.wheel = new TimerWheel<>(NUMBER_OF_WHEELS, 0);
+    }
+
+    long now() { return clock.getAsLong(); }
+
+    /**
+     * @return true in case the deadline of the reservation passed, even if the wheel didn't get there yet.
+     */
+    boolean isDue(Reservation reservation) {
+        return now() - reservation.getDeadline() >= 0;
+    }
+
+    synchronized int getNumberOfPendingReservations() { return wheel.size(); }
+
+    synchronized void schedule(Reservation reservation) {
+        // round up, a reservation must never expire early
+        long deadlineTick = (reservation.getDeadline() - origin + tickNanos - 1) / tickNanos;
+        reservation.timer = wheel.schedule(reservation, deadlineTick);
+        if(ticker == null) {
+            ticker = TICKER.scheduleAtFixedRate(this::expire, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    synchronized void cancel(Reservation reservation) {
+        wheel.cancel(reservation.timer);
+        reservation.timer = null;
+    }
+
+    /**
+     * Expires all reservations whose deadline passed.
+     *
+     * @return The number of reservations handed to the expire action.
+     */
+    int expire() {
+        List<Reservation> expired = new ArrayList<>();
+        synchronized(this) {
+            wheel.advance((now() - origin) / tickNanos, expired::add);
+            if(wheel.isEmpty() && ticker != null) {
+                ticker.cancel(false);
+                ticker = null;
+            }
+        }
+        for(Reservation reservation : expired) {
+            expireAction.accept(reservation);
+        }
+        return expired.size();
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Spreads the vehicles over the levels: every vehicle starts searching one level above the previous one.
+ */
+class RoundRobinStrategy implements AllocationStrategy {
+
+    private final AtomicInteger counter = new AtomicInteger();
+    private volatile int numberOfLevels;
+
+    @Override
+    public void initialize(int numberOfLevels) {
+        if(this.numberOfLevels != 0) {
+            throw new IllegalStateException("The strategy is already used by another garage.");
+        }
+        this.numberOfLevels = numberOfLevels;
+    }
+
+    @Override
+    public void levelsAdded(int numberOfLevels) {
+        this.numberOfLevels = numberOfLevels;
+    }
+
+    @Override
+    public int selectLevel(Vehicle vehicle, int gateLevel, FreeLevels freeLevels) {
+        int start = Math.floorMod(counter.getAndIncrement(), numberOfLevels);
+        int level = freeLevels.nextLevelWithFreeLots(start);
+        return level != -1 ? level : freeLevels.nextLevelWithFreeLots(0);
+    }
+}
@@ -0,0 +1,118 @@
+package com.github.jogoes.thegarage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Result of a traffic simulation, see TrafficSimulation.run(). Latencies are in nanoseconds.
+ */
+public class SimulationReport {
+
+    private final int numberOfGates;
+    private final int totalNumberOfLots;
+    private final long arrivals;
+    private final long entered;
+    private final long garageFullRejections;
+    private final long duplicateRejections;
+    private final long exits;
+    private final int peakOccupiedLots;
+    private final long elapsedNanos;
+    private final long simulatedNanos;
+    private final LatencySnapshot enterLatency;
+    private final LatencySnapshot exitLatency;
+    private final long heapUsedBefore;
+    private final long peakHeapUsed;
+
+    SimulationReport(int numberOfGates, int totalNumberOfLots, long arrivals, long entered, long garageFullRejections,
+                     long duplicateRejections, long exits, int peakOccupiedLots, long elapsedNanos, long simulatedNanos,
+                     LatencySnapshot enterLatency, LatencySnapshot exitLatency, long heapUsedBefore, long peakHeapUsed) {
+        this.numberOfGates = numberOfGates;
+        this.totalNumberOfLots = totalNumberOfLots;
+        this.arrivals = arrivals;
+        this.entered = entered;
+        this.garageFullRejections = garageFullRejections;
+        this.duplicateRejections = duplicateRejections;
+        this.exits = exits;
+        this.peakOccupiedLots = peakOccupiedLots;
+        this.elapsedNanos = elapsedNanos;
+        this.simulatedNanos = simulatedNanos;
+        this.enterLatency = enterLatency;
+        this.exitLatency = exitLatency;
+        this.heapUsedBefore = heapUsedBefore;
+        this.peakHeapUsed = peakHeapUsed;
+    }
+
+    public int getNumberOfGates() { return numberOfGates; }
+    public int getTotalNumberOfLots() { return totalNumberOfLots; }
+    /**
+     * @return The number of vehicles which arrived at the gates.
+     */
+    public long getArrivals() { return arrivals; }
+    public long getEntered() { return entered; }
+    /**
+     * @return The number of vehicles which were turned away because there was no fitting lot.
+     */
+    public long getGarageFullRejections() { return garageFullRejections; }
+    /**
+     * @return The number of vehicles which were turned away because they were already in the garage.
+     */
+    public long getDuplicateRejections() { return duplicateRejections; }
+    public long getExits() { return exits; }
+    public int getPeakOccupiedLots() { return peakOccupiedLots; }
+    /**
+     * @return The wall-clock time the simulation took.
+     */
+    public long getElapsedNanos() { return elapsedNanos; }
+    /**
+     * @return The simulated time until the last vehicle left.
+     */
+    public long getSimulatedNanos() { return simulatedNanos; }
+    public LatencySnapshot getEnterLatency() { return enterLatency; }
+    public LatencySnapshot getExitLatency() { return exitLatency; }
+    /**
+     * @return The heap in use before the garage was built, after a garbage collection.
+     */
+    public long getHeapUsedBefore() { return heapUsedBefore; }
+    /**
+     * @return The highest heap usage during the simulation, summed up over the memory pools of the heap.
+     */
+    public long getPeakHeapUsed() { return peakHeapUsed; }
+
+    /**
+     * @return The number of garage operations per second of wall-clock time, enter and exit calls together.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : (arrivals + exits) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * @return The fraction of the arriving vehicles which were turned away, for any reason.
+     */
+    public double getRejectionRate() {
+        return arrivals == 0 ? 0 : (garageFullRejections + duplicateRejections) / (double) arrivals;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "gates:               %d%n" +
+                "lots:                %d, peak occupied %d%n" +
+                "arrivals:            %d, entered %d, exits %d%n" +
+                "rejections:          %.3f%% (garage full %d, duplicates %d)%n" +
+                "simulated time:      %.1f s%n" +
+                "elapsed time:        %.3f s%n" +
+                "throughput:          %.0f ops/s%n" +
+                "enter latency (us):  p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n" +
+                "exit latency (us):   p50 %.2f, p90 %.2f, p99 %.2f, p99.9 %.2f, max %.2f%n" +
+                "heap (MB):           %.1f before, %.1f peak%n",
+                numberOfGates,
+                totalNumberOfLots, peakOccupiedLots,
+                arrivals, entered, exits,
+                getRejectionRate() * 100, garageFullRejections, duplicateRejections,
+                simulatedNanos / 1e9,
+                elapsedNanos / 1e9,
+                getThroughput(),
+                enterLatency.getP50() / 1e3, enterLatency.getP90() / 1e3, enterLatency.getP99() / 1e3, enterLatency.getP999() / 1e3, enterLatency.getMax() / 1e3,
+                exitLatency.getP50() / 1e3, exitLatency.getP90() / 1e3, exitLatency.getP99() / 1e3, exitLatency.getP999() / 1e3, exitLatency.getMax() / 1e3,
+                heapUsedBefore / 1e6, peakHeapUsed / 1e6);
+    }
+}
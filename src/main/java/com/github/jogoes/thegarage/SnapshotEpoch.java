@@ -0,0 +1,49 @@
+package com.github.jogoes.thegarage;
+
+import java.util.function.LongFunction;
+
+/**
+ * Garage-wide epoch counter for snapshots, shared by all parking levels of a garage.
+ *
+ * Every write on a parking level belongs to the epoch current when it started. A snapshot sees the writes of
+ * all epochs up to its own and starts the next epoch, so writes which begin after the snapshot was taken are
+ * not part of it, see LotVersions.
+ */
+final class SnapshotEpoch {
+
+    private static final long NONE = Long.MAX_VALUE;
+
+    private volatile long epoch;
+    /**
+     * The epoch of the snapshot which is currently collecting the versions of the levels, NONE otherwise.
+     */
+    private volatile long collectingEpoch = NONE;
+
+    /**
+     * @return The epoch new writes belong to.
+     */
+    long get() { return epoch; }
+
+    /**
+     * @return true in case the snapshot being collected might need a version older than a version of the specified epoch.
+     */
+    boolean isOlderVersionNeeded(long versionEpoch) { return collectingEpoch < versionEpoch; }
+
+    /**
+     * Starts a new epoch and collects the snapshot of the previous one.
+     * Snapshots are taken one after the other.
+     *
+     * @param collect Builds the snapshot of the epoch it is passed.
+     */
+    synchronized <T> T snapshot(LongFunction<T> collect) {
+        long snapshotEpoch = epoch;
+        // published before the new epoch, so writers of the new epoch keep the versions we still need
+        collectingEpoch = snapshotEpoch;
+        epoch = snapshotEpoch + 1;
+        try {
+            return collect.apply(snapshotEpoch);
+        } finally {
+            collectingEpoch = NONE;
+        }
+    }
+}
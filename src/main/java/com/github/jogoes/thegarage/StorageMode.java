@@ -0,0 +1,17 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Defines how a parking level stores its parked vehicles, see LotVersions.
+ */
+public enum StorageMode {
+
+    /**
+     * The lots are stored in chunks, a chunk is allocated when the first vehicle parks in it. Suits sparsely occupied levels.
+     */
+    TREE,
+
+    /**
+     * The chunks of all lots are allocated up front, a vehicle never has to wait for one. Suits large and well occupied levels.
+     */
+    ARRAY
+}
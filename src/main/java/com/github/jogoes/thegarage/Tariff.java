@@ -0,0 +1,83 @@
+package com.github.jogoes.thegarage;
+
+/**
+ * Parking fees: every started period costs a fixed amount, capped per day.
+ *
+ * Example, 2.50 per started quarter of an hour and at most 20.00 per day:
+ *   Tariff tariff = new Tariff(TimeUnit.MINUTES.toMillis(15), 250, 2000);
+ *
+ * Amounts are in the smallest unit of the currency (e.g. cents).
+ */
+public final class Tariff {
+
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final long periodMillis;
+    private final long pricePerPeriod;
+    private final long maxPricePerDay;
+
+    /**
+     * @param periodMillis the length of a period
+     * @param pricePerPeriod the price of every started period
+     * @param maxPricePerDay the most a vehicle pays for 24 hours
+     */
+    public Tariff(long periodMillis, long pricePerPeriod, long maxPricePerDay) {
+        if(periodMillis <= 0) {
+            throw new IllegalArgumentException("The period must be greater than 0.");
+        }
+        if(pricePerPeriod < 0 || maxPricePerDay < 0) {
+            throw new IllegalArgumentException("Prices must be greater or equal than 0.");
+        }
+        this.periodMillis = periodMillis;
+        this.pricePerPeriod = pricePerPeriod;
+        this.maxPricePerDay = maxPricePerDay;
+    }
+
+    public long getPeriodMillis() { return periodMillis; }
+    public long getPricePerPeriod() { return pricePerPeriod; }
+    public long getMaxPricePerDay() { return maxPricePerDay; }
+
+    /**
+     * @return The fee for parking the specified time, 0 for a duration of 0 or less.
+     */
+    public long getFee(long durationMillis) {
+        return fee(Math.max(durationMillis, 0), periodMillis, pricePerPeriod, maxPricePerDay);
+    }
+
+    /**
+     * Replaces the entry times in a range of the array with the fees accrued until now.
+     *
+     * The loop has no branches and only touches primitive arrays, an entry time in the future, like
+     * ParkingLevel.NO_SESSION of a free lot, results in a fee of 0.
+     *
+     * @return The number of parking sessions in the range.
+     */
+    int computeFees(long[] times, int from, int to, long now) {
+        // copied into locals so the JIT can keep them in registers
+        long period = periodMillis;
+        long price = pricePerPeriod;
+        long maxPrice = maxPricePerDay;
+        int sessions = 0;
+        for(int i = from; i < to; i++) {
+            long entryTime = times[i];
+            sessions += entryTime != ParkingLevel.NO_SESSION ? 1 : 0;
+            times[i] = fee(Math.max(now - entryTime, 0), period, price, maxPrice);
+        }
+        return sessions;
+    }
+
+    private static long fee(long durationMillis, long period, long price, long maxPrice) {
+        long days = durationMillis / MILLIS_PER_DAY;
+        long periods = (durationMillis - days * MILLIS_PER_DAY + period - 1) / period;
+        return days * maxPrice + Math.min(maxPrice, periods * price);
+    }
+
+    @Override
+    public String toString() {
+        return "Tariff{" +
+                "periodMillis=" + periodMillis +
+                ", pricePerPeriod=" + pricePerPeriod +
+                ", maxPricePerDay=" + maxPricePerDay +
+                '}';
+    }
+}
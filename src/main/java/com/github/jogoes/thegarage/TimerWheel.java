@@ -0,0 +1,172 @@
+package com.github.jogoes.thegarage;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timer wheel, used to expire lot reservations.
+ *
+ * Time is measured in ticks. The lowest wheel has one slot per tick, every wheel above it one slot per
+ * full turn of the wheel below. A timer is put into the lowest wheel which covers its deadline, whenever
+ * a wheel completes a turn the next slot of the wheel above is cascaded down into it. Scheduling and
+ * cancelling a timer is O(1), so is advancing by one tick apart from the (amortized) cascading and the
+ * timers actually expiring. Deadlines beyond the range of the top wheel are parked in its farthest slot
+ * and cascaded again until they are in range.
+ *
+ * The timers of a slot are kept in an intrusive doubly linked list, so a cancelled timer is unlinked right
+ * away. Not thread-safe, the owner has to synchronize.
+ */
+final class TimerWheel<T> {
+
+    private static final int SLOT_SHIFT = 6;
+    private static final int SLOTS = 1 << SLOT_SHIFT;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    /**
+     * A scheduled timer, returned by schedule() and used to cancel it.
+     */
+    static final class Timer<T> {
+        private final T item;
+        private final long deadline;
+        private Timer<T> previous;
+        private Timer<T> next;
+        /**
+         * The head of the slot the timer is linked into, null once it expired or was cancelled.
+         */
+        private Timer<T> slot;
+
+        private Timer(T item, long deadline) {
+            this.item = item;
+            this.deadline = deadline;
+        }
+
+        T getItem() { return item; }
+        long getDeadline() { return deadline; }
+        boolean isPending() { return slot != null; }
+    }
+
+    /**
+     * Sentinel list heads, one per slot of every wheel.
+     */
+    private final Timer<T>[][] wheels;
+    /**
+     * The number of ticks covered by all wheels together.
+     */
+    private final long range;
+    private long currentTick;
+    private int size;
+
+    /**
+     * @param numberOfWheels the number of wheels with 64 slots each, the wheels cover 64^numberOfWheels ticks
+     * @param startTick the tick the wheel starts at
+     */
+    @SuppressWarnings("unchecked")
+    TimerWheel(int numberOfWheels, long startTick) {
+        if(numberOfWheels <= 0 || numberOfWheels * SLOT_SHIFT >= 63) {
+            throw new IllegalArgumentException("The number of wheels must be between 1 and " + (62 / SLOT_SHIFT) + ".");
+        }
+        wheels = new Timer[numberOfWheels][SLOTS];
+        for(Timer<T>[] wheel : wheels) {
+            for(int slot = 0; slot < SLOTS; slot++) {
+                Timer<T> head = new Timer<>(null, 0);
+                head.previous = head;
+                head.next = head;
+                wheel[slot] = head;
+            }
+        }
+        range = 1L << (numberOfWheels * SLOT_SHIFT);
+        currentTick = startTick;
+    }
+
+    long getCurrentTick() { return currentTick; }
+    int size() { return size; }
+    boolean isEmpty() { return size == 0; }
+
+    /**
+     * @param deadline the tick the timer expires at, a deadline which already passed expires with the next tick
+     */
+    Timer<T> schedule(T item, long deadline) {
+        Timer<T> timer = new Timer<>(item, Math.max(deadline, currentTick + 1));
+        insert(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * @return true in case the timer was cancelled, false in case it already expired or was cancelled before.
+     */
+    boolean cancel(Timer<T> timer) {
+        if(timer == null || !timer.isPending()) {
+            return false;
+        }
+        unlink(timer);
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel forward to the specified tick and hands every timer whose deadline passed to the consumer.
+     *
+     * @return The number of expired timers.
+     */
+    int advance(long tick, Consumer<? super T> expired) {
+        int numberOfExpired = 0;
+        while(currentTick < tick) {
+            if(size == 0) {
+                // nothing to cascade or expire, jump right to the end
+                currentTick = tick;
+                break;
+            }
+            long now = ++currentTick;
+            // cascade from the top so timers can fall through several wheels in one tick
+            for(int level = wheels.length - 1; level > 0; level--) {
+                if((now & ((1L << (level * SLOT_SHIFT)) - 1)) == 0) {
+                    cascade(level, (int) ((now >>> (level * SLOT_SHIFT)) & SLOT_MASK));
+                }
+            }
+            Timer<T> head = wheels[0][(int) (now & SLOT_MASK)];
+            while(head.next != head) {
+                Timer<T> timer = head.next;
+                unlink(timer);
+                size--;
+                numberOfExpired++;
+                expired.accept(timer.item);
+            }
+        }
+        return numberOfExpired;
+    }
+
+    private void cascade(int level, int slot) {
+        Timer<T> head = wheels[level][slot];
+        Timer<T> timer = head.next;
+        head.previous = head;
+        head.next = head;
+        while(timer != head) {
+            Timer<T> next = timer.next;
+            insert(timer);
+            timer = next;
+        }
+    }
+
+    private void insert(Timer<T> timer) {
+        long delta = timer.deadline - currentTick;
+        long deadline = delta < range ? timer.deadline : currentTick + range - 1;
+        int level = 0;
+        while(level < wheels.length - 1 && (deadline - currentTick) >= (1L << ((level + 1) * SLOT_SHIFT))) {
+            level++;
+        }
+        Timer<T> head = wheels[level][(int) ((deadline >>> (level * SLOT_SHIFT)) & SLOT_MASK)];
+        timer.slot = head;
+        timer.previous = head.previous;
+        timer.next = head;
+        head.previous.next = timer;
+        head.previous = timer;
+    }
+
+    private void unlink(Timer<T> timer) {
+        timer.previous.next = timer.next;
+        timer.next.previous = timer.previous;
+        timer.previous = null;
+        timer.next = null;
+        timer.slot = null;
+    }
+}
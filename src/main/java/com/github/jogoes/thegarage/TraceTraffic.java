@@ -0,0 +1,126 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recorded traffic read from a trace file, see TrafficModel.trace().
+ *
+ * File format, one arrival per line ordered by arrival time, empty lines and lines starting with '#' are skipped:
+ *   arrival time in milliseconds,vehicle id,car or motorbike,dwell time in milliseconds
+ *
+ * Example:
+ *   0,B-AB 1234,car,3600000
+ *   250,M-XY 77,motorbike,900000
+ *
+ * A vehicle may arrive several times. All arrivals of a vehicle go to the same gate, chosen by the hash of its id,
+ * so a gate sees them in order even though the gates don't wait for each other.
+ */
+class TraceTraffic implements TrafficModel {
+
+    private final long[] times;
+    private final String[] vehicleIds;
+    private final boolean[] motorbikes;
+    private final long[] dwellTimes;
+    private final int size;
+
+    private TraceTraffic(long[] times, String[] vehicleIds, boolean[] motorbikes, long[] dwellTimes, int size) {
+        this.times = times;
+        this.vehicleIds = vehicleIds;
+        this.motorbikes = motorbikes;
+        this.dwellTimes = dwellTimes;
+        this.size = size;
+    }
+
+    /**
+     * @exception java.lang.IllegalArgumentException in case a line of the file is invalid
+     */
+    static TraceTraffic read(Path path) throws IOException {
+
+        long[] times = new long[1024];
+        String[] vehicleIds = new String[times.length];
+        boolean[] motorbikes = new boolean[times.length];
+        long[] dwellTimes = new long[times.length];
+        int size = 0;
+
+        try(BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            for(String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if(fields.length != 4 || fields[1].trim().isEmpty()) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of the trace must be 'time,vehicle id,car|motorbike,dwell time'.");
+                }
+                if(size == times.length) {
+                    times = Arrays.copyOf(times, size * 2);
+                    vehicleIds = Arrays.copyOf(vehicleIds, size * 2);
+                    motorbikes = Arrays.copyOf(motorbikes, size * 2);
+                    dwellTimes = Arrays.copyOf(dwellTimes, size * 2);
+                }
+                try {
+                    times[size] = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(fields[0].trim()));
+                    dwellTimes[size] = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(fields[3].trim()));
+                } catch(NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of the trace has an invalid time.", e);
+                }
+                if(times[size] < 0 || dwellTimes[size] < 0 || (size > 0 && times[size] < times[size - 1])) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of the trace is out of order or has a negative time.");
+                }
+                String type = fields[2].trim();
+                if(!type.equals("car") && !type.equals("motorbike")) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of the trace has the unknown vehicle type '" + type + "'.");
+                }
+                vehicleIds[size] = fields[1].trim();
+                motorbikes[size] = type.equals("motorbike");
+                size++;
+            }
+        }
+        return new TraceTraffic(times, vehicleIds, motorbikes, dwellTimes, size);
+    }
+
+    @Override
+    public Iterator<Arrival> arrivals(int gate, int numberOfGates) {
+        if(gate < 0 || gate >= numberOfGates) {
+            throw new IllegalArgumentException("Gate " + gate + " doesn't exist.");
+        }
+        return new Iterator<Arrival>() {
+            private int next = find(0);
+
+            private int find(int from) {
+                for(int index = from; index < size; index++) {
+                    if(Math.floorMod(vehicleIds[index].hashCode(), numberOfGates) == gate) {
+                        return index;
+                    }
+                }
+                return size;
+            }
+
+            @Override
+            public boolean hasNext() { return next < size; }
+
+            @Override
+            public Arrival next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int index = next;
+                next = find(index + 1);
+                String id = vehicleIds[index];
+                return new Arrival(times[index], motorbikes[index] ? VehicleFactory.createMotorbike(id) : VehicleFactory.createCar(id), dwellTimes[index]);
+            }
+        };
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.jogoes.thegarage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Describes which vehicles arrive at the garage, when, and how long they stay, see TrafficSimulation.
+ *
+ * The traffic is split over the gates of the simulation, every gate gets its own stream of arrivals.
+ * A model has to hand out the same arrivals every time it is asked, so simulations can be repeated.
+ */
+public interface TrafficModel {
+
+    /**
+     * @param gate the gate the arrivals are for, from 0 to numberOfGates - 1
+     * @param numberOfGates the number of gates the traffic is split over
+     * @return The arrivals at the gate, ordered by arrival time. A vehicle always arrives at the same gate.
+     */
+    Iterator<Arrival> arrivals(int gate, int numberOfGates);
+
+    /**
+     * Random traffic: the vehicles arrive as a Poisson process and stay for an exponentially distributed time.
+     * The traffic only depends on the seed and the number of gates.
+     *
+     * @param arrivalsPerSecond the mean number of vehicles arriving per second of simulated time, at all gates together
+     * @param meanDwellSeconds the mean time a vehicle stays
+     * @param motorbikeShare the fraction of motorbikes, from 0 to 1
+     * @param numberOfArrivals the number of vehicles arriving at all gates together
+     * @param seed the seed of the random numbers
+     */
+    static TrafficModel poisson(double arrivalsPerSecond, double meanDwellSeconds, double motorbikeShare, long numberOfArrivals, long seed) {
+        return new PoissonTraffic(arrivalsPerSecond, meanDwellSeconds, motorbikeShare, numberOfArrivals, seed);
+    }
+
+    /**
+     * Recorded traffic, read from a file with one arrival per line, see TraceTraffic.
+     *
+     * @exception java.lang.IllegalArgumentException in case a line of the file is invalid
+     */
+    static TrafficModel trace(Path path) throws IOException {
+        return TraceTraffic.read(path);
+    }
+}
@@ -0,0 +1,293 @@
+package com.github.jogoes.thegarage;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a garage with simulated traffic from several gate threads and reports how it performs, used for
+ * capacity planning and for load testing changes of the garage.
+ *
+ * Usage:
+ *   SimulationReport report = new TrafficSimulation().
+ *           garage(new GarageBuilder().numberOfLevels(10).numberOfParkingLotsPerLevel(1000)).
+ *           traffic(TrafficModel.poisson(1000, 600, 0.1, 1000000, 42)).
+ *           numberOfGates(4).
+ *           run();
+ *
+ * or from the command line, see main().
+ *
+ * Every gate runs in a thread of its own. It takes the arrivals of its share of the traffic and lets the vehicles
+ * exit through the same gate once their dwell time is over, in the order of simulated time. By default the gates
+ * run as fast as they can and don't wait for each other, so the simulated clocks of the gates drift apart. With
+ * a speedup the gates are paced by the wall clock instead, and the latencies are measured from the time an
+ * operation was due: a gate falling behind shows up in the latencies instead of hiding the delay.
+ *
+ * A simulation is repeatable: the traffic only depends on the model and the number of gates. With a single gate
+ * running as fast as possible the outcome, apart from the timings, is the same on every run.
+ */
+public class TrafficSimulation {
+
+    private GarageBuilder garageBuilder = new GarageBuilder();
+    private TrafficModel traffic;
+    private int numberOfGates = 1;
+    private double speedup;
+
+    /**
+     * @param garageBuilder the shape and settings of the simulated garage, a garage with 1 level and no lots by default
+     */
+    public TrafficSimulation garage(GarageBuilder garageBuilder) {
+        if(garageBuilder == null) {
+            throw new NullPointerException("The garage builder must not be null.");
+        }
+        this.garageBuilder = garageBuilder;
+        return this;
+    }
+
+    /**
+     * @param traffic the arrivals and dwell times, see TrafficModel
+     */
+    public TrafficSimulation traffic(TrafficModel traffic) {
+        if(traffic == null) {
+            throw new NullPointerException("The traffic model must not be null.");
+        }
+        this.traffic = traffic;
+        return this;
+    }
+
+    /**
+     * @param numberOfGates the number of gate threads, 1 by default
+     */
+    public TrafficSimulation numberOfGates(int numberOfGates) {
+        if(numberOfGates <= 0) {
+            throw new IllegalArgumentException("The number of gates must be greater than 0.");
+        }
+        this.numberOfGates = numberOfGates;
+        return this;
+    }
+
+    /**
+     * @param speedup how much faster than real time the simulated time passes, 0 (as fast as possible) by default
+     */
+    public TrafficSimulation speedup(double speedup) {
+        if(!(speedup >= 0)) {
+            throw new IllegalArgumentException("The speedup must be greater or equal than 0.");
+        }
+        this.speedup = speedup;
+        return this;
+    }
+
+    /**
+     * Counts the operations of one gate.
+     */
+    private static final class GateCounters {
+        long arrivals;
+        long entered;
+        long garageFullRejections;
+        long duplicateRejections;
+        long exits;
+        long simulatedNanos;
+    }
+
+    /**
+     * Builds a new garage and runs the traffic through it until the last vehicle left.
+     *
+     * @exception java.lang.IllegalStateException in case no traffic is configured or a gate failed
+     */
+    public SimulationReport run() {
+
+        if(traffic == null) {
+            throw new IllegalStateException("No traffic model configured.");
+        }
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP) {
+                heapPools.add(pool);
+            }
+        }
+        System.gc();
+        long heapUsedBefore = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        for(MemoryPoolMXBean pool : heapPools) {
+            pool.resetPeakUsage();
+        }
+
+        Garage garage = garageBuilder.build();
+        LatencyHistogram enterLatency = new LatencyHistogram();
+        LatencyHistogram exitLatency = new LatencyHistogram();
+        AtomicInteger peakOccupiedLots = new AtomicInteger();
+        GateCounters[] counters = new GateCounters[numberOfGates];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        long[] startNanos = new long[1];
+
+        Thread[] gates = new Thread[numberOfGates];
+        for(int gate = 0; gate < numberOfGates; gate++) {
+            int gateNumber = gate;
+            counters[gate] = new GateCounters();
+            gates[gate] = new Thread(() -> {
+                try {
+                    start.await();
+                    runGate(gateNumber, garage, startNanos[0], counters[gateNumber], enterLatency, exitLatency, peakOccupiedLots);
+                } catch(Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "gate-" + gate);
+            gates[gate].start();
+        }
+
+        startNanos[0] = System.nanoTime();
+        start.countDown();
+        for(Thread gate : gates) {
+            try {
+                gate.join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the gates.", e);
+            }
+        }
+        long elapsedNanos = System.nanoTime() - startNanos[0];
+        if(failure.get() != null) {
+            throw new IllegalStateException("A gate of the simulation failed.", failure.get());
+        }
+
+        long peakHeapUsed = 0;
+        for(MemoryPoolMXBean pool : heapPools) {
+            peakHeapUsed += pool.getPeakUsage().getUsed();
+        }
+        GateCounters total = new GateCounters();
+        for(GateCounters gate : counters) {
+            total.arrivals += gate.arrivals;
+            total.entered += gate.entered;
+            total.garageFullRejections += gate.garageFullRejections;
+            total.duplicateRejections += gate.duplicateRejections;
+            total.exits += gate.exits;
+            total.simulatedNanos = Math.max(total.simulatedNanos, gate.simulatedNanos);
+        }
+        return new SimulationReport(numberOfGates, garage.getTotalNumberOfLots(), total.arrivals, total.entered,
+                total.garageFullRejections, total.duplicateRejections, total.exits, peakOccupiedLots.get(), elapsedNanos,
+                total.simulatedNanos, new LatencySnapshot(enterLatency), new LatencySnapshot(exitLatency), heapUsedBefore, peakHeapUsed);
+    }
+
+    /**
+     * Runs the arrivals and departures of one gate in the order of simulated time.
+     */
+    private void runGate(int gate, Garage garage, long startNanos, GateCounters counters,
+                         LatencyHistogram enterLatency, LatencyHistogram exitLatency, AtomicInteger peakOccupiedLots) {
+
+        Iterator<Arrival> arrivals = traffic.arrivals(gate, numberOfGates);
+        PriorityQueue<Arrival> parked = new PriorityQueue<>(Comparator.comparingLong(Arrival::getDepartureTime));
+        int gateLevel = gate % garage.getNumberOfLevels();
+
+        Arrival next = arrivals.hasNext() ? arrivals.next() : null;
+        while(next != null || !parked.isEmpty()) {
+            if(!parked.isEmpty() && (next == null || parked.peek().getDepartureTime() <= next.getTime())) {
+                Arrival departure = parked.poll();
+                counters.simulatedNanos = departure.getDepartureTime();
+                long due = pace(startNanos, departure.getDepartureTime());
+                garage.exit(departure.getVehicle());
+                exitLatency.record(System.nanoTime() - due);
+                counters.exits++;
+            } else {
+                counters.arrivals++;
+                counters.simulatedNanos = next.getTime();
+                long due = pace(startNanos, next.getTime());
+                Optional<LocationInfo> location;
+                try {
+                    location = garage.enter(next.getVehicle(), gateLevel);
+                } catch(IllegalArgumentException e) {
+                    // the vehicle is still parked from an earlier arrival at another gate
+                    location = null;
+                }
+                enterLatency.record(System.nanoTime() - due);
+                if(location == null) {
+                    counters.duplicateRejections++;
+                } else if(location.isPresent()) {
+                    counters.entered++;
+                    parked.add(next);
+                    int occupiedLots = garage.getNumberOfOccupiedLots();
+                    if(occupiedLots > peakOccupiedLots.get()) {
+                        peakOccupiedLots.accumulateAndGet(occupiedLots, Math::max);
+                    }
+                } else {
+                    counters.garageFullRejections++;
+                }
+                next = arrivals.hasNext() ? arrivals.next() : null;
+            }
+        }
+    }
+
+    /**
+     * Waits until the simulated time is due, in case the simulation is paced.
+     *
+     * @return The wall-clock time the operation was due, latencies are measured from it.
+     */
+    private long pace(long startNanos, long simulatedTime) {
+        if(speedup == 0) {
+            return System.nanoTime();
+        }
+        long due = startNanos + (long) (simulatedTime / speedup);
+        for(long now = System.nanoTime(); now < due; now = System.nanoTime()) {
+            LockSupport.parkNanos(due - now);
+        }
+        return due;
+    }
+
+    /**
+     * Runs a simulation configured with name=value arguments and prints its report.
+     *
+     * Garage:  levels=1 lots=1000 motorbikeBays=0 sharedBays=0 storage=TREE|ARRAY
+     *          strategy=firstFit|leastLoaded|roundRobin|nearestToGate
+     * Traffic: rate=100 (arrivals per second) dwell=600 (mean seconds) motorbikes=0 (share) arrivals=100000 seed=1
+     *          or trace=[file], see TraceTraffic
+     * Gates:   gates=1 speedup=0
+     */
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args) {
+            int separator = arg.indexOf('=');
+            if(separator <= 0) {
+                throw new IllegalArgumentException("Arguments must be given as name=value, not '" + arg + "'.");
+            }
+            options.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+
+        GarageBuilder garageBuilder = new GarageBuilder().
+                numberOfLevels(Integer.parseInt(options.getOrDefault("levels", "1"))).
+                numberOfParkingLotsPerLevel(Integer.parseInt(options.getOrDefault("lots", "1000"))).
+                numberOfMotorbikeBaysPerLevel(Integer.parseInt(options.getOrDefault("motorbikeBays", "0"))).
+                numberOfSharedBaysPerLevel(Integer.parseInt(options.getOrDefault("sharedBays", "0"))).
+                storageMode(StorageMode.valueOf(options.getOrDefault("storage", "TREE")));
+        switch(options.getOrDefault("strategy", "firstFit")) {
+            case "firstFit": garageBuilder.allocationStrategy(AllocationStrategy.firstFit()); break;
+            case "leastLoaded": garageBuilder.allocationStrategy(AllocationStrategy.leastLoaded()); break;
+            case "roundRobin": garageBuilder.allocationStrategy(AllocationStrategy.roundRobin()); break;
+            case "nearestToGate": garageBuilder.allocationStrategy(AllocationStrategy.nearestToGate()); break;
+            default: throw new IllegalArgumentException("Unknown allocation strategy '" + options.get("strategy") + "'.");
+        }
+
+        TrafficModel traffic = options.containsKey("trace") ?
+                TrafficModel.trace(Paths.get(options.get("trace"))) :
+                TrafficModel.poisson(
+                        Double.parseDouble(options.getOrDefault("rate", "100")),
+                        Double.parseDouble(options.getOrDefault("dwell", "600")),
+                        Double.parseDouble(options.getOrDefault("motorbikes", "0")),
+                        Long.parseLong(options.getOrDefault("arrivals", "100000")),
+                        Long.parseLong(options.getOrDefault("seed", "1")));
+
+        SimulationReport report = new TrafficSimulation().
+                garage(garageBuilder).
+                traffic(traffic).
+                numberOfGates(Integer.parseInt(options.getOrDefault("gates", "1"))).
+                speedup(Double.parseDouble(options.getOrDefault("speedup", "0"))).
+                run();
+        System.out.print(report);
+    }
+}
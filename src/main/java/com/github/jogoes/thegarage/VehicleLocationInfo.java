@@ -5,9 +5,9 @@ import com.github.jogoes.thegarage.vehicles.Vehicle;
 /**
  * Extends location info with information about com vehicle at that location.
  *
- * Internal class. Currently, only used for unit testing.
+ * Returned when iterating over the vehicles in the garage, see Garage.vehicleLocationInfos().
  */
-class VehicleLocationInfo extends LocationInfo {
+public class VehicleLocationInfo extends LocationInfo {
 
     private Vehicle vehicle;
 
@@ -0,0 +1,49 @@
+package com.github.jogoes.thegarage;
+
+import java.util.List;
+
+/**
+ * One page of the vehicles parked in the garage, see Garage.getVehicleLocationInfos(long, int).
+ *
+ * Usage:
+ *   for(long cursor = VehicleLocationPage.FIRST; cursor != VehicleLocationPage.END; ) {
+ *       VehicleLocationPage page = garage.getVehicleLocationInfos(cursor, 1000);
+ *       export(page.getVehicleLocationInfos());
+ *       cursor = page.getNextCursor();
+ *   }
+ *
+ * A cursor is a packed location (see LocationInfo.pack()): the next page starts at the first occupied lot
+ * at or after it. Cursors stay valid while the garage changes, a page reflects the state of each level
+ * at the time the page was read.
+ */
+public class VehicleLocationPage {
+
+    /**
+     * Cursor of the first page.
+     */
+    public static final long FIRST = 0L;
+    /**
+     * Cursor returned after the last page.
+     */
+    public static final long END = -1L;
+
+    private final List<VehicleLocationInfo> vehicleLocationInfos;
+    private final long nextCursor;
+
+    VehicleLocationPage(List<VehicleLocationInfo> vehicleLocationInfos, long nextCursor) {
+        this.vehicleLocationInfos = vehicleLocationInfos;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * @return The vehicles on this page, ordered by level and lot number.
+     */
+    public List<VehicleLocationInfo> getVehicleLocationInfos() { return vehicleLocationInfos; }
+
+    /**
+     * @return The cursor of the next page, END in case this is the last page.
+     */
+    public long getNextCursor() { return nextCursor; }
+
+    public boolean hasNext() { return nextCursor != END; }
+}
@@ -0,0 +1,157 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Lazy spliterator over the occupied lots of a range of parking levels, see Garage.vehicleLocationInfos().
+ *
+ * The spliterator covers everything from a start position (level and lot) up to the end of a lot range on
+ * its last level. It splits by levels as long as it covers more than one level, then by halving the lot range.
+ *
+ * Occupied lots are fetched in small batches while holding the lock of the level, so the memory needed
+ * doesn't depend on the size of the garage and the gates are never blocked for long. The iteration is
+ * weakly consistent: every batch reflects the state of its level at one instant, but vehicles moving
+ * while the iteration is in progress may be missed or, when they exit and enter again, reported twice.
+ */
+class VehicleLocationSpliterator implements Spliterator<VehicleLocationInfo> {
+
+    private static final int BATCH_SIZE = 128;
+    /**
+     * Lot ranges on a single level aren't split any further below this size.
+     */
+    private static final int MIN_SPLIT_LOTS = 4096;
+
+    private final Garage garage;
+
+    /**
+     * The next position to look at.
+     */
+    private int level;
+    private int lot;
+    /**
+     * The last level and the end of the lot range on it (exclusive).
+     */
+    private final int lastLevel;
+    private int endLot;
+
+    private Vehicle[] vehicles;
+    private int[] lotNumbers;
+    private int batchLevel;
+    private int batchPosition;
+    private int batchSize;
+
+    VehicleLocationSpliterator(Garage garage, int level, int lot, int lastLevel, int endLot) {
+        this.garage = garage;
+        this.level = level;
+        this.lot = lot;
+        this.lastLevel = lastLevel;
+        this.endLot = endLot;
+    }
+
+    private int endLotOf(int level) {
+        int numberOfLots = garage.getParkingLevel(level).getTotalNumberOfLots();
+        return level == lastLevel ? Math.min(endLot, numberOfLots) : numberOfLots;
+    }
+
+    /**
+     * Fetches the next batch of occupied lots.
+     *
+     * @return false in case there are no occupied lots left.
+     */
+    private boolean fetch() {
+        if(vehicles == null) {
+            vehicles = new Vehicle[BATCH_SIZE];
+            lotNumbers = new int[BATCH_SIZE];
+        }
+        while(level <= lastLevel) {
+            int end = endLotOf(level);
+            int fetched = lot < end ? garage.getParkingLevel(level).getOccupiedLots(lot, end, vehicles, lotNumbers) : 0;
+            if(fetched > 0) {
+                batchLevel = level;
+                batchPosition = 0;
+                batchSize = fetched;
+                lot = fetched == BATCH_SIZE ? lotNumbers[fetched - 1] + 1 : end;
+                return true;
+            }
+            level++;
+            lot = 0;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super VehicleLocationInfo> action) {
+        if(batchPosition == batchSize && !fetch()) {
+            return false;
+        }
+        int position = batchPosition++;
+        Vehicle vehicle = vehicles[position];
+        vehicles[position] = null;
+        action.accept(new VehicleLocationInfo(vehicle, batchLevel, lotNumbers[position]));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super VehicleLocationInfo> action) {
+        while(batchPosition < batchSize || fetch()) {
+            for(; batchPosition < batchSize; batchPosition++) {
+                Vehicle vehicle = vehicles[batchPosition];
+                vehicles[batchPosition] = null;
+                action.accept(new VehicleLocationInfo(vehicle, batchLevel, lotNumbers[batchPosition]));
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<VehicleLocationInfo> trySplit() {
+        if(batchPosition < batchSize) {
+            // a fetched batch can't be handed over
+            return null;
+        }
+        if(level < lastLevel) {
+            // the prefix takes the lower half of the levels
+            int middle = (level + lastLevel + 1) >>> 1;
+            Spliterator<VehicleLocationInfo> prefix = new VehicleLocationSpliterator(garage, level, lot, middle - 1, Integer.MAX_VALUE);
+            level = middle;
+            lot = 0;
+            return prefix;
+        }
+        if(level == lastLevel) {
+            int end = endLotOf(level);
+            if(end - lot >= 2 * MIN_SPLIT_LOTS) {
+                int middle = (lot + end) >>> 1;
+                Spliterator<VehicleLocationInfo> prefix = new VehicleLocationSpliterator(garage, level, lot, level, middle);
+                lot = middle;
+                return prefix;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The number of occupied lots in the remaining range, assuming the vehicles of a level are spread
+     * evenly over its lots.
+     */
+    @Override
+    public long estimateSize() {
+        long size = batchSize - batchPosition;
+        for(int current = level; current <= lastLevel; current++) {
+            ParkingLevel parkingLevel = garage.getParkingLevel(current);
+            int numberOfLots = parkingLevel.getTotalNumberOfLots();
+            int from = current == level ? lot : 0;
+            int lots = Math.max(endLotOf(current) - from, 0);
+            if(numberOfLots > 0) {
+                size += (long) parkingLevel.getNumberOfOccupiedLots() * lots / numberOfLots;
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL | CONCURRENT;
+    }
+}
@@ -0,0 +1,164 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class AllocationStrategyTest {
+
+    private static Garage createGarage(AllocationStrategy strategy, int numberOfLevels, int lotsPerLevel) {
+        return new GarageBuilder().
+                numberOfLevels(numberOfLevels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                allocationStrategy(strategy).
+                build();
+    }
+
+    private static int enter(Garage garage, String vehicleId) {
+        return garage.enter(VehicleFactory.createCar(vehicleId)).get().getParkingLevel();
+    }
+
+    @Test
+    public void testFirstFit() {
+
+        Garage garage = createGarage(AllocationStrategy.firstFit(), 3, 2);
+
+        assertEquals(0, enter(garage, "1"));
+        assertEquals(0, enter(garage, "2"));
+        assertEquals(1, enter(garage, "3"));
+    }
+
+    @Test
+    public void testLeastLoaded() {
+
+        Garage garage = createGarage(AllocationStrategy.leastLoaded(), 3, 2);
+
+        // every level has the same number of free lots at first, the lowest one wins a tie
+        assertEquals(0, enter(garage, "1"));
+        assertEquals(1, enter(garage, "2"));
+        assertEquals(2, enter(garage, "3"));
+        assertEquals(0, enter(garage, "4"));
+
+        // level 1 becomes the least loaded one
+        garage.exit(VehicleFactory.createCar("2"));
+        assertEquals(1, enter(garage, "5"));
+        assertEquals(1, enter(garage, "6"));
+        assertEquals(2, enter(garage, "7"));
+        assertFalse(garage.enter(VehicleFactory.createCar("8")).isPresent());
+    }
+
+    @Test
+    public void testLeastLoadedKeepsLevelsBalanced() {
+
+        final int numberOfLevels = 37;
+        Garage garage = createGarage(AllocationStrategy.leastLoaded(), numberOfLevels, 100);
+
+        List<Vehicle> vehicles = new ArrayList<>();
+        for(int i = 0; i < 1000; i++) {
+            Vehicle vehicle = VehicleFactory.createCar(Integer.toString(i));
+            garage.enter(vehicle);
+            vehicles.add(vehicle);
+            if(i % 3 == 0) {
+                garage.exit(vehicles.remove(vehicles.size() / 2));
+            }
+        }
+
+        int[] occupied = new int[numberOfLevels];
+        for(VehicleLocationInfo locationInfo : garage.getVehicleLocationInfos()) {
+            occupied[locationInfo.getParkingLevel()]++;
+        }
+        for(int level = 0; level < numberOfLevels; level++) {
+            assertTrue(Math.abs(occupied[level] - occupied[0]) <= 1);
+        }
+    }
+
+    @Test
+    public void testRoundRobin() {
+
+        Garage garage = createGarage(AllocationStrategy.roundRobin(), 3, 2);
+
+        assertEquals(0, enter(garage, "1"));
+        assertEquals(1, enter(garage, "2"));
+        assertEquals(2, enter(garage, "3"));
+        assertEquals(0, enter(garage, "4"));
+        assertEquals(1, enter(garage, "5"));
+
+        // level 2 is skipped once it is full
+        assertEquals(2, enter(garage, "6"));
+        garage.exit(VehicleFactory.createCar("1"));
+        assertEquals(0, enter(garage, "7"));
+    }
+
+    @Test
+    public void testNearestToGate() {
+
+        Garage garage = createGarage(AllocationStrategy.nearestToGate(), 5, 1);
+
+        assertEquals(3, garage.enter(VehicleFactory.createCar("1"), 3).get().getParkingLevel());
+        // two levels are equally close, the upper one is taken
+        assertEquals(4, garage.enter(VehicleFactory.createCar("2"), 3).get().getParkingLevel());
+        assertEquals(2, garage.enter(VehicleFactory.createCar("3"), 3).get().getParkingLevel());
+        assertEquals(1, garage.enter(VehicleFactory.createCar("4"), 4).get().getParkingLevel());
+        assertEquals(0, garage.enter(VehicleFactory.createCar("5"), 4).get().getParkingLevel());
+        assertFalse(garage.enter(VehicleFactory.createCar("6"), 0).isPresent());
+
+        assertThrows(IllegalArgumentException.class, () -> garage.enter(VehicleFactory.createCar("7"), 5));
+    }
+
+    @Test
+    public void testStrategyBelongsToOneGarage() {
+
+        AllocationStrategy strategy = AllocationStrategy.leastLoaded();
+        createGarage(strategy, 2, 2);
+
+        assertThrows(IllegalStateException.class, () -> createGarage(strategy, 2, 2));
+    }
+
+    @Test
+    public void testCarsFallBackWhenSelectedLevelOnlyFitsMotorbikes() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(1).
+                numberOfMotorbikeBaysPerLevel(5).
+                allocationStrategy(AllocationStrategy.leastLoaded()).
+                build();
+
+        assertEquals(0, enter(garage, "1"));
+        // level 0 has more free lots now, but only for motorbikes
+        garage.enter(VehicleFactory.createMotorbike("m1"));
+        assertEquals(1, enter(garage, "2"));
+        assertFalse(garage.enter(VehicleFactory.createCar("3")).isPresent());
+    }
+
+    @Test
+    public void testLeastLoadedRanksCarsByFreeCarBays() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(3).
+                numberOfParkingLotsPerLevel(2).
+                numberOfMotorbikeBaysPerLevel(5).
+                allocationStrategy(AllocationStrategy.leastLoaded()).
+                build();
+
+        // one car bay left on every level, one motorbike on every level
+        for(int i = 0; i < 3; i++) {
+            assertEquals(i, enter(garage, "c" + i));
+        }
+        for(int i = 0; i < 3; i++) {
+            assertEquals(i, garage.enter(VehicleFactory.createMotorbike("m" + i)).get().getParkingLevel());
+        }
+        garage.exit(VehicleFactory.createMotorbike("m0"));
+        garage.exit(VehicleFactory.createCar("c2"));
+
+        // levels 0 and 2 have the most free lots, but only level 2 has two free car bays
+        assertEquals(2, enter(garage, "c3"));
+        assertEquals(0, garage.enter(VehicleFactory.createMotorbike("m3")).get().getParkingLevel());
+    }
+}
@@ -0,0 +1,209 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class AsyncGarageTest {
+
+    private static final long TIMEOUT_SECONDS = 30;
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        return future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static AsyncGarage createGarage(int numberOfLevels, int lotsPerLevel) {
+        return new GarageBuilder().
+                numberOfLevels(numberOfLevels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                buildAsync();
+    }
+
+    @Test
+    public void testInvalidArguments() {
+
+        assertThrows(IllegalArgumentException.class, () -> createGarage(0, 1));
+        try(AsyncGarage garage = createGarage(1, 1)) {
+            assertThrows(NullPointerException.class, () -> garage.enter(null));
+            assertThrows(IllegalArgumentException.class, () -> garage.enter(VehicleFactory.createCar("car"), 1));
+        }
+    }
+
+    @Test
+    public void testEnterExitFindLocation() throws Exception {
+
+        try(AsyncGarage garage = createGarage(2, 2)) {
+            Vehicle car = VehicleFactory.createCar("car");
+            LocationInfo location = await(garage.enter(car)).get();
+            assertEquals(0, location.getParkingLevel());
+            assertEquals(0, location.getLotNumber());
+            assertEquals(1, garage.getNumberOfOccupiedLots());
+            assertEquals(3, garage.getNumberOfFreeLots());
+
+            assertEquals(location, await(garage.findLocation("car")).get());
+            assertFalse(await(garage.findLocation("other")).isPresent());
+
+            // a duplicate completes exceptionally
+            try {
+                await(garage.enter(car));
+                fail();
+            } catch(ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalArgumentException);
+            }
+
+            assertEquals(location, await(garage.exit(car)).get());
+            assertFalse(await(garage.exit(car)).isPresent());
+            assertFalse(await(garage.findLocation(car)).isPresent());
+            assertEquals(0, garage.getNumberOfOccupiedLots());
+        }
+    }
+
+    @Test
+    public void testFullGarage() throws Exception {
+
+        try(AsyncGarage garage = createGarage(3, 2)) {
+            for(int i = 0; i < 6; i++) {
+                assertEquals(i / 2, await(garage.enter(VehicleFactory.createCar("car" + i))).get().getParkingLevel());
+            }
+            assertFalse(await(garage.enter(VehicleFactory.createCar("late"))).isPresent());
+            assertFalse(await(garage.findLocation("late")).isPresent());
+
+            await(garage.exit(VehicleFactory.createCar("car3")));
+            assertEquals(1, await(garage.enter(VehicleFactory.createCar("late"))).get().getParkingLevel());
+        }
+    }
+
+    @Test
+    public void testForwardToLevelWithRoom() throws Exception {
+
+        // a strategy which insists on the gate level, whether it is full or not
+        AllocationStrategy gateLevel = new AllocationStrategy() {
+            @Override
+            public void initialize(int numberOfLevels) {}
+
+            @Override
+            public int selectLevel(Vehicle vehicle, int gate, FreeLevels freeLevels) { return gate; }
+        };
+        try(AsyncGarage garage = new GarageBuilder().numberOfLevels(3).numberOfParkingLotsPerLevel(1).allocationStrategy(gateLevel).buildAsync()) {
+            assertEquals(2, await(garage.enter(VehicleFactory.createCar("a"), 2)).get().getParkingLevel());
+            // level 2 is full, the event loop passes the vehicle on and wraps around
+            assertEquals(0, await(garage.enter(VehicleFactory.createCar("b"), 2)).get().getParkingLevel());
+            assertEquals(1, await(garage.enter(VehicleFactory.createCar("c"), 0)).get().getParkingLevel());
+            assertFalse(await(garage.enter(VehicleFactory.createCar("d"), 1)).isPresent());
+            assertEquals(3, garage.getNumberOfOccupiedLots());
+        }
+    }
+
+    @Test
+    public void testFailedEnter() throws Exception {
+
+        AtomicBoolean clockBroken = new AtomicBoolean(true);
+        AsyncGarage garage = new GarageBuilder().
+                numberOfLevels(1).
+                numberOfParkingLotsPerLevel(2).
+                sessionClock(() -> {
+                    if(clockBroken.getAndSet(false)) {
+                        throw new IllegalStateException("clock");
+                    }
+                    return 0;
+                }).
+                buildAsync();
+        try {
+            Vehicle car = VehicleFactory.createCar("car");
+            try {
+                await(garage.enter(car));
+                fail();
+            } catch(ExecutionException e) {
+                assertEquals("clock", e.getCause().getMessage());
+            }
+
+            // the failed vehicle isn't left pending in the index
+            assertFalse(await(garage.exit(car)).isPresent());
+            assertEquals(0, await(garage.enter(car)).get().getLotNumber());
+            assertEquals(0, await(garage.exit(car)).get().getLotNumber());
+            assertEquals(2, garage.getNumberOfFreeLots());
+        } finally {
+            garage.close();
+        }
+    }
+
+    @Test
+    public void testClose() throws Exception {
+
+        AsyncGarage garage = createGarage(2, 10);
+        CompletableFuture<Optional<LocationInfo>> entered = garage.enter(VehicleFactory.createCar("car"));
+        garage.close();
+        // messages sent before closing are still handled
+        assertTrue(await(entered).isPresent());
+
+        try {
+            await(garage.enter(VehicleFactory.createCar("other")));
+            fail();
+        } catch(ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        // the identifier isn't left behind in the index
+        assertFalse(await(garage.findLocation("other")).isPresent());
+    }
+
+    @Test
+    public void testConcurrentGates() throws Exception {
+
+        final int numberOfThreads = 8;
+        final int vehiclesPerThread = 500;
+        try(AsyncGarage garage = createGarage(4, 600)) {
+            ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for(int t = 0; t < numberOfThreads; t++) {
+                    final int thread = t;
+                    futures.add(executor.submit(() -> {
+                        List<CompletableFuture<Optional<LocationInfo>>> entered = new ArrayList<>();
+                        for(int i = 0; i < vehiclesPerThread; i++) {
+                            entered.add(garage.enter(VehicleFactory.createCar(thread + "-" + i), i % 4));
+                        }
+                        CompletableFuture.allOf(entered.toArray(new CompletableFuture[0])).join();
+                        // every other vehicle leaves again
+                        List<CompletableFuture<Optional<LocationInfo>>> exited = new ArrayList<>();
+                        for(int i = 0; i < vehiclesPerThread; i += 2) {
+                            exited.add(garage.exit(VehicleFactory.createCar(thread + "-" + i)));
+                        }
+                        CompletableFuture.allOf(exited.toArray(new CompletableFuture[0])).join();
+                        return null;
+                    }));
+                }
+                for(Future<?> future : futures) {
+                    future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            // 4000 vehicles tried to enter 2400 lots, 1200 of the 2400 which made it left again
+            assertEquals(2400 - garage.getNumberOfOccupiedLots(), garage.getNumberOfFreeLots());
+            Set<Long> lots = new HashSet<>();
+            int parked = 0;
+            for(int t = 0; t < numberOfThreads; t++) {
+                for(int i = 1; i < vehiclesPerThread; i += 2) {
+                    Optional<LocationInfo> location = await(garage.findLocation(t + "-" + i));
+                    if(location.isPresent()) {
+                        assertTrue(lots.add(LocationInfo.pack(location.get().getParkingLevel(), location.get().getLotNumber())));
+                        parked++;
+                    }
+                }
+            }
+            assertEquals(parked, garage.getNumberOfOccupiedLots());
+        }
+    }
+}
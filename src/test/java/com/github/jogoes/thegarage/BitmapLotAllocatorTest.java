@@ -0,0 +1,118 @@
+package com.github.jogoes.thegarage;
+
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitParamsRunner.class)
+public class BitmapLotAllocatorTest {
+
+    @Test
+    @Parameters({
+            "0",
+            "1",
+            "63",
+            "64",
+            "65",
+            "4096",
+            "5000"})
+    public void testAllocateAll(int capacity) {
+
+        BitmapLotAllocator allocator = new BitmapLotAllocator(capacity);
+
+        assertEquals(capacity, allocator.getCapacity());
+        assertEquals(capacity, allocator.getNumberOfFreeLots());
+
+        // lots are handed out in ascending order
+        for (int i = 0; i < capacity; i++) {
+            assertEquals(i, allocator.allocate());
+        }
+
+        assertEquals(-1, allocator.allocate());
+        assertEquals(0, allocator.getNumberOfFreeLots());
+    }
+
+    @Test
+    public void testLowestFreeLotFirst() {
+
+        BitmapLotAllocator allocator = new BitmapLotAllocator(10000);
+        for (int i = 0; i < 10000; i++) {
+            allocator.allocate();
+        }
+
+        allocator.release(9000);
+        allocator.release(130);
+        allocator.release(4100);
+
+        assertEquals(3, allocator.getNumberOfFreeLots());
+        assertEquals(130, allocator.allocate());
+        assertEquals(4100, allocator.allocate());
+        assertEquals(9000, allocator.allocate());
+        assertEquals(-1, allocator.allocate());
+    }
+
+    @Test
+    public void testClaimRelease() {
+
+        BitmapLotAllocator allocator = new BitmapLotAllocator(100);
+
+        assertTrue(allocator.claim(0));
+        assertTrue(allocator.claim(2));
+        assertFalse(allocator.claim(2));
+        assertFalse(allocator.isFree(0));
+        assertTrue(allocator.isFree(1));
+
+        assertEquals(1, allocator.allocate());
+        assertEquals(3, allocator.allocate());
+
+        allocator.release(2);
+        assertTrue(allocator.isFree(2));
+        assertEquals(2, allocator.allocate());
+        assertEquals(96, allocator.getNumberOfFreeLots());
+    }
+
+    @Test
+    public void testResize() {
+
+        BitmapLotAllocator allocator = new BitmapLotAllocator(100);
+        for(int lot = 0; lot < 70; lot++) {
+            allocator.allocate();
+        }
+
+        allocator.resize(300);
+        assertEquals(300, allocator.getCapacity());
+        assertEquals(230, allocator.getNumberOfFreeLots());
+        assertEquals(70, allocator.allocate());
+        assertTrue(allocator.isFree(299));
+
+        // only free lots can be removed
+        TestUtils.assertThrows(IllegalStateException.class, () -> allocator.resize(70));
+        assertEquals(300, allocator.getCapacity());
+        allocator.resize(71);
+        assertEquals(0, allocator.getNumberOfFreeLots());
+        assertEquals(-1, allocator.allocate());
+        TestUtils.assertThrows(IndexOutOfBoundsException.class, () -> allocator.isFree(71));
+
+        allocator.resize(130);
+        assertEquals(59, allocator.getNumberOfFreeLots());
+        for(int lot = 71; lot < 130; lot++) {
+            assertEquals(lot, allocator.allocate());
+        }
+        assertEquals(-1, allocator.allocate());
+    }
+
+    @Test
+    public void testInvalidArguments() {
+
+        BitmapLotAllocator allocator = new BitmapLotAllocator(10);
+
+        TestUtils.assertThrows(IllegalArgumentException.class, () -> new BitmapLotAllocator(-1));
+        TestUtils.assertThrows(IndexOutOfBoundsException.class, () -> allocator.claim(10));
+        TestUtils.assertThrows(IndexOutOfBoundsException.class, () -> allocator.isFree(-1));
+        TestUtils.assertThrows(IllegalStateException.class, () -> allocator.release(5));
+        TestUtils.assertThrows(IllegalArgumentException.class, () -> allocator.resize(-1));
+    }
+}
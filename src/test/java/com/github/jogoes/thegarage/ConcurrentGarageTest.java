@@ -0,0 +1,192 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentGarageTest {
+
+    private static final int numberOfThreads = 8;
+
+    /**
+     * Runs the task on all threads at the same time and waits until all of them have finished.
+     */
+    private void runConcurrently(int numberOfThreads, Callable<Void> task) throws Exception {
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        CyclicBarrier barrier = new CyclicBarrier(numberOfThreads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < numberOfThreads; i++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    return task.call();
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void verifyNoDoubleOccupancy(Garage garage) {
+
+        Collection<VehicleLocationInfo> locationInfos = garage.getVehicleLocationInfos();
+        assertEquals(garage.getNumberOfOccupiedLots(), locationInfos.size());
+        assertEquals(garage.getTotalNumberOfLots(), garage.getNumberOfFreeLots() + garage.getNumberOfOccupiedLots());
+
+        Set<Long> lots = new HashSet<>();
+        Set<String> vehicleIds = new HashSet<>();
+        for (VehicleLocationInfo info : locationInfos) {
+            assertTrue("lot occupied twice: " + info, lots.add(((long) info.getParkingLevel() << 32) | info.getLotNumber()));
+            assertTrue("vehicle parked twice: " + info, vehicleIds.add(info.getVehicle().getIdentifier()));
+
+            LocationInfo found = garage.findLocation(info.getVehicle()).get();
+            assertEquals(info.getParkingLevel(), found.getParkingLevel());
+            assertEquals(info.getLotNumber(), found.getLotNumber());
+        }
+    }
+
+    @Test
+    public void testSameVehicleEntersOnlyOnce() throws Exception {
+
+        Garage garage = new Garage(4, 100);
+
+        for (int round = 0; round < 200; round++) {
+            Vehicle vehicle = VehicleFactory.createCar("car" + round);
+            AtomicInteger admitted = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+
+            runConcurrently(numberOfThreads, () -> {
+                try {
+                    if (garage.enter(vehicle).isPresent()) {
+                        admitted.incrementAndGet();
+                    }
+                } catch (IllegalArgumentException e) {
+                    rejected.incrementAndGet();
+                }
+                return null;
+            });
+
+            assertEquals(1, admitted.get());
+            assertEquals(numberOfThreads - 1, rejected.get());
+            assertTrue(garage.exit(vehicle).isPresent());
+        }
+
+        assertEquals(0, garage.getNumberOfOccupiedLots());
+    }
+
+    @Test
+    public void testFillGarageConcurrently() throws Exception {
+
+        final int numberOfLevels = 5;
+        final int numberOfLotsPerLevel = 200;
+        final int vehiclesPerThread = 500;
+
+        Garage garage = new Garage(numberOfLevels, numberOfLotsPerLevel);
+        AtomicInteger threadIds = new AtomicInteger();
+        AtomicInteger admitted = new AtomicInteger();
+
+        runConcurrently(numberOfThreads, () -> {
+            int threadId = threadIds.getAndIncrement();
+            for (int i = 0; i < vehiclesPerThread; i++) {
+                if (garage.enter(VehicleFactory.createCar(threadId + "-" + i)).isPresent()) {
+                    admitted.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        // more vehicles tried to enter than there are lots, so the garage must be exactly full
+        assertEquals(numberOfLevels * numberOfLotsPerLevel, admitted.get());
+        assertEquals(0, garage.getNumberOfFreeLots());
+        verifyNoDoubleOccupancy(garage);
+    }
+
+    @Test
+    public void testRandomEnterExit() throws Exception {
+
+        Garage garage = new Garage(4, 50);
+
+        // all threads share the same pool of vehicles, so they compete for lots as well as for vehicles
+        final int numberOfVehicles = 300;
+        Vehicle[] vehicles = new Vehicle[numberOfVehicles];
+        for (int i = 0; i < numberOfVehicles; i++) {
+            vehicles[i] = i % 2 == 0 ? VehicleFactory.createCar(Integer.toString(i)) : VehicleFactory.createMotorbike(Integer.toString(i));
+        }
+
+        AtomicInteger entered = new AtomicInteger();
+        AtomicInteger exited = new AtomicInteger();
+
+        runConcurrently(numberOfThreads, () -> {
+            Random random = ThreadLocalRandom.current();
+            for (int i = 0; i < 20000; i++) {
+                Vehicle vehicle = vehicles[random.nextInt(numberOfVehicles)];
+                if (random.nextBoolean()) {
+                    try {
+                        if (garage.enter(vehicle).isPresent()) {
+                            entered.incrementAndGet();
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // vehicle is already in the garage
+                    }
+                } else if (garage.exit(vehicle).isPresent()) {
+                    exited.incrementAndGet();
+                }
+            }
+            return null;
+        });
+
+        assertEquals(entered.get() - exited.get(), garage.getNumberOfOccupiedLots());
+        verifyNoDoubleOccupancy(garage);
+    }
+
+    @Test
+    public void testLeastLoadedUnderContention() throws Exception {
+
+        final int numberOfLevels = 13;
+        Garage garage = new GarageBuilder().
+                numberOfLevels(numberOfLevels).
+                numberOfParkingLotsPerLevel(20).
+                allocationStrategy(AllocationStrategy.leastLoaded()).
+                build();
+
+        runConcurrently(numberOfThreads, () -> {
+            String prefix = Thread.currentThread().getName();
+            Random random = ThreadLocalRandom.current();
+            List<Vehicle> parked = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                if (parked.isEmpty() || parked.size() < 25 && random.nextBoolean()) {
+                    Vehicle vehicle = VehicleFactory.createCar(prefix + "-" + i);
+                    garage.enter(vehicle);
+                    parked.add(vehicle);
+                } else {
+                    assertTrue(garage.exit(parked.remove(random.nextInt(parked.size()))).isPresent());
+                }
+            }
+            return null;
+        });
+        verifyNoDoubleOccupancy(garage);
+
+        // the tournament tree must have caught every change, the next vehicle goes to the least loaded level
+        int[] occupied = new int[numberOfLevels];
+        for (VehicleLocationInfo info : garage.getVehicleLocationInfos()) {
+            occupied[info.getParkingLevel()]++;
+        }
+        int leastLoaded = 0;
+        for (int level = 1; level < numberOfLevels; level++) {
+            if (occupied[level] < occupied[leastLoaded]) {
+                leastLoaded = level;
+            }
+        }
+        assertEquals(leastLoaded, garage.enter(VehicleFactory.createCar("last")).get().getParkingLevel());
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FreeLevelIndexTest {
+
+    @Test
+    public void testNextLevelWithFreeLots() {
+
+        FreeLevelIndex index = new FreeLevelIndex(200);
+
+        assertEquals(-1, index.nextLevelWithFreeLots(0));
+
+        index.update(3, true);
+        index.update(64, true);
+        index.update(199, true);
+
+        assertEquals(3, index.nextLevelWithFreeLots(0));
+        assertEquals(3, index.nextLevelWithFreeLots(3));
+        assertEquals(64, index.nextLevelWithFreeLots(4));
+        assertEquals(199, index.nextLevelWithFreeLots(65));
+        assertEquals(-1, index.nextLevelWithFreeLots(200));
+
+        index.update(64, false);
+        assertFalse(index.hasFreeLots(64));
+        assertEquals(199, index.nextLevelWithFreeLots(4));
+    }
+
+    @Test
+    public void testPreviousLevelWithFreeLots() {
+
+        FreeLevelIndex index = new FreeLevelIndex(200);
+
+        assertEquals(-1, index.previousLevelWithFreeLots(199));
+
+        index.update(3, true);
+        index.update(64, true);
+        index.update(199, true);
+
+        assertEquals(199, index.previousLevelWithFreeLots(500));
+        assertEquals(64, index.previousLevelWithFreeLots(198));
+        assertEquals(64, index.previousLevelWithFreeLots(64));
+        assertEquals(3, index.previousLevelWithFreeLots(63));
+        assertEquals(-1, index.previousLevelWithFreeLots(2));
+        assertEquals(-1, index.previousLevelWithFreeLots(-1));
+    }
+
+    @Test
+    public void testGrow() {
+
+        FreeLevelIndex index = new FreeLevelIndex(3);
+        index.update(1, true);
+
+        index.grow(200);
+        assertEquals(200, index.getNumberOfLevels());
+        assertTrue(index.hasFreeLots(1));
+        assertEquals(-1, index.nextLevelWithFreeLots(2));
+
+        index.update(150, true);
+        assertEquals(150, index.nextLevelWithFreeLots(2));
+        assertEquals(150, index.previousLevelWithFreeLots(199));
+    }
+
+    @Test
+    public void testGarageSkipsFullLevels() {
+
+        Garage garage = new Garage(3, 2);
+
+        for (int i = 0; i < 4; i++) {
+            garage.enter(VehicleFactory.createCar(Integer.toString(i)));
+        }
+
+        assertEquals(4, garage.getNumberOfOccupiedLots());
+        assertEquals(2, garage.getNumberOfFreeLots());
+        assertEquals(2, garage.enter(VehicleFactory.createCar("4")).get().getParkingLevel());
+
+        // freeing a lot on the first level makes it the preferred level again
+        assertTrue(garage.exit(VehicleFactory.createCar("1")).isPresent());
+        assertEquals(0, garage.enter(VehicleFactory.createCar("5")).get().getParkingLevel());
+    }
+}
@@ -0,0 +1,196 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class GarageCheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static GarageBuilder builder() {
+        return new GarageBuilder().
+                numberOfLevels(3).
+                numberOfParkingLotsPerLevel(40).
+                numberOfMotorbikeBaysPerLevel(5).
+                numberOfSharedBaysPerLevel(10).
+                motorbikesPerSharedBay(3);
+    }
+
+    private static Vehicle vehicle(int number) {
+        String id = "V-" + number + (number % 7 == 0 ? "-\u00e9" : "");
+        return number % 3 == 0 ? VehicleFactory.createMotorbike(id) : VehicleFactory.createCar(id);
+    }
+
+    @Test
+    public void testWriteAndLoad() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.checkpoint");
+
+        Garage garage = builder().build();
+        GarageCheckpoint.write(garage, path);
+        assertEquals(garage.toString(), GarageCheckpoint.load(path, builder()).toString());
+
+        // fills the car bays, so cars also take shared bays
+        for(int number = 0; number < 200; number++) {
+            garage.enter(vehicle(number));
+        }
+        for(int number = 0; number < 200; number += 4) {
+            garage.exit(vehicle(number));
+        }
+        GarageCheckpoint.write(garage, path);
+        assertFalse(Files.exists(path.resolveSibling("garage.checkpoint.tmp")));
+
+        GarageBuilder settings = new GarageBuilder().storageMode(StorageMode.ARRAY);
+        Garage loaded = GarageCheckpoint.load(path, settings);
+        assertEquals(garage.toString(), loaded.toString());
+        // the levels and lots of the checkpoint are not written back to the builder
+        assertEquals(1, settings.getNumberOfLevels());
+        assertEquals(0, settings.getNumberOfParkingLotsPerLevel());
+        assertEquals(2, settings.getMotorbikesPerSharedBay());
+        assertEquals(garage.getNumberOfLevels(), loaded.getNumberOfLevels());
+        assertEquals(garage.getNumberOfOccupiedLots(), loaded.getNumberOfOccupiedLots());
+        for(LotClass lotClass : LotClass.values()) {
+            assertEquals(garage.getTotalNumberOfLots(lotClass), loaded.getTotalNumberOfLots(lotClass));
+            assertEquals(garage.getNumberOfOccupiedLots(lotClass), loaded.getNumberOfOccupiedLots(lotClass));
+        }
+        for(int number = 0; number < 200; number++) {
+            assertEquals(garage.locate(vehicle(number).getIdentifier()), loaded.locate(vehicle(number).getIdentifier()));
+        }
+
+        // the loaded garage goes on exactly like the original one
+        try {
+            loaded.enter(vehicle(1));
+            fail("The vehicle is already in the loaded garage.");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+        for(int number = 200; number < 300; number++) {
+            assertEquals(garage.enter(vehicle(number)).toString(), loaded.enter(vehicle(number)).toString());
+        }
+        for(int number = 1; number < 300; number += 2) {
+            assertEquals(garage.exit(vehicle(number)).toString(), loaded.exit(vehicle(number)).toString());
+        }
+        assertEquals(garage.toString(), loaded.toString());
+    }
+
+    @Test
+    public void testLevelsOfDifferentSizes() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.checkpoint");
+
+        Garage garage = builder().build();
+        garage.addLevel(7);
+        garage.addLevel(0, 0, 4);
+        garage.resizeLevel(1, 60);
+        for(int number = 0; number < 250; number++) {
+            garage.enter(vehicle(number));
+        }
+        GarageCheckpoint.write(garage, path);
+
+        Garage loaded = GarageCheckpoint.load(path);
+        assertEquals(garage.toString(), loaded.toString());
+        assertEquals(5, loaded.getNumberOfLevels());
+        assertEquals(garage.getTotalNumberOfLots(), loaded.getTotalNumberOfLots());
+        for(int level = 0; level < 5; level++) {
+            for(LotClass lotClass : LotClass.values()) {
+                assertEquals(garage.getParkingLevel(level).getNumberOfLots(lotClass), loaded.getParkingLevel(level).getNumberOfLots(lotClass));
+            }
+        }
+        // the shared bays of the added level hold as many motorbikes as the others
+        assertEquals(12, loaded.getParkingLevel(4).getNumberOfLots(LotClass.SHARED));
+    }
+
+    @Test
+    public void testRestoreLevelFailure() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(3).
+                build();
+        garage.restoreLevel(0, new Vehicle[] { vehicle(1), vehicle(2) }, new int[] { 0, 1 }, 2);
+        String before = garage.toString();
+
+        try {
+            garage.restoreLevel(1, new Vehicle[] { vehicle(4), vehicle(2) }, new int[] { 0, 1 }, 2);
+            fail("A vehicle already in the garage must not be restored.");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+        try {
+            garage.restoreLevel(0, new Vehicle[] { vehicle(5), vehicle(7) }, new int[] { 2, 0 }, 2);
+            fail("A vehicle must not be restored onto an occupied lot.");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+
+        // the failed restores didn't change the garage
+        assertEquals(before, garage.toString());
+        assertEquals(2, garage.getNumberOfOccupiedLots());
+        assertEquals(4, garage.getNumberOfFreeLots());
+        assertEquals(LocationInfo.NOT_FOUND, garage.locate(vehicle(4).getIdentifier()));
+        assertEquals(LocationInfo.NOT_FOUND, garage.locate(vehicle(5).getIdentifier()));
+        assertEquals(LocationInfo.pack(0, 1), garage.locate(vehicle(2).getIdentifier()));
+        LocationInfo location = garage.enter(vehicle(5)).get();
+        assertEquals(0, location.getParkingLevel());
+        assertEquals(2, location.getLotNumber());
+        garage.restoreLevel(1, new Vehicle[] { vehicle(4) }, new int[] { 0 }, 1);
+        assertEquals(LocationInfo.pack(1, 0), garage.locate(vehicle(4).getIdentifier()));
+    }
+
+    @Test
+    public void testCorruptCheckpoint() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.checkpoint");
+        Garage garage = builder().build();
+        for(int number = 0; number < 100; number++) {
+            garage.enter(vehicle(number));
+        }
+        GarageCheckpoint.write(garage, path);
+        byte[] checkpoint = Files.readAllBytes(path);
+
+        // a damaged vehicle id
+        checkpoint[checkpoint.length - 2] ^= 1;
+        Files.write(path, checkpoint);
+        assertLoadFails(path);
+
+        // a damaged level table
+        checkpoint[checkpoint.length - 2] ^= 1;
+        checkpoint[30] ^= 1;
+        Files.write(path, checkpoint);
+        assertLoadFails(path);
+
+        checkpoint[30] ^= 1;
+        Files.write(path, checkpoint);
+        assertEquals(garage.toString(), load(path).toString());
+
+        Files.write(path, new byte[] { 1, 2, 3 });
+        assertLoadFails(path);
+    }
+
+    private static void assertLoadFails(Path path) {
+        try {
+            load(path);
+            fail("The checkpoint is corrupt.");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private static Garage load(Path path) {
+        try {
+            return GarageCheckpoint.load(path);
+        } catch(IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GarageClusterTest {
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidArguments() {
+        new GarageCluster(0, () -> new Garage(1, 1));
+    }
+
+    private static void assertAlreadyInCluster(GarageCluster cluster, Vehicle vehicle) {
+        try {
+            cluster.enter(vehicle);
+            fail("Vehicle " + vehicle.getIdentifier() + " entered a second time.");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEnterExitFindLocation() {
+
+        try(GarageCluster cluster = new GarageCluster(4, () -> new Garage(2, 10))) {
+            assertEquals(80, cluster.getTotalNumberOfLots());
+
+            Vehicle car = VehicleFactory.createCar("car");
+            int home = cluster.getHomeShard("car");
+
+            ClusterLocationInfo location = cluster.enter(car).get();
+            assertEquals(home, location.getShard());
+            assertEquals(1, cluster.getNumberOfOccupiedLots());
+            assertEquals(79, cluster.getNumberOfFreeLots());
+            assertTrue(cluster.getShard(home).findLocation(car).isPresent());
+
+            ClusterLocationInfo found = cluster.findLocation("car").get();
+            assertEquals(home, found.getShard());
+            assertEquals(location.getParkingLevel(), found.getParkingLevel());
+            assertEquals(location.getLotNumber(), found.getLotNumber());
+
+            assertAlreadyInCluster(cluster, car);
+            assertEquals(1, cluster.getNumberOfOccupiedLots());
+
+            assertEquals(location.getLotNumber(), cluster.exit(car).get().getLotNumber());
+            assertFalse(cluster.findLocation(car).isPresent());
+            assertFalse(cluster.exit(car).isPresent());
+            assertEquals(0, cluster.getNumberOfOccupiedLots());
+        }
+    }
+
+    @Test
+    public void testSpillOver() {
+
+        try(GarageCluster cluster = new GarageCluster(3, () -> new Garage(1, 2))) {
+
+            // fill up everything, most vehicles don't fit into their home shard
+            List<Vehicle> vehicles = new ArrayList<>();
+            for(int i = 0; i < 6; i++) {
+                Vehicle vehicle = VehicleFactory.createCar("car" + i);
+                assertTrue(cluster.enter(vehicle).isPresent());
+                vehicles.add(vehicle);
+            }
+            assertEquals(6, cluster.getNumberOfOccupiedLots());
+            assertFalse(cluster.enter(VehicleFactory.createCar("late")).isPresent());
+
+            int spilled = 0;
+            for(Vehicle vehicle : vehicles) {
+                ClusterLocationInfo location = cluster.findLocation(vehicle).get();
+                assertTrue(cluster.getShard(location.getShard()).findLocation(vehicle).isPresent());
+                if(location.getShard() != cluster.getHomeShard(vehicle.getIdentifier())) {
+                    spilled++;
+                    // a spilled vehicle can't enter a second time either
+                    assertAlreadyInCluster(cluster, vehicle);
+                }
+            }
+            assertEquals(spilled, cluster.getNumberOfSpilledVehicles());
+            assertEquals(6, cluster.getNumberOfOccupiedLots());
+
+            // not even at home once it has room there again, which wouldn't notify the listeners of the home shard either
+            Vehicle spilledVehicle = vehicles.stream().
+                    filter(vehicle -> cluster.findLocation(vehicle).get().getShard() != cluster.getHomeShard(vehicle.getIdentifier())).
+                    findFirst().get();
+            int home = cluster.getHomeShard(spilledVehicle.getIdentifier());
+            Vehicle parkedAtHome = vehicles.stream().
+                    filter(vehicle -> cluster.findLocation(vehicle).get().getShard() == home).
+                    findFirst().get();
+            AtomicInteger events = new AtomicInteger();
+            cluster.getShard(home).addListener(new GarageListener() {
+                @Override
+                public void vehicleEntered(Vehicle vehicle, int parkingLevel, int lotNumber) { events.incrementAndGet(); }
+                @Override
+                public void vehicleExited(Vehicle vehicle, int parkingLevel, int lotNumber) { events.incrementAndGet(); }
+            });
+            assertTrue(cluster.exit(parkedAtHome).isPresent());
+            assertAlreadyInCluster(cluster, spilledVehicle);
+            assertEquals(1, events.get());
+            assertTrue(cluster.enter(parkedAtHome).isPresent());
+            vehicles.remove(parkedAtHome);
+            vehicles.add(parkedAtHome);
+
+            for(Vehicle vehicle : vehicles) {
+                assertTrue(cluster.exit(vehicle).isPresent());
+                assertFalse(cluster.findLocation(vehicle).isPresent());
+            }
+            assertEquals(0, cluster.getNumberOfOccupiedLots());
+            assertEquals(0, cluster.getNumberOfSpilledVehicles());
+        }
+    }
+
+    @Test
+    public void testAsync() throws Exception {
+
+        try(GarageCluster cluster = new GarageCluster(4, () -> new Garage(2, 10))) {
+            List<CompletableFuture<Optional<ClusterLocationInfo>>> futures = new ArrayList<>();
+            for(int i = 0; i < 50; i++) {
+                futures.add(cluster.enterAsync(VehicleFactory.createMotorbike("bike" + i)));
+            }
+            for(CompletableFuture<Optional<ClusterLocationInfo>> future : futures) {
+                assertTrue(future.get(10, TimeUnit.SECONDS).isPresent());
+            }
+            assertEquals(50, cluster.getNumberOfOccupiedLots());
+            assertTrue(cluster.findLocationAsync("bike7").get(10, TimeUnit.SECONDS).isPresent());
+            assertTrue(cluster.exitAsync(VehicleFactory.createMotorbike("bike7")).get(10, TimeUnit.SECONDS).isPresent());
+            assertEquals(49, cluster.getNumberOfOccupiedLots());
+        }
+    }
+
+    @Test
+    public void testSameVehicleSpillsOverOnlyOnce() throws Exception {
+
+        final int numberOfThreads = 8;
+        try(GarageCluster cluster = new GarageCluster(3, () -> new Garage(1, 1))) {
+            Vehicle vehicle = VehicleFactory.createCar("car");
+            int home = cluster.getHomeShard("car");
+            // another vehicle fills up the home shard
+            int number = 0;
+            while(cluster.getHomeShard("filler" + number) != home) {
+                number++;
+            }
+            assertEquals(home, cluster.enter(VehicleFactory.createCar("filler" + number)).get().getShard());
+            // entering another shard takes a while, so the other threads try to spill over meanwhile
+            for(int shard = 0; shard < cluster.getNumberOfShards(); shard++) {
+                if(shard != home) {
+                    cluster.getShard(shard).addListener(new GarageListener() {
+                        @Override
+                        public void vehicleEntered(Vehicle vehicle, int parkingLevel, int lotNumber) {
+                            try {
+                                Thread.sleep(1);
+                            } catch(InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        @Override
+                        public void vehicleExited(Vehicle vehicle, int parkingLevel, int lotNumber) {
+                        }
+                    });
+                }
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+            try {
+                for(int round = 0; round < 50; round++) {
+                    CyclicBarrier barrier = new CyclicBarrier(numberOfThreads);
+                    List<Future<Boolean>> futures = new ArrayList<>();
+                    for(int t = 0; t < numberOfThreads; t++) {
+                        futures.add(executor.submit(() -> {
+                            barrier.await();
+                            try {
+                                return cluster.enter(vehicle).isPresent();
+                            } catch(IllegalArgumentException e) {
+                                return false;
+                            }
+                        }));
+                    }
+                    int entered = 0;
+                    for(Future<Boolean> future : futures) {
+                        entered += future.get(60, TimeUnit.SECONDS) ? 1 : 0;
+                    }
+                    assertEquals(1, entered);
+                    assertEquals(2, cluster.getNumberOfOccupiedLots());
+                    assertEquals(1, cluster.getNumberOfSpilledVehicles());
+                    assertTrue(cluster.exit(vehicle).isPresent());
+                    assertEquals(0, cluster.getNumberOfSpilledVehicles());
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    @Test
+    public void testSameVehicleEntersOnlyOnce() throws Exception {
+
+        final int numberOfThreads = 8;
+        // small shards so that a lot of vehicles spill over while the others leave
+        try(GarageCluster cluster = new GarageCluster(4, () -> new Garage(1, 4))) {
+            ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+            CyclicBarrier barrier = new CyclicBarrier(numberOfThreads);
+            AtomicInteger duplicates = new AtomicInteger();
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for(int t = 0; t < numberOfThreads; t++) {
+                    futures.add(executor.submit(() -> {
+                        barrier.await();
+                        for(int i = 0; i < 2000; i++) {
+                            Vehicle vehicle = VehicleFactory.createCar("car" + (i % 24));
+                            try {
+                                cluster.enter(vehicle);
+                            } catch(IllegalArgumentException e) {
+                                duplicates.incrementAndGet();
+                            }
+                            if(i % 3 == 0) {
+                                cluster.exit(vehicle);
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for(Future<?> future : futures) {
+                    future.get(60, TimeUnit.SECONDS);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertTrue(duplicates.get() > 0);
+
+            Set<String> parked = new HashSet<>();
+            int occupied = 0;
+            for(int shard = 0; shard < cluster.getNumberOfShards(); shard++) {
+                for(VehicleLocationInfo info : cluster.getShard(shard).getVehicleLocationInfos()) {
+                    assertTrue("vehicle parked twice: " + info, parked.add(info.getVehicle().getIdentifier()));
+                    assertTrue(cluster.findLocation(info.getVehicle()).isPresent());
+                    occupied++;
+                }
+            }
+            assertEquals(occupied, cluster.getNumberOfOccupiedLots());
+        }
+    }
+}
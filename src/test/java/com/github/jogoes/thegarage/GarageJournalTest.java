@@ -0,0 +1,381 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class GarageJournalTest {
+
+    private static final int numberOfLevels = 2;
+    private static final int numberOfLotsPerLevel = 200;
+    /**
+     * Number of vehicles parked at the same time by the generated traffic.
+     */
+    private static final int parkedVehicles = 100;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Garage createGarage() {
+        return new Garage(numberOfLevels, numberOfLotsPerLevel);
+    }
+
+    private static Vehicle vehicle(int number) {
+        String id = "V-" + number;
+        return number % 3 == 0 ? VehicleFactory.createMotorbike(id) : VehicleFactory.createCar(id);
+    }
+
+    /**
+     * Generated traffic: the first operations fill the garage, after that vehicles enter and exit alternately.
+     * Every operation results in exactly one journal event.
+     */
+    private static void applyOperation(Garage garage, int operation) {
+        if(operation < parkedVehicles) {
+            assertTrue(garage.enter(vehicle(operation)).isPresent());
+        } else if((operation - parkedVehicles) % 2 == 0) {
+            assertTrue(garage.enter(vehicle(parkedVehicles + (operation - parkedVehicles) / 2)).isPresent());
+        } else {
+            assertTrue(garage.exit(vehicle((operation - parkedVehicles) / 2)).isPresent());
+        }
+    }
+
+    private static Garage createReferenceGarage(long numberOfOperations) {
+        Garage garage = createGarage();
+        for(int operation = 0; operation < numberOfOperations; operation++) {
+            applyOperation(garage, operation);
+        }
+        return garage;
+    }
+
+    private void assertSameState(Garage expected, Garage actual) {
+        assertEquals(expected.getNumberOfOccupiedLots(), actual.getNumberOfOccupiedLots());
+        assertEquals(expected.getNumberOfFreeLots(), actual.getNumberOfFreeLots());
+        for(VehicleLocationInfo info : expected.getVehicleLocationInfos()) {
+            assertEquals(expected.locate(info.getVehicle().getIdentifier()), actual.locate(info.getVehicle().getIdentifier()));
+        }
+    }
+
+    @Test
+    public void testRecover() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.journal");
+
+        Garage garage = createGarage();
+        try(GarageJournal journal = GarageJournal.recoverAndOpen(path, garage)) {
+            for(int operation = 0; operation < 1000; operation++) {
+                applyOperation(garage, operation);
+            }
+            garage.enterAll(Arrays.asList(vehicle(-1), vehicle(-2)));
+            garage.removeListener(journal);
+        }
+
+        Garage recovered = createGarage();
+        assertEquals(1002, GarageJournal.recover(path, recovered));
+        assertSameState(garage, recovered);
+
+        // the recovered garage goes on writing to the same journal
+        try(GarageJournal journal = GarageJournal.recoverAndOpen(path, createGarage())) {
+            journal.vehicleExited(vehicle(-1), 0, 0);
+        }
+        try {
+            GarageJournal.recover(path, createGarage());
+            fail("The journal doesn't match the garage.");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testExitRacingReentryOnAnotherLevel() throws Exception {
+
+        Path path = folder.getRoot().toPath().resolve("garage.journal");
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(1).
+                allocationStrategy(AllocationStrategy.nearestToGate()).
+                build();
+        // registered before the journal, widens the window between freeing the lot and journaling the exit
+        garage.addListener(new GarageListener() {
+            @Override
+            public void vehicleEntered(Vehicle vehicle, int parkingLevel, int lotNumber) {}
+
+            @Override
+            public void vehicleExited(Vehicle vehicle, int parkingLevel, int lotNumber) {
+                try {
+                    Thread.sleep(1);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        Vehicle vehicle = VehicleFactory.createCar("V-0");
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try(GarageJournal journal = GarageJournal.recoverAndOpen(path, garage)) {
+            for(int round = 0; round < 50; round++) {
+                assertEquals(0, garage.enter(vehicle, 0).get().getParkingLevel());
+                // the vehicle enters again through the gate of the other level as soon as the garage lets it
+                Future<Integer> reentry = executor.submit(() -> {
+                    while(true) {
+                        try {
+                            return garage.enter(vehicle, 1).get().getParkingLevel();
+                        } catch(IllegalArgumentException e) {
+                            // still in the garage
+                        }
+                    }
+                });
+                assertTrue(garage.exit(vehicle).isPresent());
+                assertEquals(1, (int) reentry.get(10, TimeUnit.SECONDS));
+                assertTrue(garage.exit(vehicle).isPresent());
+            }
+            garage.removeListener(journal);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Garage recovered = new Garage(2, 1);
+        assertEquals(50 * 4, GarageJournal.recover(path, recovered));
+        assertSameState(garage, recovered);
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.journal");
+
+        Garage garage = createGarage();
+        try(GarageJournal journal = GarageJournal.recoverAndOpen(path, garage)) {
+            for(int operation = 0; operation < 120; operation++) {
+                applyOperation(garage, operation);
+            }
+            garage.removeListener(journal);
+        }
+        long completeLength = Files.size(path);
+        long lastRecordLength = 4 + 12 + "V-9".length() + 4;
+
+        // cut the last record (the exit of V-9) at every possible position, as if the process died while writing it
+        for(long length = completeLength - lastRecordLength; length < completeLength; length++) {
+            Path torn = folder.getRoot().toPath().resolve("torn-" + length + ".journal");
+            Files.copy(path, torn);
+            try(FileChannel channel = FileChannel.open(torn, StandardOpenOption.WRITE)) {
+                channel.truncate(length);
+            }
+
+            Garage recovered = createGarage();
+            assertEquals(119, GarageJournal.recover(torn, recovered));
+            assertSameState(createReferenceGarage(119), recovered);
+            assertEquals(completeLength - lastRecordLength, Files.size(torn));
+        }
+    }
+
+    /**
+     * Writes a journal of the first ten vehicles entering, every record has the same length, and damages the vehicle
+     * id of the specified record.
+     */
+    private Path writeCorruptedJournal(int corruptedRecord) throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.journal");
+
+        Garage garage = createGarage();
+        try(GarageJournal journal = GarageJournal.recoverAndOpen(path, garage)) {
+            for(int operation = 0; operation < 10; operation++) {
+                applyOperation(garage, operation);
+            }
+            garage.removeListener(journal);
+        }
+
+        byte[] content = Files.readAllBytes(path);
+        int recordLength = content.length / 10;
+        content[corruptedRecord * recordLength + 4 + 12] ^= 0x7F;
+        Files.write(path, content);
+        return path;
+    }
+
+    @Test
+    public void testCorruptedLastRecordEndsJournal() throws IOException {
+
+        Path path = writeCorruptedJournal(9);
+        long length = Files.size(path);
+
+        Garage recovered = createGarage();
+        assertEquals(9, GarageJournal.recover(path, recovered));
+        assertSameState(createReferenceGarage(9), recovered);
+        assertEquals(length / 10 * 9, Files.size(path));
+    }
+
+    @Test
+    public void testCorruptedRecordFollowedByValidRecords() throws IOException {
+
+        Path path = writeCorruptedJournal(5);
+        long length = Files.size(path);
+
+        try {
+            GarageJournal.recover(path, createGarage());
+            fail("The records behind the corrupted one must not be dropped.");
+        } catch(IllegalStateException e) {
+            // expected
+        }
+        // nothing has been cut off
+        assertEquals(length, Files.size(path));
+    }
+
+    @Test
+    public void testWriteFailureFailsJournal() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.journal");
+
+        // the committer never runs, the events are only written by sync()
+        GarageJournal journal = GarageJournal.open(path, 0, Long.MAX_VALUE);
+        journal.vehicleEntered(vehicle(1), 0, 0);
+
+        // an interrupted write closes the channel
+        Thread.currentThread().interrupt();
+        try {
+            journal.sync();
+            fail("The write has been interrupted.");
+        } catch(IOException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+
+        // the failure is reported until the journal is closed
+        try {
+            journal.vehicleEntered(vehicle(2), 0, 1);
+            fail("The journal has failed.");
+        } catch(UncheckedIOException e) {
+            // expected
+        }
+        try {
+            journal.sync();
+            fail("The journal has failed.");
+        } catch(IOException e) {
+            // expected
+        }
+        try {
+            journal.close();
+            fail("The buffered event has never been written.");
+        } catch(IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFailedJournalDoesNotFailTheGate() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("garage.journal");
+
+        Garage garage = createGarage();
+        GarageJournal journal = GarageJournal.open(path, 0, Long.MAX_VALUE);
+        garage.addListener(journal);
+        AtomicInteger events = new AtomicInteger();
+        garage.addListener(new GarageListener() {
+            @Override
+            public void vehicleEntered(Vehicle vehicle, int parkingLevel, int lotNumber) { events.incrementAndGet(); }
+
+            @Override
+            public void vehicleExited(Vehicle vehicle, int parkingLevel, int lotNumber) { events.incrementAndGet(); }
+        });
+
+        Thread.currentThread().interrupt();
+        try {
+            journal.sync();
+            fail("The write has been interrupted.");
+        } catch(IOException e) {
+            // expected
+        } finally {
+            Thread.interrupted();
+        }
+
+        Thread thread = Thread.currentThread();
+        Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+        List<Throwable> reported = new ArrayList<>();
+        thread.setUncaughtExceptionHandler((failed, e) -> reported.add(e));
+        try {
+            // the vehicle enters and exits although the journal can't record it
+            assertTrue(garage.enter(vehicle(1)).isPresent());
+            assertEquals(1, garage.getNumberOfOccupiedLots());
+            assertTrue(garage.exit(vehicle(1)).isPresent());
+            assertEquals(LocationInfo.NOT_FOUND, garage.locate(vehicle(1).getIdentifier()));
+        } finally {
+            thread.setUncaughtExceptionHandler(handler);
+        }
+        assertEquals(2, reported.size());
+        assertTrue(reported.get(0) instanceof UncheckedIOException);
+        // the listener behind the journal got every event
+        assertEquals(2, events.get());
+
+        garage.removeListener(journal);
+        try {
+            journal.close();
+            fail("The journal has failed.");
+        } catch(IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Started as a separate process by testRecoverAfterKill(): generates traffic until it gets killed and
+     * reports the number of operations which are durable.
+     */
+    public static class JournalWriter {
+
+        public static void main(String[] args) throws IOException {
+            Garage garage = createGarage();
+            GarageJournal journal = GarageJournal.recoverAndOpen(Paths.get(args[0]), garage);
+            for(int operation = 0; ; operation++) {
+                applyOperation(garage, operation);
+                if((operation + 1) % 500 == 0) {
+                    journal.sync();
+                    System.out.println(operation + 1);
+                    System.out.flush();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testRecoverAfterKill() throws Exception {
+
+        Path path = folder.getRoot().toPath().resolve("garage.journal");
+
+        String javaExecutable = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classPath = System.getProperty("surefire.test.class.path", System.getProperty("java.class.path"));
+        Process process = new ProcessBuilder(javaExecutable, "-cp", classPath, JournalWriter.class.getName(), path.toString()).
+                redirectErrorStream(true).
+                start();
+
+        long durableOperations = 0;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while(durableOperations < 20000 && (line = reader.readLine()) != null) {
+                durableOperations = Long.parseLong(line.trim());
+            }
+        } finally {
+            // no shutdown hooks, no flushing: the process dies wherever it is right now
+            process.destroyForcibly();
+            assertTrue(process.waitFor(30, TimeUnit.SECONDS));
+        }
+        assertTrue(durableOperations >= 20000);
+
+        Garage recovered = createGarage();
+        long events = GarageJournal.recover(path, recovered);
+        assertTrue(events >= durableOperations);
+        assertSameState(createReferenceGarage(events), recovered);
+    }
+}
@@ -0,0 +1,100 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class GarageMetricsTest {
+
+    @Test
+    public void testMetricsAreDisabledByDefault() {
+        assertFalse(new Garage(1, 1).getMetrics().isPresent());
+    }
+
+    @Test
+    public void testRecording() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(1).
+                metricsEnabled(true).
+                build();
+        GarageMetrics metrics = garage.getMetrics().get();
+
+        garage.enter(VehicleFactory.createCar("1"));
+        garage.enter(VehicleFactory.createCar("2"));
+        assertFalse(garage.enter(VehicleFactory.createCar("3")).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> garage.enter(VehicleFactory.createCar("1")));
+        garage.findLocation("2");
+        garage.exit(VehicleFactory.createCar("1"));
+
+        assertEquals(4, metrics.getEnterLatency().getCount());
+        assertEquals(1, metrics.getExitLatency().getCount());
+        assertEquals(1, metrics.getFindLocationLatency().getCount());
+        assertTrue(metrics.getEnterLatency().getMax() > 0);
+        assertEquals(1, metrics.getGarageFullRejections());
+        assertEquals(1, metrics.getDuplicateRejections());
+        assertArrayEquals(new int[] {0, 1}, metrics.getOccupiedLotsPerLevel());
+        assertArrayEquals(new int[] {1, 0}, metrics.getFreeLotsPerLevel());
+
+        metrics.reset();
+        assertEquals(0, metrics.getEnterLatency().getCount());
+        assertEquals(0, metrics.getGarageFullRejections());
+    }
+
+    @Test
+    public void testSampledLatencies() {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(1).
+                metricsEnabled(true).
+                latencySampleInterval(10).
+                build();
+        GarageMetrics metrics = garage.getMetrics().get();
+
+        garage.enter(VehicleFactory.createCar("1"));
+        for (int i = 0; i < 10000; i++) {
+            garage.findLocation("1");
+            garage.enter(VehicleFactory.createCar("2"));
+        }
+
+        // roughly every tenth operation is timed, but every rejection is counted
+        long timed = metrics.getFindLocationLatency().getCount();
+        assertTrue(timed > 500 && timed < 2000);
+        assertEquals(10000, metrics.getGarageFullRejections());
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(10).
+                metricsEnabled(true).
+                build();
+        GarageMetrics metrics = garage.getMetrics().get();
+        garage.enter(VehicleFactory.createCar("1"));
+
+        ObjectName name = metrics.registerMBean("test");
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1, server.getAttribute(name, "NumberOfOccupiedLots"));
+            assertArrayEquals(new int[] {9}, (int[]) server.getAttribute(name, "FreeLotsPerLevel"));
+
+            CompositeData enterLatency = (CompositeData) server.getAttribute(name, "EnterLatency");
+            assertEquals(1L, enterLatency.get("count"));
+
+            server.invoke(name, "reset", new Object[0], new String[0]);
+            assertEquals(0, metrics.getEnterLatency().getCount());
+        } finally {
+            metrics.unregisterMBean();
+        }
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+    }
+}
@@ -0,0 +1,321 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class GarageResizeTest {
+
+    private static Vehicle car(int number) {
+        return VehicleFactory.createCar("C-" + number);
+    }
+
+    private static Vehicle motorbike(int number) {
+        return VehicleFactory.createMotorbike("M-" + number);
+    }
+
+    private static long location(Optional<LocationInfo> location) {
+        return LocationInfo.pack(location.get().getParkingLevel(), location.get().getLotNumber());
+    }
+
+    @Test
+    public void testAddLevel() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(3).
+                allocationStrategy(AllocationStrategy.leastLoaded()).
+                occupancyHistoryEnabled(true).
+                build();
+        for(int number = 0; number < 6; number++) {
+            garage.enter(car(number));
+        }
+        GarageSnapshot before = garage.snapshot();
+        assertFalse(garage.enter(car(6)).isPresent());
+
+        // the levels above the first 64 need the indexes to grow
+        for(int level = 2; level < 100; level++) {
+            assertEquals(level, garage.addLevel(level == 2 ? 10 : 1));
+        }
+        assertEquals(100, garage.getNumberOfLevels());
+        assertEquals(6 + 10 + 97, garage.getTotalNumberOfLots());
+        assertEquals(10 + 97, garage.getNumberOfFreeLots());
+
+        // the strategy knows about the new levels, the one with the most free lots is taken first
+        assertEquals(2, garage.enter(car(6)).get().getParkingLevel());
+        for(int number = 7; number < 6 + 10 + 97; number++) {
+            assertTrue(garage.enter(car(number)).isPresent());
+        }
+        assertEquals(0, garage.getNumberOfFreeLots());
+        assertEquals(99, garage.locate(car(6 + 10 + 96).getIdentifier()) >>> 32);
+
+        assertEquals(2, before.getNumberOfLevels());
+        assertEquals(100, garage.snapshot().getNumberOfLevels());
+        assertEquals(1, garage.snapshot().getNumberOfOccupiedLots(99));
+        assertTrue(garage.getOccupancyHistory().get().getSeries(99, OccupancyHistory.Resolution.HOURS, 0, Long.MAX_VALUE).size() > 0);
+
+        assertThrows(IllegalArgumentException.class, () -> garage.addLevel(-1));
+        assertThrows(IllegalArgumentException.class, () -> garage.addLevel(Integer.MAX_VALUE));
+        assertEquals(100, garage.getNumberOfLevels());
+    }
+
+    @Test
+    public void testOutOfService() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(2).
+                numberOfSharedBaysPerLevel(1).
+                motorbikesPerSharedBay(2).
+                build();
+
+        assertTrue(garage.setOutOfService(0, 0, true));
+        assertFalse(garage.setOutOfService(0, 0, true));
+        assertTrue(garage.setOutOfService(0, 2, true));
+        assertThrows(IllegalArgumentException.class, () -> garage.setOutOfService(0, 3, true));
+        assertThrows(IndexOutOfBoundsException.class, () -> garage.setOutOfService(0, 4, true));
+        assertThrows(IllegalArgumentException.class, () -> garage.setOutOfService(2, 0, true));
+
+        assertEquals(3, garage.getNumberOfLotsOutOfService());
+        assertEquals(1, garage.getNumberOfLotsOutOfService(LotClass.CAR));
+        assertEquals(2, garage.getNumberOfLotsOutOfService(LotClass.SHARED));
+        assertEquals(5, garage.getNumberOfFreeLots());
+        assertEquals(2, garage.getNumberOfFreeLots(LotClass.SHARED));
+        assertEquals(3, garage.snapshot().getNumberOfLotsOutOfService());
+        assertEquals(1, garage.snapshot().getNumberOfFreeLots(0));
+
+        // the lots out of service are skipped
+        assertEquals(LocationInfo.pack(0, 1), location(garage.enter(car(0))));
+        assertEquals(1, garage.enter(car(1)).get().getParkingLevel());
+        assertFalse(garage.reserve(motorbike(0), 0, 1, TimeUnit.MINUTES).isPresent());
+
+        // an occupied lot drains, it goes out of service instead of becoming free once its vehicle left
+        assertTrue(garage.setOutOfService(0, 1, true));
+        assertFalse(garage.setOutOfService(0, 1, true));
+        assertTrue(garage.getParkingLevel(0).isDraining(1));
+        assertEquals(3, garage.getNumberOfLotsOutOfService());
+        assertTrue(garage.exit(car(0)).isPresent());
+        assertFalse(garage.getParkingLevel(0).isDraining(1));
+        assertTrue(garage.getParkingLevel(0).isOutOfService(1));
+        assertEquals(4, garage.getNumberOfLotsOutOfService());
+        assertEquals(0, garage.snapshot().getNumberOfFreeLots(0));
+        assertEquals(1, garage.enter(car(0)).get().getParkingLevel());
+
+        assertTrue(garage.setOutOfService(0, 2, false));
+        assertEquals(LocationInfo.pack(0, 2), location(garage.enter(motorbike(1))));
+        assertEquals(2, garage.getNumberOfLotsOutOfService());
+        assertEquals(garage.getTotalNumberOfLots(), garage.getNumberOfFreeLots() + garage.getNumberOfOccupiedLots() + garage.getNumberOfLotsOutOfService());
+    }
+
+    @Test
+    public void testDrainSharedBay() {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(1).
+                numberOfSharedBaysPerLevel(2).
+                motorbikesPerSharedBay(3).
+                build();
+        // car bay 0, shared lots 1-3 and 4-6
+        garage.enter(car(0));
+        assertEquals(LocationInfo.pack(0, 1), location(garage.enter(motorbike(0))));
+        assertEquals(LocationInfo.pack(0, 2), location(garage.enter(motorbike(1))));
+        Reservation reservation = garage.reserve(car(1), 0, 4, 1, TimeUnit.MINUTES).get();
+
+        // the lot no motorbike uses is out of service right away, the others once the motorbikes left
+        assertTrue(garage.setOutOfService(0, 1, true));
+        assertTrue(garage.setOutOfService(0, 4, true));
+        assertEquals(1, garage.getNumberOfLotsOutOfService());
+        assertEquals(0, garage.getNumberOfFreeLots());
+        assertFalse(garage.enter(motorbike(2)).isPresent());
+        garage.exit(motorbike(0));
+        assertEquals(2, garage.getNumberOfLotsOutOfService());
+        assertTrue(garage.getParkingLevel(0).isDraining(1));
+        garage.exit(motorbike(1));
+        assertFalse(garage.getParkingLevel(0).isDraining(1));
+        assertTrue(garage.getParkingLevel(0).isOutOfService(1));
+        assertEquals(3, garage.getNumberOfLotsOutOfService(LotClass.SHARED));
+
+        // a reserved bay drains when the reservation ends
+        assertTrue(garage.cancel(reservation));
+        assertTrue(garage.getParkingLevel(0).isOutOfService(4));
+        assertEquals(6, garage.getNumberOfLotsOutOfService());
+        assertEquals(0, garage.getNumberOfFreeLots());
+        assertEquals(6, garage.snapshot().getNumberOfLotsOutOfService());
+
+        // a drain can be cancelled, the lots no motorbike uses are handed out again
+        assertTrue(garage.setOutOfService(0, 1, false));
+        assertEquals(LocationInfo.pack(0, 1), location(garage.enter(motorbike(0))));
+        assertTrue(garage.setOutOfService(0, 1, true));
+        assertEquals(5, garage.getNumberOfLotsOutOfService());
+        assertTrue(garage.setOutOfService(0, 1, false));
+        assertEquals(3, garage.getNumberOfLotsOutOfService());
+        assertEquals(LocationInfo.pack(0, 2), location(garage.enter(motorbike(1))));
+
+        // a level drains before it is closed
+        assertTrue(garage.setOutOfService(0, 0, true));
+        assertTrue(garage.setOutOfService(0, 1, true));
+        assertThrows(IllegalStateException.class, () -> garage.resizeLevel(0, 0, 0, 0));
+        garage.exit(car(0));
+        garage.exit(motorbike(0));
+        garage.exit(motorbike(1));
+        assertEquals(7, garage.getNumberOfLotsOutOfService());
+        garage.resizeLevel(0, 0, 0, 0);
+        assertEquals(0, garage.getNumberOfLotsOutOfService());
+        assertEquals(0, garage.getTotalNumberOfLots());
+    }
+
+    @Test
+    public void testResizeCarBays() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(100).
+                storageMode(StorageMode.ARRAY).
+                prefixIndexEnabled(true).
+                build();
+        for(int number = 0; number < 150; number++) {
+            garage.enter(car(number));
+        }
+        GarageSnapshot before = garage.snapshot();
+
+        garage.resizeLevel(1, 1000);
+        assertEquals(1100, garage.getTotalNumberOfLots());
+        assertEquals(950, garage.getNumberOfFreeLots());
+        assertEquals(LocationInfo.pack(1, 49), garage.locate(car(149).getIdentifier()));
+        assertEquals(LocationInfo.pack(1, 50), location(garage.enter(car(150))));
+        for(int number = 151; number < 1100; number++) {
+            garage.enter(car(number));
+        }
+        assertEquals(LocationInfo.pack(1, 999), location(garage.findLocation(car(1099))));
+        assertEquals(1000, garage.snapshot().getNumberOfOccupiedLots(1));
+        assertEquals(100, before.getTotalNumberOfLots(1));
+        assertEquals(50, before.getNumberOfOccupiedLots(1));
+
+        // lots to remove have to be emptied first, they are taken out of service to drain them
+        assertThrows(IllegalStateException.class, () -> garage.resizeLevel(1, 500));
+        assertEquals(1000, garage.getParkingLevel(1).getTotalNumberOfLots());
+        for(int lotNumber = 500; lotNumber < 1000; lotNumber++) {
+            garage.exit(car(100 + lotNumber));
+            assertTrue(garage.setOutOfService(1, lotNumber, true));
+        }
+        assertEquals(500, garage.getNumberOfLotsOutOfService());
+        garage.resizeLevel(1, 500);
+        assertEquals(0, garage.getNumberOfLotsOutOfService());
+        assertEquals(600, garage.getTotalNumberOfLots());
+        assertEquals(0, garage.getNumberOfFreeLots());
+        assertEquals(1, garage.vehicleLocationInfosWithPrefix("C-599").count());
+        assertEquals(0, garage.vehicleLocationInfosWithPrefix("C-600").count());
+        assertThrows(IndexOutOfBoundsException.class, () -> garage.vehicleLocationInfos(1, 0, 501));
+
+        // closing a level keeps the levels above it
+        for(int number = 0; number < 100; number++) {
+            garage.exit(car(number));
+        }
+        garage.resizeLevel(0, 0);
+        assertEquals(2, garage.getNumberOfLevels());
+        assertEquals(500, garage.getTotalNumberOfLots());
+        assertFalse(garage.enter(car(0)).isPresent());
+        garage.resizeLevel(0, 1);
+        assertEquals(LocationInfo.pack(0, 0), location(garage.enter(car(0))));
+        assertEquals(garage.getVehicleLocationInfos().size(), garage.getNumberOfOccupiedLots());
+    }
+
+    @Test
+    public void testResizeMixedLevel() {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(2).
+                numberOfMotorbikeBaysPerLevel(1).
+                numberOfSharedBaysPerLevel(1).
+                motorbikesPerSharedBay(2).
+                build();
+        // car bays 0-1, motorbike bay 2, shared lots 3-4
+        garage.enter(motorbike(0));
+        garage.enter(motorbike(1));
+
+        // more shared bays keep all lot numbers
+        garage.resizeLevel(0, 2, 1, 3);
+        assertEquals(9, garage.getTotalNumberOfLots());
+        assertEquals(LocationInfo.pack(0, 4), location(garage.enter(motorbike(2))));
+        garage.enter(car(0));
+        garage.enter(car(1));
+        assertEquals(LocationInfo.pack(0, 5), location(garage.enter(car(2))));
+        assertEquals(4, garage.getNumberOfOccupiedLots(LotClass.SHARED));
+
+        // more car bays would renumber the occupied motorbike and shared bays
+        assertThrows(IllegalStateException.class, () -> garage.resizeLevel(0, 4));
+        assertEquals(9, garage.getTotalNumberOfLots());
+
+        for(int number = 0; number < 3; number++) {
+            garage.exit(motorbike(number));
+            garage.exit(car(number));
+        }
+        garage.resizeLevel(0, 4);
+        assertEquals(11, garage.getTotalNumberOfLots());
+        assertEquals(LocationInfo.pack(0, 4), location(garage.enter(motorbike(0))));
+        assertEquals(LocationInfo.pack(0, 5), location(garage.enter(motorbike(1))));
+        assertEquals(LocationInfo.pack(0, 0), location(garage.enter(car(0))));
+        assertEquals(8, garage.getNumberOfFreeLots());
+    }
+
+    @Test
+    public void testResizeWhileGatesRun() throws Exception {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(50).
+                allocationStrategy(AllocationStrategy.leastLoaded()).
+                build();
+
+        int numberOfGates = 4;
+        AtomicBoolean done = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfGates);
+        try {
+            List<Future<Void>> gates = new ArrayList<>();
+            for(int gate = 0; gate < numberOfGates; gate++) {
+                int first = gate * 100000;
+                gates.add(executor.submit(() -> {
+                    Deque<Vehicle> parked = new ArrayDeque<>();
+                    for(int number = first; !done.get(); number++) {
+                        Vehicle vehicle = car(number);
+                        if(garage.enter(vehicle).isPresent()) {
+                            parked.add(vehicle);
+                        }
+                        if(parked.size() > 40 || (number & 1) == 0 && !parked.isEmpty()) {
+                            assertTrue(garage.exit(parked.poll()).isPresent());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for(int level = 2; level < 80; level++) {
+                garage.addLevel(level);
+                garage.resizeLevel(level / 2, garage.getParkingLevel(level / 2).getTotalNumberOfLots() + 1);
+                Thread.sleep(1);
+            }
+            done.set(true);
+            for(Future<Void> gate : gates) {
+                gate.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // every level is known to the free level indexes, so the garage fills up completely
+        for(int number = 1000000; garage.enter(car(number)).isPresent(); number++) {
+        }
+        assertEquals(0, garage.getNumberOfFreeLots());
+        assertEquals(garage.getTotalNumberOfLots(), garage.getNumberOfOccupiedLots());
+        GarageSnapshot snapshot = garage.snapshot();
+        assertEquals(garage.getTotalNumberOfLots(), snapshot.getTotalNumberOfLots());
+        assertEquals(garage.getTotalNumberOfLots(), snapshot.getNumberOfOccupiedLots());
+        assertEquals(garage.getTotalNumberOfLots(), garage.getVehicleLocationInfos().size());
+    }
+}
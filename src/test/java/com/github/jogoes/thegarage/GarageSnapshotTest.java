@@ -0,0 +1,148 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class GarageSnapshotTest {
+
+    private static List<String> describe(Collection<VehicleLocationInfo> infos) {
+        List<String> described = new ArrayList<>();
+        for(VehicleLocationInfo info : infos) {
+            described.add(info.getVehicle().getIdentifier() + "@" + info.getParkingLevel() + "/" + info.getLotNumber());
+        }
+        return described;
+    }
+
+    @Test
+    public void testSnapshotIsNotChangedByLaterWrites() {
+
+        Garage garage = new Garage(2, 100);
+        List<Vehicle> vehicles = new ArrayList<>();
+        for(int i = 0; i < 150; i++) {
+            vehicles.add(VehicleFactory.createCar("car" + i));
+            garage.enter(vehicles.get(i));
+        }
+
+        GarageSnapshot snapshot = garage.snapshot();
+        String before = garage.toString();
+        List<String> infos = describe(garage.getVehicleLocationInfos());
+        assertEquals(before, snapshot.toString());
+        assertEquals(infos, describe(snapshot.getVehicleLocationInfos()));
+        assertEquals(150, snapshot.getNumberOfOccupiedLots());
+        assertEquals(50, snapshot.getNumberOfFreeLots());
+        assertEquals(100, snapshot.getNumberOfOccupiedLots(0));
+        assertEquals(50, snapshot.getNumberOfOccupiedLots(1));
+        assertEquals(200, snapshot.getTotalNumberOfLots(LotClass.CAR));
+
+        for(int i = 0; i < 150; i += 3) {
+            garage.exit(vehicles.get(i));
+        }
+        garage.enter(VehicleFactory.createCar("late"));
+
+        // the snapshot still shows the garage as it was
+        assertEquals(before, snapshot.toString());
+        assertEquals(infos, describe(snapshot.getVehicleLocationInfos()));
+        assertEquals(150, snapshot.getNumberOfOccupiedLots());
+        assertTrue(snapshot.findLocation("car0").isPresent());
+        assertFalse(snapshot.findLocation("late").isPresent());
+
+        GarageSnapshot next = garage.snapshot();
+        assertTrue(next.getVersion() > snapshot.getVersion());
+        assertEquals(101, next.getNumberOfOccupiedLots());
+        assertFalse(next.findLocation("car0").isPresent());
+        assertEquals(garage.findLocation("late").get().getLotNumber(), next.findLocation("late").get().getLotNumber());
+        assertEquals(garage.toString(), next.toString());
+    }
+
+    @Test
+    public void testReservationsAndLotClasses() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(1).
+                numberOfParkingLotsPerLevel(2).
+                numberOfMotorbikeBaysPerLevel(1).
+                build();
+        Reservation reservation = garage.reserve(VehicleFactory.createCar("booked"), 0, 1, TimeUnit.MINUTES).get();
+        garage.enter(VehicleFactory.createMotorbike("bike"));
+
+        GarageSnapshot snapshot = garage.snapshot();
+        assertEquals(1, snapshot.getNumberOfReservedLots());
+        assertEquals(1, snapshot.getNumberOfReservedLots(LotClass.CAR));
+        assertEquals(1, snapshot.getNumberOfOccupiedLots(LotClass.MOTORBIKE));
+        assertEquals(1, snapshot.getNumberOfFreeLots(0));
+
+        garage.claim(reservation);
+        assertEquals(1, snapshot.getNumberOfReservedLots());
+        assertEquals(0, garage.snapshot().getNumberOfReservedLots());
+        assertEquals(2, garage.snapshot().getNumberOfOccupiedLots(LotClass.CAR) + garage.snapshot().getNumberOfOccupiedLots(LotClass.MOTORBIKE));
+    }
+
+    @Test
+    public void testSnapshotsAreConsistentUnderLoad() throws Exception {
+
+        int numberOfLevels = 4;
+        Garage garage = new Garage(numberOfLevels, 256);
+        int numberOfThreads = 4;
+        int vehiclesPerThread = 100;
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads + 1);
+        AtomicBoolean done = new AtomicBoolean();
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for(int t = 0; t < numberOfThreads; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    List<Vehicle> vehicles = new ArrayList<>();
+                    for(int i = 0; i < vehiclesPerThread; i++) {
+                        vehicles.add(VehicleFactory.createCar("t" + thread + "-" + i));
+                    }
+                    Random random = new Random(thread);
+                    for(int round = 0; round < 20000; round++) {
+                        // move a vehicle to another level, the exit finishes before the entry starts
+                        Vehicle vehicle = vehicles.get(random.nextInt(vehicles.size()));
+                        garage.exit(vehicle);
+                        garage.enter(vehicle, random.nextInt(numberOfLevels));
+                    }
+                    return null;
+                }));
+            }
+
+            Future<Integer> reader = executor.submit(() -> {
+                int snapshots = 0;
+                while(!done.get()) {
+                    GarageSnapshot snapshot = garage.snapshot();
+                    Set<String> seen = new HashSet<>();
+                    int[] perLevel = new int[numberOfLevels];
+                    snapshot.vehicleLocationInfos().forEach(info -> {
+                        assertTrue("vehicle parked twice: " + info, seen.add(info.getVehicle().getIdentifier()));
+                        perLevel[info.getParkingLevel()]++;
+                    });
+                    for(int level = 0; level < numberOfLevels; level++) {
+                        assertEquals(perLevel[level], snapshot.getNumberOfOccupiedLots(level));
+                    }
+                    snapshots++;
+                }
+                return snapshots;
+            });
+
+            for(Future<?> writer : writers) {
+                writer.get(60, TimeUnit.SECONDS);
+            }
+            done.set(true);
+            assertTrue(reader.get(60, TimeUnit.SECONDS) > 0);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        GarageSnapshot snapshot = garage.snapshot();
+        assertEquals(garage.getNumberOfOccupiedLots(), snapshot.getNumberOfOccupiedLots());
+        assertEquals(describe(garage.getVehicleLocationInfos()), describe(snapshot.getVehicleLocationInfos()));
+    }
+}
@@ -5,6 +5,7 @@ import com.github.jogoes.thegarage.vehicles.VehicleFactory;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -154,4 +155,180 @@ public class GarageTest {
         assertEquals(totalNumberOfLots, garage.getNumberOfFreeLots());
         assertEquals(0, garage.getNumberOfOccupiedLots());
     }
+
+    @Test
+    public void testFindLocationAfterEnterExit() {
+
+        Garage garage = new Garage(2, 2);
+
+        Vehicle vehicle1 = VehicleFactory.createCar("1");
+
+        Optional<LocationInfo> entered = garage.enter(vehicle1);
+        assertTrue(entered.isPresent());
+
+        Optional<LocationInfo> found = garage.findLocation("1");
+        assertTrue(found.isPresent());
+        assertEquals(entered.get().getParkingLevel(), found.get().getParkingLevel());
+        assertEquals(entered.get().getLotNumber(), found.get().getLotNumber());
+
+        // a different instance with the same identifier refers to the same vehicle
+        assertTrue(garage.exit(VehicleFactory.createCar("1")).isPresent());
+        assertFalse(garage.findLocation("1").isPresent());
+        assertFalse(garage.exit(vehicle1).isPresent());
+
+        // the vehicle may enter again after it left
+        assertTrue(garage.enter(vehicle1).isPresent());
+        assertEquals(1, garage.getNumberOfOccupiedLots());
+    }
+
+    @Test
+    public void testEnterAll() {
+
+        Garage garage = new Garage(3, 2);
+
+        Vehicle parked = VehicleFactory.createCar("0");
+        garage.enter(parked);
+
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 1; i <= 6; i++) {
+            vehicles.add(VehicleFactory.createCar(Integer.toString(i)));
+        }
+        // duplicates: already parked and twice in the batch
+        vehicles.add(1, parked);
+        vehicles.add(VehicleFactory.createCar("3"));
+
+        List<BatchResult> results = garage.enterAll(vehicles);
+        assertEquals(vehicles.size(), results.size());
+
+        assertEquals(BatchResult.Status.ENTERED, results.get(0).getStatus());
+        assertEquals(BatchResult.Status.DUPLICATE, results.get(1).getStatus());
+        assertEquals(BatchResult.Status.ENTERED, results.get(2).getStatus());
+        assertEquals(BatchResult.Status.ENTERED, results.get(3).getStatus());
+        assertEquals(BatchResult.Status.ENTERED, results.get(4).getStatus());
+        assertEquals(BatchResult.Status.ENTERED, results.get(5).getStatus());
+        // the garage is full now
+        assertEquals(BatchResult.Status.GARAGE_FULL, results.get(6).getStatus());
+        assertEquals(BatchResult.Status.DUPLICATE, results.get(7).getStatus());
+        assertFalse(results.get(6).getLocation().isPresent());
+
+        // vehicles are placed in the same order as single enter() calls would do
+        assertEquals(0, results.get(0).getLocation().get().getParkingLevel());
+        assertEquals(1, results.get(0).getLocation().get().getLotNumber());
+        assertEquals(2, results.get(5).getLocation().get().getParkingLevel());
+        assertEquals(1, results.get(5).getLocation().get().getLotNumber());
+
+        assertFalse(garage.findLocation("6").isPresent());
+        assertEquals(0, garage.getNumberOfFreeLots());
+        verifyGarageIntegrity(garage);
+
+        assertThrows(NullPointerException.class, () -> garage.enterAll(Arrays.asList(VehicleFactory.createCar("7"), null)));
+        assertFalse(garage.findLocation("7").isPresent());
+    }
+
+    @Test
+    public void testExitAll() {
+
+        Garage garage = new Garage(3, 2);
+
+        List<Vehicle> vehicles = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            vehicles.add(VehicleFactory.createCar(Integer.toString(i)));
+            garage.enter(vehicles.get(i));
+        }
+
+        List<Vehicle> leaving = Arrays.asList(vehicles.get(5), vehicles.get(0), VehicleFactory.createCar("unknown"), vehicles.get(3), vehicles.get(0));
+        List<BatchResult> results = garage.exitAll(leaving);
+
+        assertEquals(BatchResult.Status.EXITED, results.get(0).getStatus());
+        assertEquals(2, results.get(0).getLocation().get().getParkingLevel());
+        assertEquals(BatchResult.Status.EXITED, results.get(1).getStatus());
+        assertEquals(BatchResult.Status.NOT_FOUND, results.get(2).getStatus());
+        assertEquals(BatchResult.Status.EXITED, results.get(3).getStatus());
+        assertEquals(BatchResult.Status.NOT_FOUND, results.get(4).getStatus());
+
+        assertEquals(3, garage.getNumberOfOccupiedLots());
+        assertFalse(garage.findLocation("0").isPresent());
+        assertTrue(garage.findLocation("1").isPresent());
+        verifyGarageIntegrity(garage);
+    }
+
+    @Test
+    public void testLocate() {
+
+        Garage garage = new Garage(3, 1);
+
+        garage.enter(VehicleFactory.createCar("1"));
+        garage.enter(VehicleFactory.createCar("2"));
+
+        long location = garage.locate("2");
+        assertNotEquals(LocationInfo.NOT_FOUND, location);
+        assertEquals(1, LocationInfo.unpackParkingLevel(location));
+        assertEquals(0, LocationInfo.unpackLotNumber(location));
+
+        assertEquals(LocationInfo.NOT_FOUND, garage.locate("3"));
+        assertThrows(NullPointerException.class, () -> garage.locate(null));
+
+        // location infos are interned, lookups and exits return the same instance
+        Optional<LocationInfo> found = garage.findLocation("2");
+        assertSame(found, garage.findLocation("2"));
+        assertSame(found, garage.exit(VehicleFactory.createCar("2")));
+    }
+
+    @Test
+    public void testLotClasses() {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(1).
+                numberOfMotorbikeBaysPerLevel(2).
+                numberOfSharedBaysPerLevel(1).
+                motorbikesPerSharedBay(2).
+                build();
+
+        assertEquals(10, garage.getTotalNumberOfLots());
+        assertEquals(2, garage.getTotalNumberOfLots(LotClass.CAR));
+        assertEquals(4, garage.getTotalNumberOfLots(LotClass.MOTORBIKE));
+        assertEquals(4, garage.getTotalNumberOfLots(LotClass.SHARED));
+
+        // the first level has room for two cars, the third one goes to the next level
+        assertEquals(0, garage.enter(VehicleFactory.createCar("c1")).get().getParkingLevel());
+        assertEquals(0, garage.enter(VehicleFactory.createCar("c2")).get().getParkingLevel());
+        assertEquals(1, garage.enter(VehicleFactory.createCar("c3")).get().getParkingLevel());
+        assertEquals(4, garage.getNumberOfOccupiedLots());
+        assertEquals(2, garage.getNumberOfOccupiedLots(LotClass.SHARED));
+
+        // motorbikes still find room on the first level
+        assertEquals(0, garage.enter(VehicleFactory.createMotorbike("m1")).get().getParkingLevel());
+        assertEquals(1, garage.getNumberOfOccupiedLots(LotClass.MOTORBIKE));
+        assertEquals(5, garage.getNumberOfFreeLots());
+
+        assertTrue(garage.exit(VehicleFactory.createCar("c2")).isPresent());
+        assertEquals(0, garage.getNumberOfOccupiedLots(LotClass.SHARED));
+        assertEquals(3, garage.getNumberOfOccupiedLots());
+        verifyGarageIntegrity(garage);
+    }
+
+    @Test
+    public void testEnterAllLotClasses() {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(1).
+                numberOfMotorbikeBaysPerLevel(2).
+                build();
+
+        // the second car doesn't fit, the motorbikes behind it still enter
+        List<BatchResult> results = garage.enterAll(Arrays.asList(
+                VehicleFactory.createCar("c1"),
+                VehicleFactory.createCar("c2"),
+                VehicleFactory.createMotorbike("m1"),
+                VehicleFactory.createMotorbike("m2")));
+
+        assertEquals(BatchResult.Status.ENTERED, results.get(0).getStatus());
+        assertEquals(BatchResult.Status.GARAGE_FULL, results.get(1).getStatus());
+        assertEquals(BatchResult.Status.ENTERED, results.get(2).getStatus());
+        assertEquals(BatchResult.Status.ENTERED, results.get(3).getStatus());
+        assertFalse(garage.findLocation("c2").isPresent());
+        assertEquals(3, garage.getNumberOfOccupiedLots());
+        verifyGarageIntegrity(garage);
+    }
 }
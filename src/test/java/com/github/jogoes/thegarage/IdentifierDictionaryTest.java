@@ -0,0 +1,193 @@
+package com.github.jogoes.thegarage;
+
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class IdentifierDictionaryTest {
+
+    @Test
+    public void testPutGetRemove() {
+
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        int handle = dictionary.putIfAbsent("B-AB 1234", 42);
+        assertNotEquals(IdentifierDictionary.NO_HANDLE, handle);
+        assertEquals(IdentifierDictionary.NO_HANDLE, dictionary.putIfAbsent("B-AB 1234", 43));
+        assertEquals(1, dictionary.size());
+
+        assertEquals(handle, dictionary.find("B-AB 1234"));
+        assertEquals("B-AB 1234", dictionary.getIdentifier(handle));
+        assertEquals(42, dictionary.get("B-AB 1234", -1));
+        // equal strings are found, not only the instance which was added
+        assertEquals(42, dictionary.get(new String("B-AB 1234"), -1));
+        assertEquals(-1, dictionary.get("B-AB 1235", -1));
+        assertEquals(IdentifierDictionary.NO_HANDLE, dictionary.find("B-AB 1235"));
+
+        dictionary.set(handle, 7);
+        assertEquals(7, dictionary.get("B-AB 1234", -1));
+        assertTrue(dictionary.set("B-AB 1234", 8));
+        assertFalse(dictionary.set("B-AB 1235", 8));
+
+        // only removed with the expected value
+        assertFalse(dictionary.remove("B-AB 1234", 7));
+        assertTrue(dictionary.remove("B-AB 1234", 8));
+        assertFalse(dictionary.remove("B-AB 1234", 8));
+        assertEquals(0, dictionary.size());
+        assertEquals(-1, dictionary.get("B-AB 1234", -1));
+        assertNull(dictionary.getIdentifier(handle));
+    }
+
+    @Test
+    public void testHandlesAreReused() {
+
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        int handle = dictionary.putIfAbsent("M-XY 1", 1);
+        assertTrue(dictionary.remove("M-XY 1", 1));
+
+        // the handle of the removed identifier is handed out again within its stripe
+        int reused = dictionary.putIfAbsent("M-XY 1", 2);
+        assertEquals(handle, reused);
+        assertEquals(2, dictionary.get("M-XY 1", -1));
+    }
+
+    @Test
+    public void testPutAll() {
+
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        dictionary.ensureCapacity(10000);
+        assertEquals(0, dictionary.size());
+        dictionary.putIfAbsent("K-0", 0);
+
+        String[] identifiers = new String[10000];
+        long[] values = new long[identifiers.length];
+        for(int i = 0; i < identifiers.length; i++) {
+            identifiers[i] = "K-" + (i + 1);
+            values[i] = i + 1;
+        }
+        assertEquals(-1, dictionary.putAllIfAbsent(identifiers, values, identifiers.length - 1));
+        assertEquals(identifiers.length, dictionary.size());
+        for(int i = 0; i < identifiers.length; i++) {
+            assertEquals(i, dictionary.get("K-" + i, -1));
+        }
+
+        // a duplicate within the batch and one already in the dictionary
+        assertEquals(1, dictionary.putAllIfAbsent(new String[] { "K-X", "K-X" }, new long[] { 1, 2 }, 2));
+        assertEquals(0, dictionary.putAllIfAbsent(new String[] { "K-5" }, new long[] { 1 }, 1));
+        assertEquals(5, dictionary.get("K-5", -1));
+
+        // none of the identifiers of a batch with a duplicate is kept
+        assertEquals(-1, dictionary.get("K-X", -1));
+        assertEquals(2, dictionary.putAllIfAbsent(new String[] { "K-Y", "K-Z", "K-7" }, new long[] { 1, 2, 3 }, 3));
+        assertEquals(-1, dictionary.get("K-Y", -1));
+        assertEquals(-1, dictionary.get("K-Z", -1));
+        assertEquals(identifiers.length, dictionary.size());
+    }
+
+    @Test
+    public void testCollidingHashes() {
+
+        // "Aa" and "BB" have the same hash code, so have all combinations of them
+        List<String> identifiers = new ArrayList<>();
+        for(int i = 0; i < 256; i++) {
+            StringBuilder identifier = new StringBuilder();
+            for(int bit = 0; bit < 8; bit++) {
+                identifier.append((i & (1 << bit)) != 0 ? "Aa" : "BB");
+            }
+            identifiers.add(identifier.toString());
+        }
+
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        for(int i = 0; i < identifiers.size(); i++) {
+            assertNotEquals(IdentifierDictionary.NO_HANDLE, dictionary.putIfAbsent(identifiers.get(i), i));
+        }
+        for(int i = 0; i < identifiers.size(); i += 2) {
+            assertTrue(dictionary.remove(identifiers.get(i), i));
+        }
+        for(int i = 0; i < identifiers.size(); i++) {
+            assertEquals(i % 2 == 0 ? -1 : i, dictionary.get(identifiers.get(i), -1));
+        }
+        assertEquals(128, dictionary.size());
+    }
+
+    @Test
+    public void testManyIdentifiers() {
+
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        Map<String, Long> expected = new HashMap<>();
+        Random random = new Random(17);
+
+        // grows beyond several chunks and rebuilds the tables on the way, also to get rid of tombstones
+        for(int i = 0; i < 200000; i++) {
+            String identifier = "K-" + (char) ('A' + random.nextInt(26)) + (char) ('A' + random.nextInt(26)) + " " + random.nextInt(20000);
+            Long value = expected.get(identifier);
+            if(value == null) {
+                assertNotEquals(IdentifierDictionary.NO_HANDLE, dictionary.putIfAbsent(identifier, i));
+                expected.put(identifier, (long) i);
+            } else {
+                assertTrue(dictionary.remove(identifier, value));
+                expected.remove(identifier);
+            }
+        }
+
+        assertEquals(expected.size(), dictionary.size());
+        for(Map.Entry<String, Long> entry : expected.entrySet()) {
+            assertEquals((long) entry.getValue(), dictionary.get(entry.getKey(), -1));
+        }
+    }
+
+    @Test
+    public void testConcurrentPutAndRemove() throws Exception {
+
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        int numberOfThreads = 8;
+        int identifiersPerThread = 5000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        CyclicBarrier barrier = new CyclicBarrier(numberOfThreads);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for(int t = 0; t < numberOfThreads; t++) {
+                futures.add(executor.submit(() -> {
+                    barrier.await();
+                    // all threads fight about the same identifiers, every value tells which round added it
+                    int added = 0;
+                    for(int round = 0; round < 4; round++) {
+                        for(int i = 0; i < identifiersPerThread; i++) {
+                            String identifier = "T-" + i;
+                            if(dictionary.putIfAbsent(identifier, round) != IdentifierDictionary.NO_HANDLE) {
+                                added++;
+                            }
+                            // other threads might be in another round, but a value always belongs to some round
+                            long value = dictionary.get(identifier, -1);
+                            if(value < -1 || value > 3) {
+                                throw new AssertionError("Unexpected value " + value + " for " + identifier);
+                            }
+                            if(round < 3 && dictionary.remove(identifier, round)) {
+                                added--;
+                            }
+                        }
+                    }
+                    return added;
+                }));
+            }
+            int added = 0;
+            for(Future<Integer> future : futures) {
+                added += future.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(dictionary.size(), added);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int found = 0;
+        for(int i = 0; i < identifiersPerThread; i++) {
+            if(dictionary.get("T-" + i, -1) != -1) {
+                found++;
+            }
+        }
+        assertEquals(dictionary.size(), found);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.jogoes.thegarage;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class IdentifierPrefixIndexTest {
+
+    private static List<String> find(IdentifierPrefixIndex index, String prefix, int batchSize) {
+        List<String> found = new ArrayList<>();
+        String[] ids = new String[batchSize];
+        int[] lots = new int[batchSize];
+        String after = null;
+        while(true) {
+            int count = index.find(prefix, after, ids, lots);
+            for(int i = 0; i < count; i++) {
+                found.add(ids[i] + "/" + lots[i]);
+            }
+            if(count < batchSize) {
+                return found;
+            }
+            after = ids[count - 1];
+        }
+    }
+
+    private static List<String> expected(TreeMap<String, Integer> model, String prefix) {
+        List<String> expected = new ArrayList<>();
+        for(Map.Entry<String, Integer> entry : model.tailMap(prefix).entrySet()) {
+            if(!entry.getKey().startsWith(prefix)) {
+                break;
+            }
+            expected.add(entry.getKey() + "/" + entry.getValue());
+        }
+        return expected;
+    }
+
+    @Test
+    public void testAgainstSortedMap() {
+
+        IdentifierPrefixIndex index = new IdentifierPrefixIndex();
+        TreeMap<String, Integer> model = new TreeMap<>();
+        Random random = new Random(5);
+
+        for(int step = 0; step < 200000; step++) {
+            String id = "K" + random.nextInt(20) + "-" + random.nextInt(1000);
+            if(model.containsKey(id)) {
+                index.remove(id);
+                model.remove(id);
+            } else {
+                int lot = random.nextInt(100000);
+                index.add(id, lot);
+                model.put(id, lot);
+            }
+            if(step % 10000 == 0) {
+                assertEquals(model.size(), index.size());
+                assertEquals(expected(model, "K1"), find(index, "K1", 7));
+            }
+        }
+
+        assertEquals(model.size(), index.size());
+        for(String prefix : new String[] { "", "K", "K3", "K3-", "K12-5", "K7-999", "K7-9999", "L" }) {
+            assertEquals(prefix, expected(model, prefix), find(index, prefix, 3));
+            assertEquals(prefix, expected(model, prefix), find(index, prefix, 128));
+        }
+    }
+
+    @Test
+    public void testAddAll() {
+
+        IdentifierPrefixIndex index = new IdentifierPrefixIndex();
+        TreeMap<String, Integer> model = new TreeMap<>();
+        for(int i = 0; i < 100; i++) {
+            index.add("A" + i, i);
+            model.put("A" + i, i);
+        }
+        index.remove("A5");
+        model.remove("A5");
+
+        String[] ids = new String[1000];
+        int[] lots = new int[1000];
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = "B" + (ids.length - i);
+            lots[i] = 1000 + i;
+            model.put(ids[i], lots[i]);
+        }
+        ids[0] = "A5";
+        model.remove("B1000");
+        model.put("A5", lots[0]);
+        index.addAll(ids, lots, ids.length);
+
+        assertEquals(model.size(), index.size());
+        assertEquals(expected(model, ""), find(index, "", 50));
+        assertEquals(expected(model, "A5"), find(index, "A5", 50));
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.jogoes.thegarage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+
+        // small values get a bucket of their own
+        for (int value = 0; value < 32; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.highestValueOf(value));
+        }
+
+        // every value falls into a bucket whose range contains it and which is at most 1/16 of the value wide
+        long[] values = {32, 33, 100, 1000, 4095, 4096, 123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int bucket = LatencyHistogram.bucketIndex(value);
+            long highest = LatencyHistogram.highestValueOf(bucket);
+            long lowest = LatencyHistogram.highestValueOf(bucket - 1) + 1;
+            assertTrue(lowest <= value && value <= highest);
+            assertTrue(highest - lowest < value / 16 + 1);
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(99));
+
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500500, histogram.getMean(), 0.001);
+        assertEquals(1000000, histogram.getMax());
+        assertEquals(500000, histogram.getPercentile(50), 500000 / 16);
+        assertEquals(990000, histogram.getPercentile(99), 990000 / 16);
+        assertEquals(1000000, histogram.getPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+    }
+}
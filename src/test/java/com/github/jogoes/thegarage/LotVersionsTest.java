@@ -0,0 +1,105 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import junitparams.JUnitParamsRunner;
+import junitparams.Parameters;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collection;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnitParamsRunner.class)
+public class LotVersionsTest {
+
+    @Test
+    @Parameters({"TREE", "ARRAY"})
+    public void testPutGetFind(StorageMode storageMode) {
+
+        LotVersions versions = new LotVersions(new LotLayout(100, 0, 0, 1), new SnapshotEpoch(), storageMode);
+        Vehicle car = VehicleFactory.createCar("car");
+        Vehicle motorbike = VehicleFactory.createMotorbike("motorbike");
+
+        assertNull(versions.current().get(5));
+        assertEquals(-1, versions.current().nextOccupied(0));
+
+        versions.put(5, car);
+        versions.put(70, motorbike);
+
+        assertSame(car, versions.current().get(5));
+        assertEquals(5, versions.current().find("car"));
+        assertEquals(70, versions.current().find("motorbike"));
+        assertEquals(-1, versions.current().find("bus"));
+
+        assertEquals(5, versions.current().nextOccupied(0));
+        assertEquals(5, versions.current().nextOccupied(5));
+        assertEquals(70, versions.current().nextOccupied(6));
+        assertEquals(-1, versions.current().nextOccupied(71));
+
+        versions.put(5, null);
+        assertNull(versions.current().get(5));
+        assertEquals(-1, versions.current().find("car"));
+        assertEquals(70, versions.current().nextOccupied(0));
+
+        versions.resize(new LotLayout(200, 0, 0, 1));
+        versions.put(150, car);
+        assertEquals(150, versions.current().find("car"));
+        assertEquals(150, versions.current().nextOccupied(71));
+    }
+
+    @Test
+    @Parameters({"TREE", "ARRAY"})
+    public void testSnapshotVersion(StorageMode storageMode) {
+
+        SnapshotEpoch snapshotEpoch = new SnapshotEpoch();
+        LotVersions versions = new LotVersions(new LotLayout(100, 0, 0, 1), snapshotEpoch, storageMode);
+        Vehicle car = VehicleFactory.createCar("car");
+        versions.beginWrite();
+        versions.put(5, car);
+
+        LotVersions.Version snapshot = snapshotEpoch.snapshot(versions::get);
+        assertSame(snapshot, versions.current());
+
+        // the first write after the snapshot copies the version and the chunk it writes
+        versions.beginWrite();
+        versions.put(5, null);
+        versions.put(6, car);
+        assertNotSame(snapshot, versions.current());
+        assertSame(car, snapshot.get(5));
+        assertNull(snapshot.get(6));
+        assertEquals(6, versions.current().find("car"));
+        assertEquals(5, snapshot.find("car"));
+    }
+
+    @Test
+    @Parameters({"TREE", "ARRAY"})
+    public void testGarageWithStorageMode(StorageMode storageMode) {
+
+        Garage garage = new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(3).
+                storageMode(storageMode).
+                build();
+
+        for (int i = 0; i < 6; i++) {
+            assertTrue(garage.enter(VehicleFactory.createCar(Integer.toString(i))).isPresent());
+        }
+        assertFalse(garage.enter(VehicleFactory.createCar("6")).isPresent());
+
+        assertTrue(garage.exit(VehicleFactory.createCar("4")).isPresent());
+
+        Collection<VehicleLocationInfo> locationInfos = garage.getVehicleLocationInfos();
+        assertEquals(5, locationInfos.size());
+        for (VehicleLocationInfo info : locationInfos) {
+            LocationInfo location = garage.findLocation(info.getVehicle()).get();
+            assertEquals(info.getParkingLevel(), location.getParkingLevel());
+            assertEquals(info.getLotNumber(), location.getLotNumber());
+        }
+
+        LocationInfo location = garage.enter(VehicleFactory.createCar("7")).get();
+        assertEquals(1, location.getParkingLevel());
+        assertEquals(1, location.getLotNumber());
+    }
+}
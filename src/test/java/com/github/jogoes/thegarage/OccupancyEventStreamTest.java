@@ -0,0 +1,133 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class OccupancyEventStreamTest {
+
+    /**
+     * Handler which records the events as strings.
+     */
+    private static class RecordingHandler implements OccupancyEventHandler {
+        final List<String> events = new ArrayList<>();
+        int batches;
+
+        @Override
+        public void onEvent(OccupancyEventStream.EventType type, Vehicle vehicle, int parkingLevel, int lotNumber, long timestamp, boolean endOfBatch) {
+            events.add(type + " " + vehicle.getIdentifier() + " " + parkingLevel + "/" + lotNumber + " @" + timestamp);
+            if(endOfBatch) {
+                batches++;
+            }
+        }
+    }
+
+    @Test
+    public void testEventsFromGarage() {
+
+        AtomicLong clock = new AtomicLong(1000);
+        OccupancyEventStream stream = new OccupancyEventStream(16, clock::incrementAndGet);
+        Garage garage = new Garage(2, 1);
+        garage.addListener(stream);
+
+        OccupancyEventStream.Subscription subscription = stream.subscribe();
+        RecordingHandler handler = new RecordingHandler();
+
+        Vehicle car = VehicleFactory.createCar("car");
+        Vehicle motorbike = VehicleFactory.createMotorbike("motorbike");
+        garage.enter(car);
+        garage.enter(motorbike);
+        garage.exit(car);
+
+        assertEquals(3, subscription.getLag());
+        assertEquals(2, subscription.poll(handler, 2));
+        assertEquals(1, subscription.poll(handler, 10));
+        assertEquals(0, subscription.poll(handler, 10));
+
+        assertEquals("ENTER car 0/0 @1001", handler.events.get(0));
+        assertEquals("ENTER motorbike 1/0 @1002", handler.events.get(1));
+        assertEquals("EXIT car 0/0 @1003", handler.events.get(2));
+        assertEquals(2, handler.batches);
+        assertEquals(0, subscription.getNumberOfDroppedEvents());
+
+        // a subscription created later only sees later events
+        OccupancyEventStream.Subscription late = stream.subscribe();
+        assertEquals(0, late.poll(handler, 10));
+    }
+
+    @Test
+    public void testSlowSubscriberDropsEvents() {
+
+        OccupancyEventStream stream = new OccupancyEventStream(6);
+        assertEquals(8, stream.getCapacity());
+
+        OccupancyEventStream.Subscription subscription = stream.subscribe();
+        Vehicle car = VehicleFactory.createCar("car");
+        for(int i = 0; i < 20; i++) {
+            stream.vehicleEntered(car, 0, i);
+        }
+
+        RecordingHandler handler = new RecordingHandler();
+        assertEquals(8, subscription.poll(handler, 100));
+        assertEquals(12, subscription.getNumberOfDroppedEvents());
+        // only the newest events survived
+        assertTrue(handler.events.get(0).startsWith("ENTER car 0/12 "));
+        assertTrue(handler.events.get(7).startsWith("ENTER car 0/19 "));
+    }
+
+    @Test
+    public void testConcurrentPublishers() throws Exception {
+
+        final int numberOfThreads = 4;
+        final int operationsPerThread = 20000;
+
+        OccupancyEventStream stream = new OccupancyEventStream(1024);
+        Garage garage = new Garage(numberOfThreads, 10);
+        garage.addListener(stream);
+
+        OccupancyEventStream.Subscription subscription = stream.subscribe();
+        AtomicBoolean running = new AtomicBoolean(true);
+        long[] received = new long[2];
+
+        Thread consumer = new Thread(() -> {
+            OccupancyEventHandler handler = (type, vehicle, parkingLevel, lotNumber, timestamp, endOfBatch) -> {
+                received[type.ordinal()]++;
+                assertNotNull(vehicle);
+            };
+            while(running.get() || subscription.getLag() > 0) {
+                subscription.poll(handler, 128);
+            }
+        });
+        consumer.start();
+
+        List<Thread> producers = new ArrayList<>();
+        for(int t = 0; t < numberOfThreads; t++) {
+            final int threadId = t;
+            Thread producer = new Thread(() -> {
+                for(int i = 0; i < operationsPerThread; i++) {
+                    Vehicle vehicle = VehicleFactory.createCar(threadId + "-" + i);
+                    garage.enter(vehicle);
+                    garage.exit(vehicle);
+                }
+            });
+            producers.add(producer);
+            producer.start();
+        }
+        for(Thread producer : producers) {
+            producer.join();
+        }
+        running.set(false);
+        consumer.join();
+
+        long published = 2L * numberOfThreads * operationsPerThread;
+        assertEquals(published, stream.getNumberOfPublishedEvents());
+        assertEquals(published, received[0] + received[1] + subscription.getNumberOfDroppedEvents());
+    }
+}
@@ -0,0 +1,175 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.OccupancyHistory.Resolution;
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class OccupancyHistoryTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toMillis(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private final AtomicLong clock = new AtomicLong(10 * HOUR);
+
+    private Garage createGarage() {
+        return new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(10).
+                sessionClock(clock::get).
+                occupancyHistoryEnabled(true).
+                build();
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse(new Garage(1, 10).getOccupancyHistory().isPresent());
+    }
+
+    @Test
+    public void testSeconds() {
+
+        Garage garage = createGarage();
+        OccupancyHistory history = garage.getOccupancyHistory().get();
+        long start = clock.get();
+
+        Vehicle first = VehicleFactory.createCar("A");
+        Vehicle second = VehicleFactory.createCar("B");
+        garage.enter(first);
+        clock.addAndGet(SECOND / 2);
+        garage.enter(second);
+        clock.addAndGet(SECOND / 2);
+        garage.exit(first);
+        clock.addAndGet(2 * SECOND);
+        garage.exit(second);
+        clock.addAndGet(SECOND / 4);
+
+        OccupancySeries series = history.getSeries(0, Resolution.SECONDS, start, clock.get());
+        assertEquals(4, series.size());
+        assertEquals(start, series.getStartMillis());
+        assertEquals(start + SECOND, series.getTime(1));
+        assertEquals(1.5, series.getAverageOccupiedLots(0), 1e-9);
+        // the level was empty until A entered
+        assertEquals(0, series.getMinOccupiedLots(0));
+        assertEquals(2, series.getMaxOccupiedLots(0));
+        // the second bucket starts with the exit of A, nothing changes in the third one
+        assertEquals(1, series.getAverageOccupiedLots(1), 1e-9);
+        assertEquals(1, series.getMinOccupiedLots(2));
+        assertEquals(1, series.getMaxOccupiedLots(2));
+        assertEquals(0, series.getAverageOccupiedLots(3), 1e-9);
+        assertEquals(0, series.getMinOccupiedLots(3));
+        assertEquals(0.1, series.getFillRate(1), 1e-9);
+        assertEquals(2, series.getMaxOccupiedLots());
+        assertEquals(3.5 / 3.25, series.getAverageOccupiedLots(), 1e-9);
+
+        // the newest minute and hour include the seconds which aren't complete yet
+        OccupancySeries minute = history.getSeries(0, Resolution.MINUTES, start, clock.get());
+        assertEquals(1, minute.size());
+        assertEquals(2, minute.getMaxOccupiedLots(0));
+        assertEquals(0, minute.getMinOccupiedLots(0));
+        assertEquals(3.5 / 3.25, minute.getAverageOccupiedLots(0), 1e-9);
+        assertEquals(2, history.getSeries(0, Resolution.HOURS, start, clock.get()).getMaxOccupiedLots());
+
+        // the other level stayed empty
+        OccupancySeries other = history.getSeries(1, Resolution.SECONDS, start, clock.get());
+        assertEquals(4, other.size());
+        assertEquals(0, other.getMaxOccupiedLots());
+
+        assertEquals(0, history.getSeries(0, Resolution.SECONDS, start - HOUR, start).size());
+        assertThrows(IndexOutOfBoundsException.class, () -> series.getTime(4));
+        assertThrows(IllegalArgumentException.class, () -> history.getSeries(2, Resolution.SECONDS, start, start + 1));
+        assertThrows(IllegalArgumentException.class, () -> history.getSeries(0, Resolution.SECONDS, start, start - 1));
+    }
+
+    @Test
+    public void testClaimedReservation() {
+
+        Garage garage = createGarage();
+        OccupancyHistory history = garage.getOccupancyHistory().get();
+        long start = clock.get();
+
+        Reservation reservation = garage.reserve(VehicleFactory.createCar("A"), 1, 1, TimeUnit.HOURS).get();
+        clock.addAndGet(SECOND / 2);
+        // a claimed reservation counts as occupied from the claim on, like an entered vehicle
+        assertTrue(garage.claim(reservation).isPresent());
+        clock.addAndGet(SECOND + SECOND / 2);
+
+        OccupancySeries series = history.getSeries(1, Resolution.SECONDS, start, clock.get());
+        assertEquals(2, series.size());
+        assertEquals(0, series.getMinOccupiedLots(0));
+        assertEquals(1, series.getMaxOccupiedLots(0));
+        assertEquals(0.5, series.getAverageOccupiedLots(0), 1e-9);
+        assertEquals(1, series.getMinOccupiedLots(1));
+        assertEquals(0, history.getSeries(0, Resolution.SECONDS, start, clock.get()).getMaxOccupiedLots());
+    }
+
+    @Test
+    public void testTiers() {
+
+        Garage garage = createGarage();
+        OccupancyHistory history = garage.getOccupancyHistory().get();
+        long start = clock.get();
+
+        // one more vehicle every minute for 10 minutes, then nothing happens for 2 hours
+        for(int i = 0; i < 10; i++) {
+            garage.enter(VehicleFactory.createCar("V" + i));
+            clock.addAndGet(MINUTE);
+        }
+        clock.addAndGet(2 * HOUR);
+
+        OccupancySeries minutes = history.getSeries(0, Resolution.MINUTES, start, start + 10 * MINUTE);
+        assertEquals(10, minutes.size());
+        for(int i = 0; i < 10; i++) {
+            assertEquals(i + 1, minutes.getAverageOccupiedLots(i), 1e-9);
+            assertEquals(i, minutes.getMinOccupiedLots(i));
+            assertEquals(i + 1, minutes.getMaxOccupiedLots(i));
+        }
+        assertEquals(5.5, minutes.getAverageOccupiedLots(), 1e-9);
+
+        OccupancySeries hours = history.getSeries(0, Resolution.HOURS, start, clock.get());
+        assertEquals(3, hours.size());
+        assertEquals((55.0 + 50 * 10) / 60, hours.getAverageOccupiedLots(0), 1e-9);
+        assertEquals(0, hours.getMinOccupiedLots(0));
+        assertEquals(10, hours.getMaxOccupiedLots(0));
+        assertEquals(10, hours.getMinOccupiedLots(1));
+        assertEquals(1.0, hours.getFillRate(2), 1e-9);
+
+        // the seconds only reach back one hour, the quiet time is filled with the last occupancy
+        OccupancySeries seconds = history.getSeries(0, Resolution.SECONDS, start, clock.get() + SECOND);
+        assertEquals(Resolution.SECONDS.getCapacity(), seconds.size());
+        assertEquals(clock.get() - HOUR + SECOND, seconds.getStartMillis());
+        assertEquals(10, seconds.getMinOccupiedLots(0));
+        assertEquals(10, seconds.getAverageOccupiedLots(), 1e-9);
+    }
+
+    @Test
+    public void testWrapAround() {
+
+        Garage garage = createGarage();
+        OccupancyHistory history = garage.getOccupancyHistory().get();
+
+        // keep changing the occupancy for longer than the seconds ring reaches back
+        for(int i = 0; i < 2 * Resolution.SECONDS.getCapacity(); i++) {
+            Vehicle vehicle = VehicleFactory.createCar("V" + i);
+            garage.enter(vehicle);
+            clock.addAndGet(SECOND / 2);
+            garage.exit(vehicle);
+            clock.addAndGet(SECOND / 2);
+        }
+
+        OccupancySeries seconds = history.getSeries(0, Resolution.SECONDS, 0, clock.get() + SECOND);
+        assertEquals(Resolution.SECONDS.getCapacity(), seconds.size());
+        for(int i = 0; i < seconds.size() - 1; i++) {
+            assertEquals(0.5, seconds.getAverageOccupiedLots(i), 1e-9);
+            assertEquals(0, seconds.getMinOccupiedLots(i));
+            assertEquals(1, seconds.getMaxOccupiedLots(i));
+        }
+    }
+}
@@ -171,4 +171,102 @@ public class ParkingLevelTest {
 
         verifyParkingLevelIntegrity(parkingLevel);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLargeParkingLevel() {
+
+        final int totalNumberOfLots = 100000;
+        ParkingLevel parkingLevel = new ParkingLevel(0, totalNumberOfLots);
+
+        for (int i = 0; i < totalNumberOfLots; i++) {
+            assertEquals(i, parkingLevel.enter(VehicleFactory.createCar(Integer.toString(i))).get().getLotNumber());
+        }
+        assertFalse(parkingLevel.hasFreeLots());
+
+        // the lowest free lot is taken first
+        assertTrue(parkingLevel.exit(VehicleFactory.createCar("77777")).isPresent());
+        assertTrue(parkingLevel.exit(VehicleFactory.createCar("12345")).isPresent());
+        assertEquals(12345, parkingLevel.enter(vehicles[0]).get().getLotNumber());
+        assertEquals(77777, parkingLevel.enter(vehicles[1]).get().getLotNumber());
+    }
+
+    @Test
+    public void testLotClasses() {
+
+        // lots 0-1 are car bays, 2 is a motorbike bay, 3-8 are three shared bays for two motorbikes each
+        ParkingLevel parkingLevel = new ParkingLevel(0, new LotLayout(2, 1, 3, 2), StorageMode.ARRAY);
+        assertEquals(9, parkingLevel.getTotalNumberOfLots());
+        assertEquals(6, parkingLevel.getNumberOfLots(LotClass.SHARED));
+
+        // motorbikes fill the motorbike bay first, then share a bay
+        assertEquals(2, parkingLevel.enter(VehicleFactory.createMotorbike("m1")).get().getLotNumber());
+        assertEquals(3, parkingLevel.enter(VehicleFactory.createMotorbike("m2")).get().getLotNumber());
+        assertEquals(4, parkingLevel.enter(VehicleFactory.createMotorbike("m3")).get().getLotNumber());
+        assertEquals(1, parkingLevel.getNumberOfOccupiedLots(LotClass.MOTORBIKE));
+        assertEquals(2, parkingLevel.getNumberOfOccupiedLots(LotClass.SHARED));
+
+        // cars take the car bays, then a whole empty shared bay
+        assertEquals(0, parkingLevel.enter(vehicles[0]).get().getLotNumber());
+        assertEquals(1, parkingLevel.enter(vehicles[1]).get().getLotNumber());
+        assertEquals(5, parkingLevel.enter(vehicles[2]).get().getLotNumber());
+        assertEquals(4, parkingLevel.getNumberOfOccupiedLots(LotClass.SHARED));
+        assertEquals(7, parkingLevel.getNumberOfOccupiedLots());
+
+        // the next motorbike opens the last shared bay, the one after shares it, then the level is full
+        assertTrue(parkingLevel.hasRoomForCar());
+        assertEquals(7, parkingLevel.enter(VehicleFactory.createMotorbike("m4")).get().getLotNumber());
+        assertFalse(parkingLevel.hasRoomForCar());
+        assertFalse(parkingLevel.enter(vehicles[3]).isPresent());
+        assertEquals(8, parkingLevel.enter(VehicleFactory.createMotorbike("m5")).get().getLotNumber());
+        assertFalse(parkingLevel.hasFreeLots());
+        assertFalse(parkingLevel.enter(VehicleFactory.createMotorbike("m6")).isPresent());
+
+        // a shared bay takes cars again once both motorbikes left
+        assertTrue(parkingLevel.exit(VehicleFactory.createMotorbike("m2")).isPresent());
+        assertFalse(parkingLevel.hasRoomForCar());
+        assertTrue(parkingLevel.exit(VehicleFactory.createMotorbike("m3")).isPresent());
+        assertTrue(parkingLevel.hasRoomForCar());
+        assertEquals(3, parkingLevel.enter(vehicles[3]).get().getLotNumber());
+
+        // the car leaving a shared bay frees all its lots
+        assertTrue(parkingLevel.exit(vehicles[2]).isPresent());
+        assertEquals(4, parkingLevel.getNumberOfOccupiedLots(LotClass.SHARED));
+        assertEquals(7, parkingLevel.getNumberOfOccupiedLots());
+        verifyParkingLevelIntegrity(parkingLevel);
+    }
+
+    @Test
+    public void testMotorbikesUseCarBaysLast() {
+
+        ParkingLevel parkingLevel = new ParkingLevel(0, new LotLayout(1, 1, 0, 2), StorageMode.TREE);
+
+        assertEquals(1, parkingLevel.enter(VehicleFactory.createMotorbike("m1")).get().getLotNumber());
+        assertEquals(0, parkingLevel.enter(VehicleFactory.createMotorbike("m2")).get().getLotNumber());
+        assertEquals(1, parkingLevel.getNumberOfOccupiedLots(LotClass.CAR));
+        assertFalse(parkingLevel.enter(vehicles[0]).isPresent());
+    }
+
+    @Test
+    public void testEnterSpecificLot() {
+
+        ParkingLevel parkingLevel = new ParkingLevel(0, new LotLayout(1, 1, 2, 3), StorageMode.ARRAY);
+
+        // a car doesn't fit into a motorbike bay and only starts on the first lot of a shared bay
+        assertFalse(parkingLevel.enter(1, vehicles[0]).isPresent());
+        assertFalse(parkingLevel.enter(3, vehicles[0]).isPresent());
+        assertTrue(parkingLevel.enter(2, vehicles[0]).isPresent());
+        assertFalse(parkingLevel.enter(3, VehicleFactory.createMotorbike("m1")).isPresent());
+        assertEquals(3, parkingLevel.getNumberOfOccupiedLots(LotClass.SHARED));
+
+        // motorbikes restored into the same shared bay
+        assertTrue(parkingLevel.enter(6, VehicleFactory.createMotorbike("m1")).isPresent());
+        assertTrue(parkingLevel.enter(5, VehicleFactory.createMotorbike("m2")).isPresent());
+        assertFalse(parkingLevel.enter(5, VehicleFactory.createMotorbike("m3")).isPresent());
+        assertEquals(1, parkingLevel.enter(VehicleFactory.createMotorbike("m3")).get().getLotNumber());
+        assertEquals(7, parkingLevel.enter(VehicleFactory.createMotorbike("m4")).get().getLotNumber());
+        assertEquals(0, parkingLevel.enter(vehicles[1]).get().getLotNumber());
+        assertFalse(parkingLevel.hasRoomForCar());
+
+        TestUtils.assertThrows(IndexOutOfBoundsException.class, () -> parkingLevel.enter(8, vehicles[1]));
+    }
+}
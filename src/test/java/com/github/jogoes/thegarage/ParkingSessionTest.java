@@ -0,0 +1,144 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class ParkingSessionTest {
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * 2.50 per started quarter of an hour, at most 20.00 per day.
+     */
+    private final Tariff tariff = new Tariff(15 * MINUTE, 250, 2000);
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    private Garage createGarage(int numberOfLevels, int numberOfLotsPerLevel) {
+        return new GarageBuilder().
+                numberOfLevels(numberOfLevels).
+                numberOfParkingLotsPerLevel(numberOfLotsPerLevel).
+                sessionClock(clock::get).
+                build();
+    }
+
+    @Test
+    public void testTariff() {
+
+        assertThrows(IllegalArgumentException.class, () -> new Tariff(0, 1, 1));
+        assertThrows(IllegalArgumentException.class, () -> new Tariff(1, -1, 1));
+
+        assertEquals(0, tariff.getFee(0));
+        assertEquals(0, tariff.getFee(-5));
+        assertEquals(250, tariff.getFee(1));
+        assertEquals(250, tariff.getFee(15 * MINUTE));
+        assertEquals(500, tariff.getFee(15 * MINUTE + 1));
+        assertEquals(2000, tariff.getFee(3 * 60 * MINUTE));
+        assertEquals(2000, tariff.getFee(DAY));
+        assertEquals(2250, tariff.getFee(DAY + 1));
+        assertEquals(4000, tariff.getFee(2 * DAY));
+    }
+
+    @Test
+    public void testComputeFees() {
+
+        long[] times = { ParkingLevel.NO_SESSION, 0, 1000 * MINUTE, 1001 * MINUTE, ParkingLevel.NO_SESSION };
+        assertEquals(3, tariff.computeFees(times, 1, 4, 1000 * MINUTE + 1));
+        assertArrayEquals(new long[] { ParkingLevel.NO_SESSION, 2000, 250, 0, ParkingLevel.NO_SESSION }, times);
+    }
+
+    @Test
+    public void testEntryAndExitTimes() {
+
+        Garage garage = createGarage(2, 2);
+        Vehicle car = VehicleFactory.createCar("car");
+        assertFalse(garage.getEntryTime("car").isPresent());
+
+        garage.enter(car);
+        assertEquals(1_000_000, garage.getEntryTime("car").getAsLong());
+
+        clock.addAndGet(20 * MINUTE);
+        ParkingSession session = garage.exitSession(car).get();
+        assertEquals(car, session.getVehicle());
+        assertEquals(0, session.getParkingLevel());
+        assertEquals(0, session.getLotNumber());
+        assertEquals(1_000_000, session.getEntryTime());
+        assertEquals(1_000_000 + 20 * MINUTE, session.getExitTime());
+        assertEquals(20 * MINUTE, session.getDurationMillis());
+        assertEquals(500, session.getFee(tariff));
+
+        assertFalse(garage.exitSession(car).isPresent());
+        assertFalse(garage.getEntryTime("car").isPresent());
+
+        // the lot starts a new session for the next vehicle
+        garage.enter(VehicleFactory.createCar("next"));
+        assertEquals(1_000_000 + 20 * MINUTE, garage.getEntryTime("next").getAsLong());
+    }
+
+    @Test
+    public void testAccruedFees() {
+
+        Garage garage = createGarage(3, 1000);
+        for(int i = 0; i < 2500; i++) {
+            if(i % 500 == 0) {
+                clock.addAndGet(60 * MINUTE);
+            }
+            garage.enter(VehicleFactory.createCar("car" + i));
+        }
+        garage.exit(VehicleFactory.createCar("car0"));
+        garage.enterAll(Arrays.asList(VehicleFactory.createCar("batch0"), VehicleFactory.createCar("batch1")));
+
+        clock.addAndGet(1);
+        FeeReport report = garage.computeAccruedFees(tariff);
+        assertEquals(clock.get(), report.getTime());
+        assertEquals(2501, report.getNumberOfSessions());
+
+        long total = 0;
+        for(int level = 0; level < 3; level++) {
+            for(int lot = 0; lot < 1000; lot++) {
+                long expected = 0;
+                for(String vehicleId : new String[] { "car" + (level * 1000 + lot), "batch0", "batch1" }) {
+                    long location = garage.locate(vehicleId);
+                    if(location == LocationInfo.pack(level, lot)) {
+                        expected = tariff.getFee(report.getTime() - garage.getEntryTime(vehicleId).getAsLong());
+                    }
+                }
+                assertEquals("fee of lot " + lot + " on level " + level, expected, report.getFee(level, lot));
+                total += expected;
+            }
+        }
+        assertEquals(total, report.getTotalFees());
+        // the oldest vehicles parked for four hours and a bit, the batch just came in
+        assertEquals(2000, report.getFee(0, 1));
+        assertEquals(250, report.getFee(0, 0));
+        assertEquals(0, report.getFee(2, 999));
+    }
+
+    @Test
+    public void testSharedBays() {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(0).
+                numberOfSharedBaysPerLevel(2).
+                sessionClock(clock::get).
+                build();
+        garage.enter(VehicleFactory.createCar("car"));
+        garage.enter(VehicleFactory.createMotorbike("bike"));
+        clock.addAndGet(MINUTE);
+
+        FeeReport report = garage.computeAccruedFees(tariff);
+        assertEquals(2, report.getNumberOfSessions());
+        // the car is accounted on the first lot of its bay only
+        assertArrayEquals(new long[] { 250, 0, 250, 0 },
+                new long[] { report.getFee(0, 0), report.getFee(0, 1), report.getFee(0, 2), report.getFee(0, 3) });
+        assertEquals(500, report.getTotalFees());
+    }
+}
@@ -0,0 +1,206 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Vehicle;
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class ReservationTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    private Garage createGarage(int numberOfLevels, int numberOfLotsPerLevel) {
+        return new GarageBuilder().
+                numberOfLevels(numberOfLevels).
+                numberOfParkingLotsPerLevel(numberOfLotsPerLevel).
+                reservationTickMillis(10).
+                reservationClock(clock::get).
+                build();
+    }
+
+    private void advanceClock(long millis) {
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    @Test
+    public void testInvalidArguments() {
+
+        Garage garage = createGarage(2, 2);
+        Vehicle car = VehicleFactory.createCar("car");
+        Class<IllegalArgumentException> iae = IllegalArgumentException.class;
+        assertThrows(iae, () -> garage.reserve(car, 2, 1, TimeUnit.MINUTES));
+        assertThrows(iae, () -> garage.reserve(car, 0, 0, TimeUnit.MINUTES));
+        assertThrows(IndexOutOfBoundsException.class, () -> garage.reserve(car, 0, 5, 1, TimeUnit.MINUTES));
+        assertThrows(NullPointerException.class, () -> garage.claim(null));
+
+        Reservation foreign = createGarage(1, 1).reserve(car, 0, 1, TimeUnit.MINUTES).get();
+        assertThrows(iae, () -> garage.claim(foreign));
+        assertThrows(iae, () -> garage.cancel(foreign));
+    }
+
+    @Test
+    public void testReservedLotsAreSkipped() {
+
+        Garage garage = createGarage(1, 3);
+        Reservation reservation = garage.reserve(VehicleFactory.createCar("booked"), 0, 0, 1, TimeUnit.MINUTES).get();
+        assertEquals(0, reservation.getLotNumber());
+        assertTrue(reservation.isActive());
+        assertEquals(1, garage.getNumberOfReservedLots());
+        assertEquals(2, garage.getNumberOfFreeLots());
+        assertEquals(0, garage.getNumberOfOccupiedLots());
+
+        // the reserved lot can't be reserved twice
+        assertFalse(garage.reserve(VehicleFactory.createCar("other"), 0, 0, 1, TimeUnit.MINUTES).isPresent());
+
+        assertEquals(1, garage.enter(VehicleFactory.createCar("a")).get().getLotNumber());
+        assertEquals(2, garage.enter(VehicleFactory.createCar("b")).get().getLotNumber());
+        assertFalse(garage.enter(VehicleFactory.createCar("c")).isPresent());
+        assertFalse(garage.reserve(VehicleFactory.createCar("c"), 0, 1, TimeUnit.MINUTES).isPresent());
+    }
+
+    @Test
+    public void testClaim() {
+
+        Garage garage = createGarage(2, 2);
+        Vehicle car = VehicleFactory.createCar("car");
+        Reservation reservation = garage.reserve(car, 1, 1, TimeUnit.MINUTES).get();
+        assertEquals(1, reservation.getParkingLevel());
+
+        LocationInfo location = garage.claim(reservation).get();
+        assertEquals(1, location.getParkingLevel());
+        assertEquals(reservation.getLotNumber(), location.getLotNumber());
+        assertEquals(Reservation.State.CLAIMED, reservation.getState());
+        assertEquals(0, garage.getNumberOfReservedLots());
+        assertEquals(1, garage.getNumberOfOccupiedLots());
+        assertEquals(3, garage.getNumberOfFreeLots());
+        assertTrue(garage.findLocation(car).isPresent());
+
+        // a claimed reservation can't be claimed or cancelled again
+        garage.exit(car);
+        assertFalse(garage.claim(reservation).isPresent());
+        assertFalse(garage.cancel(reservation));
+        assertEquals(4, garage.getNumberOfFreeLots());
+    }
+
+    @Test
+    public void testClaimDuplicate() {
+
+        Garage garage = createGarage(1, 2);
+        Vehicle car = VehicleFactory.createCar("car");
+        Reservation reservation = garage.reserve(car, 0, 1, TimeUnit.MINUTES).get();
+        garage.enter(car);
+
+        assertThrows(IllegalArgumentException.class, () -> garage.claim(reservation));
+        assertTrue(reservation.isActive());
+        garage.exit(car);
+        assertTrue(garage.claim(reservation).isPresent());
+    }
+
+    @Test
+    public void testCancel() {
+
+        Garage garage = createGarage(1, 1);
+        Reservation reservation = garage.reserve(VehicleFactory.createCar("car"), 0, 1, TimeUnit.MINUTES).get();
+        assertEquals(0, garage.getNumberOfFreeLots());
+
+        assertTrue(garage.cancel(reservation));
+        assertFalse(garage.cancel(reservation));
+        assertEquals(Reservation.State.CANCELLED, reservation.getState());
+        assertEquals(1, garage.getNumberOfFreeLots());
+        assertEquals(0, garage.getNumberOfReservedLots());
+        assertFalse(garage.claim(reservation).isPresent());
+        assertTrue(garage.enter(VehicleFactory.createCar("other")).isPresent());
+    }
+
+    @Test
+    public void testExpiry() {
+
+        Garage garage = createGarage(1, 3);
+        Reservation shortLived = garage.reserve(VehicleFactory.createCar("short"), 0, 100, TimeUnit.MILLISECONDS).get();
+        Reservation longLived = garage.reserve(VehicleFactory.createCar("long"), 0, 10, TimeUnit.SECONDS).get();
+        assertEquals(2, garage.getNumberOfReservedLots());
+
+        advanceClock(99);
+        assertEquals(0, garage.expireReservations());
+        assertTrue(shortLived.isActive());
+
+        advanceClock(1);
+        assertEquals(1, garage.expireReservations());
+        assertEquals(Reservation.State.EXPIRED, shortLived.getState());
+        assertTrue(longLived.isActive());
+        assertEquals(1, garage.getNumberOfReservedLots());
+        assertEquals(2, garage.getNumberOfFreeLots());
+        assertFalse(garage.claim(shortLived).isPresent());
+
+        advanceClock(10000);
+        assertEquals(1, garage.expireReservations());
+        assertEquals(0, garage.getNumberOfReservedLots());
+        assertEquals(3, garage.getNumberOfFreeLots());
+    }
+
+    @Test
+    public void testClaimAfterDeadline() {
+
+        Garage garage = createGarage(1, 1);
+        Reservation reservation = garage.reserve(VehicleFactory.createCar("car"), 0, 1, TimeUnit.SECONDS).get();
+
+        // the timer didn't run yet, but the reservation is over nevertheless
+        advanceClock(1000);
+        assertFalse(garage.claim(reservation).isPresent());
+        assertEquals(Reservation.State.EXPIRED, reservation.getState());
+        assertEquals(1, garage.getNumberOfFreeLots());
+        assertEquals(0, garage.expireReservations());
+    }
+
+    @Test
+    public void testLotClasses() {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(0).
+                numberOfSharedBaysPerLevel(1).
+                motorbikesPerSharedBay(2).
+                reservationClock(clock::get).
+                build();
+
+        // a car holds the whole shared bay
+        Reservation reservation = garage.reserve(VehicleFactory.createCar("car"), 0, 1, TimeUnit.MINUTES).get();
+        assertEquals(2, garage.getNumberOfReservedLots(LotClass.SHARED));
+        assertEquals(0, garage.getNumberOfFreeLots(LotClass.SHARED));
+        assertFalse(garage.enter(VehicleFactory.createMotorbike("bike")).isPresent());
+
+        garage.claim(reservation);
+        assertEquals(0, garage.getNumberOfReservedLots(LotClass.SHARED));
+        assertEquals(2, garage.getNumberOfOccupiedLots(LotClass.SHARED));
+        garage.exit(reservation.getVehicle());
+        assertEquals(2, garage.getNumberOfFreeLots(LotClass.SHARED));
+
+        Reservation bike = garage.reserve(VehicleFactory.createMotorbike("bike"), 0, 1, TimeUnit.MINUTES).get();
+        assertEquals(1, garage.getNumberOfReservedLots(LotClass.SHARED));
+        assertTrue(garage.enter(VehicleFactory.createMotorbike("other")).isPresent());
+        assertFalse(garage.enter(VehicleFactory.createCar("car")).isPresent());
+        assertTrue(garage.cancel(bike));
+        assertEquals(1, garage.getNumberOfFreeLots(LotClass.SHARED));
+    }
+
+    @Test
+    public void testBackgroundExpiry() throws Exception {
+
+        Garage garage = new GarageBuilder().
+                numberOfParkingLotsPerLevel(1).
+                reservationTickMillis(5).
+                build();
+        Reservation reservation = garage.reserve(VehicleFactory.createCar("car"), 0, 20, TimeUnit.MILLISECONDS).get();
+
+        long giveUp = System.currentTimeMillis() + 10000;
+        while(reservation.isActive() && System.currentTimeMillis() < giveUp) {
+            Thread.sleep(5);
+        }
+        assertEquals(Reservation.State.EXPIRED, reservation.getState());
+        assertEquals(1, garage.getNumberOfFreeLots());
+    }
+}
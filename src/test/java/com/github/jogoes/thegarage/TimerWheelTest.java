@@ -0,0 +1,113 @@
+package com.github.jogoes.thegarage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class TimerWheelTest {
+
+    @Test
+    public void testInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel<String>(0, 0));
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel<String>(11, 0));
+    }
+
+    @Test
+    public void testExpiresAtDeadline() {
+
+        TimerWheel<String> wheel = new TimerWheel<>(2, 0);
+        wheel.schedule("a", 5);
+        wheel.schedule("b", 5);
+        wheel.schedule("c", 70);
+        assertEquals(3, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        assertEquals(0, wheel.advance(4, expired::add));
+        assertEquals(2, wheel.advance(5, expired::add));
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains("a") && expired.contains("b"));
+
+        // cascaded down from the second wheel
+        assertEquals(0, wheel.advance(69, expired::add));
+        assertEquals(1, wheel.advance(70, expired::add));
+        assertEquals("c", expired.get(2));
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void testPastDeadlineExpiresWithNextTick() {
+
+        TimerWheel<String> wheel = new TimerWheel<>(1, 10);
+        wheel.schedule("a", 3);
+        List<String> expired = new ArrayList<>();
+        assertEquals(1, wheel.advance(11, expired::add));
+    }
+
+    @Test
+    public void testCancel() {
+
+        TimerWheel<String> wheel = new TimerWheel<>(2, 0);
+        TimerWheel.Timer<String> a = wheel.schedule("a", 5);
+        TimerWheel.Timer<String> b = wheel.schedule("b", 500);
+        assertTrue(wheel.cancel(a));
+        assertFalse(wheel.cancel(a));
+        assertFalse(a.isPending());
+        assertEquals(1, wheel.size());
+
+        List<String> expired = new ArrayList<>();
+        wheel.advance(1000, expired::add);
+        assertEquals(1, expired.size());
+        assertFalse(wheel.cancel(b));
+    }
+
+    @Test
+    public void testDeadlinesBeyondRange() {
+
+        // two wheels cover 4096 ticks
+        TimerWheel<Long> wheel = new TimerWheel<>(2, 0);
+        wheel.schedule(10000L, 10000);
+        wheel.schedule(4096L, 4096);
+
+        List<Long> expired = new ArrayList<>();
+        wheel.advance(4095, expired::add);
+        assertTrue(expired.isEmpty());
+        wheel.advance(4096, expired::add);
+        assertEquals(1, expired.size());
+        wheel.advance(9999, expired::add);
+        assertEquals(1, expired.size());
+        wheel.advance(10000, expired::add);
+        assertEquals(2, expired.size());
+    }
+
+    @Test
+    public void testEmptyWheelJumps() {
+
+        TimerWheel<String> wheel = new TimerWheel<>(4, 0);
+        wheel.advance(Long.MAX_VALUE / 2, s -> fail());
+        assertEquals(Long.MAX_VALUE / 2, wheel.getCurrentTick());
+    }
+
+    @Test
+    public void testRandomDeadlines() {
+
+        Random random = new Random(42);
+        TimerWheel<Long> wheel = new TimerWheel<>(3, 123);
+        for(int i = 0; i < 10000; i++) {
+            long deadline = 124 + random.nextInt(300000);
+            wheel.schedule(deadline, deadline);
+        }
+
+        // every timer expires exactly at its deadline, no matter how far the wheel moves at once
+        long[] tick = new long[1];
+        while(!wheel.isEmpty()) {
+            tick[0] += 1 + random.nextInt(3);
+            long target = 123 + tick[0];
+            wheel.advance(target, deadline -> assertTrue(deadline <= target && deadline > target - 3));
+        }
+    }
+}
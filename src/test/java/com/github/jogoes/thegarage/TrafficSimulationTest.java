@@ -0,0 +1,138 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.Motorbike;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TrafficSimulationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static GarageBuilder builder() {
+        return new GarageBuilder().
+                numberOfLevels(2).
+                numberOfParkingLotsPerLevel(50).
+                numberOfMotorbikeBaysPerLevel(5);
+    }
+
+    @Test
+    public void testRepeatable() {
+
+        TrafficModel traffic = TrafficModel.poisson(10, 30, 0.2, 5000, 7);
+
+        SimulationReport first = new TrafficSimulation().garage(builder()).traffic(traffic).run();
+        SimulationReport second = new TrafficSimulation().garage(builder()).traffic(traffic).run();
+
+        assertEquals(5000, first.getArrivals());
+        assertTrue(first.getGarageFullRejections() > 0);
+        assertEquals(first.getEntered(), second.getEntered());
+        assertEquals(first.getGarageFullRejections(), second.getGarageFullRejections());
+        assertEquals(first.getPeakOccupiedLots(), second.getPeakOccupiedLots());
+        assertEquals(first.getSimulatedNanos(), second.getSimulatedNanos());
+    }
+
+    @Test
+    public void testSeveralGates() {
+
+        GarageBuilder builder = builder();
+        SimulationReport report = new TrafficSimulation().
+                garage(builder).
+                traffic(TrafficModel.poisson(10, 30, 0.2, 20000, 11)).
+                numberOfGates(4).
+                run();
+
+        assertEquals(4, report.getNumberOfGates());
+        assertEquals(20000, report.getArrivals());
+        assertEquals(report.getArrivals(), report.getEntered() + report.getGarageFullRejections() + report.getDuplicateRejections());
+        assertEquals(report.getEntered(), report.getExits());
+        assertEquals(0, report.getDuplicateRejections());
+        assertTrue(report.getPeakOccupiedLots() <= report.getTotalNumberOfLots());
+        assertEquals(report.getArrivals(), report.getEnterLatency().getCount());
+        assertEquals(report.getExits(), report.getExitLatency().getCount());
+    }
+
+    @Test
+    public void testTrace() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("traffic.csv");
+        Files.write(path, Arrays.asList(
+                "# time,id,type,dwell",
+                "0,A,car,1000",
+                "10,B,car,1000",
+                "20,C,car,1000",
+                "",
+                "30,A,car,1000",
+                "40,M,motorbike,500",
+                "2000,C,car,10"), StandardCharsets.UTF_8);
+
+        SimulationReport report = new TrafficSimulation().
+                garage(new GarageBuilder().numberOfParkingLotsPerLevel(2)).
+                traffic(TrafficModel.trace(path)).
+                run();
+
+        // C doesn't find a lot, A is still parked, M has no fitting lot, C comes back later
+        assertEquals(6, report.getArrivals());
+        assertEquals(3, report.getEntered());
+        assertEquals(2, report.getGarageFullRejections());
+        assertEquals(1, report.getDuplicateRejections());
+        assertEquals(3, report.getExits());
+        assertEquals(2, report.getPeakOccupiedLots());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(2010), report.getSimulatedNanos());
+    }
+
+    @Test
+    public void testInvalidTrace() throws IOException {
+
+        Path path = folder.getRoot().toPath().resolve("traffic.csv");
+        Files.write(path, Arrays.asList("10,A,car,1000", "5,B,car,1000"), StandardCharsets.UTF_8);
+        assertInvalidTrace(path);
+
+        Files.write(path, Arrays.asList("10,A,truck,1000"), StandardCharsets.UTF_8);
+        assertInvalidTrace(path);
+
+        TestUtils.assertThrows(IllegalStateException.class, () -> new TrafficSimulation().run());
+    }
+
+    private static void assertInvalidTrace(Path path) throws IOException {
+        try {
+            TrafficModel.trace(path);
+            fail("The trace should have been rejected.");
+        } catch(IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testPoissonRate() {
+
+        Iterator<Arrival> arrivals = TrafficModel.poisson(100, 60, 0.5, 100000, 3).arrivals(0, 1);
+
+        long last = 0;
+        double dwellTime = 0;
+        int motorbikes = 0;
+        while(arrivals.hasNext()) {
+            Arrival arrival = arrivals.next();
+            assertTrue(arrival.getTime() >= last);
+            last = arrival.getTime();
+            dwellTime += arrival.getDwellTime();
+            motorbikes += arrival.getVehicle() instanceof Motorbike ? 1 : 0;
+        }
+
+        // 100000 arrivals at 100 per second take about 1000 seconds
+        assertEquals(1000, last / 1e9, 20);
+        assertEquals(60, dwellTime / 100000 / 1e9, 1);
+        assertEquals(50000, motorbikes, 1000);
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.jogoes.thegarage;
+
+import com.github.jogoes.thegarage.vehicles.VehicleFactory;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.github.jogoes.thegarage.TestUtils.assertThrows;
+import static org.junit.Assert.*;
+
+public class VehicleLocationStreamTest {
+
+    /**
+     * Creates a garage with every third lot occupied, plus a few gaps.
+     */
+    private static Garage createGarage(int numberOfLevels, int lotsPerLevel) {
+        Garage garage = new GarageBuilder().
+                numberOfLevels(numberOfLevels).
+                numberOfParkingLotsPerLevel(lotsPerLevel).
+                storageMode(StorageMode.ARRAY).
+                build();
+        List<BatchResult> results = garage.enterAll(
+                java.util.stream.IntStream.range(0, numberOfLevels * lotsPerLevel).
+                        mapToObj(i -> VehicleFactory.createCar(Integer.toString(i))).
+                        collect(Collectors.toList()));
+        for (int i = 0; i < results.size(); i++) {
+            if (i % 3 != 0) {
+                garage.exit(results.get(i).getVehicle());
+            }
+        }
+        return garage;
+    }
+
+    private static List<String> describe(Collection<VehicleLocationInfo> infos) {
+        return infos.stream().
+                map(info -> info.getVehicle().getIdentifier() + "@" + info.getParkingLevel() + "/" + info.getLotNumber()).
+                collect(Collectors.toList());
+    }
+
+    @Test
+    public void testStreamMatchesCollection() {
+
+        Garage garage = createGarage(5, 1000);
+
+        List<String> expected = describe(garage.getVehicleLocationInfos());
+        assertEquals(garage.getNumberOfOccupiedLots(), expected.size());
+        assertEquals(expected, describe(garage.vehicleLocationInfos().collect(Collectors.toList())));
+        assertEquals(expected, describe(garage.vehicleLocationInfos().parallel().collect(Collectors.toList())));
+    }
+
+    @Test
+    public void testSplitsCoverEverythingOnce() {
+
+        Garage garage = createGarage(3, 20000);
+
+        // split as far as possible, the pieces must cover every vehicle exactly once and in order
+        Deque<Spliterator<VehicleLocationInfo>> pending = new ArrayDeque<>();
+        List<Spliterator<VehicleLocationInfo>> pieces = new ArrayList<>();
+        pending.push(new VehicleLocationSpliterator(garage, 0, 0, 2, Integer.MAX_VALUE));
+        while (!pending.isEmpty()) {
+            Spliterator<VehicleLocationInfo> spliterator = pending.pop();
+            Spliterator<VehicleLocationInfo> prefix = spliterator.trySplit();
+            if (prefix == null) {
+                pieces.add(spliterator);
+            } else {
+                pending.push(spliterator);
+                pending.push(prefix);
+            }
+        }
+        assertTrue(pieces.size() > 3);
+
+        List<VehicleLocationInfo> collected = new ArrayList<>();
+        for (Spliterator<VehicleLocationInfo> piece : pieces) {
+            piece.forEachRemaining(collected::add);
+        }
+        assertEquals(describe(garage.getVehicleLocationInfos()), describe(collected));
+    }
+
+    @Test
+    public void testEstimateSize() {
+
+        Garage garage = createGarage(4, 300);
+
+        Spliterator<VehicleLocationInfo> spliterator = garage.vehicleLocationInfos().spliterator();
+        assertEquals(garage.getNumberOfOccupiedLots(), spliterator.estimateSize());
+        spliterator.tryAdvance(info -> {});
+        assertEquals(garage.getNumberOfOccupiedLots() - 1, spliterator.estimateSize(), 1);
+    }
+
+    @Test
+    public void testEmptyGarage() {
+
+        Garage garage = new Garage(3, 0);
+        assertEquals(0, garage.vehicleLocationInfos().count());
+        VehicleLocationPage page = garage.getVehicleLocationInfos(VehicleLocationPage.FIRST, 10);
+        assertTrue(page.getVehicleLocationInfos().isEmpty());
+        assertFalse(page.hasNext());
+    }
+
+    @Test
+    public void testPagination() {
+
+        Garage garage = createGarage(3, 100);
+
+        List<VehicleLocationInfo> collected = new ArrayList<>();
+        int pages = 0;
+        for (long cursor = VehicleLocationPage.FIRST; cursor != VehicleLocationPage.END; pages++) {
+            VehicleLocationPage page = garage.getVehicleLocationInfos(cursor, 17);
+            assertTrue(page.getVehicleLocationInfos().size() <= 17);
+            collected.addAll(page.getVehicleLocationInfos());
+            cursor = page.getNextCursor();
+        }
+
+        assertEquals(describe(garage.getVehicleLocationInfos()), describe(collected));
+        assertEquals((collected.size() + 16) / 17, pages);
+
+        assertThrows(IllegalArgumentException.class, () -> garage.getVehicleLocationInfos(VehicleLocationPage.FIRST, 0));
+        assertThrows(IllegalArgumentException.class, () -> garage.getVehicleLocationInfos(VehicleLocationPage.END, 10));
+    }
+
+    @Test
+    public void testPaginationWhileVehiclesMove() {
+
+        Garage garage = createGarage(2, 50);
+
+        VehicleLocationPage first = garage.getVehicleLocationInfos(VehicleLocationPage.FIRST, 10);
+        VehicleLocationInfo last = first.getVehicleLocationInfos().get(9);
+
+        // the vehicle at the cursor position leaves, the next page starts at the following vehicle
+        VehicleLocationPage second = garage.getVehicleLocationInfos(first.getNextCursor(), 10);
+        garage.exit(second.getVehicleLocationInfos().get(0).getVehicle());
+        VehicleLocationPage again = garage.getVehicleLocationInfos(first.getNextCursor(), 10);
+
+        assertEquals(second.getVehicleLocationInfos().get(1).getVehicle(), again.getVehicleLocationInfos().get(0).getVehicle());
+        assertTrue(again.getVehicleLocationInfos().get(0).getLotNumber() > last.getLotNumber());
+    }
+
+    @Test
+    public void testLotRange() {
+
+        Garage garage = createGarage(4, 1000);
+
+        List<String> expected = describe(garage.getVehicleLocationInfos().stream().
+                filter(info -> info.getParkingLevel() == 3 && info.getLotNumber() >= 100 && info.getLotNumber() < 250).
+                collect(Collectors.toList()));
+        assertEquals(50, expected.size());
+        assertEquals(expected, describe(garage.vehicleLocationInfos(3, 100, 250).collect(Collectors.toList())));
+        assertEquals(0, garage.vehicleLocationInfos(3, 100, 100).count());
+        assertEquals(334, garage.vehicleLocationInfos(0, 0, 1000).count());
+
+        assertThrows(IllegalArgumentException.class, () -> garage.vehicleLocationInfos(4, 0, 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> garage.vehicleLocationInfos(0, -1, 10));
+        assertThrows(IndexOutOfBoundsException.class, () -> garage.vehicleLocationInfos(0, 0, 1001));
+        assertThrows(IndexOutOfBoundsException.class, () -> garage.vehicleLocationInfos(0, 20, 10));
+    }
+
+    @Test
+    public void testPrefix() {
+
+        for(boolean prefixIndexEnabled : new boolean[] { false, true }) {
+            Garage garage = new GarageBuilder().
+                    numberOfLevels(3).
+                    numberOfParkingLotsPerLevel(2000).
+                    allocationStrategy(AllocationStrategy.roundRobin()).
+                    prefixIndexEnabled(prefixIndexEnabled).
+                    build();
+            for(int i = 0; i < 5000; i++) {
+                garage.enter(VehicleFactory.createCar("B-" + (i % 13 == 0 ? "XY" : "AB") + " " + i));
+            }
+            for(int i = 0; i < 5000; i += 2) {
+                garage.exit(VehicleFactory.createCar("B-" + (i % 13 == 0 ? "XY" : "AB") + " " + i));
+            }
+
+            // ordered by level, the order within a level depends on the index
+            List<String> expected = describe(garage.getVehicleLocationInfos().stream().
+                    filter(info -> info.getVehicle().getIdentifier().startsWith("B-XY 1")).
+                    sorted(Comparator.comparing((VehicleLocationInfo info) -> info.getParkingLevel()).thenComparing(info -> info.getVehicle().getIdentifier())).
+                    collect(Collectors.toList()));
+            List<String> found = describe(garage.vehicleLocationInfosWithPrefix("B-XY 1").collect(Collectors.toList()));
+            if(!prefixIndexEnabled) {
+                Collections.sort(found);
+                Collections.sort(expected);
+            }
+            assertFalse(expected.isEmpty());
+            assertEquals(expected, found);
+            assertEquals(2500, garage.vehicleLocationInfosWithPrefix("").count());
+            assertEquals(2500, garage.vehicleLocationInfosWithPrefix("B-").parallel().count());
+            assertEquals(0, garage.vehicleLocationInfosWithPrefix("C").count());
+            assertEquals(1, garage.vehicleLocationInfosWithPrefix("B-AB 4999").count());
+            assertEquals(0, garage.vehicleLocationInfosWithPrefix("B-AB 4998").count());
+        }
+    }
+}